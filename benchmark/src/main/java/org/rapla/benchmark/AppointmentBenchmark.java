@@ -0,0 +1,105 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.AppointmentBlock;
+import org.rapla.entities.domain.AppointmentStartComparator;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.domain.internal.AppointmentImpl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The appointment methods that are called in the loops of the week queries and the conflict checks. Run with the gc profiler
+ * to see the allocations per call, e.g. <code>java -jar benchmark/target/benchmarks.jar AppointmentBenchmark -prof gc</code>,
+ * and compare <code>gc.alloc.rate.norm</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Appointments
+    {
+        SortedSet<Appointment> sorted = new TreeSet<>(new AppointmentStartComparator());
+        List<AppointmentImpl> list = new ArrayList<>();
+        Date weekStart;
+        Date weekEnd;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data)
+        {
+            weekStart = data.getWeekStart();
+            weekEnd = data.getWeekEnd();
+            for (Reservation reservation : data.data.reservations)
+            {
+                for (Appointment appointment : reservation.getAppointmentsFor(data.busiestResource))
+                {
+                    sorted.add(appointment);
+                    list.add((AppointmentImpl) appointment);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public SortedSet<Appointment> getAppointmentsInWeek(Appointments appointments)
+    {
+        return AppointmentImpl.getAppointments(appointments.sorted, null, appointments.weekStart, appointments.weekEnd, true);
+    }
+
+    @Benchmark
+    public int overlapsWeek(Appointments appointments)
+    {
+        int overlaps = 0;
+        for (AppointmentImpl appointment : appointments.list)
+        {
+            if (appointment.overlaps(appointments.weekStart, appointments.weekEnd))
+            {
+                overlaps++;
+            }
+        }
+        return overlaps;
+    }
+
+    @Benchmark
+    public long getMaxEnd(Appointments appointments)
+    {
+        long result = 0;
+        for (AppointmentImpl appointment : appointments.list)
+        {
+            final Date maxEnd = appointment.getMaxEnd();
+            result += maxEnd != null ? maxEnd.getTime() : 0;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<AppointmentBlock> createBlocksInWeek(Appointments appointments)
+    {
+        final List<AppointmentBlock> blocks = new ArrayList<>();
+        for (AppointmentImpl appointment : appointments.list)
+        {
+            appointment.createBlocks(appointments.weekStart, appointments.weekEnd, blocks);
+        }
+        return blocks;
+    }
+}
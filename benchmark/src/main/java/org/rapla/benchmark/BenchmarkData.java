@@ -0,0 +1,97 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.logger.Logger;
+import org.rapla.storage.CachableStorageOperator;
+import org.rapla.test.util.DataGenerator;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A file based facade filled by the {@link DataGenerator}. The data is kept in memory and starts from the default system,
+ * so the benchmarks don't depend on the test data files. The data is generated once per benchmark run.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData
+{
+    static final String DATA_FILE = "target/benchmark/data.xml";
+
+    @Param({ "100", "500" })
+    public int resources;
+
+    @Param({ "2000" })
+    public int reservations;
+
+    Logger logger;
+    MemoryFileIO fileIO;
+    RaplaFacade facade;
+    CachableStorageOperator operator;
+    User user;
+    DataGenerator.Result data;
+    Date start;
+    Allocatable busiestResource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        logger = RaplaTestCase.initLoger();
+        fileIO = new MemoryFileIO();
+        facade = RaplaTestCase.createFacadeWithFile(logger, DATA_FILE, fileIO);
+        operator = (CachableStorageOperator) facade.getOperator();
+        user = facade.getUser("admin");
+        start = DateTools.cutDate(new Date());
+        data = new DataGenerator().setResources(resources).setUsers(resources / 5).setReservations(reservations).setStart(start).generate(facade, user);
+        busiestResource = findBusiestResource();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        RaplaTestCase.dispose(facade);
+    }
+
+    /** the resource with the most events, it has the most conflicts */
+    private Allocatable findBusiestResource()
+    {
+        final Map<Allocatable, Integer> counts = new HashMap<>();
+        Allocatable result = null;
+        int max = -1;
+        for (Reservation reservation : data.reservations)
+        {
+            for (Allocatable allocatable : reservation.getAllocatables())
+            {
+                final int count = counts.merge(allocatable, 1, Integer::sum);
+                if (count > max)
+                {
+                    max = count;
+                    result = allocatable;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** the start of the week that is queried, the second week of the generated data */
+    Date getWeekStart()
+    {
+        return new Date(start.getTime() + DateTools.MILLISECONDS_PER_WEEK);
+    }
+
+    Date getWeekEnd()
+    {
+        return new Date(start.getTime() + 2 * DateTools.MILLISECONDS_PER_WEEK);
+    }
+}
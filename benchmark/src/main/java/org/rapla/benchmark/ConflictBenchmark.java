@@ -0,0 +1,86 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.AppointmentBlock;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.storage.ReferenceInfo;
+import org.rapla.facade.Conflict;
+import org.rapla.storage.impl.server.ConflictFinder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Conflict detection for the resource with the most events: the sweep line over its blocks and the pairwise overlap check. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflictBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Blocks
+    {
+        Allocatable allocatable;
+        Date today;
+        List<Appointment> appointments = new ArrayList<>();
+        List<AppointmentBlock> blocks = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data)
+        {
+            allocatable = data.busiestResource;
+            today = data.start;
+            final Date end = new Date(data.start.getTime() + 52 * DateTools.MILLISECONDS_PER_WEEK);
+            for (Reservation reservation : data.data.reservations)
+            {
+                for (Appointment appointment : reservation.getAppointmentsFor(allocatable))
+                {
+                    appointments.add(appointment);
+                    appointment.createBlocks(data.start, end, blocks);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<ReferenceInfo<Conflict>, Conflict> sweepLine(Blocks blocks)
+    {
+        return ConflictFinder.sweepLine(blocks.allocatable, blocks.today, blocks.blocks);
+    }
+
+    @Benchmark
+    public int overlapsAppointment(Blocks blocks)
+    {
+        final List<Appointment> appointments = blocks.appointments;
+        int overlaps = 0;
+        for (int i = 0; i < appointments.size(); i++)
+        {
+            final Appointment a1 = appointments.get(i);
+            for (int j = i + 1; j < appointments.size(); j++)
+            {
+                if (a1.overlapsAppointment(appointments.get(j)))
+                {
+                    overlaps++;
+                }
+            }
+        }
+        return overlaps;
+    }
+}
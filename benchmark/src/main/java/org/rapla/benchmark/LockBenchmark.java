@@ -0,0 +1,74 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.framework.RaplaException;
+import org.rapla.logger.ConsoleLogger;
+import org.rapla.storage.impl.DefaultRaplaLock;
+import org.rapla.storage.impl.RaplaLock;
+
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Many readers taking and releasing the read lock of the storage at the same time, as the server does for concurrent
+ * requests. The stack bookkeeping is the lock holder tracking used before DefaultRaplaLock kept its holders in a concurrent
+ * map. Runs with 64 threads as requested, use -t to change the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class LockBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Locks
+    {
+        final DefaultRaplaLock lockManager = new DefaultRaplaLock(new ConsoleLogger());
+        final StackBookkeeping stackBookkeeping = new StackBookkeeping();
+    }
+
+    @Benchmark
+    public RaplaLock.ReadLock readLock(Locks locks) throws RaplaException
+    {
+        final RaplaLock.ReadLock readLock = locks.lockManager.readLock(LockBenchmark.class, "read");
+        locks.lockManager.unlock(readLock);
+        return readLock;
+    }
+
+    @Benchmark
+    public RaplaLock.ReadLock readLockWithStackBookkeeping(Locks locks)
+    {
+        return locks.stackBookkeeping.readAndUnlock();
+    }
+
+    /** all readers synchronize on the same stack */
+    static class StackBookkeeping
+    {
+        final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+        final Stack<RaplaLock.ReadLock> readLocks = new Stack<>();
+
+        RaplaLock.ReadLock readAndUnlock()
+        {
+            Lock lock = readWriteLock.readLock();
+            lock.lock();
+            RaplaLock.ReadLock readLock = new RaplaLock.ReadLock(lock, getClass(), "read", new StackTraceElement[] {}, System.currentTimeMillis());
+            readLocks.add(readLock);
+            lock.unlock();
+            readLocks.remove(readLock);
+            return readLock;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.rapla.benchmark;
+
+import org.rapla.storage.dbfile.FileOperator;
+import org.xml.sax.InputSource;
+
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URI;
+
+/** Keeps the xml data in memory, so that reading and writing is measured without the disk. */
+public class MemoryFileIO implements FileOperator.FileIO
+{
+    private volatile String data;
+
+    public MemoryFileIO()
+    {
+    }
+
+    /** starts with the given xml instead of a missing file */
+    public MemoryFileIO(String data)
+    {
+        this.data = data;
+    }
+
+    @Override
+    public InputSource getInputSource(URI storageURL) throws IOException
+    {
+        final String current = data;
+        if (current == null)
+        {
+            // the file operator creates the default system if the file is not found
+            throw new FileNotFoundException(storageURL.toString());
+        }
+        return new InputSource(new StringReader(current));
+    }
+
+    @Override
+    public void write(FileOperator.RaplaWriter writer, URI storageURL) throws IOException
+    {
+        final StringWriter out = new StringWriter();
+        final BufferedWriter w = new BufferedWriter(out);
+        writer.write(w);
+        w.flush();
+        data = out.toString();
+    }
+
+    public String getData()
+    {
+        return data;
+    }
+
+    public int getLength()
+    {
+        final String current = data;
+        return current != null ? current.length() : 0;
+    }
+}
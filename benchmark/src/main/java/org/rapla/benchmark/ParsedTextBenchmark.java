@@ -0,0 +1,95 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.entities.dynamictype.internal.DynamicTypeImpl;
+import org.rapla.entities.dynamictype.internal.EvalContext;
+import org.rapla.entities.dynamictype.internal.ParsedText;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/** Formatting the names of all generated resources and events with the name format of their type, see ParsedText.formatName */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsedTextBenchmark
+{
+    /** typical name formats, parsed with the type of the generated resources */
+    @State(Scope.Benchmark)
+    public static class Expressions
+    {
+        @Param({ "{name}", "{name} ({name})", "{concat(name,\" - \",\"[\",1,\"]\")}", "{name}\\n{\"room\"}" })
+        public String expression;
+
+        ParsedText parsedText;
+        List<EvalContext> contexts = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) throws Exception
+        {
+            final DynamicTypeImpl type = (DynamicTypeImpl) data.data.resources.get(0).getClassification().getType();
+            parsedText = new ParsedText(expression);
+            parsedText.init(type.getParseContext());
+            for (Allocatable resource : data.data.resources)
+            {
+                if (resource.getClassification().getType().equals(type))
+                {
+                    contexts.add(type.createEvalContext(Locale.ENGLISH, DynamicTypeAnnotations.KEY_NAME_FORMAT, resource));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int formatExpression(Expressions expressions)
+    {
+        int length = 0;
+        for (EvalContext context : expressions.contexts)
+        {
+            length += expressions.parsedText.formatName(context).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int formatResourceNames(BenchmarkData data)
+    {
+        final List<Allocatable> resources = data.data.resources;
+        int length = 0;
+        for (Allocatable resource : resources)
+        {
+            length += resource.getClassification().format(Locale.ENGLISH, DynamicTypeAnnotations.KEY_NAME_FORMAT).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int formatEventNames(BenchmarkData data)
+    {
+        final List<Reservation> reservations = data.data.reservations;
+        int length = 0;
+        for (Reservation reservation : reservations)
+        {
+            length += reservation.getClassification().format(Locale.ENGLISH, DynamicTypeAnnotations.KEY_NAME_FORMAT).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,83 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.domain.internal.ReservationImpl;
+import org.rapla.framework.RaplaException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The allocations of all stored reservations, as the storage reads them for every appointment when it builds the appointment
+ * bindings on startup. Run with -prof gc to see the allocations per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Allocations
+    {
+        final List<ReservationImpl> reservations = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) throws RaplaException
+        {
+            for (Reservation reservation : data.data.reservations)
+            {
+                reservations.add((ReservationImpl) data.facade.getPersistant(reservation));
+            }
+        }
+    }
+
+    @Benchmark
+    public int getAllocatableIdsFor(Allocations allocations)
+    {
+        int count = 0;
+        for (ReservationImpl reservation : allocations.reservations)
+        {
+            for (Appointment appointment : reservation.getAppointmentList())
+            {
+                count += reservation.getAllocatableIdsFor(appointment).size();
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasAllocatedOn(Allocations allocations)
+    {
+        int count = 0;
+        for (ReservationImpl reservation : allocations.reservations)
+        {
+            for (Allocatable allocatable : reservation.getAllocatables())
+            {
+                for (Appointment appointment : reservation.getAppointmentList())
+                {
+                    if (reservation.hasAllocatedOn(allocatable, appointment))
+                    {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
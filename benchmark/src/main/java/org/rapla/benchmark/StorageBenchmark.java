@@ -0,0 +1,114 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.AppointmentFormaterImpl;
+import org.rapla.RaplaResources;
+import org.rapla.components.i18n.internal.AbstractBundleManager;
+import org.rapla.components.i18n.server.ServerBundleManager;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.AppointmentFormater;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.framework.RaplaException;
+import org.rapla.framework.internal.RaplaLocaleImpl;
+import org.rapla.server.internal.SecurityManager;
+import org.rapla.server.internal.UpdateDataManager;
+import org.rapla.server.internal.UpdateDataManagerImpl;
+import org.rapla.storage.UpdateEvent;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** The storage queries that are called by the clients: week views, allocation checks and the refresh of the changes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Queries
+    {
+        List<Allocatable> allocatables;
+        Collection<Appointment> appointments;
+        Collection<Reservation> ignoreList;
+        UpdateDataManager updateManager;
+        Date lastSynced;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) throws RaplaException
+        {
+            allocatables = Arrays.asList(data.facade.getAllocatables());
+            // check the appointments of an event with the busiest resource against all resources, like the event editor does
+            Reservation reservation = data.data.reservations.get(0);
+            for (Reservation candidate : data.data.reservations)
+            {
+                if (candidate.hasAllocated(data.busiestResource))
+                {
+                    reservation = candidate;
+                    break;
+                }
+            }
+            appointments = Arrays.asList(reservation.getAppointments());
+            ignoreList = Collections.singleton(reservation);
+
+            AbstractBundleManager bundleManager = new ServerBundleManager();
+            RaplaResources i18n = new RaplaResources(bundleManager);
+            final RaplaLocaleImpl raplaLocale = new RaplaLocaleImpl(bundleManager);
+            AppointmentFormater appointmentFormater = new AppointmentFormaterImpl(i18n, raplaLocale);
+            SecurityManager securityManager = new SecurityManager(data.logger, i18n, appointmentFormater, data.operator);
+            updateManager = new UpdateDataManagerImpl(data.logger, data.operator, securityManager);
+            lastSynced = data.operator.getCurrentTimestamp();
+        }
+    }
+
+    @Benchmark
+    public Map<Allocatable, Collection<Appointment>> queryWeek(BenchmarkData data, Queries queries) throws RaplaException
+    {
+        return RaplaTestCase.waitForWithRaplaException(
+                data.operator.queryAppointments(data.user, queries.allocatables, data.getWeekStart(), data.getWeekEnd(), null, (Map<String, String>) null), 10000);
+    }
+
+    @Benchmark
+    public Map<Allocatable, Collection<Appointment>> getFirstAllocatableBindings(BenchmarkData data, Queries queries) throws RaplaException
+    {
+        return data.operator.getFirstAllocatableBindingsSync(queries.allocatables, queries.appointments, queries.ignoreList);
+    }
+
+    @Benchmark
+    public Map<Allocatable, Map<Appointment, Collection<Appointment>>> getAllAllocatableBindings(BenchmarkData data, Queries queries) throws RaplaException
+    {
+        return data.operator.getAllAllocatableBindingsSync(queries.allocatables, queries.appointments, queries.ignoreList);
+    }
+
+    /** the refresh of a client that is up to date */
+    @Benchmark
+    public UpdateEvent createUpdateEventNoChanges(BenchmarkData data, Queries queries) throws RaplaException
+    {
+        return queries.updateManager.createUpdateEvent(data.user, queries.lastSynced);
+    }
+
+    /** the refresh of a client that was connected before the data was generated, so all generated entities are sent */
+    @Benchmark
+    public UpdateEvent createUpdateEventAllChanges(BenchmarkData data, Queries queries) throws RaplaException
+    {
+        return queries.updateManager.createUpdateEvent(data.user, data.start);
+    }
+}
@@ -0,0 +1,59 @@
+package org.rapla.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.framework.RaplaException;
+import org.rapla.storage.dbfile.FileOperator;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the data with the RaplaMainWriter and reading it with the RaplaMainReader. Reading includes the creation of the
+ * facade and the resolving of the references, as on a server start.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Xml
+    {
+        String data;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) throws RaplaException
+        {
+            ((FileOperator) data.operator).saveData();
+            this.data = data.fileIO.getData();
+        }
+    }
+
+    @Benchmark
+    public int write(BenchmarkData data) throws RaplaException
+    {
+        ((FileOperator) data.operator).saveData();
+        return data.fileIO.getLength();
+    }
+
+    @Benchmark
+    public RaplaFacade read(BenchmarkData data, Xml xml) throws RaplaException
+    {
+        final RaplaFacade facade = RaplaTestCase.createFacadeWithFile(data.logger, BenchmarkData.DATA_FILE, new MemoryFileIO(xml.data));
+        RaplaTestCase.dispose(facade);
+        return facade;
+    }
+}
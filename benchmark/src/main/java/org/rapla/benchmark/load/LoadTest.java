@@ -0,0 +1,182 @@
+package org.rapla.benchmark.load;
+
+import org.eclipse.jetty.server.Server;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Permission;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.facade.client.ClientFacade;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.logger.Logger;
+import org.rapla.server.ServerServiceContainer;
+import org.rapla.server.internal.ServerContainerContext;
+import org.rapla.storage.StorageOperator;
+import org.rapla.test.util.DataGenerator;
+import org.rapla.test.util.RaplaTestCase;
+
+import javax.inject.Provider;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the server with an in memory HSQLDB on the in-process jetty of the tests, fills it with the {@link DataGenerator}
+ * and lets a number of {@link VirtualUser virtual users} call the server over http with the remote client stack. Prints the
+ * throughput and latency percentiles per operation. Run it with
+ * <pre>
+ * java -cp target/benchmarks.jar org.rapla.benchmark.load.LoadTest --users=50 --seconds=120
+ * </pre>
+ */
+public class LoadTest
+{
+    private final LoadTestConfig config;
+    private final Logger logger;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    public LoadTest(LoadTestConfig config, Logger logger)
+    {
+        this.config = config;
+        this.logger = logger;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final LoadTestConfig config = LoadTestConfig.parse(args);
+        final LoadTest loadTest = new LoadTest(config, RaplaTestCase.initLoger());
+        try
+        {
+            loadTest.run(System.out);
+        }
+        finally
+        {
+            // the schedulers of the clients and the server don't stop by themselves
+            System.exit(0);
+        }
+    }
+
+    public void run(PrintStream out) throws Exception
+    {
+        out.println("Load test " + config);
+        final ServerContainerContext containerContext = createContainerContext();
+        final RaplaTestCase.ServerContext serverContext = RaplaTestCase.createServerContext(logger, containerContext, config.port);
+        final ServerServiceContainer serviceContainer = serverContext.getServiceContainer();
+        final Server server = serverContext.getServer();
+        final List<ClientFacade> clients = new ArrayList<>();
+        try
+        {
+            final Date start = DateTools.cutDate(new Date());
+            final List<User> users = generateData(serviceContainer.getFacade(), start);
+            final Provider<ClientFacade> clientProvider = RaplaTestCase.createFacadeWithRemote(logger, config.port);
+            final long rampUpMillis = TimeUnit.SECONDS.toMillis(config.rampUpSeconds);
+            final long begin = System.currentTimeMillis();
+            final long deadline = begin + rampUpMillis + TimeUnit.SECONDS.toMillis(config.seconds);
+            final ExecutorService executor = Executors.newFixedThreadPool(users.size());
+            for (int i = 0; i < users.size(); i++)
+            {
+                final ClientFacade client = clientProvider.get();
+                clients.add(client);
+                final VirtualUser virtualUser = new VirtualUser(client, users.get(i).getUsername(), config, start, deadline, config.seed + i, metrics, logger);
+                final long delay = users.size() > 1 ? rampUpMillis * i / (users.size() - 1) : 0;
+                executor.execute(() -> {
+                    sleep(delay);
+                    virtualUser.run();
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(config.seconds + config.rampUpSeconds + 120, TimeUnit.SECONDS);
+            final long elapsed = System.currentTimeMillis() - begin;
+            new LoadTestReport(metrics).print(out, elapsed);
+            if (config.serverMetrics)
+            {
+                out.println();
+                out.print(serviceContainer.getMetrics().toPrometheusText());
+            }
+        }
+        finally
+        {
+            for (ClientFacade client : clients)
+            {
+                RaplaTestCase.dispose(client.getRaplaFacade());
+            }
+            RaplaTestCase.dispose(serviceContainer.getFacade());
+            server.stop();
+        }
+    }
+
+    private ServerContainerContext createContainerContext()
+    {
+        final ServerContainerContext containerContext = new ServerContainerContext();
+        final JDBCDataSource datasource = new JDBCDataSource();
+        // a new in memory database per run, so each run starts with the same data
+        datasource.setUrl("jdbc:hsqldb:mem:rapla-loadtest-" + System.nanoTime());
+        datasource.setUser("db_user");
+        datasource.setPassword("your_pwd");
+        containerContext.addDbDatasource("jdbc/rapladb", datasource);
+        // the file doesn't exist, so the empty database is filled with the default system
+        containerContext.addFileDatasource("raplafile", "target/loadtest/data.xml");
+        return containerContext;
+    }
+
+    /** creates the resources and events and the users of the load test, who may create events and read the events of others */
+    private List<User> generateData(RaplaFacade facade, Date start) throws Exception
+    {
+        final long begin = System.currentTimeMillis();
+        final User admin = facade.getUser("admin");
+        final DataGenerator.Result data = new DataGenerator().setResources(config.resources).setReservations(config.reservations)
+                .setUsers(config.users).setGroups(Math.max(1, config.users / 5)).setWeeks(config.weeks).setStart(start).setSeed(config.seed)
+                .generate(facade, admin);
+        final Category userGroups = facade.getUserGroupsCategory();
+        final Category canCreate = userGroups.getCategory(Permission.GROUP_CAN_CREATE_EVENTS);
+        final Category canRead = userGroups.getCategory(Permission.GROUP_CAN_READ_EVENTS_FROM_OTHERS);
+        final List<Entity> toStore = new ArrayList<>();
+        for (User user : data.users)
+        {
+            final User editable = facade.edit(facade.resolve(user.getReference()));
+            if (canCreate != null)
+            {
+                editable.addGroup(canCreate);
+            }
+            if (canRead != null)
+            {
+                editable.addGroup(canRead);
+            }
+            toStore.add(editable);
+        }
+        facade.storeObjects(toStore.toArray(Entity.ENTITY_ARRAY));
+        final StorageOperator operator = facade.getOperator();
+        final List<User> users = new ArrayList<>();
+        for (User user : data.users)
+        {
+            final User persistent = facade.resolve(user.getReference());
+            operator.changePassword(persistent, new char[] {}, config.password.toCharArray());
+            users.add(persistent);
+        }
+        logger.info(String.format(Locale.ENGLISH, "Generated %d resources, %d events and %d users in %d ms", data.resources.size(), data.reservations.size(),
+                users.size(), System.currentTimeMillis() - begin));
+        return users;
+    }
+
+    private static void sleep(long millis)
+    {
+        if (millis <= 0)
+        {
+            return;
+        }
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.rapla.benchmark.load;
+
+/**
+ * Parameters of a load test run, parsed from arguments like <code>--users=50 --seconds=120</code>. The same parameters
+ * and seed always create the same data and the same sequence of operations per user.
+ */
+public class LoadTestConfig
+{
+    int users = 20;
+    int seconds = 60;
+    int rampUpSeconds = 5;
+    int thinkMillis = 100;
+    int port = 8053;
+    int resources = 200;
+    int reservations = 5000;
+    int weeks = 26;
+    long seed = 4711;
+    boolean serverMetrics;
+    String password = "load";
+
+    // share of the operations in percent, the remaining operations are refreshes
+    int weekViewPercent = 60;
+    int editPercent = 15;
+    int loginPercent = 2;
+
+    public static LoadTestConfig parse(String[] args)
+    {
+        final LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args)
+        {
+            if (!arg.startsWith("--"))
+            {
+                throw new IllegalArgumentException("Unknown argument " + arg + "\n" + usage());
+            }
+            final int index = arg.indexOf('=');
+            final String key = index > 0 ? arg.substring(2, index) : arg.substring(2);
+            final String value = index > 0 ? arg.substring(index + 1) : "true";
+            switch (key)
+            {
+                case "users":
+                    config.users = Integer.parseInt(value);
+                    break;
+                case "seconds":
+                    config.seconds = Integer.parseInt(value);
+                    break;
+                case "rampup":
+                    config.rampUpSeconds = Integer.parseInt(value);
+                    break;
+                case "think":
+                    config.thinkMillis = Integer.parseInt(value);
+                    break;
+                case "port":
+                    config.port = Integer.parseInt(value);
+                    break;
+                case "resources":
+                    config.resources = Integer.parseInt(value);
+                    break;
+                case "reservations":
+                    config.reservations = Integer.parseInt(value);
+                    break;
+                case "weeks":
+                    config.weeks = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    config.seed = Long.parseLong(value);
+                    break;
+                case "weekview":
+                    config.weekViewPercent = Integer.parseInt(value);
+                    break;
+                case "edit":
+                    config.editPercent = Integer.parseInt(value);
+                    break;
+                case "login":
+                    config.loginPercent = Integer.parseInt(value);
+                    break;
+                case "server-metrics":
+                    config.serverMetrics = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg + "\n" + usage());
+            }
+        }
+        if (config.weekViewPercent + config.editPercent + config.loginPercent > 100)
+        {
+            throw new IllegalArgumentException("The shares of weekview, edit and login must not exceed 100 percent");
+        }
+        return config;
+    }
+
+    static String usage()
+    {
+        return "Arguments: --users=20 --seconds=60 --rampup=5 --think=100 --port=8053 --resources=200 --reservations=5000"
+                + " --weeks=26 --seed=4711 --weekview=60 --edit=15 --login=2 --server-metrics";
+    }
+
+    @Override
+    public String toString()
+    {
+        return "users=" + users + " seconds=" + seconds + " rampup=" + rampUpSeconds + " think=" + thinkMillis + "ms resources=" + resources
+                + " reservations=" + reservations + " weeks=" + weeks + " seed=" + seed + " mix weekview/edit/login/refresh=" + weekViewPercent + "/"
+                + editPercent + "/" + loginPercent + "/" + (100 - weekViewPercent - editPercent - loginPercent);
+    }
+}
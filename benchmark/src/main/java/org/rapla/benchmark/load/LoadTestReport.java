@@ -0,0 +1,62 @@
+package org.rapla.benchmark.load;
+
+import org.rapla.framework.metrics.MetricsRegistry;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Prints the throughput, errors and latency percentiles in milliseconds of each operation of a load test */
+class LoadTestReport
+{
+    private final MetricsRegistry metrics;
+
+    LoadTestReport(MetricsRegistry metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    void print(PrintStream out, long elapsedMillis)
+    {
+        final Map<String, MetricsRegistry.MetricStatistics> timers = new LinkedHashMap<>();
+        final Map<String, Long> errors = new LinkedHashMap<>();
+        long conflicts = 0;
+        for (MetricsRegistry.MetricStatistics statistics : metrics.getStatistics())
+        {
+            final String operation = statistics.labels.get("operation");
+            switch (statistics.name)
+            {
+                case VirtualUser.OPERATION_SECONDS:
+                    timers.put(operation, statistics);
+                    break;
+                case VirtualUser.OPERATION_ERRORS:
+                    errors.put(operation, statistics.value);
+                    break;
+                case VirtualUser.CONFLICTS:
+                    conflicts = statistics.value;
+                    break;
+            }
+        }
+        final double seconds = Math.max(1, elapsedMillis) / 1000.0;
+        out.println(String.format(Locale.ENGLISH, "%-10s %8s %7s %9s %9s %9s %9s %9s %9s", "operation", "count", "errors", "ops/s", "mean ms", "p50 ms",
+                "p90 ms", "p99 ms", "max ms"));
+        long total = 0;
+        for (Map.Entry<String, MetricsRegistry.MetricStatistics> entry : timers.entrySet())
+        {
+            final MetricsRegistry.MetricStatistics statistics = entry.getValue();
+            final Long errorCount = errors.remove(entry.getKey());
+            total += statistics.count;
+            out.println(String.format(Locale.ENGLISH, "%-10s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f", entry.getKey(), statistics.count,
+                    errorCount != null ? errorCount : 0, statistics.count / seconds, statistics.mean / 1000.0, statistics.p50 / 1000.0,
+                    statistics.p90 / 1000.0, statistics.p99 / 1000.0, statistics.max / 1000.0));
+        }
+        // operations that never succeeded have no timer
+        for (Map.Entry<String, Long> entry : errors.entrySet())
+        {
+            out.println(String.format(Locale.ENGLISH, "%-10s %8d %7d", entry.getKey(), 0, entry.getValue()));
+        }
+        out.println(String.format(Locale.ENGLISH, "total %d operations in %.1f s, %.1f ops/s, %d conflicts found while editing", total, seconds,
+                total / seconds, conflicts));
+    }
+}
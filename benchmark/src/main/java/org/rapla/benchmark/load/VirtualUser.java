@@ -0,0 +1,259 @@
+package org.rapla.benchmark.load;
+
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.facade.Conflict;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.facade.client.ClientFacade;
+import org.rapla.framework.RaplaException;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.framework.metrics.Timer;
+import org.rapla.logger.Logger;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A client that logs in over http and then calls week views, edits and refreshes in a random order until the deadline.
+ * Every operation is timed in the {@link MetricsRegistry} of the load test, failed operations are counted separately.
+ */
+class VirtualUser implements Runnable
+{
+    static final String OPERATION_SECONDS = "loadtest_operation_seconds";
+    static final String OPERATION_ERRORS = "loadtest_operation_errors_total";
+    static final String CONFLICTS = "loadtest_conflicts_total";
+    static final int TIMEOUT_MILLIS = 60000;
+
+    private final ClientFacade clientFacade;
+    private final String username;
+    private final LoadTestConfig config;
+    private final Date start;
+    private final long deadline;
+    private final Random random;
+    private final MetricsRegistry metrics;
+    private final Logger logger;
+
+    private List<Allocatable> allocatables = new ArrayList<>();
+    private List<Allocatable> allocatableByUser = new ArrayList<>();
+    private Reservation ownReservation;
+
+    VirtualUser(ClientFacade clientFacade, String username, LoadTestConfig config, Date start, long deadline, long seed, MetricsRegistry metrics,
+            Logger logger)
+    {
+        this.clientFacade = clientFacade;
+        this.username = username;
+        this.config = config;
+        this.start = start;
+        this.deadline = deadline;
+        this.random = new Random(seed);
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run()
+    {
+        if (!run("login", this::login))
+        {
+            return;
+        }
+        while (System.currentTimeMillis() < deadline)
+        {
+            final int choice = random.nextInt(100);
+            if (choice < config.weekViewPercent)
+            {
+                run("weekview", this::weekView);
+            }
+            else if (choice < config.weekViewPercent + config.editPercent)
+            {
+                edit();
+            }
+            else if (choice < config.weekViewPercent + config.editPercent + config.loginPercent)
+            {
+                run("logout", clientFacade::logout);
+                if (!run("login", this::login))
+                {
+                    return;
+                }
+            }
+            else
+            {
+                run("refresh", () -> clientFacade.getRaplaFacade().refresh());
+            }
+            think();
+        }
+        try
+        {
+            clientFacade.logout();
+        }
+        catch (RaplaException ex)
+        {
+            logger.warn("Logout failed for " + username + ": " + ex.getMessage());
+        }
+    }
+
+    interface Operation
+    {
+        void execute() throws Exception;
+    }
+
+    /** times the operation and returns false if it failed */
+    private boolean run(String name, Operation operation)
+    {
+        final Timer timer = metrics.timer(OPERATION_SECONDS, "operation", name);
+        final long start = timer.start();
+        try
+        {
+            operation.execute();
+            timer.stop(start);
+            return true;
+        }
+        catch (Exception ex)
+        {
+            metrics.counter(OPERATION_ERRORS, "operation", name).increment();
+            logger.debug(name + " failed for " + username + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private void think()
+    {
+        if (config.thinkMillis <= 0)
+        {
+            return;
+        }
+        try
+        {
+            // vary the think time, so the users don't run in lockstep
+            Thread.sleep(config.thinkMillis / 2 + random.nextInt(config.thinkMillis));
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void login() throws RaplaException
+    {
+        if (!clientFacade.login(username, config.password.toCharArray()))
+        {
+            throw new RaplaException("Login failed for " + username);
+        }
+        final RaplaFacade facade = clientFacade.getRaplaFacade();
+        final User user = clientFacade.getUser();
+        final Date today = facade.today();
+        allocatables = Arrays.asList(facade.getAllocatables());
+        allocatableByUser = new ArrayList<>();
+        for (Allocatable allocatable : allocatables)
+        {
+            if (facade.getPermissionController().canAllocate(allocatable, user, today))
+            {
+                allocatableByUser.add(allocatable);
+            }
+        }
+    }
+
+    private void weekView() throws RaplaException
+    {
+        final int size = Math.min(allocatables.size(), 10);
+        final int offset = allocatables.size() > size ? random.nextInt(allocatables.size() - size) : 0;
+        final Collection<Allocatable> selected = allocatables.subList(offset, offset + size);
+        final Date weekStart = getRandomWeek();
+        final Date weekEnd = new Date(weekStart.getTime() + DateTools.MILLISECONDS_PER_WEEK);
+        final User user = clientFacade.getUser();
+        final Map<Allocatable, Collection<Appointment>> result = RaplaTestCase.waitForWithRaplaException(
+                clientFacade.getRaplaFacade().getOperator().queryAppointments(user, selected, weekStart, weekEnd, null, (Map<String, String>) null),
+                TIMEOUT_MILLIS);
+        if (result == null)
+        {
+            throw new RaplaException("No result for week view");
+        }
+    }
+
+    /** creates an event, moves it and then removes it again. Before each store the conflicts are checked like in the event editor */
+    private void edit()
+    {
+        if (allocatableByUser.isEmpty())
+        {
+            return;
+        }
+        if (ownReservation == null)
+        {
+            run("create", this::create);
+        }
+        else if (random.nextBoolean())
+        {
+            run("move", this::move);
+        }
+        else
+        {
+            run("remove", this::remove);
+        }
+    }
+
+    private void create() throws RaplaException
+    {
+        final RaplaFacade facade = clientFacade.getRaplaFacade();
+        final User user = clientFacade.getUser();
+        final DynamicType[] types = facade.getDynamicTypes(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESERVATION);
+        final Classification classification = types[0].newClassification();
+        final Reservation reservation = facade.newReservation(classification, user);
+        reservation.getClassification().setValue("name", "Load test " + username);
+        final Date appointmentStart = getRandomStart();
+        final Appointment appointment = facade.newAppointmentWithUser(appointmentStart, new Date(appointmentStart.getTime() + 90 * DateTools.MILLISECONDS_PER_MINUTE), user);
+        reservation.addAppointment(appointment);
+        reservation.addAllocatable(allocatableByUser.get(random.nextInt(allocatableByUser.size())));
+        checkConflicts(reservation);
+        facade.store(reservation);
+        ownReservation = reservation;
+    }
+
+    private void move() throws RaplaException
+    {
+        final RaplaFacade facade = clientFacade.getRaplaFacade();
+        final Reservation reservation = facade.edit(facade.resolve(ownReservation.getReference()));
+        reservation.getAppointments()[0].moveTo(getRandomStart());
+        checkConflicts(reservation);
+        facade.store(reservation);
+        ownReservation = reservation;
+    }
+
+    private void remove() throws RaplaException
+    {
+        final RaplaFacade facade = clientFacade.getRaplaFacade();
+        final Reservation reservation = ownReservation;
+        ownReservation = null;
+        facade.remove(facade.resolve(reservation.getReference()));
+    }
+
+    private void checkConflicts(Reservation reservation) throws RaplaException
+    {
+        final Collection<Conflict> conflicts = RaplaTestCase.waitForWithRaplaException(clientFacade.getRaplaFacade().getConflictsForReservation(reservation),
+                TIMEOUT_MILLIS);
+        metrics.counter(CONFLICTS).add(conflicts.size());
+    }
+
+    private Date getRandomWeek()
+    {
+        return new Date(start.getTime() + random.nextInt(Math.max(1, config.weeks)) * DateTools.MILLISECONDS_PER_WEEK);
+    }
+
+    /** a start time between 8:00 and 16:00 within the generated weeks, where most of the generated events are */
+    private Date getRandomStart()
+    {
+        final int day = random.nextInt(Math.max(1, config.weeks * 7));
+        return new Date(start.getTime() + day * DateTools.MILLISECONDS_PER_DAY + (32 + random.nextInt(33)) * 15 * DateTools.MILLISECONDS_PER_MINUTE);
+    }
+}
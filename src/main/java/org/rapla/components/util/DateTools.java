@@ -198,6 +198,12 @@ public abstract class DateTools
     
     public static Date addYears(Date date, int yearModifier) {
     
+    	int monthModifier = 0;
+    	return new Date(modifyDate(date.getTime(), yearModifier, monthModifier));
+    }
+
+    /** see #addYears(Date, int) */
+    public static long addYears(long date, int yearModifier) {
     	int monthModifier = 0;
     	return modifyDate(date, yearModifier, monthModifier);
     }
@@ -208,12 +214,11 @@ public abstract class DateTools
     
     public static Date addMonths(Date startDate, int monthModifier) {
     	int yearModifier = 0;
-    	return modifyDate(startDate, yearModifier, monthModifier);
+    	return new Date(modifyDate(startDate.getTime(), yearModifier, monthModifier));
     }
 
-	private static Date modifyDate(Date startDate, int yearModifier,
+	private static long modifyDate(long original, int yearModifier,
 			int monthModifier) {
-		long original = startDate.getTime();
     	long millis = original  - DateTools.cutDate( original );
 		DateWithoutTimezone date = toDate( original);
     	int year = date.year + yearModifier;
@@ -231,8 +236,7 @@ public abstract class DateTools
     	}
     	int day = date.day ;
 		long newDate = toDate(year, month, day);
-    	Date result = new Date( newDate + millis);
-		return result;
+		return newDate + millis;
 	}
 
 
@@ -270,16 +274,21 @@ public abstract class DateTools
 
     /** returns the day of week SUNDAY = 1, MONDAY = 2, TUESDAY = 3, WEDNESDAY = 4, THURSDAY = 5, FRIDAY = 6, SATURDAY = 7 */
     public static int getWeekday(Date date) {
-    	long days = countDays(0,date.getTime());
-    	return getWeekday( days);
+    	return getWeekday(date.getTime());
+    }
+
+    /** see #getWeekday(Date) */
+    public static int getWeekday(long date) {
+    	long days = countDays(0,date);
+    	return getWeekdayOfDays( days);
     }
     
     public static int getWeekday(DateWithoutTimezone date) {
         long days = calculateJulianDayNumberAtNoon( date) - date_1970_1_1;
-        return getWeekday( days);
+        return getWeekdayOfDays( days);
     }
 
-    private static int getWeekday(long daysSince19700101) {
+    private static int getWeekdayOfDays(long daysSince19700101) {
         int weekday_zero = THURSDAY;
         int alt = (int) daysSince19700101%7;
         int weekday = weekday_zero + alt;
@@ -313,7 +322,13 @@ public abstract class DateTools
     /** calculates how often the weekday of the passed date occured. e.g. if you pass a date thats on monday it returns 1 if its the first monday in the month and 3 if its the third monday*/
     public static int getDayOfWeekInMonth(Date date) 
     {
-    	DateWithoutTimezone date2 = toDate( date.getTime());
+    	return getDayOfWeekInMonth( date.getTime());
+    }
+
+    /** see #getDayOfWeekInMonth(Date) */
+    public static int getDayOfWeekInMonth(long date) 
+    {
+    	DateWithoutTimezone date2 = toDate( date);
     	int day = date2.day;
     	int occurances = (day-1) / 7 + 1;
     	return occurances;
@@ -30,6 +30,7 @@ import org.rapla.entities.internal.ModifiableTimestamp;
 import org.rapla.entities.storage.CannotExistWithoutTypeException;
 import org.rapla.entities.storage.DynamicTypeDependant;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.SimpleEntity;
 
@@ -80,6 +81,19 @@ public final class AllocatableImpl extends SimpleEntity implements Allocatable,D
         }
     }
 
+    @Override
+    public void internIds(IdInterner interner) {
+        super.internIds( interner);
+        if ( classification != null)
+        {
+            classification.internIds( interner);
+        }
+        for (PermissionImpl p:permissions)
+        {
+            p.internIds( interner);
+        }
+    }
+
     public void setReadOnly() {
         super.setReadOnly( );
         classification.setReadOnly( );
@@ -0,0 +1,335 @@
+package org.rapla.entities.domain.internal;
+
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.storage.IdInterner;
+import org.rapla.entities.storage.ReferenceInfo;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The allocations of a read only reservation as bit matrix with one row per allocatable and one column per appointment,
+ * so that the restrictions don't need to be searched for every allocatable and appointment. Allocatables without
+ * restrictions have all bits of their row set. The matrix replaces the restriction lists of the reservation, the map
+ * returned by {@link #getRestrictions()} is derived from the bits.
+ */
+final class AllocationMatrix
+{
+    /** up to this size the ids are searched linearly instead of creating a hash map */
+    static final int LINEAR_SEARCH_SIZE = 8;
+
+    private final ReferenceInfo<Allocatable>[] allocatables;
+    private final String[] appointmentIds;
+    private final Map<String, Integer> allocatableIndex;
+    private final Map<String, Integer> appointmentIndex;
+    private final long[] bits;
+    // one bit per row of an allocatable with restrictions, null if there are none
+    private final long[] restrictedRows;
+    // the allocatables of each appointment, appointments without restrictions share the list of all allocatables
+    private final List<ReferenceInfo<Allocatable>>[] columns;
+
+    @SuppressWarnings("unchecked")
+    private AllocationMatrix(ReferenceInfo<Allocatable>[] allocatables, String[] appointmentIds, long[] bits, long[] restrictedRows)
+    {
+        this.allocatables = allocatables;
+        this.appointmentIds = appointmentIds;
+        this.allocatableIndex = createIndex(getIds(allocatables));
+        this.appointmentIndex = createIndex(appointmentIds);
+        this.bits = bits;
+        this.restrictedRows = restrictedRows;
+        this.columns = new List[appointmentIds.length];
+        final List<ReferenceInfo<Allocatable>> all = Collections.unmodifiableList(Arrays.asList(allocatables));
+        for (int column = 0; column < appointmentIds.length; column++)
+        {
+            columns[column] = restrictedRows != null ? createColumn(column, all) : all;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static AllocationMatrix create(Iterable<String> allocatableIds, List<AppointmentImpl> appointments, Map<String, List<String>> restrictions)
+    {
+        final List<ReferenceInfo<Allocatable>> allocatables = new ArrayList<>();
+        for (String allocatableId : allocatableIds)
+        {
+            allocatables.add(new ReferenceInfo<>(allocatableId, Allocatable.class));
+        }
+        final int allocatableCount = allocatables.size();
+        final int appointmentCount = appointments.size();
+        final String[] appointmentIds = new String[appointmentCount];
+        for (int i = 0; i < appointmentCount; i++)
+        {
+            appointmentIds[i] = appointments.get(i).getId();
+        }
+        final long[] bits = new long[(allocatableCount * appointmentCount + 63) >> 6];
+        long[] restrictedRows = null;
+        final Map<String, Integer> appointmentIndex = createIndex(appointmentIds);
+        for (int row = 0; row < allocatableCount; row++)
+        {
+            final List<String> restriction = restrictions != null ? restrictions.get(allocatables.get(row).getId()) : null;
+            final int rowStart = row * appointmentCount;
+            boolean restricted = false;
+            if (restriction != null)
+            {
+                for (String appointmentId : restriction)
+                {
+                    final int column = indexOf(appointmentIds, appointmentIndex, appointmentId);
+                    // restrictions of removed appointments are ignored
+                    if (column >= 0)
+                    {
+                        set(bits, rowStart + column);
+                        restricted = true;
+                    }
+                }
+            }
+            if (restricted)
+            {
+                if (restrictedRows == null)
+                {
+                    restrictedRows = new long[(allocatableCount + 63) >> 6];
+                }
+                set(restrictedRows, row);
+            }
+            else
+            {
+                for (int column = 0; column < appointmentCount; column++)
+                {
+                    set(bits, rowStart + column);
+                }
+            }
+        }
+        return new AllocationMatrix(allocatables.toArray(new ReferenceInfo[allocatableCount]), appointmentIds, bits, restrictedRows);
+    }
+
+    /** returns a matrix with the same allocations and the shared instances of the ids */
+    @SuppressWarnings("unchecked")
+    AllocationMatrix intern(IdInterner interner)
+    {
+        final ReferenceInfo<Allocatable>[] internedAllocatables = new ReferenceInfo[allocatables.length];
+        for (int row = 0; row < allocatables.length; row++)
+        {
+            internedAllocatables[row] = new ReferenceInfo<>(interner.intern(allocatables[row].getId()), Allocatable.class);
+        }
+        final String[] internedAppointmentIds = new String[appointmentIds.length];
+        for (int column = 0; column < appointmentIds.length; column++)
+        {
+            internedAppointmentIds[column] = interner.intern(appointmentIds[column]);
+        }
+        return new AllocationMatrix(internedAllocatables, internedAppointmentIds, bits, restrictedRows);
+    }
+
+    private List<ReferenceInfo<Allocatable>> createColumn(int column, List<ReferenceInfo<Allocatable>> all)
+    {
+        final ReferenceInfo<Allocatable>[] result = Arrays.copyOf(allocatables, allocatables.length);
+        int count = 0;
+        for (int row = 0; row < allocatables.length; row++)
+        {
+            if (isAllocated(row, column))
+            {
+                result[count++] = allocatables[row];
+            }
+        }
+        if (count == allocatables.length)
+        {
+            return all;
+        }
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(result, count)));
+    }
+
+    private static String[] getIds(ReferenceInfo<Allocatable>[] references)
+    {
+        final String[] ids = new String[references.length];
+        for (int i = 0; i < references.length; i++)
+        {
+            ids[i] = references[i].getId();
+        }
+        return ids;
+    }
+
+    private static Map<String, Integer> createIndex(String[] ids)
+    {
+        if (ids.length <= LINEAR_SEARCH_SIZE)
+        {
+            return null;
+        }
+        final Map<String, Integer> index = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++)
+        {
+            index.put(ids[i], i);
+        }
+        return index;
+    }
+
+    private static int indexOf(String[] ids, Map<String, Integer> index, String id)
+    {
+        if (index != null)
+        {
+            final Integer result = index.get(id);
+            return result != null ? result : -1;
+        }
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (ids[i].equals(id))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void set(long[] bits, int bit)
+    {
+        bits[bit >> 6] |= 1L << bit;
+    }
+
+    private static boolean isSet(long[] bits, int bit)
+    {
+        return (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    int indexOfAllocatable(String allocatableId)
+    {
+        if (allocatableIndex != null)
+        {
+            final Integer result = allocatableIndex.get(allocatableId);
+            return result != null ? result : -1;
+        }
+        for (int row = 0; row < allocatables.length; row++)
+        {
+            if (allocatables[row].getId().equals(allocatableId))
+            {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    int indexOfAppointment(String appointmentId)
+    {
+        return indexOf(appointmentIds, appointmentIndex, appointmentId);
+    }
+
+    boolean isAllocated(int row, int column)
+    {
+        return isSet(bits, row * appointmentIds.length + column);
+    }
+
+    /** the allocatables of the appointment in the column as unmodifiable list, that is shared by all calls */
+    List<ReferenceInfo<Allocatable>> getAllocatables(int column)
+    {
+        return columns[column];
+    }
+
+    boolean hasRestrictions()
+    {
+        return restrictedRows != null;
+    }
+
+    private boolean isRestricted(int row)
+    {
+        return restrictedRows != null && isSet(restrictedRows, row);
+    }
+
+    private List<String> getRestriction(int row)
+    {
+        final List<String> result = new ArrayList<>();
+        for (int column = 0; column < appointmentIds.length; column++)
+        {
+            if (isAllocated(row, column))
+            {
+                result.add(appointmentIds[column]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the restrictions as map from the allocatable ids to the appointment ids, as the reservation stores them when it is
+     * writable. The lists are created from the bits on every access, the map can't be changed.
+     */
+    Map<String, List<String>> getRestrictions()
+    {
+        return new AbstractMap<String, List<String>>()
+        {
+            @Override
+            public List<String> get(Object key)
+            {
+                final int row = key instanceof String ? indexOfAllocatable((String) key) : -1;
+                return row >= 0 && isRestricted(row) ? getRestriction(row) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key)
+            {
+                final int row = key instanceof String ? indexOfAllocatable((String) key) : -1;
+                return row >= 0 && isRestricted(row);
+            }
+
+            @Override
+            public Set<Entry<String, List<String>>> entrySet()
+            {
+                return new AbstractSet<Entry<String, List<String>>>()
+                {
+                    @Override
+                    public Iterator<Entry<String, List<String>>> iterator()
+                    {
+                        return new Iterator<Entry<String, List<String>>>()
+                        {
+                            private int next = nextRestricted(0);
+
+                            @Override
+                            public boolean hasNext()
+                            {
+                                return next < allocatables.length;
+                            }
+
+                            @Override
+                            public Entry<String, List<String>> next()
+                            {
+                                if (next >= allocatables.length)
+                                {
+                                    throw new NoSuchElementException();
+                                }
+                                final int row = next;
+                                next = nextRestricted(row + 1);
+                                return new SimpleImmutableEntry<>(allocatables[row].getId(), getRestriction(row));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size()
+                    {
+                        int size = 0;
+                        for (int row = 0; row < allocatables.length; row++)
+                        {
+                            if (isRestricted(row))
+                            {
+                                size++;
+                            }
+                        }
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    private int nextRestricted(int from)
+    {
+        int row = from;
+        while (row < allocatables.length && !isRestricted(row))
+        {
+            row++;
+        }
+        return row;
+    }
+}
@@ -55,6 +55,12 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     }
 
     transient ReservationImpl parent;
+    // the occurrences of read only repeating appointments, managed by the OccurrenceCache
+    transient private volatile Occurrences occurrences;
+    // set by the storage that holds the read only appointment
+    transient private volatile OccurrenceCache occurrenceCache;
+    /** appointments with more occurrences up to the horizon end are not cached */
+    static final int MAX_CACHED_OCCURRENCES = 10000;
     
     
     public AppointmentImpl() {
@@ -93,6 +99,10 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     public Date getStart() { return start;}
     public Date getEnd() { return end;}
 
+    /** same as getStart().getTime(). The time methods are used by the storage and conflict checks, so that no dates are created for comparisons. */
+    public long getStartTime() { return start.getTime();}
+    public long getEndTime() { return end.getTime();}
+
     public void setReadOnly() {
         super.setReadOnly( );
         if ( repeating != null )
@@ -197,23 +207,38 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         and null if the appointments repeats forever.
     */
     public Date getMaxEnd() {
-        long end = (this.end!= null) ? this.end.getTime():0;
-        Repeating repeating = getRepeating();
-        if  (repeating != null)
-            if (repeating.getEnd() != null)
-                end = Math.max(end
-                               ,repeating.getEnd().getTime());
-            else
-                end = 0;
-        if (end == 0)
+        long end = getMaxEndTime();
+        if (end == Long.MAX_VALUE)
             return null;
 
         // cache max date object
+        Date maxDate = this.maxDate;
         if (maxDate == null || maxDate.getTime() != end)
+        {
             maxDate = new Date(end);
+            this.maxDate = maxDate;
+        }
         return maxDate;
     }
 
+    /** same as getMaxEnd() but returns Long.MAX_VALUE if the appointment repeats forever.
+    */
+    public long getMaxEndTime() {
+        long end = (this.end!= null) ? this.end.getTime():0;
+        RepeatingImpl repeating = getRepeating();
+        if  (repeating != null)
+        {
+            long repeatingEnd = repeating.getEndTime();
+            if (repeatingEnd != Long.MAX_VALUE)
+                end = Math.max(end, repeatingEnd);
+            else
+                end = 0;
+        }
+        if (end == 0)
+            return Long.MAX_VALUE;
+        return end;
+    }
+
     public RepeatingImpl getRepeating() {
         if ( repeating != null && repeating.getAppointment() == null)
         {
@@ -358,11 +383,135 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         Assert.notNull(end, "You must set an endDate");
         processBlocks(start.getTime(), end.getTime(), blocks, excludeExceptions);
     }
+
+    /** same as createBlocks(new Date(start), new Date(end), blocks, excludeExceptions) */
+    public void createBlocks(long start,long end,Collection<AppointmentBlock> blocks, boolean excludeExceptions) {
+        Assert.notNull(blocks);
+        processBlocks(start, end, blocks, excludeExceptions);
+    }
     
 
     /* returns true if there is at least one block in an array. If the passed blocks array is not null it will contain all blocks
      * that overlap the start,end period after a call.*/
     private boolean processBlocks(long start,long end,Collection<AppointmentBlock> blocks, boolean excludeExceptions) {
+        if ( excludeExceptions && repeating != null && isReadOnly())
+        {
+            Occurrences occurrences = getOccurrences( end );
+            if ( occurrences != null)
+            {
+                return occurrences.process( this, start, end, blocks);
+            }
+        }
+        return calculateBlocks( start, end, blocks, excludeExceptions);
+    }
+
+    /** returns the cached occurrences if they cover the period up to end or null if the blocks must be calculated */
+    private Occurrences getOccurrences(long end) {
+        Occurrences occurrences = this.occurrences;
+        if ( occurrences != null && occurrences.covers( end ))
+        {
+            return occurrences;
+        }
+        final OccurrenceCache cache = occurrenceCache;
+        if ( cache == null)
+        {
+            return null;
+        }
+        final long horizonEnd = cache.getHorizonEnd();
+        if ( end > horizonEnd || (occurrences != null && occurrences.horizonEnd >= horizonEnd))
+        {
+            return null;
+        }
+        synchronized ( this)
+        {
+            occurrences = this.occurrences;
+            if ( occurrences == null || occurrences.horizonEnd < horizonEnd)
+            {
+                if ( occurrences != null)
+                {
+                    cache.remove( occurrences);
+                    this.occurrences = null;
+                }
+                // check the size before the occurrences are built, rejected appointments keep a sentinel until the horizon moves
+                final int count = estimateOccurrences( horizonEnd);
+                if ( count < 0 || !cache.accepts( Occurrences.estimateBytes( count)))
+                {
+                    this.occurrences = Occurrences.rejected( horizonEnd);
+                    return null;
+                }
+                occurrences = buildOccurrences( horizonEnd);
+                // assigned before the add, so that an eviction during the add releases them again
+                this.occurrences = occurrences;
+                if ( !cache.add( this, occurrences))
+                {
+                    this.occurrences = Occurrences.rejected( horizonEnd);
+                    return null;
+                }
+            }
+            return occurrences.covers( end) ? occurrences : null;
+        }
+    }
+
+    /** returns an upper bound of the occurrences up to the horizon end or -1 if the occurrences should not be cached */
+    private int estimateOccurrences(long horizonEnd) {
+        long s = this.start.getTime();
+        long e = this.end.getTime();
+        RepeatingImpl repeating = getRepeating();
+        if ( e < s || repeating == null)
+        {
+            return -1;
+        }
+        long maxEnd = repeating.getEndTime();
+        // blocks of daily repeatings that start at the end of the repeating depend on the requested period, so they are not cached
+        if ( repeating.isDaily() && maxEnd != Long.MAX_VALUE && (maxEnd - s) % DateTools.MILLISECONDS_PER_DAY == 0)
+        {
+            return -1;
+        }
+        // repeatings without a fixed interval occur at most once a day
+        long interval = repeating.isFixedIntervalLength() ? repeating.getFixedIntervalLength() : DateTools.MILLISECONDS_PER_DAY;
+        long count = (Math.min( maxEnd, horizonEnd) - s) / interval + 1;
+        if ( count > MAX_CACHED_OCCURRENCES)
+        {
+            return -1;
+        }
+        return (int) Math.max( count, 0);
+    }
+
+    private Occurrences buildOccurrences(long horizonEnd) {
+        long s = this.start.getTime();
+        long e = this.end.getTime();
+        long maxEnd = getRepeating().getEndTime();
+        List<AppointmentBlock> blocks = new ArrayList<>();
+        calculateBlocks( s - 1, horizonEnd, blocks, true);
+        long[] starts = new long[blocks.size()];
+        for ( int i=0;i<starts.length;i++)
+        {
+            starts[i] = blocks.get( i ).getStart();
+        }
+        boolean complete = maxEnd != Long.MAX_VALUE && maxEnd < horizonEnd;
+        return new Occurrences( starts, e - s, horizonEnd, complete);
+    }
+
+    /** called by the OccurrenceCache to release the occurrences. It doesn't lock the appointment, because the
+     * cache is also called while the appointment is locked. If the occurrences were replaced in the meantime,
+     * the new ones may be released too, they are built again on the next call. */
+    public void evictOccurrences(Occurrences occurrences) {
+        if ( this.occurrences == occurrences)
+        {
+            this.occurrences = null;
+        }
+    }
+
+    /** the cache that limits the memory of the occurrences, without a cache the occurrences are calculated on every call */
+    public void setOccurrenceCache(OccurrenceCache cache) {
+        occurrenceCache = cache;
+    }
+
+    public OccurrenceCache getOccurrenceCache() {
+        return occurrenceCache;
+    }
+
+    private boolean calculateBlocks(long start,long end,Collection<AppointmentBlock> blocks, boolean excludeExceptions) {
         long c1 = start;
         long c2 = end;
         long s = this.start.getTime();
@@ -412,9 +561,10 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         long maxEnding = Long.MAX_VALUE;
         if ( maxNumber >= 0)
         {
-            Date end2 = repeating.getEnd();
-            maxEnding = end2.getTime();
+            maxEnding = repeating.getEndTime();
         }
+        // blocks of daily repeatings that end at midnight must start before the repeating ends
+        boolean checkMaxEnding = end!=DateTools.cutDate(end) || !repeating.isDaily();
         
         DD=DE?BUG: print("l = repeatingInterval (in minutes), x = stepcount");
         DD=DE?BUG: print("Maxend " + f( maxEnding));
@@ -423,7 +573,7 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         long blockLength = Math.max(0, e - s);
         while (currentPos <= c2 && (maxNumber<0 || (currentPos<=maxEnding ))) {
             DD=DE?BUG: print(" current pos:" + f(currentPos));
-            if (( currentPos + blockLength > c1  )  && ( currentPos < c2 ) && (( end!=DateTools.cutDate(end) || !repeating.isDaily() || currentPos < maxEnding))) {
+            if (( currentPos + blockLength > c1  )  && ( currentPos < c2 ) && ( checkMaxEnding || currentPos < maxEnding)) {
                 boolean isException =repeating.isException( currentPos ); 
                 if ((!isException || !excludeExceptions)) {
                     // check only
@@ -447,6 +597,16 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     public boolean overlaps(Date start,Date end) {
         return overlaps( start, end , true );
     }
+
+    /** same as overlaps(new Date(start),new Date(end)) */
+    public boolean overlapsPeriod(long start,long end) {
+        final long maxEnd = getMaxEndTime();
+        if (maxEnd != Long.MAX_VALUE && start >= maxEnd)
+            return false;
+        if (this.start.getTime() >= end)
+            return false;
+        return processBlocks( start, end, null,  true );
+    }
     
     public boolean overlapsBlock(AppointmentBlock block)
     {
@@ -472,28 +632,33 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     public boolean overlaps(Date start2,Date end2, boolean excludeExceptions) {
         if (start2 == null && end2 == null)
             return true;
-        if (start2 == null)
-            start2 = this.start;
+        final long maxEnd = getMaxEndTime();
+        final long startTime = start2 != null ? start2.getTime() : this.start.getTime();
+        final long endTime;
         if (end2 == null)
         {
             // there must be an overlapp because there can't be infinity exceptions
-            if (getMaxEnd() == null)
+            if (maxEnd == Long.MAX_VALUE)
                 return true;
-            end2 = getMaxEnd();
+            endTime = maxEnd;
+        }
+        else
+        {
+            endTime = end2.getTime();
         }
 
-        if (getMaxEnd() != null && !start2.before(getMaxEnd()))
+        if (maxEnd != Long.MAX_VALUE && startTime >= maxEnd)
             return false;
 
-        if (!this.start.before(end2))
+        if (this.start.getTime() >= endTime)
             return false;
 
-        boolean overlaps  = processBlocks( start2.getTime(), end2.getTime(), null,  excludeExceptions );
+        boolean overlaps  = processBlocks( startTime, endTime, null,  excludeExceptions );
         return overlaps;
     }
     
     public boolean overlaps(long start,long end, boolean excludeExceptions) {
-        if (getMaxEnd() != null && getMaxEnd().getTime()<start)
+        if (getMaxEndTime()<start)
             return false;
 
         if (this.start.getTime() > end)
@@ -503,27 +668,24 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         return overlaps;
     }
 
-    private static Date getOverlappingEnd(Repeating r1,Repeating r2) {
-        Date maxEnd = null;
-        if (r1.getEnd() != null)
-            maxEnd = r1.getEnd();
-        if (r2.getEnd() != null)
-            if (maxEnd != null && r2.getEnd().before(maxEnd))
-                maxEnd = r2.getEnd();
-        return maxEnd;
+    /** returns Long.MAX_VALUE if r1 repeats forever */
+    private static long getOverlappingEnd(RepeatingImpl r1,RepeatingImpl r2) {
+        long maxEnd = r1.getEndTime();
+        if (maxEnd == Long.MAX_VALUE)
+            return maxEnd;
+        return Math.min(maxEnd, r2.getEndTime());
     }
     
     public boolean overlapsAppointment(Appointment a2) {
         if ( a2 == this)
             return true;
-        Date start2 =a2.getStart(); 
-        Date end2 =a2.getEnd(); 
+        final AppointmentImpl other = (AppointmentImpl) a2;
         long s1 = this.start.getTime();
-        long s2 = start2.getTime();
+        long s2 = other.getStartTime();
         long e1 = this.end.getTime();
-        long e2 = a2.getEnd().getTime();
+        long e2 = other.getEndTime();
         RepeatingImpl r1 = getRepeating();
-        RepeatingImpl r2 = (RepeatingImpl)a2.getRepeating();
+        RepeatingImpl r2 = other.getRepeating();
         DD=DE?BUG: print("Testing overlap of");
         DD=DE?BUG: print(" A1: " + toString());
         DD=DE?BUG: print(" A2: " + a2.toString());
@@ -532,34 +694,34 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
             return !(e2 <= s1 || e1 <= s2);
         }
         if (r1 == null) {
-            return a2.overlaps(this.start,this.end);
+            return other.overlapsPeriod(s1,e1);
         }
         if (r2 == null) {
-            return overlaps(start2,end2);
+            return overlapsPeriod(s2,e2);
         }
 
         // So both appointments have a repeating
 
         // If r2 has no exceptions we can check if a1 overlaps the first appointment of a2
-        if (overlaps(start2,end2) && !r2.isException(start2.getTime())) {
+        if (overlapsPeriod(s2,e2) && !r2.isException(s2)) {
             DD=DE?BUG: print("Primitive overlap for " + getReservation() + " with " + a2.getReservation());
             return true;
         }
 
         // Check if appointments could overlap because of the end-dates of an repeating
-        Date end = getOverlappingEnd(r1,r2);
-        if (end != null && (end.getTime()<=s1 || end.getTime()<=s2))
+        long end = getOverlappingEnd(r1,r2);
+        if (end<=s1 || end<=s2)
             return false;
         end = getOverlappingEnd(r2,r1);
-        if (end != null && (end.getTime()<=s1 || end.getTime()<=s2))
+        if (end<=s1 || end<=s2)
         // We cant compare the fixed interval length here so we have to compare the blocks
         if ( !r1.isFixedIntervalLength())
         {
-            return overlapsHard( (AppointmentImpl)a2);
+            return overlapsHard( other);
         }
         if ( !r2.isFixedIntervalLength())
         {
-            return ((AppointmentImpl)a2).overlapsHard( this);
+            return other.overlapsHard( this);
         }
         // O.K. we found 2 Candidates for the hard way
         long l1 = r1.getFixedIntervalLength();
@@ -571,11 +733,11 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
 
         DD=DE?BUG: print("l? = intervalsize for A?, x? = stepcount for A? ");
         long max_x1 = l2/gcd + startx1;
-        if (end!= null && (end.getTime()-s1)/l1 + startx1 < max_x1)
-            max_x1 = (end.getTime()-s1)/l1 + startx1;
+        if (end!= Long.MAX_VALUE && (end-s1)/l1 + startx1 < max_x1)
+            max_x1 = (end-s1)/l1 + startx1;
         long max_x2 = l1/gcd + startx2;
-        if (end!= null && (end.getTime()-s2)/l2 + startx2 < max_x2)
-            max_x2 = (end.getTime()-s2)/l2 + startx2;
+        if (end!= Long.MAX_VALUE && (end-s2)/l2 + startx2 < max_x2)
+            max_x2 = (end-s2)/l2 + startx2;
         long x1 =startx1;
         long x2 =startx2;
 
@@ -620,16 +782,16 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     // check every block in the appointment
     private boolean overlapsHard( AppointmentImpl a2 )
     {
-        Repeating r2 = a2.getRepeating();
+        RepeatingImpl r2 = a2.getRepeating();
         Collection<AppointmentBlock> array = new ArrayList<>();
-        Date maxEnd =r2.getEnd();
+        long maxEnd =r2.getEndTime();
         // overlaps will be checked two  250 weeks (5 years) from now on
         long maxCheck = System.currentTimeMillis() + DateTools.MILLISECONDS_PER_WEEK * 250;
-        if ( maxEnd == null || maxEnd.getTime() > maxCheck)
+        if ( maxEnd > maxCheck)
         {
-        	maxEnd = new Date(maxCheck); 
+        	maxEnd = maxCheck;
         }
-        createBlocks( getStart(), maxEnd, array);
+        createBlocks( start.getTime(), maxEnd, array, true);
         for ( AppointmentBlock block:array)
         {
             long start = block.getStart();
@@ -653,8 +815,8 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
     */
     private boolean hasExceptionForEveryPossibleCollisionInInterval(long s1,long s2,RepeatingImpl r2) {
         RepeatingImpl r1 = getRepeating();
-        Date end= getOverlappingEnd(r1,r2);
-        if (end == null)
+        long end= getOverlappingEnd(r1,r2);
+        if (end == Long.MAX_VALUE)
             return false;
 
         if ((!r1.hasExceptions() && !r2.hasExceptions()))
@@ -676,7 +838,7 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
         long exceptionTime1 = 0;
         long exceptionTime2 = 0;
   
-        while (s1 + x * gap < end.getTime()) {
+        while (s1 + x * gap < end) {
             DD=DE?BUG: print("Looking for exception for gap " + x + " s1: " + fe(s1+x*gap) + " s2: " + fe(s2+x*gap));
             long pos1 = s1 + x*gap;
             long pos2 = s2 + x*gap;
@@ -779,7 +941,14 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
 	public void copy(Object obj) {
     	synchronized ( this) {
             AppointmentImpl casted = (AppointmentImpl) obj;
-			copy(casted,this);			
+			copy(casted,this);
+			final Occurrences occurrences = this.occurrences;
+			final OccurrenceCache cache = occurrenceCache;
+			if ( occurrences != null && cache != null)
+			{
+			    cache.remove( occurrences);
+			}
+			this.occurrences = null;
 		}
     }
 
@@ -801,22 +970,12 @@ public final class AppointmentImpl extends SimpleEntity implements Appointment
      */
     static public SortedSet<Appointment> getAppointments(SortedSet<Appointment> sortedAppointmentList,User user,Date start,Date end, boolean excludeExceptions) {
 	    SortedSet<Appointment> appointmentSet = new TreeSet<>(new AppointmentStartComparator());
-	    Iterator<Appointment> it;
-		if (end != null) {
-	        // all appointments that start before the enddate
-	        AppointmentImpl compareElement = new AppointmentImpl(end, end);
-			compareElement.setId("DUMMYID");
-	        SortedSet<Appointment> headSet = sortedAppointmentList.headSet(compareElement);
-            it = headSet.iterator();
-	        //it = appointments.values().iterator();
-	    } else {
-	        it = sortedAppointmentList.iterator();
-	    }
-	
+	    // the list is sorted by start, so we can stop at the first appointment that starts after the enddate
+	    final long endTime = end != null ? end.getTime() : Long.MAX_VALUE;
+	    Iterator<Appointment> it = sortedAppointmentList.iterator();
 	    while (it.hasNext()) {
 	        AppointmentImpl appointment = (AppointmentImpl) it.next();
-	        // test if appointment end before the start-date
-	        if (end != null && appointment.getStart().after(end))
+	        if (appointment.getStartTime() > endTime)
 	            break;
 	
 	        // Ignore appointments without a reservation
@@ -0,0 +1,23 @@
+package org.rapla.entities.domain.internal;
+
+/**
+ * Keeps track of the {@link Occurrences} that read only appointments hold, so that their memory can be limited.
+ * The storage sets its cache on the appointments it holds with {@link AppointmentImpl#setOccurrenceCache(OccurrenceCache)},
+ * without a cache the occurrences are calculated on every call.
+ */
+public interface OccurrenceCache
+{
+    /** the conflicts are checked for this number of weeks from today on */
+    int CONFLICT_HORIZON_WEEKS = 260;
+
+    /** the occurrences are calculated up to this time */
+    long getHorizonEnd();
+
+    /** returns false if occurrences of the estimated size are not kept, so they don't need to be built */
+    boolean accepts(long bytes);
+
+    /** returns false if the occurrences should not be kept. The occurrences may already be evicted when the method returns. */
+    boolean add(AppointmentImpl appointment, Occurrences occurrences);
+
+    void remove(Occurrences occurrences);
+}
@@ -0,0 +1,100 @@
+package org.rapla.entities.domain.internal;
+
+import org.rapla.entities.domain.AppointmentBlock;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The occurrences of a read only repeating appointment from its start up to the horizon end, as sorted array of start
+ * times. Exceptions are already removed and all occurrences have the same length.
+ * @see OccurrenceCache
+ */
+public final class Occurrences
+{
+    // estimated size of the object, the array header and the cache entry
+    static final long OVERHEAD_BYTES = 120;
+
+    final long[] starts;
+    final long length;
+    final long horizonEnd;
+    // true if all occurrences end before the horizon end
+    final boolean complete;
+    // true if the cache rejected the occurrences of the appointment up to the horizon end
+    final boolean rejected;
+    private volatile boolean used;
+
+    Occurrences(long[] starts, long length, long horizonEnd, boolean complete)
+    {
+        this(starts, length, horizonEnd, complete, false);
+    }
+
+    private Occurrences(long[] starts, long length, long horizonEnd, boolean complete, boolean rejected)
+    {
+        this.starts = starts;
+        this.length = length;
+        this.horizonEnd = horizonEnd;
+        this.complete = complete;
+        this.rejected = rejected;
+    }
+
+    /** the sentinel of an appointment whose occurrences are calculated on every call until the horizon end moves */
+    static Occurrences rejected(long horizonEnd)
+    {
+        return new Occurrences(new long[0], 0, horizonEnd, false, true);
+    }
+
+    /** the estimated memory used by the occurrences */
+    public long getBytes()
+    {
+        return estimateBytes(starts.length);
+    }
+
+    /** the estimated memory used by the given number of occurrences */
+    static long estimateBytes(int count)
+    {
+        return OVERHEAD_BYTES + 8L * count;
+    }
+
+    /** returns true if the occurrences were used since the last call */
+    public boolean resetUsed()
+    {
+        final boolean result = used;
+        if (result)
+        {
+            used = false;
+        }
+        return result;
+    }
+
+    boolean covers(long end)
+    {
+        return !rejected && (complete || end <= horizonEnd);
+    }
+
+    /** same as AppointmentImpl.calculateBlocks with excludeExceptions set */
+    boolean process(AppointmentImpl appointment, long start, long end, Collection<AppointmentBlock> blocks)
+    {
+        if (!used)
+        {
+            used = true;
+        }
+        // the first occurrence that ends after start
+        int index = Arrays.binarySearch(starts, start - length);
+        index = index >= 0 ? index + 1 : -index - 1;
+        for (int i = index; i < starts.length; i++)
+        {
+            final long occurrenceStart = starts[i];
+            if (occurrenceStart >= end)
+            {
+                break;
+            }
+            if (blocks == null)
+            {
+                return true;
+            }
+            blocks.add(new AppointmentBlock(occurrenceStart, occurrenceStart + length, appointment, false));
+        }
+        return false;
+    }
+}
@@ -115,6 +115,12 @@ public final class PermissionImpl extends ReferenceHandler implements Permission
         return readOnly;
     }
 
+    @Override
+    protected boolean isReadOnlyReferences()
+    {
+        return readOnly;
+    }
+
     public void checkWritable() {
         if ( readOnly )
             throw new ReadOnlyException( this );
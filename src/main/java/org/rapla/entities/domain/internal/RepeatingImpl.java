@@ -45,6 +45,8 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
     private Set<Integer> weekdays;
     transient private Date[] exceptionArray;
     transient private boolean arrayUpToDate = false;
+    // sorted start times of the exceptions, null if not yet calculated
+    transient private volatile long[] exceptionTimes;
     transient private Appointment appointment;
     private int frequency;
     boolean monthly;
@@ -222,19 +224,40 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
     public Date getEnd() {
         if (!isFixedNumber)
             return end;
+        long time = getEndTime();
+        if ( time == Long.MAX_VALUE)
+        {
+            return null;
+        }
+        final Date appointmentStart = appointment.getStart();
+        if ( time == appointmentStart.getTime())
+        {
+            return appointmentStart;
+        }
+        // cache end date object
+        Date endTime = this.endTime;
+        if (endTime == null || endTime.getTime() != time)
+        {
+            endTime = new Date(time);
+            this.endTime = endTime;
+        }
+        return endTime;
+    }
+
+    /** same as getEnd() but returns Long.MAX_VALUE if the repeating has no end */
+    public long getEndTime() {
+        if (!isFixedNumber)
+            return end != null ? end.getTime() : Long.MAX_VALUE;
         if ( this.appointment == null)
         {
             throw new IllegalStateException("Appointment not set");
         }
 
-        if (endTime == null)
-            endTime = new Date();
-
         if ( number < 0 )
         {
-            return null;
+            return Long.MAX_VALUE;
         }
-        final Date appointmentStart = appointment.getStart();
+        final long appointmentStart = appointment.getStart().getTime();
         if ( number == 0 )
         {
             return appointmentStart;
@@ -243,22 +266,20 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         if ( !isFixedIntervalLength())
         {
             int counts =  ((number -1) * interval) ;
-            Date newDate = appointmentStart;
+            long newTime = appointmentStart;
             for ( int i=0;i< counts;i++)
             {
-                long newTime = gotoNextStep(appointmentStart, newDate);
-            	newDate = new Date( newTime);
+                newTime = gotoNextStep(appointmentStart, newTime);
             }
-            return newDate;
+            return newTime;
         }
         else
         {
             long intervalLength = getFixedIntervalLength();
-            endTime.setTime(DateTools.fillDate(appointmentStart .getTime()
+            return DateTools.fillDate(appointmentStart
                                            + (this.number -1)* intervalLength
-                                           ));
+                                           );
         }
-        return endTime;
     }
 
     /** returns interval-length in milliseconds.
@@ -286,20 +307,27 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         if (!hasExceptions())
             return false;
 
-        Date[] exceptions = getExceptions();
-        if (exceptions.length == 0) {
-            //          System.out.println("no exceptions");
-            return false;
-        }
-        for (int i=0;i<exceptions.length;i++) {
-            //System.out.println("Comparing exception " + exceptions[i] + " with " + new Date(time));
-            if (exceptions[i].getTime()<=time
-                && time<exceptions[i].getTime() + DateTools.MILLISECONDS_PER_DAY) {
-                //System.out.println("Exception matched " + exceptions[i]);
-                return true;
+        long[] exceptions = getExceptionTimes();
+        // the last exception that starts before time has the latest end, so only this one needs to be checked
+        int index = Arrays.binarySearch(exceptions, time);
+        if (index >= 0)
+            return true;
+        int previous = -index - 2;
+        return previous >= 0 && time < exceptions[previous] + DateTools.MILLISECONDS_PER_DAY;
+    }
+
+    /** returns the sorted start times of the exceptions */
+    long[] getExceptionTimes() {
+        long[] times = exceptionTimes;
+        if (times == null) {
+            Date[] exceptions = getExceptions();
+            times = new long[exceptions.length];
+            for (int i=0;i<exceptions.length;i++) {
+                times[i] = exceptions[i].getTime();
             }
+            exceptionTimes = times;
         }
-        return false;
+        return times;
     }
 
     public int getNumber() {
@@ -320,16 +348,16 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         }
         else
         {
-            Date appointmentStart = appointment.getStart();
+            long appointmentStart = appointment.getStart().getTime();
+            long endTime = end.getTime();
             int number = 0;
-            Date newDate = appointmentStart;
+            long newTime = appointmentStart;
             do 
             {
                 number ++;
-                long newTime = gotoNextStep(appointmentStart, newDate);
-                newDate  = new Date( newTime);
+                newTime = gotoNextStep(appointmentStart, newTime);
             }
-            while ( newDate.before( end));
+            while ( newTime < endTime);
             return number;
         }            
     }
@@ -344,6 +372,7 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
             exceptions = new TreeSet<>();
         exceptions.add(DateTools.cutDate(date));
         arrayUpToDate = false;
+        exceptionTimes = null;
     }
 
     public void addExceptions(TimeInterval interval) {
@@ -359,6 +388,7 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
             exceptions.add(new Date(l));
         }
         arrayUpToDate = false;
+        exceptionTimes = null;
     }
 
     public void removeException(Date date) {
@@ -373,6 +403,7 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         if (exceptions.size()==0)
             exceptions = null;
         arrayUpToDate = false;
+        exceptionTimes = null;
     }
 
     public void clearExceptions() {
@@ -381,6 +412,7 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         exceptions.clear();
         exceptions = null;
         arrayUpToDate = false;
+        exceptionTimes = null;
     }
 
     public String toString() {
@@ -456,7 +488,8 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         {
         	dest.exceptions = null;
         }
-        
+        dest.arrayUpToDate = false;
+        dest.exceptionTimes = null;
 	}
     
     public void setFrom(Repeating repeating)
@@ -491,79 +524,77 @@ final class RepeatingImpl implements Repeating,java.io.Serializable {
         {
             return getFixedIntervalLength();
         }
-        Date appointmentStart = appointment.getStart();
-        Date newDate = new Date(s);
-        long newTime = gotoNextStep(appointmentStart, newDate);
+        long appointmentStart = appointment.getStart().getTime();
+        long newTime = gotoNextStep(appointmentStart, s);
         Assert.isTrue( newTime > s );
         return  newTime- s;
         // yearly
         
     }
 
-    private long gotoNextStep(Date appointmentStart, Date startDate)
+    private long gotoNextStep(long appointmentStartTime, long startTime)
     {
+        // monthly, yearly and repeatings on more than one weekday use the long variants of the calendar functions of DateTools, so no date is created per step
         long newTime;
         if ( monthly)
         {
-            newTime = gotoNextMonth(  appointmentStart,startDate);
+            newTime = gotoNextMonth(  appointmentStartTime,startTime);
         }
         else if ( yearly)
         {
-            newTime = gotoNextYear(  appointmentStart,startDate);
+            newTime = gotoNextYear(  appointmentStartTime,startTime);
         }
         else
         {
-            newTime = gotoNextWeekday(  appointmentStart,startDate);
+            newTime = gotoNextWeekday(  startTime);
         }
         return newTime;
     }
 
-    private long gotoNextMonth(  Date start,Date beginDate )
+    private long gotoNextMonth(  long start,long beginTime )
     {
         int dayofweekinmonth = DateTools.getDayOfWeekInMonth( start);
-        Date newDate = DateTools.addWeeks( beginDate, 4);
-        while ( DateTools.getDayOfWeekInMonth( newDate) != dayofweekinmonth )
+        long newTime = beginTime + DateTools.MILLISECONDS_PER_WEEK * 4;
+        while ( DateTools.getDayOfWeekInMonth( newTime) != dayofweekinmonth )
         {
-        	newDate = DateTools.addWeeks( newDate, 1);
+        	newTime += DateTools.MILLISECONDS_PER_WEEK;
         }
-        return newDate.getTime();
+        return newTime;
     }
 
-    private long gotoNextWeekday(  Date start,Date beginDate )
+    private long gotoNextWeekday(  long beginTime )
     {
         if ( weekdays.size() > 1)
         {
-            Date newDate = beginDate;
+            long newTime = beginTime;
             for (int i = 0; i < 7; i++)
             {
-                newDate = DateTools.addDay(newDate);
-                Integer weekday = DateTools.getWeekday(newDate);
+                newTime += DateTools.MILLISECONDS_PER_DAY;
+                Integer weekday = DateTools.getWeekday(newTime);
                 if (weekdays.contains(weekday))
                 {
-                    return newDate.getTime();
+                    return newTime;
                 }
             }
         }
-        Date newDate = DateTools.addDays(beginDate,7);
-        return newDate.getTime();
+        return beginTime + DateTools.MILLISECONDS_PER_WEEK;
     }
 
-    private long gotoNextYear(  Date start,Date beginDate )
+    private long gotoNextYear(  long start,long beginTime )
     {
-        DateWithoutTimezone dateObj = DateTools.toDate( start.getTime());
+        DateWithoutTimezone dateObj = DateTools.toDate( start);
 		int dayOfMonth = dateObj.day;
 		int month = dateObj.month;
 		int yearAdd = 1;
 		if ( month == 2 && dayOfMonth ==29)
 		{
-			int startYear = DateTools.toDate( beginDate.getTime()).year;
+			int startYear = DateTools.toDate( beginTime).year;
 			while (!DateTools.isLeapYear( startYear + yearAdd ))
 			{
 				yearAdd++;
 			}
 		}
-		Date newDate = DateTools.addYears( beginDate, yearAdd);
-		return newDate.getTime();
+		return DateTools.addYears( beginTime, yearAdd);
         
 //        cal.setTime( start);
 //        int dayOfMonth = cal.get( Calendar.DAY_OF_MONTH);
@@ -35,11 +35,13 @@ import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
 import org.rapla.entities.dynamictype.internal.ClassificationImpl;
 import org.rapla.entities.dynamictype.internal.DynamicTypeImpl;
 import org.rapla.entities.dynamictype.internal.EvalContext;
+import org.rapla.entities.dynamictype.internal.NameMemo;
 import org.rapla.entities.dynamictype.internal.ParsedText;
 import org.rapla.entities.internal.ModifiableTimestamp;
 import org.rapla.entities.storage.CannotExistWithoutTypeException;
 import org.rapla.entities.storage.DynamicTypeDependant;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ParentEntity;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.UnresolvableReferenceExcpetion;
@@ -69,6 +71,10 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
     private Date createDate;
     
     transient HashMap<String,AppointmentImpl> appointmentIndex;
+    // formatted names of the read only reservation
+    private transient volatile NameMemo names;
+    // allocations of the read only reservation, the restrictions are derived from it
+    private transient AllocationMatrix allocationMatrix;
         
     ReservationImpl() {
         this (null, null);
@@ -123,6 +129,38 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
         }
     }
     
+    @Override
+    public void internIds(IdInterner interner) {
+        super.internIds( interner);
+        if ( classification != null)
+        {
+            classification.internIds( interner);
+        }
+        for (PermissionImpl p:permissions)
+        {
+            p.internIds( interner);
+        }
+        if ( allocationMatrix != null)
+        {
+            allocationMatrix = allocationMatrix.intern( interner);
+            restrictions = allocationMatrix.hasRestrictions() ? allocationMatrix.getRestrictions() : null;
+        }
+        else if ( restrictions != null)
+        {
+            Map<String,List<String>> interned = new LinkedHashMap<>();
+            for (Map.Entry<String,List<String>> entry:restrictions.entrySet())
+            {
+                List<String> appointmentIds = new ArrayList<>( entry.getValue().size());
+                for (String appointmentId:entry.getValue())
+                {
+                    appointmentIds.add( interner.intern( appointmentId));
+                }
+                interned.put( interner.intern( entry.getKey()), appointmentIds);
+            }
+            restrictions = interned;
+        }
+    }
+
     public Collection<Appointment> getSortedAppointments()
     {
         List<Appointment> sortedAppointments = new ArrayList<>(appointments);
@@ -148,6 +186,9 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
     public void setReadOnly() {
         super.setReadOnly(  );
         classification.setReadOnly( );
+        // the restriction lists are replaced by the matrix
+        allocationMatrix = AllocationMatrix.create( getIds("resources"), appointments, restrictions);
+        restrictions = allocationMatrix.hasRestrictions() ? allocationMatrix.getRestrictions() : null;
     }
 
     public Class<Reservation> getTypeClass()
@@ -209,6 +250,22 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
         {
             return "";
         }
+        if ( appointment == null && isReadOnly())
+        {
+            NameMemo memo = names;
+            if ( memo == null)
+            {
+                memo = new NameMemo();
+                names = memo;
+            }
+            final EntityResolver resolver = getResolver();
+            final String name = memo.get( locale, annotationName, parsedAnnotation, resolver);
+            if ( name != null)
+            {
+                return name;
+            }
+            return memo.format( locale, annotationName, parsedAnnotation, createEvalContext(locale, annotationName, this), resolver);
+        }
         EvalContext evalContext = appointment != null ? createEvalContext(locale, annotationName, appointment ) : createEvalContext(locale, annotationName, this);
         String nameString = parsedAnnotation.formatName(evalContext).trim();
         return nameString;
@@ -434,6 +491,16 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
     }
 
     public boolean hasAllocatedOn(Allocatable allocatable,Appointment appointment) {
+        final AllocationMatrix matrix = allocationMatrix;
+        if ( matrix != null)
+        {
+            final int column = matrix.indexOfAppointment( appointment.getId());
+            if ( column >= 0)
+            {
+                final int row = matrix.indexOfAllocatable( allocatable.getId());
+                return row >= 0 && matrix.isAllocated( row, column);
+            }
+        }
         if (!hasAllocated(allocatable))
             return false;
         if  (restrictions == null)
@@ -592,6 +659,12 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
 
     public Collection<ReferenceInfo<Allocatable>> getAllocatableIdsFor(Appointment appointment)
     {
+        final AllocationMatrix matrix = allocationMatrix;
+        final int column = matrix != null ? matrix.indexOfAppointment( appointment.getId()) : -1;
+        if ( column >= 0)
+        {
+            return matrix.getAllocatables( column);
+        }
         HashSet<ReferenceInfo<Allocatable>> set = new HashSet<>();
         Collection<String> list = getIds("resources");
         String id = appointment.getId();
@@ -619,6 +692,12 @@ public final class ReservationImpl extends SimpleEntity implements Reservation,
     }
 
     public Stream<Allocatable> getAllocatablesFor(Appointment appointment) {
+        final AllocationMatrix matrix = allocationMatrix;
+        final int column = matrix != null ? matrix.indexOfAppointment( appointment.getId()) : -1;
+        if ( column >= 0)
+        {
+            return matrix.getAllocatables( column).stream().map( ref -> resolve( ref.getId(), Allocatable.class));
+        }
         Collection<String> list = getIds("resources");
         String appointmentId = appointment.getId();
         final Stream<Allocatable> allocatableStream = list.stream().filter((allocId) -> {
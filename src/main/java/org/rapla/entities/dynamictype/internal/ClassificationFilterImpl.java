@@ -28,7 +28,6 @@ import org.rapla.entities.storage.EntityResolver;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.UnresolvableReferenceExcpetion;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -50,6 +49,8 @@ public final class ClassificationFilterImpl
     transient boolean arrayUpToDate = false;
     transient ClassificationFilterRuleImpl[] rulesArray;
     transient EntityResolver resolver;
+    /** the rules compiled for the current type, replaced when the rules, the type or the referenced entities change */
+    transient volatile CompiledClassificationFilter compiled;
     ClassificationFilterImpl() {
 	}
     
@@ -59,6 +60,7 @@ public final class ClassificationFilterImpl
 
     public void setResolver( EntityResolver resolver)  {
         this.resolver = resolver;
+        compiled = null;
         for (Iterator<ClassificationFilterRuleImpl> it=list.iterator();it.hasNext();)
         {
              it.next().setResolver( resolver );
@@ -134,6 +136,7 @@ public final class ClassificationFilterImpl
         else
             list.add(index, rule);
         arrayUpToDate = false;
+        compiled = null;
     }
 
     
@@ -183,12 +186,14 @@ public final class ClassificationFilterImpl
         checkWritable();
         list.clear();
         arrayUpToDate = false;
+        compiled = null;
     }
 
     public void removeRule(int index) {
         checkWritable();
         list.remove(index);
         arrayUpToDate = false;
+        compiled = null;
         //System.out.println("Rule " + index + " for '" + dynamicType + "' removed.");
     }
 
@@ -200,39 +205,38 @@ public final class ClassificationFilterImpl
     }
 
     public boolean matches(Classification classification) {
-        if (!getType().equals(classification.getType()))
-            return false;
-        ClassificationFilterRuleImpl[] rules = getRules();
-        for (int i=0;i<rules.length;i++) {
-            ClassificationFilterRuleImpl rule = rules[i];
-			Attribute attribute = rule.getAttribute();
-			if ( attribute != null)
-			{
-				Collection<Object> values = classification.getValues(attribute);
-				if ( values.size() == 0)
-				{
-			        if (!rule.matches( null))
-			        {
-			            return false;
-			        }
-		                    
-				}
-				else
-				{
-    				boolean matchesOne= false;
-    				for (Object value: values)
-    				{
-    					if (rule.matches( value))
-    						matchesOne = true;
-    				}
-    				if ( !matchesOne )
-    				{
-    					return false;
-    				}
-				}
-			}
+        return getCompiled().matches( classification );
+    }
+
+    /** compiles the rules again if the type or, for resolvers that track their changes, the reference version changed */
+    CompiledClassificationFilter getCompiled() {
+        final EntityResolver referenceResolver = resolver.getReferenceResolver();
+        final long referenceVersion = referenceResolver.getReferenceVersion();
+        CompiledClassificationFilter result = compiled;
+        if ( result != null && referenceVersion >= 0 && result.referenceVersion == referenceVersion)
+        {
+            return result;
+        }
+        if ( referenceVersion >= 0)
+        {
+            // the kept filter is compiled with the type and the referenced entities of the version it is kept for
+            final DynamicType type = referenceResolver.tryResolve( typeId, DynamicType.class);
+            result = type != null ? CompiledClassificationFilter.compile( type, getRules(), referenceResolver) : null;
+            if ( result != null)
+            {
+                compiled = result;
+                return result;
+            }
+            // the type or a referenced entity is not yet published
+            return CompiledClassificationFilter.compile( getType(), getRules(), -1, resolver.getCategoryIndex());
+        }
+        final DynamicType type = getType();
+        if ( result == null || result.type != type || result.referenceVersion != referenceVersion)
+        {
+            result = CompiledClassificationFilter.compile( type, getRules(), referenceVersion, resolver.getCategoryIndex());
+            compiled = result;
         }
-        return true;
+        return result;
     }
 
     boolean hasType(DynamicType type) {
@@ -292,6 +296,7 @@ public final class ClassificationFilterImpl
             }
         }
         arrayUpToDate = false;
+        compiled = null;
     }
 
     public void commitRemove(DynamicType type) throws CannotExistWithoutTypeException 
@@ -339,6 +344,7 @@ public final class ClassificationFilterImpl
     @Override
     public void replace(ReferenceInfo origId, ReferenceInfo newId)
     {
+        compiled = null;
         for (ClassificationFilterRuleImpl classificationFilterRuleImpl : list)
         {
             classificationFilterRuleImpl.replace(origId, newId);
@@ -21,6 +21,7 @@ import org.rapla.entities.dynamictype.Attribute;
 import org.rapla.entities.dynamictype.AttributeType;
 import org.rapla.entities.dynamictype.ClassificationFilterRule;
 import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.storage.EntityResolver;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.ReferenceHandler;
 
@@ -128,7 +129,11 @@ public final class ClassificationFilterRuleImpl extends ReferenceHandler
     }
 
     public Attribute getAttribute() {
-        DynamicType dynamicType = getDynamicType();
+        return getAttribute(getDynamicType());
+    }
+
+    /** the attribute of the rule in the passed version of its type */
+    Attribute getAttribute(DynamicType dynamicType) {
         Attribute attribute;
         if ( attributeId != null)
         {
@@ -186,6 +191,31 @@ public final class ClassificationFilterRuleImpl extends ReferenceHandler
         return result;
     }
     
+    /** the values with the references resolved by the passed resolver. Returns null if a referenced entity is not found. */
+    Object[] getValues(Attribute attribute, EntityResolver resolver) {
+        Object[] result = new Object[operators.length];
+        Class<? extends Entity> refType = attribute.getRefType();
+        for (int i=0;i<operators.length;i++) {
+            if (refType != null)
+            {
+                final String id = getId(String.valueOf(i));
+                if ( id != null)
+                {
+                    result[i] = resolver.tryResolve(id, refType);
+                    if ( result[i] == null)
+                    {
+                        return null;
+                    }
+                }
+            }
+            else
+            {
+                result[i] = getValue(attribute, i);
+            }
+        }
+        return result;
+    }
+
 	private Object getValue(Attribute attribute, int index) 
 	{
 		 AttributeType type = attribute.getType();
@@ -260,145 +290,6 @@ public final class ClassificationFilterRuleImpl extends ReferenceHandler
 
     }
     
-    boolean matches(Object value) {
-        //String[] ruleOperators = getOperators();
-		Attribute attribute = getAttribute();
-        for (int i=0;i<operators.length;i++) {
-        	String operator = operators[i];
-            if (matches(attribute,operator,i,value))
-                return true;
-        }
-        return false;
-    }
-    
-    private boolean matches(Attribute attribute,String operator,int index,Object value) {
-        AttributeType type = attribute.getType();
-        Object ruleValue = getValue(attribute, index);
-        if (type == AttributeType.CATEGORY)
-        {
-            Category category = (Category) ruleValue;
-            if (category == null)
-            {
-                return (value == null);
-            }
-            if ( operator.equals("=")  ) 
-            {
-                return value != null && category.isIdentical((Category)value);
-            } 
-            else if ( operator.equals("is") )
-            {
-                return value != null && (category.isIdentical((Category)value)
-                        || category.isAncestorOf((Category)value));
-            }
-        }
-        else if (type == AttributeType.ALLOCATABLE)
-        {
-        	Allocatable allocatable = (Allocatable) ruleValue;
-            if (allocatable == null)
-            {
-                return (value == null);
-            }
-            if ( operator.equals("=")  ) 
-            {
-                return value != null && allocatable.isIdentical((Allocatable)value);
-            } 
-            else if ( operator.equals("is") )
-            {
-                return value != null && (allocatable.isIdentical((Allocatable)value) );
-                   //     || category.isAncestorOf((Category)value));
-            }
-        }
-        else if (type == AttributeType.STRING)
-        {
-            if (ruleValue == null)
-            {
-                return (value == null);
-            }
-            if ( operator.equals("is") || operator.equals("=")) 
-            {
-                return  value != null && value.equals( ruleValue );
-            } 
-            else if ( operator.equals("contains") )
-            {
-                String string = ((String)ruleValue).toLowerCase();
-                if (string == null)
-                    return true;
-                string = string.trim();
-                if (value == null)
-                    return string.length() == 0;
-                return (((String) value).toLowerCase().contains(string));
-            }
-            else if ( operator.equals("starts") )
-            {
-                String string = ((String)ruleValue).toLowerCase();
-                if (string == null)
-                    return true;
-                string = string.trim();
-                if (value == null)
-                    return string.length() == 0;
-                return (((String)value).toLowerCase().startsWith(string));
-            }
-        }
-        else if (type ==  AttributeType.BOOLEAN)
-        {
-            Boolean boolean1 = (Boolean)ruleValue;
-            Boolean boolean2 = (Boolean)value;
-            if (boolean1 == null)
-            {
-                return (boolean2 == null || boolean2.booleanValue());
-            }
-            if (boolean2 == null)
-            {
-                return !boolean1.booleanValue();
-            }
-            return (boolean1.equals(boolean2));
-        }
-        else if (type == AttributeType.INT || type ==AttributeType.DATE)
-        {
-            if(ruleValue == null) {
-                if (operator.equals("<>"))
-                    return value != null;
-                else if (operator.equals("="))
-                    return value == null;
-                else
-                return false;
-            }
-
-            if(value == null) 
-                return false;
-            
-            long long1 = type == AttributeType.INT ? ((Long) value).longValue()     : ((Date) value).getTime();
-            long long2 = type == AttributeType.INT ? ((Long) ruleValue).longValue() : ((Date) ruleValue).getTime();
-
-            if (operator.equals("<")) 
-            {
-                return long1 < long2;
-            }
-            else if (operator.equals("=")) 
-            {
-                return long1 ==  long2;
-            }
-            else if (operator.equals(">")) 
-            {
-                return long1 >  long2;
-            }
-            else if (operator.equals(">=")) 
-            {
-                return long1 >=  long2;
-            }
-            else if (operator.equals("<=")) 
-            {
-                return long1 >=  long2;
-            }
-            else if (operator.equals("<>")) 
-            {
-                return long1 !=  long2;
-            }
-        }
-        
-        return false;
-    }
-
    
 	public String toString()
     {
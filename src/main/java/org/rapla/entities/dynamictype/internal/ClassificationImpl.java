@@ -26,6 +26,7 @@ import org.rapla.entities.storage.CannotExistWithoutTypeException;
 import org.rapla.entities.storage.DynamicTypeDependant;
 import org.rapla.entities.storage.EntityReferencer;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.UnresolvableReferenceExcpetion;
 import org.rapla.framework.RaplaException;
@@ -59,7 +60,25 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
 	private transient boolean readOnly = false;
 
 	private transient TextCache name;
+	/** the formatted names of read only classifications */
+	private transient volatile NameMemo names;
 	private transient EntityResolver resolver;
+	/** parsed values of read only classifications per attribute key, replaced on every change (copy on write) */
+	private transient volatile Map<String,TypedValues> typedValues;
+	/** the resolved type of a read only classification */
+	private transient volatile ResolvedType resolvedType;
+
+    static final class ResolvedType
+    {
+        final DynamicTypeImpl type;
+        final long referenceVersion;
+
+        ResolvedType(DynamicTypeImpl type, long referenceVersion)
+        {
+            this.type = type;
+            this.referenceVersion = referenceVersion;
+        }
+    }
 
     /** stores the nonreference values like integers,boolean and string.*/
     //HashMap<String,Object> attributeValueMap = new HashMap<String,Object>(1);
@@ -88,6 +107,21 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
     	}
     }
 
+    /** the values of one attribute parsed with {@link #fromString}. Reference values are resolved entities, that are kept as long as the resolver version doesn't change. */
+    static final class TypedValues
+    {
+        final Attribute attribute;
+        final List<Object> values;
+        final long referenceVersion;
+
+        TypedValues(Attribute attribute, List<Object> values, long referenceVersion)
+        {
+            this.attribute = attribute;
+            this.values = values;
+            this.referenceVersion = referenceVersion;
+        }
+    }
+
     public ClassificationImpl()
     {
 
@@ -101,6 +135,7 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
     public void setResolver( EntityResolver resolver)
     {
         this.resolver = resolver;
+        resolvedType = null;
     }
 
     public void setReadOnly() {
@@ -116,6 +151,26 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
             throw new ReadOnlyException( this );
     }
 
+    /** only the ids of stored entities are interned, so the other values stay as they are */
+    @Override
+    public void internIds(IdInterner interner)
+    {
+        if ( typeId != null)
+        {
+            typeId = interner.intern( typeId);
+        }
+        for ( Map.Entry<String,List<String>> entry:data.entrySet())
+        {
+            List<String> values = entry.getValue();
+            List<String> interned = new ArrayList<>( values.size());
+            for ( String value:values)
+            {
+                interned.add( value != null ? interner.intern( value) : null);
+            }
+            entry.setValue( interned);
+        }
+    }
+
     @Override
     public Iterable<ReferenceInfo> getReferenceInfo() {
         List<ReferenceInfo> result = new ArrayList<>();
@@ -149,7 +204,7 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
 
 
 
-	private String getParentId() {
+	String getParentId() {
 		if  (typeId != null)
 			return typeId;
 		if (type == null)
@@ -171,8 +226,25 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
     	{
     		throw new IllegalStateException("Resolver not set on classification  ");
     	}
+        final EntityResolver referenceResolver = readOnly ? resolver.getReferenceResolver() : null;
+        final long referenceVersion = referenceResolver != null ? referenceResolver.getReferenceVersion() : -1;
+        if ( referenceVersion >= 0)
+        {
+            final ResolvedType resolved = resolvedType;
+            if ( resolved != null && resolved.referenceVersion == referenceVersion)
+            {
+                return resolved.type;
+            }
+        }
         String parentId = getParentId();
-		DynamicTypeImpl type = (DynamicTypeImpl) resolver.tryResolve( parentId, DynamicType.class);
+        // the kept type is resolved in the version it is kept for, a type that is not yet published is resolved on every call
+        DynamicTypeImpl type = referenceVersion >= 0 ? (DynamicTypeImpl) referenceResolver.tryResolve( parentId, DynamicType.class) : null;
+        if ( type != null)
+        {
+            resolvedType = new ResolvedType( type, referenceVersion);
+            return type;
+        }
+		type = (DynamicTypeImpl) resolver.tryResolve( parentId, DynamicType.class);
         if ( type == null)
         {
         	throw new UnresolvableReferenceExcpetion(DynamicType.class +":" + parentId + " " +data);
@@ -183,6 +255,16 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
 
     public String getName(Locale locale) {
     	// display name = Title of event
+        if ( readOnly )
+        {
+            // same fallback as the TextCache
+            final DynamicTypeImpl type = getType();
+            if ( type.getParsedAnnotation( DynamicTypeAnnotations.KEY_NAME_FORMAT) == null)
+            {
+                return type.toString();
+            }
+            return format( locale, DynamicTypeAnnotations.KEY_NAME_FORMAT);
+        }
         if ( name == null)
         {
             name = new TextCache();
@@ -198,6 +280,21 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
         {
             return "";
         }
+        if ( readOnly )
+        {
+            NameMemo memo = names;
+            if ( memo == null)
+            {
+                memo = new NameMemo();
+                names = memo;
+            }
+            String memorized = memo.get( locale, annotationName, parsedAnnotation, resolver);
+            if ( memorized != null)
+            {
+                return memorized;
+            }
+            return memo.format( locale, annotationName, parsedAnnotation, type.createEvalContext(locale, annotationName, this), resolver);
+        }
         EvalContext evalContext = type.createEvalContext(locale, annotationName, this);
         String nameString = parsedAnnotation.formatName(evalContext).trim();
         return nameString;
@@ -445,6 +542,20 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
         {
         	return Collections.emptyList();
         }
+        if ( readOnly )
+        {
+            return getTypedValues(attribute, list);
+        }
+        return parseValues(attribute, list);
+    }
+
+    private List<Object> parseValues(Attribute attribute, List<String> list)
+    {
+        return parseValues(attribute, list, resolver);
+    }
+
+    private List<Object> parseValues(Attribute attribute, List<String> list, EntityResolver resolver)
+    {
         List<Object> result = new ArrayList<>();
         for (String value:list)
         {
@@ -458,6 +569,47 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
         return result;
     }
 
+    /** returns the values of a read only classification, that are only parsed again if the attribute changes or referenced entities could have changed */
+    private List<Object> getTypedValues(Attribute attribute, List<String> list)
+    {
+        final String attributeKey = attribute.getKey();
+        final Map<String,TypedValues> map = typedValues;
+        TypedValues typed = map != null ? map.get(attributeKey) : null;
+        final boolean isReference = attribute.getRefType() != null;
+        final EntityResolver referenceResolver = isReference && resolver != null ? resolver.getReferenceResolver() : null;
+        final long referenceVersion = referenceResolver != null ? referenceResolver.getReferenceVersion() : -1;
+        if ( typed != null && typed.attribute == attribute && typed.referenceVersion == referenceVersion)
+        {
+            return typed.values;
+        }
+        if ( isReference && referenceVersion < 0)
+        {
+            // the resolver doesn't tell when the referenced entities change
+            return Collections.unmodifiableList(parseValues(attribute, list));
+        }
+        final List<Object> values;
+        if ( isReference)
+        {
+            // the kept references are resolved in the version they are kept for
+            final List<Object> resolved = parseValues(attribute, list, referenceResolver);
+            if ( resolved.size() < list.size())
+            {
+                // a reference is not yet published
+                return Collections.unmodifiableList(parseValues(attribute, list));
+            }
+            values = Collections.unmodifiableList(resolved);
+        }
+        else
+        {
+            values = Collections.unmodifiableList(parseValues(attribute, list));
+        }
+        typed = new TypedValues(attribute, values, referenceVersion);
+        final Map<String,TypedValues> newMap = map != null ? new HashMap<>(map) : new HashMap<>();
+        newMap.put(attributeKey, typed);
+        typedValues = newMap;
+        return values;
+    }
+
     /** returns the string representation of the given value. if attribute is a reference then the id of the referenced object is returned.*/
     private String toStringValue( Attribute attribute,Object value) {
         String stringValue = null;
@@ -528,6 +680,11 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
         {
         	return null;
         }
+        if ( readOnly )
+        {
+            final List<Object> values = getTypedValues(attribute, o);
+            return values.isEmpty() ? null : values.get(0);
+        }
         String stringRep = o.get(0);
         Object fromString;
 		try {
@@ -552,6 +709,9 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
         clone.typeId = getParentId();
         clone.type = type;
         clone.name = null;
+        clone.names = null;
+        clone.typedValues = null;
+        clone.resolvedType = null;
         clone.readOnly = false;// clones are always writable
         return clone;
     }
@@ -594,6 +754,9 @@ public class ClassificationImpl implements Classification,DynamicTypeDependant,
     @Override
     public void replace(ReferenceInfo origId, ReferenceInfo newId)
     {
+        typedValues = null;
+        names = null;
+        resolvedType = null;
         final Set<Entry<String, List<String>>> entrySet = data.entrySet();
         for (Entry<String, List<String>> entry : entrySet)
         {
@@ -0,0 +1,319 @@
+/*--------------------------------------------------------------------------*
+ | Copyright (C) 2014 Christopher Kohlhaas                                  |
+ |                                                                          |
+ | This program is free software; you can redistribute it and/or modify     |
+ | it under the terms of the GNU General Public License as published by the |
+ | Free Software Foundation. A copy of the license has been included with   |
+ | these distribution in the COPYING file, if not go to www.fsf.org         |
+ |                                                                          |
+ | As a special exception, you are granted the permissions to link this     |
+ | program with every library, which license fulfills the Open Source       |
+ | Definition as published by the Open Source Initiative (OSI).             |
+ *--------------------------------------------------------------------------*/
+package org.rapla.entities.dynamictype.internal;
+
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.dynamictype.Attribute;
+import org.rapla.entities.dynamictype.AttributeType;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.storage.CategoryIndex;
+import org.rapla.entities.storage.EntityResolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The rules of a {@link ClassificationFilterImpl} translated to one predicate per attribute. The operators are dispatched and
+ * the rule values are converted once, when the filter is compiled, instead of for every matched classification.
+ * A compiled filter is only valid for the dynamic type instance and the reference version of the resolver it was compiled for.
+ */
+final class CompiledClassificationFilter
+{
+    interface ValuePredicate
+    {
+        boolean matches(Object value);
+    }
+
+    private static final ValuePredicate NEVER = value -> false;
+    private static final ValuePredicate IS_NULL = value -> value == null;
+
+    final DynamicType type;
+    final String typeId;
+    final long referenceVersion;
+    private final Attribute[] attributes;
+    private final ValuePredicate[] predicates;
+
+    private CompiledClassificationFilter(DynamicType type, long referenceVersion, Attribute[] attributes, ValuePredicate[] predicates)
+    {
+        this.type = type;
+        this.typeId = type.getId();
+        this.referenceVersion = referenceVersion;
+        this.attributes = attributes;
+        this.predicates = predicates;
+    }
+
+    /** the category subtrees are only precomputed if the reference version tells when the categories change. The category index can be null. */
+    static CompiledClassificationFilter compile(DynamicType type, ClassificationFilterRuleImpl[] rules, long referenceVersion, CategoryIndex categoryIndex)
+    {
+        return compile(type, rules, referenceVersion, categoryIndex, null);
+    }
+
+    /**
+     * compiles the rules for the reference version of the resolver. The attributes and the referenced entities are taken from
+     * the passed type and the resolver, so that the filter can be kept for the version. Returns null if a referenced entity is
+     * not found in the version.
+     */
+    static CompiledClassificationFilter compile(DynamicType type, ClassificationFilterRuleImpl[] rules, EntityResolver referenceResolver)
+    {
+        return compile(type, rules, referenceResolver.getReferenceVersion(), referenceResolver.getCategoryIndex(), referenceResolver);
+    }
+
+    private static CompiledClassificationFilter compile(DynamicType type, ClassificationFilterRuleImpl[] rules, long referenceVersion, CategoryIndex categoryIndex,
+            EntityResolver referenceResolver)
+    {
+        List<Attribute> attributes = new ArrayList<>();
+        List<ValuePredicate> predicates = new ArrayList<>();
+        for (ClassificationFilterRuleImpl rule : rules)
+        {
+            Attribute attribute = referenceResolver != null ? rule.getAttribute(type) : rule.getAttribute();
+            if (attribute == null)
+            {
+                continue;
+            }
+            String[] operators = rule.getOperators();
+            Object[] ruleValues = referenceResolver != null ? rule.getValues(attribute, referenceResolver) : rule.getValues();
+            if (ruleValues == null)
+            {
+                return null;
+            }
+            ValuePredicate[] conditions = new ValuePredicate[operators.length];
+            for (int i = 0; i < operators.length; i++)
+            {
+                conditions[i] = compile(attribute.getType(), operators[i], ruleValues[i], referenceVersion >= 0, categoryIndex);
+            }
+            attributes.add(attribute);
+            predicates.add(or(conditions));
+        }
+        return new CompiledClassificationFilter(type, referenceVersion, attributes.toArray(new Attribute[attributes.size()]),
+                predicates.toArray(new ValuePredicate[predicates.size()]));
+    }
+
+    boolean matches(Classification classification)
+    {
+        if (classification instanceof ClassificationImpl)
+        {
+            if (!typeId.equals(((ClassificationImpl) classification).getParentId()))
+            {
+                return false;
+            }
+        }
+        else if (!type.equals(classification.getType()))
+        {
+            return false;
+        }
+        for (int i = 0; i < attributes.length; i++)
+        {
+            Collection<Object> values = classification.getValues(attributes[i]);
+            ValuePredicate predicate = predicates[i];
+            if (values.isEmpty())
+            {
+                if (!predicate.matches(null))
+                {
+                    return false;
+                }
+                continue;
+            }
+            boolean matchesOne = false;
+            for (Object value : values)
+            {
+                if (predicate.matches(value))
+                {
+                    matchesOne = true;
+                    break;
+                }
+            }
+            if (!matchesOne)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ValuePredicate or(ValuePredicate[] conditions)
+    {
+        if (conditions.length == 1)
+        {
+            return conditions[0];
+        }
+        return value -> {
+            for (ValuePredicate condition : conditions)
+            {
+                if (condition.matches(value))
+                {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /** dispatches on the attribute type and the operator of one condition of a rule */
+    private static ValuePredicate compile(AttributeType type, String operator, Object ruleValue, boolean precomputeSubtrees, CategoryIndex categoryIndex)
+    {
+        if (type == AttributeType.CATEGORY)
+        {
+            return compileCategory(operator, (Category) ruleValue, precomputeSubtrees, categoryIndex);
+        }
+        else if (type == AttributeType.ALLOCATABLE)
+        {
+            if (ruleValue == null)
+            {
+                return IS_NULL;
+            }
+            if (operator.equals("=") || operator.equals("is"))
+            {
+                String id = ((Entity) ruleValue).getId();
+                return value -> value != null && id.equals(((Entity) value).getId());
+            }
+        }
+        else if (type == AttributeType.STRING)
+        {
+            return compileString(operator, (String) ruleValue);
+        }
+        else if (type == AttributeType.BOOLEAN)
+        {
+            Boolean boolean1 = (Boolean) ruleValue;
+            if (boolean1 == null)
+            {
+                return value -> value == null || ((Boolean) value).booleanValue();
+            }
+            return value -> value == null ? !boolean1.booleanValue() : boolean1.equals(value);
+        }
+        else if (type == AttributeType.INT || type == AttributeType.DATE)
+        {
+            return compileNumber(type, operator, ruleValue);
+        }
+        return NEVER;
+    }
+
+    private static ValuePredicate compileCategory(String operator, Category category, boolean precomputeSubtrees, CategoryIndex categoryIndex)
+    {
+        if (category == null)
+        {
+            return IS_NULL;
+        }
+        String id = category.getId();
+        if (operator.equals("="))
+        {
+            return value -> value != null && id.equals(((Entity) value).getId());
+        }
+        else if (operator.equals("is"))
+        {
+            if (categoryIndex != null && categoryIndex.contains(category))
+            {
+                // values of another version of the categories are checked without the index
+                return value -> value != null && (id.equals(((Entity) value).getId()) || (categoryIndex.contains((Category) value) ?
+                        categoryIndex.isAncestorOf(category, (Category) value) : category.isAncestorOf((Category) value)));
+            }
+            if (!precomputeSubtrees)
+            {
+                return value -> value != null && (id.equals(((Entity) value).getId()) || category.isAncestorOf((Category) value));
+            }
+            Set<String> subtree = new HashSet<>();
+            addSubtree(subtree, category, 0);
+            return value -> value != null && subtree.contains(((Entity) value).getId());
+        }
+        return NEVER;
+    }
+
+    private static void addSubtree(Set<String> subtree, Category category, int depth)
+    {
+        if (depth > 20)
+        {
+            throw new IllegalStateException("Categorycyle detected in " + category.toString());
+        }
+        subtree.add(category.getId());
+        for (Category child : category.getCategories())
+        {
+            addSubtree(subtree, child, depth + 1);
+        }
+    }
+
+    private static ValuePredicate compileString(String operator, String ruleValue)
+    {
+        if (ruleValue == null)
+        {
+            return IS_NULL;
+        }
+        if (operator.equals("is") || operator.equals("="))
+        {
+            return value -> value != null && value.equals(ruleValue);
+        }
+        String string = ruleValue.toLowerCase().trim();
+        boolean empty = string.length() == 0;
+        if (operator.equals("contains"))
+        {
+            return value -> value == null ? empty : ((String) value).toLowerCase().contains(string);
+        }
+        else if (operator.equals("starts"))
+        {
+            return value -> value == null ? empty : ((String) value).toLowerCase().startsWith(string);
+        }
+        return NEVER;
+    }
+
+    private static ValuePredicate compileNumber(AttributeType type, String operator, Object ruleValue)
+    {
+        if (ruleValue == null)
+        {
+            if (operator.equals("<>"))
+            {
+                return value -> value != null;
+            }
+            else if (operator.equals("="))
+            {
+                return IS_NULL;
+            }
+            return NEVER;
+        }
+        final boolean isInt = type == AttributeType.INT;
+        final long long2 = isInt ? ((Long) ruleValue).longValue() : ((Date) ruleValue).getTime();
+        if (operator.equals("<"))
+        {
+            return value -> value != null && toLong(isInt, value) < long2;
+        }
+        else if (operator.equals("="))
+        {
+            return value -> value != null && toLong(isInt, value) == long2;
+        }
+        else if (operator.equals(">"))
+        {
+            return value -> value != null && toLong(isInt, value) > long2;
+        }
+        else if (operator.equals(">="))
+        {
+            return value -> value != null && toLong(isInt, value) >= long2;
+        }
+        else if (operator.equals("<="))
+        {
+            return value -> value != null && toLong(isInt, value) <= long2;
+        }
+        else if (operator.equals("<>"))
+        {
+            return value -> value != null && toLong(isInt, value) != long2;
+        }
+        return NEVER;
+    }
+
+    private static long toLong(boolean isInt, Object value)
+    {
+        return isInt ? ((Long) value).longValue() : ((Date) value).getTime();
+    }
+}
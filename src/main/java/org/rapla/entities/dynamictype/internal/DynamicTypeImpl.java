@@ -41,6 +41,7 @@ import org.rapla.entities.extensionpoints.Function;
 import org.rapla.entities.extensionpoints.FunctionFactory;
 import org.rapla.entities.internal.ModifiableTimestamp;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ParentEntity;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.SimpleEntity;
@@ -135,6 +136,15 @@ final public class DynamicTypeImpl extends SimpleEntity implements DynamicType,
     	}
     }
 
+    @Override
+    public void internIds(IdInterner interner) {
+        super.internIds( interner);
+        for (PermissionImpl p:permissions)
+        {
+            p.internIds( interner);
+        }
+    }
+
     public void setOperator(StorageOperator operator)
     {
         this.operator = operator;
@@ -829,7 +839,7 @@ final public class DynamicTypeImpl extends SimpleEntity implements DynamicType,
 				Classification classification = getRootClassification( context);
 				DynamicTypeImpl type = (DynamicTypeImpl) classification.getType();
 				final Attribute attribute = findAttribute(type);
-				final Object result = ParsedText.getProxy(classification, attribute);
+				final Object result = ParsedText.getProxy(context, classification, attribute);
 				return result;
 			}
 
@@ -16,6 +16,8 @@ final public class EvalContext
     private EvalContext parent;
     private PermissionController permissionController;
     private User user;
+    /** records the entities used in the evaluation, null if nothing is recorded */
+    private NameMemo.Dependencies dependencies;
 
     public EvalContext(Locale locale, String annotationName, PermissionController permissionController,User user,List contextObjects)
     {
@@ -40,6 +42,7 @@ final public class EvalContext
         this.annotationName = parent.annotationName;
         this.contextObjects = contextObjects;
         this.parent = parent;
+        this.dependencies = parent.dependencies;
     }
 
     public User getUser()
@@ -60,6 +63,7 @@ final public class EvalContext
     public EvalContext clone(Locale locale)
     {
         EvalContext clone = new EvalContext(locale, annotationName, permissionController,user,contextObjects, callStackDepth);
+        clone.dependencies = dependencies;
         return clone;
     }
 
@@ -101,4 +105,14 @@ final public class EvalContext
         return locale;
     }
 
+    NameMemo.Dependencies getDependencies()
+    {
+        return dependencies;
+    }
+
+    void setDependencies(NameMemo.Dependencies dependencies)
+    {
+        this.dependencies = dependencies;
+    }
+
 }
@@ -0,0 +1,195 @@
+package org.rapla.entities.dynamictype.internal;
+
+import org.rapla.entities.Entity;
+import org.rapla.entities.storage.EntityResolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Remembers the formatted names of a read only entity per locale and annotation. An entry is valid as long as the parsed
+ * annotation and the version of the reference resolver don't change. A name is only kept for a version if the entities that
+ * were used to format it belong to that version. If the version changes, the entry is still used if
+ * all entities that were recorded during its evaluation are still the current versions. Annotations with functions that
+ * can read entities without recording them, e.g. resources() or events(), are evaluated again on every version change.
+ * Without a reference version the recorded entities are checked on every call and the names of untracked annotations
+ * are not kept.
+ */
+public final class NameMemo
+{
+    static final int MAX_ENTRIES = 8;
+    private static final Entry[] EMPTY = new Entry[0];
+
+    // copy on write, newest entry last
+    private volatile Entry[] entries = EMPTY;
+
+    /** the entities that were used while formatting a name */
+    public static final class Dependencies
+    {
+        private final List<Entity> entities = new ArrayList<>();
+        private boolean untracked;
+
+        public Dependencies()
+        {
+        }
+
+        void add(Entity entity)
+        {
+            if (entity != null && !untracked)
+            {
+                entities.add(entity);
+            }
+        }
+
+        /** called if the evaluation can read entities that are not recorded */
+        void setUntracked()
+        {
+            untracked = true;
+            entities.clear();
+        }
+
+        Entity[] toArray()
+        {
+            return untracked ? null : entities.toArray(new Entity[entities.size()]);
+        }
+
+        /** true if the evaluation could read entities that are not recorded */
+        public boolean isUntracked()
+        {
+            return untracked;
+        }
+
+        /** the recorded entities, empty if the dependencies are untracked */
+        public Collection<Entity> getEntities()
+        {
+            return Collections.unmodifiableList(entities);
+        }
+    }
+
+    static final class Entry
+    {
+        final Locale locale;
+        final String annotationName;
+        final ParsedText parsedText;
+        final String value;
+        // null if the dependencies are not known
+        final Entity[] dependencies;
+        volatile long referenceVersion;
+
+        Entry(Locale locale, String annotationName, ParsedText parsedText, String value, Entity[] dependencies, long referenceVersion)
+        {
+            this.locale = locale;
+            this.annotationName = annotationName;
+            this.parsedText = parsedText;
+            this.value = value;
+            this.dependencies = dependencies;
+            this.referenceVersion = referenceVersion;
+        }
+
+        boolean matches(Locale locale, String annotationName, ParsedText parsedText)
+        {
+            return this.parsedText == parsedText && this.annotationName.equals(annotationName) && sameLocale(this.locale, locale);
+        }
+    }
+
+    private static boolean sameLocale(Locale locale1, Locale locale2)
+    {
+        return locale1 == null ? locale2 == null : locale1.equals(locale2);
+    }
+
+    /** returns the remembered name or null if the name must be formatted */
+    public String get(Locale locale, String annotationName, ParsedText parsedText, EntityResolver resolver)
+    {
+        final EntityResolver referenceResolver = resolver.getReferenceResolver();
+        final long referenceVersion = referenceResolver.getReferenceVersion();
+        for (Entry entry : entries)
+        {
+            if (!entry.matches(locale, annotationName, parsedText))
+            {
+                continue;
+            }
+            if (referenceVersion >= 0 && entry.referenceVersion == referenceVersion)
+            {
+                return entry.value;
+            }
+            if (entry.dependencies != null && isCurrent(entry.dependencies, referenceResolver))
+            {
+                if (referenceVersion >= 0)
+                {
+                    entry.referenceVersion = referenceVersion;
+                }
+                return entry.value;
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static boolean isCurrent(Entity[] dependencies, EntityResolver resolver)
+    {
+        for (Entity entity : dependencies)
+        {
+            if (resolver.tryResolve(entity.getId(), entity.getTypeClass()) != entity)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** formats the name with the parsed annotation and remembers it */
+    public String format(Locale locale, String annotationName, ParsedText parsedText, EvalContext context, EntityResolver resolver)
+    {
+        final EntityResolver referenceResolver = resolver.getReferenceResolver();
+        final long referenceVersion = referenceResolver.getReferenceVersion();
+        final Dependencies dependencies = new Dependencies();
+        final String value = format(parsedText, context, dependencies);
+        final Entity[] used = dependencies.toArray();
+        // the context resolves with the resolver of the entity, which can return newer entities than the reference version
+        final boolean current = used != null ? isCurrent(used, referenceResolver) : referenceVersion >= 0 && referenceResolver == resolver;
+        if (current)
+        {
+            put(new Entry(locale, annotationName, parsedText, value, used, referenceVersion));
+        }
+        return value;
+    }
+
+    /** formats the name with the parsed annotation without remembering it and records the used entities in the dependencies */
+    public static String format(ParsedText parsedText, EvalContext context, Dependencies dependencies)
+    {
+        if (!parsedText.isTracked())
+        {
+            dependencies.setUntracked();
+        }
+        context.setDependencies(dependencies);
+        return parsedText.formatName(context).trim();
+    }
+
+    private synchronized void put(Entry newEntry)
+    {
+        final Entry[] old = entries;
+        final List<Entry> result = new ArrayList<>(old.length + 1);
+        for (Entry entry : old)
+        {
+            // entries of an older version of the annotation are replaced as well
+            if (!entry.annotationName.equals(newEntry.annotationName) || !sameLocale(entry.locale, newEntry.locale))
+            {
+                result.add(entry);
+            }
+        }
+        if (result.size() >= MAX_ENTRIES)
+        {
+            result.remove(0);
+        }
+        result.add(newEntry);
+        entries = result.toArray(new Entry[result.size()]);
+    }
+
+    public void clear()
+    {
+        entries = EMPTY;
+    }
+}
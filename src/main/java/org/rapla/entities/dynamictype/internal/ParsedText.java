@@ -52,6 +52,10 @@ public class ParsedText implements Serializable
     transient List<Function> variablesList;
     // used for fast storage of text without variables
     transient private String first = "";
+    /** the compiled format used in formatName, the constant parts are already concatenated */
+    transient private Segment[] segments;
+    /** true if all entities that the functions read are recorded in the dependencies of the eval context */
+    transient private boolean tracked = true;
 
     String formatString;
 
@@ -104,9 +108,173 @@ public class ParsedText implements Serializable
             }
             variablesList = null;
             nonVariablesList = null;
+            segments = null;
+            tracked = true;
+        }
+        else
+        {
+            segments = compile(nonVariablesList, variablesList);
+            boolean allTracked = true;
+            for (Function function : variablesList)
+            {
+                allTracked &= isTracked(function);
+            }
+            tracked = allTracked;
+        }
+    }
+
+    /** see {@link NameMemo} */
+    public boolean isTracked()
+    {
+        return tracked;
+    }
+
+    /** the functions that only read entities through attribute values, which are recorded in {@link #getProxy} */
+    private static boolean isTracked(Function function)
+    {
+        if (!(function instanceof StringVariable || function instanceof IntVariable || function instanceof BooleanVariable
+                || function instanceof DynamicTypeImpl.DynamicTypeParseContext.AttributeFunction
+                || function instanceof StandardFunctions.AttributeFunction || function instanceof StandardFunctions.NameFunction
+                || function instanceof StandardFunctions.KeyFunction || function instanceof StandardFunctions.ConcatFunction
+                || function instanceof StandardFunctions.IfFunction || function instanceof StandardFunctions.EqualsFunction
+                || function instanceof StandardFunctions.NotFunction || function instanceof StandardFunctions.AndFunction
+                || function instanceof StandardFunctions.OrFunction || function instanceof StandardFunctions.SubstringFunction))
+        {
+            return false;
+        }
+        final List<Function> args = function.getArgs();
+        if (args != null)
+        {
+            for (Function arg : args)
+            {
+                if (!isTracked(arg))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** a part of the formatted text */
+    interface Segment
+    {
+        String eval(EvalContext context);
+    }
+
+    static final class ConstantSegment implements Segment
+    {
+        private final String constant;
+
+        ConstantSegment(String constant)
+        {
+            this.constant = constant;
+        }
+
+        @Override public String eval(EvalContext context)
+        {
+            return constant;
         }
     }
 
+    static final class FunctionSegment implements Segment
+    {
+        private final Function function;
+
+        FunctionSegment(Function function)
+        {
+            this.function = function;
+        }
+
+        @Override public String eval(EvalContext context)
+        {
+            Object result = function.eval(context);
+            return evalToString(result, context);
+        }
+    }
+
+    /** translates the text and variable parts to segments, constant variables and the texts between them are folded into one segment */
+    private Segment[] compile(List<String> nonVariables, List<Function> variables)
+    {
+        List<Segment> result = new ArrayList<>();
+        StringBuilder constant = new StringBuilder();
+        int size = Math.max(nonVariables.size(), variables.size());
+        for (int i = 0; i < size; i++)
+        {
+            if (i < nonVariables.size())
+            {
+                constant.append(nonVariables.get(i));
+            }
+            if (i < variables.size())
+            {
+                Function function = fold(variables.get(i));
+                String constantValue = getConstant(function);
+                if (constantValue != null)
+                {
+                    constant.append(constantValue);
+                    continue;
+                }
+                if (constant.length() > 0)
+                {
+                    result.add(new ConstantSegment(constant.toString()));
+                    constant.setLength(0);
+                }
+                result.add(new FunctionSegment(function));
+            }
+        }
+        if (constant.length() > 0)
+        {
+            result.add(new ConstantSegment(constant.toString()));
+        }
+        return result.toArray(new Segment[result.size()]);
+    }
+
+    /** returns the text of variables that don't depend on the context. Booleans are not constant, because they are translated */
+    static String getConstant(Function function)
+    {
+        if (function instanceof StringVariable)
+        {
+            return ((StringVariable) function).s;
+        }
+        if (function instanceof IntVariable)
+        {
+            return ((IntVariable) function).l.toString();
+        }
+        return null;
+    }
+
+    /** replaces concatenations of constants with the concatenated constant */
+    private Function fold(Function function)
+    {
+        if (!(function instanceof StandardFunctions.ConcatFunction))
+        {
+            return function;
+        }
+        List<Function> args = ((StandardFunctions.ConcatFunction) function).args;
+        List<Function> foldedArgs = new ArrayList<>(args.size());
+        StringBuilder constant = new StringBuilder();
+        boolean allConstant = true;
+        for (Function arg : args)
+        {
+            Function folded = fold(arg);
+            String constantValue = getConstant(folded);
+            if (constantValue == null)
+            {
+                allConstant = false;
+            }
+            else
+            {
+                constant.append(constantValue);
+            }
+            foldedArgs.add(folded);
+        }
+        if (allConstant)
+        {
+            return new StringVariable(constant.toString());
+        }
+        return new StandardFunctions.ConcatFunction(foldedArgs);
+    }
+
     public void updateFormatString(ParseContext context)
     {
         formatString = getExternalRepresentation(context);
@@ -145,39 +313,47 @@ public class ParsedText implements Serializable
 
     public String formatName(EvalContext context)
     {
-        if (nonVariablesList == null && variablesList == null)
+        final Segment[] segments = this.segments;
+        if (segments == null)
         {
             return first;
         }
-        StringBuffer buf = new StringBuffer();
-        if (variablesList != null && (nonVariablesList == null || nonVariablesList.size() == 0))
+        String string;
+        if (segments.length == 1)
         {
-            for (int i = 0; i < variablesList.size(); i++)
-            {
-                Function function = variablesList.get(i);
-                Object result = function.eval(context);
-                String stringResult = evalToString(result, context);
-                buf.append(stringResult);
-            }
+            string = segments[0].eval(context);
         }
-        else if (nonVariablesList != null)
+        else
         {
-            for (int i = 0; i < nonVariablesList.size(); i++)
+            StringBuilder buf = new StringBuilder();
+            for (Segment segment : segments)
             {
-                buf.append(nonVariablesList.get(i));
-                if (i < variablesList.size())
-                {
-                    Function function = variablesList.get(i);
-                    Object result = function.eval(context);
-                    String stringResult = evalToString(result, context);
-                    buf.append(stringResult);
-                }
+                buf.append(segment.eval(context));
             }
+            string = buf.toString();
         }
+        return replaceNewlines(string);
+    }
 
-        String string = buf.toString();
-        string = string.replaceAll("\\\\n", "\n");
-        return string;
+    /** replaces each backslash followed by n with a line break, without compiling a regular expression on every call */
+    static String replaceNewlines(String string)
+    {
+        int index = string.indexOf("\\n");
+        if (index < 0)
+        {
+            return string;
+        }
+        StringBuilder buf = new StringBuilder(string.length());
+        int pos = 0;
+        while (index >= 0)
+        {
+            buf.append(string, pos, index);
+            buf.append('\n');
+            pos = index + 2;
+            index = string.indexOf("\\n", pos);
+        }
+        buf.append(string, pos, string.length());
+        return buf.toString();
     }
 
     Function parseFunctions(final ParseContext context, String content) throws IllegalAnnotationException
@@ -562,9 +738,24 @@ public class ParsedText implements Serializable
     }
 
     /** we need proxies to pass additional information to the evalToStringMethod*/
-    static Object getProxy(Classification classification, final Attribute attribute)
+    static Object getProxy(EvalContext context, Classification classification, final Attribute attribute)
     {
         final Collection<Object> values = classification.getValues(attribute);
+        final NameMemo.Dependencies dependencies = context.getDependencies();
+        if (dependencies != null && attribute.getRefType() != null)
+        {
+            for (Object value : values)
+            {
+                // the path of a category contains the names of its parents
+                Object entity = value;
+                int depth = 0;
+                while (entity instanceof Entity && depth++ < 20)
+                {
+                    dependencies.add((Entity) entity);
+                    entity = entity instanceof Category ? ((Category) entity).getParent() : null;
+                }
+            }
+        }
         Collection<Object> result;
         if (attribute.getType() == AttributeType.CATEGORY)
         {
@@ -1030,6 +1221,10 @@ public class ParsedText implements Serializable
             else
             {
                 final Classifiable classifiable = (Classifiable) object;
+                if (user != null && context.getDependencies() != null)
+                {
+                    context.getDependencies().add(user);
+                }
                 if (user != null)
                 {
                     if (classifiable instanceof PermissionContainer)
@@ -1047,6 +1242,7 @@ public class ParsedText implements Serializable
             final String annotationName = DynamicTypeAnnotations.KEY_NAME_FORMAT;
             final List<Object> contextObjects = Collections.singletonList(object);
             EvalContext contextClone = new EvalContext(locale, annotationName, permissionController, user, contextObjects, callStackDepth + 1);
+            contextClone.setDependencies(context.getDependencies());
             final DynamicTypeImpl type = (DynamicTypeImpl) classification.getType();
             ParsedText parsedAnnotation;
             //parsedAnnotation = type.getParsedAnnotation(contextClone.getAnnotationName());
@@ -1056,6 +1252,10 @@ public class ParsedText implements Serializable
             }
             if (parsedAnnotation != null)
             {
+                if (!parsedAnnotation.isTracked() && context.getDependencies() != null)
+                {
+                    context.getDependencies().setUntracked();
+                }
                 String format = parsedAnnotation.formatName(contextClone);
                 return format;
             }
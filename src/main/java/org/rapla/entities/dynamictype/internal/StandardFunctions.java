@@ -629,7 +629,7 @@ public class StandardFunctions implements FunctionFactory
             }
             DynamicTypeImpl type = (DynamicTypeImpl) classification.getType();
             final Attribute attribute = findAttribute(type, key);
-            return ParsedText.getProxy(classification, attribute);
+            return ParsedText.getProxy(context, classification, attribute);
         }
 
         public Attribute findAttribute(DynamicTypeImpl type, String key)
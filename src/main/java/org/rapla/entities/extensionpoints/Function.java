@@ -32,6 +32,11 @@ public abstract class Function
         return namespace;
     }
 
+    public List<Function> getArgs()
+    {
+        return args;
+    }
+
     protected void assertArgs(int minSize, int maxSize) throws IllegalAnnotationException
     {
         if (args == null)
@@ -19,6 +19,7 @@ import org.rapla.entities.EntityNotFoundException;
 import org.rapla.entities.IllegalAnnotationException;
 import org.rapla.entities.MultiLanguageName;
 import org.rapla.entities.RaplaObject;
+import org.rapla.entities.storage.CategoryIndex;
 import org.rapla.entities.storage.EntityResolver;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.SimpleEntity;
@@ -194,9 +195,25 @@ final public class CategoryImpl extends SimpleEntity implements Category, Modifi
 
     /** returns true if this is a direct or transitive parent of the passed category*/
     public boolean isAncestorOf(Category category) {
+        final CategoryIndex index = getCategoryIndex();
+        if ( index != null && index.contains( category))
+        {
+            return index.isAncestorOf( this, category);
+        }
         return isAncestorOf( defaultResolver,this,category, 0);
     }
 
+    /** returns the index of the resolver if it contains this read only category, otherwise null */
+    private CategoryIndex getCategoryIndex()
+    {
+        if ( !isReadOnly() || resolver == null)
+        {
+            return null;
+        }
+        final CategoryIndex index = resolver.getCategoryIndex();
+        return index != null && index.contains( this) ? index : null;
+    }
+
     static private boolean isAncestorOf(ParentResolver<Category> parentResolver,Category thisCategory,Category category, int depth) {
         if ( depth > 20)
         {
@@ -213,6 +230,11 @@ final public class CategoryImpl extends SimpleEntity implements Category, Modifi
     }
 
     public Category getCategory(String key) {
+        final CategoryIndex index = getCategoryIndex();
+        if ( index != null)
+        {
+            return index.getCategory( this, key);
+        }
         for (Entity ref: getCategoryList())
         {	
             Category cat = (Category) ref;
@@ -279,6 +301,11 @@ final public class CategoryImpl extends SimpleEntity implements Category, Modifi
     }
 
     public int getRootPathLength() {
+        final CategoryIndex index = getCategoryIndex();
+        if ( index != null)
+        {
+            return index.getRootPathLength( this);
+        }
         return getRootPathLength( defaultResolver, this);
     }
 
@@ -309,6 +336,11 @@ final public class CategoryImpl extends SimpleEntity implements Category, Modifi
     static ParentResolver<Category> defaultResolver = category -> category.getParent();
     
     public int getDepth() {
+        final CategoryIndex index = getCategoryIndex();
+        if ( index != null)
+        {
+            return index.getDepth( this);
+        }
         int max = 0;
         Category[] categories = getCategories();
         for (int i=0;i<categories.length;i++) {
@@ -0,0 +1,166 @@
+/*--------------------------------------------------------------------------*
+ | Copyright (C) 2014 Christopher Kohlhaas                                  |
+ |                                                                          |
+ | This program is free software; you can redistribute it and/or modify     |
+ | it under the terms of the GNU General Public License as published by the |
+ | Free Software Foundation. A copy of the license has been included with   |
+ | these distribution in the COPYING file, if not go to www.fsf.org         |
+ |                                                                          |
+ | As a special exception, you are granted the permissions to link this     |
+ | program with every library, which license fulfills the Open Source       |
+ | Definition as published by the Open Source Initiative (OSI).             |
+ *--------------------------------------------------------------------------*/
+package org.rapla.entities.internal;
+
+import org.rapla.entities.Category;
+import org.rapla.entities.User;
+import org.rapla.entities.storage.CategoryIndex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link CategoryIndex} of the server and client caches. Every category gets the interval of its subtree in a depth first
+ * numbering, so ancestor tests compare two numbers instead of walking the parents. The index also keeps the depth, the root
+ * path length and the children by key of every category, and the groups including parents of the users that were checked.
+ * @see org.rapla.entities.storage.EntityResolver#getCategoryIndex()
+ */
+public final class CategoryIndexImpl implements CategoryIndex
+{
+    static final int MAX_DEPTH = 20;
+
+    static final class Node
+    {
+        final Category category;
+        final int enter;
+        final int rootPathLength;
+        int exit;
+        int depth;
+        Map<String, Category> children;
+
+        Node(Category category, int enter, int rootPathLength)
+        {
+            this.category = category;
+            this.enter = enter;
+            this.rootPathLength = rootPathLength;
+        }
+    }
+
+    static final class Groups
+    {
+        final User user;
+        final Set<String> groupIds;
+
+        Groups(User user, Set<String> groupIds)
+        {
+            this.user = user;
+            this.groupIds = groupIds;
+        }
+    }
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    // guarded by this
+    private final Map<String, Groups> groups = new HashMap<>();
+    private int counter;
+
+    private CategoryIndexImpl()
+    {
+    }
+
+    public static CategoryIndexImpl create(Category superCategory)
+    {
+        final CategoryIndexImpl index = new CategoryIndexImpl();
+        index.add(superCategory, 0);
+        return index;
+    }
+
+    private Node add(Category category, int rootPathLength)
+    {
+        if (rootPathLength > MAX_DEPTH)
+        {
+            throw new IllegalStateException("Categorycyle detected in " + category.toString());
+        }
+        final Node node = new Node(category, counter++, rootPathLength);
+        nodes.put(category.getId(), node);
+        int maxDepth = 0;
+        for (Category child : category.getCategoryList())
+        {
+            if (node.children == null)
+            {
+                node.children = new HashMap<>();
+            }
+            final Node childNode = add(child, rootPathLength + 1);
+            // the first child with a key wins, as in the linear search
+            if (!node.children.containsKey(child.getKey()))
+            {
+                node.children.put(child.getKey(), child);
+            }
+            maxDepth = Math.max(maxDepth, childNode.depth);
+        }
+        node.depth = maxDepth + 1;
+        node.exit = counter;
+        return node;
+    }
+
+    private Node getNode(Category category)
+    {
+        final Node node = category != null ? nodes.get(category.getId()) : null;
+        return node != null && node.category == category ? node : null;
+    }
+
+    @Override
+    public boolean contains(Category category)
+    {
+        return getNode(category) != null;
+    }
+
+    @Override
+    public boolean isAncestorOf(Category ancestor, Category category)
+    {
+        final Node ancestorNode = getNode(ancestor);
+        final Node node = getNode(category);
+        return ancestorNode.enter < node.enter && node.exit <= ancestorNode.exit;
+    }
+
+    @Override
+    public int getDepth(Category category)
+    {
+        return getNode(category).depth;
+    }
+
+    @Override
+    public int getRootPathLength(Category category)
+    {
+        return getNode(category).rootPathLength;
+    }
+
+    @Override
+    public Category getCategory(Category category, String key)
+    {
+        final Map<String, Category> children = getNode(category).children;
+        return children != null ? children.get(key) : null;
+    }
+
+    /** calculated once per user instance */
+    @Override
+    public Set<String> getGroupsIncludingParents(User user)
+    {
+        final String userId = user.getId();
+        synchronized (this)
+        {
+            final Groups cached = groups.get(userId);
+            if (cached != null && cached.user == user)
+            {
+                return cached.groupIds;
+            }
+        }
+        final Set<String> groupIds = Collections.unmodifiableSet(UserImpl.calculateGroupsIncludingParents(user));
+        synchronized (this)
+        {
+            groups.put(userId, new Groups(user, groupIds));
+        }
+        return groupIds;
+    }
+}
@@ -18,6 +18,7 @@ import org.rapla.entities.User;
 import org.rapla.entities.domain.Allocatable;
 import org.rapla.entities.dynamictype.Attribute;
 import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.storage.CategoryIndex;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.SimpleEntity;
 import org.rapla.framework.RaplaException;
@@ -26,6 +27,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class UserImpl extends SimpleEntity implements User, ModifiableTimestamp
 {
@@ -272,7 +274,29 @@ public class UserImpl extends SimpleEntity implements User, ModifiableTimestamp
     }
 
     public static Collection<String> getGroupsIncludingParents(User user) {
-        Collection<String> groups = new HashSet<>();
+        if ( user instanceof UserImpl)
+        {
+            final CategoryIndex index = ((UserImpl) user).getCategoryIndex();
+            if ( index != null)
+            {
+                return index.getGroupsIncludingParents( user);
+            }
+        }
+        return calculateGroupsIncludingParents( user);
+    }
+
+    /** returns null if the user is not read only or the resolver has no index */
+    private CategoryIndex getCategoryIndex()
+    {
+        if ( !isReadOnly() || resolver == null)
+        {
+            return null;
+        }
+        return resolver.getCategoryIndex();
+    }
+
+    static Set<String> calculateGroupsIncludingParents(User user) {
+        Set<String> groups = new HashSet<>();
         for ( Category group: user.getGroupList())
         {
             groups.add( group.getId());
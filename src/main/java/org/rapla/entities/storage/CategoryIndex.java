@@ -0,0 +1,44 @@
+/*--------------------------------------------------------------------------*
+ | Copyright (C) 2014 Christopher Kohlhaas                                  |
+ |                                                                          |
+ | This program is free software; you can redistribute it and/or modify     |
+ | it under the terms of the GNU General Public License as published by the |
+ | Free Software Foundation. A copy of the license has been included with   |
+ | these distribution in the COPYING file, if not go to www.fsf.org         |
+ |                                                                          |
+ | As a special exception, you are granted the permissions to link this     |
+ | program with every library, which license fulfills the Open Source       |
+ | Definition as published by the Open Source Initiative (OSI).             |
+ *--------------------------------------------------------------------------*/
+package org.rapla.entities.storage;
+
+import org.rapla.entities.Category;
+import org.rapla.entities.User;
+
+import java.util.Set;
+
+/**
+ * Index over one version of the read only category tree. Only the category instances that were indexed are answered, other
+ * instances, e.g. of a newer version, must be checked without the index.
+ * @see EntityResolver#getCategoryIndex()
+ */
+public interface CategoryIndex
+{
+    /** returns true if the category instance is part of the index */
+    boolean contains(Category category);
+
+    /** returns true if ancestor is a direct or transitive parent of the category. Both must be part of the index. */
+    boolean isAncestorOf(Category ancestor, Category category);
+
+    /** same as {@link Category#getDepth()}. The category must be part of the index. */
+    int getDepth(Category category);
+
+    /** same as {@link Category#getRootPathLength()}. The category must be part of the index. */
+    int getRootPathLength(Category category);
+
+    /** the child with the key or null. The category must be part of the index. */
+    Category getCategory(Category category, String key);
+
+    /** the ids of the groups of the user and their parents */
+    Set<String> getGroupsIncludingParents(User user);
+}
@@ -24,6 +24,11 @@ public interface EntityReferencer
     Iterable<ReferenceInfo> getReferenceInfo();
     
     void replace(ReferenceInfo origId, ReferenceInfo newId);
+
+    /** replaces the referenced ids with their shared instances. Must only be called before the object is visible to other threads. */
+    default void internIds(IdInterner interner)
+    {
+    }
 }
 
 
@@ -34,6 +34,27 @@ public interface EntityResolver
     
     DynamicType getDynamicType(String key);
 
+    /** the entities returned by the resolver can be kept as long as this version doesn't change. Returns -1 if the resolver doesn't track its changes. */
+    default long getReferenceVersion()
+    {
+        return -1;
+    }
+
+    /**
+     * the resolver that returns the entities of its reference version. Resolvers that can return newer entities than their
+     * reference version return the resolver of the version, so resolutions that are kept must use the returned resolver and its version.
+     */
+    default EntityResolver getReferenceResolver()
+    {
+        return this;
+    }
+
+    /** the index of the category tree of the current reference version or null if the resolver has no index */
+    default CategoryIndex getCategoryIndex()
+    {
+        return null;
+    }
+
     //FunctionFactory getFunctionFactory(String functionName);
 
     //PermissionController getPermissionController();
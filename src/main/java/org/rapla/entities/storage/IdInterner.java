@@ -0,0 +1,25 @@
+/*--------------------------------------------------------------------------*
+ | Copyright (C) 2014 Christopher Kohlhaas                                  |
+ |                                                                          |
+ | This program is free software; you can redistribute it and/or modify     |
+ | it under the terms of the GNU General Public License as published by the |
+ | Free Software Foundation. A copy of the license has been included with   |
+ | these distribution in the COPYING file, if not go to www.fsf.org         |
+ |                                                                          |
+ | As a special exception, you are granted the permissions to link this     |
+ | program with every library, which license fulfills the Open Source       |
+ | Definition as published by the Open Source Initiative (OSI).             |
+ *--------------------------------------------------------------------------*/
+package org.rapla.entities.storage;
+
+/** Shares one string instance for every entity id, so that the ids of the references don't need memory of their own and can be compared by identity.
+ * @see EntityReferencer#internIds(IdInterner)
+ */
+public interface IdInterner
+{
+    /** adds the id of a stored entity and returns its shared instance */
+    String add(String id);
+
+    /** returns the shared instance of a known id or the passed id if the id was not added before */
+    String intern(String id);
+}
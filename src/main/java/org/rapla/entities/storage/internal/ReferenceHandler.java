@@ -16,6 +16,7 @@ import org.rapla.components.util.Assert;
 import org.rapla.entities.Entity;
 import org.rapla.entities.storage.EntityReferencer;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.UnresolvableReferenceExcpetion;
 
@@ -62,6 +63,52 @@ Itertor references = referenceHandler.getReferences();
 abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/ implements EntityReferencer {
 	protected Map<String,List<String>> links = new LinkedHashMap<>();
     protected transient EntityResolver resolver;
+    /** the resolved references of read only objects, replaced on every change (copy on write) */
+    private transient volatile ResolvedSlots resolvedSlots;
+
+    /** the resolved entity or entity list per key for one reference version of the resolver */
+    static final class ResolvedSlots
+    {
+        final long referenceVersion;
+        final String[] keys;
+        final Class<?>[] classes;
+        final Object[] values;
+
+        ResolvedSlots(long referenceVersion, String[] keys, Class<?>[] classes, Object[] values)
+        {
+            this.referenceVersion = referenceVersion;
+            this.keys = keys;
+            this.classes = classes;
+            this.values = values;
+        }
+
+        Object get(String key, Class<?> entityClass)
+        {
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (keys[i].equals(key) && classes[i] == entityClass)
+                {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        ResolvedSlots with(String key, Class<?> entityClass, Object value)
+        {
+            final int length = keys.length;
+            final String[] newKeys = new String[length + 1];
+            final Class<?>[] newClasses = new Class<?>[length + 1];
+            final Object[] newValues = new Object[length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, length);
+            System.arraycopy(classes, 0, newClasses, 0, length);
+            System.arraycopy(values, 0, newValues, 0, length);
+            newKeys[length] = key;
+            newClasses[length] = entityClass;
+            newValues[length] = value;
+            return new ResolvedSlots(referenceVersion, newKeys, newClasses, newValues);
+        }
+    }
 	
     public EntityResolver getResolver()
     {
@@ -84,6 +131,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     		throw new IllegalArgumentException("Null not allowed");
     	}
 		this.resolver = resolver;
+		resolvedSlots = null;
 			
 //    	try {
 //	        for (String key :idmap.keySet()) {
@@ -153,6 +201,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     }
     
     public void addId(String key,String id) {
+        resolvedSlots = null;
     	synchronized (this) 
         {
 	        List<String> idEntries = links.get( key );
@@ -177,6 +226,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
 	}
     
     public void putEntity(String key,Entity entity) {
+        resolvedSlots = null;
         synchronized (this)
         {
             if (entity == null) {
@@ -188,6 +238,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     }
 
     public void putIds(String key,Collection<String> ids) {
+        resolvedSlots = null;
         synchronized (this) 
         {
 	        if (ids == null || ids.size() == 0) {
@@ -245,6 +296,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
 	}
     
     public void putList(String key, Collection<Entity>entities) {
+        resolvedSlots = null;
         synchronized (this) 
         {
             if (entities == null || entities.size() == 0) 
@@ -269,6 +321,25 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
 		{
 			return Collections.emptyList();
 		}
+		final EntityResolver referenceResolver = getReferenceResolver();
+		if ( referenceResolver != null)
+		{
+			final long referenceVersion = referenceResolver.getReferenceVersion();
+			@SuppressWarnings("unchecked")
+			Collection<T> resolved = (Collection<T>) getResolvedSlot(key, entityClass, referenceVersion);
+			if ( resolved == null)
+			{
+				resolved = resolveList(ids, entityClass, referenceResolver);
+				if ( resolved != null)
+				{
+					putResolvedSlot(key, entityClass, referenceVersion, resolved);
+				}
+			}
+			if ( resolved != null)
+			{
+				return resolved;
+			}
+		}
 		List<T> entries = new ArrayList<>(ids.size());
 		for ( String id:ids)
 		{
@@ -285,6 +356,62 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
 		return Collections.unmodifiableCollection(entries);
 	}
 
+	/** returns null if an entity is not found in the version of the resolver, e.g. because it is not yet published */
+	private static <T extends Entity> Collection<T> resolveList(List<String> ids, Class<T> entityClass, EntityResolver referenceResolver)
+	{
+		List<T> entries = new ArrayList<>(ids.size());
+		for ( String id:ids)
+		{
+			T entity = referenceResolver.tryResolve(id, entityClass);
+			if ( entity == null)
+			{
+				return null;
+			}
+			entries.add( entity );
+		}
+		return Collections.unmodifiableCollection(entries);
+	}
+
+	/**
+	 * the resolver whose entities can be kept for its reference version or null if the references are resolved on every call.
+	 * The kept references are resolved with this resolver, so that they belong to the version they are kept for.
+	 */
+	private EntityResolver getReferenceResolver()
+	{
+		if ( resolver == null || !isReadOnlyReferences())
+		{
+			return null;
+		}
+		final EntityResolver referenceResolver = resolver.getReferenceResolver();
+		return referenceResolver.getReferenceVersion() >= 0 ? referenceResolver : null;
+	}
+
+	/** returns true if the references can't change anymore, so that the resolved entities can be kept */
+	protected boolean isReadOnlyReferences()
+	{
+		return false;
+	}
+
+	private Object getResolvedSlot(String key, Class<?> entityClass, long referenceVersion)
+	{
+		final ResolvedSlots slots = resolvedSlots;
+		if ( slots == null || slots.referenceVersion != referenceVersion)
+		{
+			return null;
+		}
+		return slots.get(key, entityClass);
+	}
+
+	private void putResolvedSlot(String key, Class<?> entityClass, long referenceVersion, Object value)
+	{
+		ResolvedSlots slots = resolvedSlots;
+		if ( slots == null || slots.referenceVersion != referenceVersion)
+		{
+			slots = new ResolvedSlots(referenceVersion, new String[0], new Class<?>[0], new Object[0]);
+		}
+		resolvedSlots = slots.with(key, entityClass, value);
+	}
+
 	protected <T extends Entity> T tryResolve(String id,Class<T> entityClass)
 	{
         return resolver.tryResolve( id , entityClass);
@@ -308,6 +435,26 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
         {
             throw new IllegalStateException("Resolver not set");
         }
+        final EntityResolver referenceResolver = getReferenceResolver();
+        if ( referenceResolver != null)
+        {
+            final long referenceVersion = referenceResolver.getReferenceVersion();
+            @SuppressWarnings("unchecked")
+            T resolved = (T) getResolvedSlot(key, entityClass, referenceVersion);
+            if ( resolved == null)
+            {
+                resolved = referenceResolver.tryResolve(id, entityClass);
+                if ( resolved != null)
+                {
+                    putResolvedSlot(key, entityClass, referenceVersion, resolved);
+                }
+            }
+            if ( resolved != null)
+            {
+                return resolved;
+            }
+        }
+        // entities that are not in the version of the reference resolver are resolved on every call
         T resolved = tryResolve(id, entityClass);
         if ( resolved == null)
         {
@@ -317,6 +464,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     }
 
 	public boolean removeWithKey(String key) {
+        resolvedSlots = null;
     	synchronized (this) 
         {
 			return links.remove(key) != null;
@@ -324,6 +472,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     }
 
     public boolean removeId(String id) {
+        resolvedSlots = null;
         boolean removed = false;
     	synchronized (this) 
         {
@@ -355,6 +504,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     }
     
     public void clearReferences() {
+        resolvedSlots = null;
     	links.clear();
     }
 
@@ -366,6 +516,7 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
     @Override
     public void replace(ReferenceInfo origId, ReferenceInfo newId)
     {
+        resolvedSlots = null;
         final Collection<Entry<String, List<String>>> entries = links.entrySet();
         for (Entry<String, List<String>> entry : entries)
         {
@@ -384,6 +535,25 @@ abstract public class ReferenceHandler /*extends HashMap<String,List<String>>*/
         }
     }
 
+    @Override
+    public void internIds(IdInterner interner)
+    {
+        resolvedSlots = null;
+        synchronized (this)
+        {
+            for (Entry<String, List<String>> entry : links.entrySet())
+            {
+                final List<String> ids = entry.getValue();
+                final List<String> interned = new ArrayList<>(ids.size());
+                for (String id : ids)
+                {
+                    interned.add(id != null ? interner.intern(id) : null);
+                }
+                entry.setValue(interned);
+            }
+        }
+    }
+
 	public String toString()
 	{
 		StringBuilder builder = new StringBuilder();
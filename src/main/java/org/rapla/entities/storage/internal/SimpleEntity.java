@@ -21,6 +21,7 @@ import org.rapla.entities.User;
 import org.rapla.entities.domain.Allocatable;
 import org.rapla.entities.storage.EntityReferencer;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ParentEntity;
 import org.rapla.entities.storage.RefEntity;
 import org.rapla.entities.storage.ReferenceInfo;
@@ -127,6 +128,17 @@ public abstract class SimpleEntity extends ReferenceHandler implements RefEntity
         }
     }
     
+    /** the sub entities are interned when they are put in the cache */
+    @Override
+    public void internIds(IdInterner interner)
+    {
+        if ( id != null)
+        {
+            id = interner.intern( id);
+        }
+        super.internIds( interner);
+    }
+
     public boolean isIdentical(Entity object)
     {
     	return equals( object);
@@ -156,6 +168,12 @@ public abstract class SimpleEntity extends ReferenceHandler implements RefEntity
     public boolean isReadOnly() {
         return readOnly;
     }
+
+    @Override
+    protected boolean isReadOnlyReferences()
+    {
+        return readOnly;
+    }
     
     public String getOwnerId()
     {
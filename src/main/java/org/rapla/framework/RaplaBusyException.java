@@ -0,0 +1,12 @@
+package org.rapla.framework;
+
+/** thrown if the server rejects a task because all workers are busy and the queue is full. The request can be repeated later. */
+public class RaplaBusyException extends RaplaException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RaplaBusyException(String text) {
+		super(text);
+	}
+
+}
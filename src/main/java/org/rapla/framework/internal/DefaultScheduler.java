@@ -1,30 +1,155 @@
 package org.rapla.framework.internal;
 
+import io.reactivex.functions.Action;
 import org.rapla.framework.Disposable;
-import org.rapla.inject.DefaultImplementation;
-import org.rapla.inject.InjectionContext;
+import org.rapla.framework.RaplaBusyException;
 import org.rapla.logger.Logger;
-import org.rapla.scheduler.CommandScheduler;
+import org.rapla.scheduler.Promise;
+import org.rapla.scheduler.ResolvedPromise;
 import org.rapla.scheduler.sync.UtilConcurrentCommandScheduler;
 
-import javax.inject.Inject;
-import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-@DefaultImplementation(of=CommandScheduler.class,context = {InjectionContext.server})
-@Singleton
+/** Thread pool backed scheduler used on the server. The number of tasks that may wait for a free worker can be limited.
+ * Tasks that a request thread submits with {@link #supply(Callable)} or {@link #run(Action)} beyond that limit are rejected
+ * immediately with a {@link RaplaBusyException} instead of piling up behind the pool. Internal tasks, e.g. the periodic
+ * refresh and cleanup or tasks submitted from the pool itself, are never rejected, because nobody would retry them. */
 public class DefaultScheduler extends UtilConcurrentCommandScheduler implements Disposable
 {
-	@Inject
+	public static final int DEFAULT_POOL_SIZE = 6;
+
+	private final Logger logger;
+	private final int poolSize;
+	private final int maxQueuedTasks;
+	private final AtomicInteger activeTasks = new AtomicInteger();
+	private final AtomicLong submittedTasks = new AtomicLong();
+	private final AtomicLong rejectedTasks = new AtomicLong();
+	// set while the thread handles a request, only the tasks of these threads count against the queue limit
+	private static final ThreadLocal<Boolean> requestThread = new ThreadLocal<>();
+
 	public DefaultScheduler(Logger logger) {
-	    this(logger, 6);
+	    this(logger, DEFAULT_POOL_SIZE);
 	}
 
 	public DefaultScheduler(Logger logger, int poolSize) {
+	    this(logger, poolSize, -1);
+	}
+
+	/**
+	 * @param maxQueuedTasks maximum number of tasks waiting for a free thread, a negative value means unbounded
+	 */
+	public DefaultScheduler(Logger logger, int poolSize, int maxQueuedTasks) {
 	    super(logger,poolSize);
+	    this.logger = logger;
+	    this.poolSize = poolSize;
+	    this.maxQueuedTasks = maxQueuedTasks;
+	}
+
+	/** marks the current thread as request thread until {@link #endRequest()} is called */
+	public static void beginRequest()
+	{
+		requestThread.set(Boolean.TRUE);
+	}
+
+	public static void endRequest()
+	{
+		requestThread.remove();
+	}
+
+	@Override
+	public <T> Promise<T> supply(Callable<T> supplier)
+	{
+		if (!tryAcquire(requestThread.get() != null))
+		{
+			return new ResolvedPromise<>(reject());
+		}
+		return super.supply(() -> {
+			try
+			{
+				return supplier.call();
+			}
+			finally
+			{
+				activeTasks.decrementAndGet();
+			}
+		});
+	}
+
+	@Override
+	public Promise<Void> run(Action action)
+	{
+		// same queue limit as supply
+		return supply(() -> {
+			action.run();
+			return null;
+		});
+	}
+
+	/** periodic tasks are maintenance tasks, so they are counted but never rejected */
+	@Override
+	public io.reactivex.disposables.Disposable schedule(Action action, long delay, long period)
+	{
+		return super.schedule(() -> {
+			tryAcquire(false);
+			try
+			{
+				action.run();
+			}
+			finally
+			{
+				activeTasks.decrementAndGet();
+			}
+		}, delay, period);
+	}
+
+	private boolean tryAcquire(boolean limited)
+	{
+		submittedTasks.incrementAndGet();
+		final int active = activeTasks.incrementAndGet();
+		if (limited && maxQueuedTasks >= 0 && active > poolSize + maxQueuedTasks)
+		{
+			activeTasks.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	private RaplaBusyException reject()
+	{
+		final long rejected = rejectedTasks.incrementAndGet();
+		logger.warn("Scheduler queue full. Rejecting task (" + rejected + " rejected so far)");
+		return new RaplaBusyException("Server is busy. Please try again later.");
+	}
+
+	public int getPoolSize()
+	{
+		return poolSize;
+	}
+
+	public int getMaxQueuedTasks()
+	{
+		return maxQueuedTasks;
+	}
+
+	/** number of tasks submitted via supply, run or schedule that are currently running or waiting for a thread */
+	public int getActiveTasks()
+	{
+		return activeTasks.get();
+	}
+
+	public long getSubmittedTasks()
+	{
+		return submittedTasks.get();
+	}
+
+	public long getRejectedTasks()
+	{
+		return rejectedTasks.get();
 	}
 
 	@Override public void dispose()
 	{
 		cancel();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package org.rapla.framework.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic counter that can be incremented from many threads without contention. */
+public class Counter
+{
+    private final LongAdder value = new LongAdder();
+
+    public void increment()
+    {
+        value.increment();
+    }
+
+    public void add(long delta)
+    {
+        value.add(delta);
+    }
+
+    public long getValue()
+    {
+        return value.sum();
+    }
+}
@@ -0,0 +1,8 @@
+package org.rapla.framework.metrics;
+
+/** A value that is read when the metrics are exported, e.g. the size of a queue. */
+@FunctionalInterface
+public interface Gauge
+{
+    long getValue();
+}
@@ -0,0 +1,136 @@
+package org.rapla.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of positive long values (e.g. durations in microseconds) with logarithmic buckets, similar to an HdrHistogram.
+ * Each power of two is divided into {@link #SUB_BUCKETS} linear buckets, so every recorded value is known with a relative
+ * error of at most 12.5%. Recording only increments atomic counters and never blocks, so it can be used on hot paths.
+ */
+public class Histogram
+{
+    static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        counts.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public long getMean()
+    {
+        final long n = getCount();
+        return n > 0 ? getSum() / n : 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket that contains the value at the percentile, but never more than the max value
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = 0;
+        final long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(getBucketUpperBound(i) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /** returns the number of recorded values for each bucket, the bounds of the buckets are available through {@link #getBucketUpperBound(int)} */
+    public long[] getBucketCounts()
+    {
+        final long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    static int getBucketIndex(long value)
+    {
+        if (value < 2 * SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getBucketLowerBound(int index)
+    {
+        if (index < 2 * SUB_BUCKETS)
+        {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    /** the exclusive upper bound of the bucket */
+    public static long getBucketUpperBound(int index)
+    {
+        if (index < 2 * SUB_BUCKETS)
+        {
+            return index + 1;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long upper = getBucketLowerBound(index) + (1L << shift);
+        // the last bucket would overflow
+        return upper > 0 ? upper : Long.MAX_VALUE;
+    }
+}
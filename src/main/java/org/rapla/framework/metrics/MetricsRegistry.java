@@ -0,0 +1,359 @@
+package org.rapla.framework.metrics;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the counters, gauges, timers and histograms of the server. Metrics are identified by a name and optional label pairs,
+ * e.g. <code>timer("rapla_remote_storage_seconds", "method", "refresh")</code>, and are created on first use.
+ * Looking up an existing metric doesn't lock, so the lookup can be done on every call. The number of metrics is limited,
+ * so label values that are not bounded can't fill the memory; further metrics are not exported.
+ */
+@Singleton
+public class MetricsRegistry
+{
+    static final int MAX_METRICS = 1024;
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    public enum MetricType
+    {
+        COUNTER,
+        GAUGE,
+        TIMER,
+        HISTOGRAM
+    }
+
+    private final ConcurrentMap<String, Entry> metrics = new ConcurrentHashMap<>();
+    private final Counter dropped = new Counter();
+
+    @Inject
+    public MetricsRegistry()
+    {
+    }
+
+    public Counter counter(String name, String... labels)
+    {
+        final Object metric = get(MetricType.COUNTER, name, labels, null);
+        return metric instanceof Counter ? (Counter) metric : new Counter();
+    }
+
+    public Timer timer(String name, String... labels)
+    {
+        final Object metric = get(MetricType.TIMER, name, labels, null);
+        return metric instanceof Timer ? (Timer) metric : new Timer();
+    }
+
+    public Histogram histogram(String name, String... labels)
+    {
+        final Object metric = get(MetricType.HISTOGRAM, name, labels, null);
+        return metric instanceof Histogram ? (Histogram) metric : new Histogram();
+    }
+
+    /** registers a gauge, an existing gauge with the same name and labels is replaced */
+    public void gauge(String name, Gauge gauge, String... labels)
+    {
+        final String key = getKey(name, labels);
+        final Entry existing = metrics.get(key);
+        if (existing != null && existing.type == MetricType.GAUGE)
+        {
+            metrics.put(key, new Entry(MetricType.GAUGE, key, name, labels, gauge));
+            return;
+        }
+        get(MetricType.GAUGE, name, labels, gauge);
+    }
+
+    private Object get(MetricType type, String name, String[] labels, Gauge gauge)
+    {
+        final String key = getKey(name, labels);
+        Entry entry = metrics.get(key);
+        if (entry == null)
+        {
+            if (metrics.size() >= MAX_METRICS)
+            {
+                dropped.increment();
+                return null;
+            }
+            entry = metrics.computeIfAbsent(key, (k) -> new Entry(type, k, name, labels, gauge));
+        }
+        if (entry.type != type)
+        {
+            throw new IllegalArgumentException("Metric " + key + " is already registered as " + entry.type);
+        }
+        return entry.metric;
+    }
+
+    static String getKey(String name, String[] labels)
+    {
+        if (labels.length == 0)
+        {
+            return name;
+        }
+        if (labels.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("Labels must be passed as name value pairs for metric " + name);
+        }
+        final StringBuilder buf = new StringBuilder(name);
+        buf.append('{');
+        appendLabels(buf, labels, null);
+        buf.append('}');
+        return buf.toString();
+    }
+
+    private static void appendLabels(StringBuilder buf, String[] labels, String extraLabel)
+    {
+        for (int i = 0; i < labels.length; i += 2)
+        {
+            if (i > 0)
+            {
+                buf.append(',');
+            }
+            buf.append(labels[i]).append("=\"");
+            escape(buf, labels[i + 1]);
+            buf.append('"');
+        }
+        if (extraLabel != null)
+        {
+            if (labels.length > 0)
+            {
+                buf.append(',');
+            }
+            buf.append(extraLabel);
+        }
+    }
+
+    private static void escape(StringBuilder buf, String value)
+    {
+        if (value == null)
+        {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            switch (c)
+            {
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                default:
+                    buf.append(c);
+            }
+        }
+    }
+
+    /** the number of metrics that were not created because the limit was reached */
+    public long getDroppedMetrics()
+    {
+        return dropped.getValue();
+    }
+
+    /** returns the metrics sorted by name and labels, so metrics with the same name are next to each other */
+    private List<Entry> getEntries()
+    {
+        final List<Entry> result = new ArrayList<>(metrics.values());
+        result.sort(Comparator.comparing((Entry entry) -> entry.name).thenComparing((entry) -> entry.key));
+        return result;
+    }
+
+    /** all metrics in a form that can be sent as json. Durations of timers are in microseconds. */
+    public List<MetricStatistics> getStatistics()
+    {
+        final List<MetricStatistics> result = new ArrayList<>();
+        for (Entry entry : getEntries())
+        {
+            result.add(new MetricStatistics(entry));
+        }
+        return result;
+    }
+
+    /** all metrics in the prometheus text exposition format. Timers are exported as summaries in seconds. */
+    public String toPrometheusText()
+    {
+        final StringBuilder buf = new StringBuilder();
+        String lastName = null;
+        for (Entry entry : getEntries())
+        {
+            if (!entry.name.equals(lastName))
+            {
+                buf.append("# TYPE ").append(entry.name).append(' ').append(getPrometheusType(entry.type)).append('\n');
+                lastName = entry.name;
+            }
+            switch (entry.type)
+            {
+                case COUNTER:
+                    appendSample(buf, entry, "", null, ((Counter) entry.metric).getValue());
+                    break;
+                case GAUGE:
+                    appendSample(buf, entry, "", null, ((Gauge) entry.metric).getValue());
+                    break;
+                case TIMER:
+                    appendSummary(buf, entry, ((Timer) entry.metric).getMicros(), 1000000.0);
+                    break;
+                case HISTOGRAM:
+                    appendSummary(buf, entry, (Histogram) entry.metric, 1.0);
+                    break;
+            }
+        }
+        buf.append("# TYPE rapla_metrics_dropped_total counter\n");
+        buf.append("rapla_metrics_dropped_total ").append(dropped.getValue()).append('\n');
+        return buf.toString();
+    }
+
+    private static String getPrometheusType(MetricType type)
+    {
+        switch (type)
+        {
+            case COUNTER:
+                return "counter";
+            case GAUGE:
+                return "gauge";
+            default:
+                return "summary";
+        }
+    }
+
+    private static void appendSummary(StringBuilder buf, Entry entry, Histogram histogram, double divisor)
+    {
+        for (double quantile : QUANTILES)
+        {
+            final String quantileLabel = "quantile=\"" + quantile + "\"";
+            appendSample(buf, entry, "", quantileLabel, histogram.getValueAtPercentile(quantile * 100) / divisor);
+        }
+        appendSample(buf, entry, "_sum", null, histogram.getSum() / divisor);
+        appendSample(buf, entry, "_count", null, histogram.getCount());
+    }
+
+    private static void appendSample(StringBuilder buf, Entry entry, String suffix, String extraLabel, double value)
+    {
+        buf.append(entry.name).append(suffix);
+        if (entry.labels.length > 0 || extraLabel != null)
+        {
+            buf.append('{');
+            appendLabels(buf, entry.labels, extraLabel);
+            buf.append('}');
+        }
+        buf.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+        {
+            buf.append((long) value);
+        }
+        else
+        {
+            buf.append(String.format(Locale.ENGLISH, "%.6f", value));
+        }
+        buf.append('\n');
+    }
+
+    static final class Entry
+    {
+        final MetricType type;
+        final String key;
+        final String name;
+        final String[] labels;
+        final Object metric;
+
+        Entry(MetricType type, String key, String name, String[] labels, Gauge gauge)
+        {
+            this.type = type;
+            this.key = key;
+            this.name = name;
+            this.labels = labels.clone();
+            switch (type)
+            {
+                case COUNTER:
+                    metric = new Counter();
+                    break;
+                case GAUGE:
+                    metric = gauge;
+                    break;
+                case TIMER:
+                    metric = new Timer();
+                    break;
+                default:
+                    metric = new Histogram();
+            }
+        }
+    }
+
+    /** a metric that can be sent as json, the values that don't apply to the type of the metric are null */
+    public static final class MetricStatistics
+    {
+        public final String name;
+        public final String type;
+        public final Map<String, String> labels;
+        public final Long value;
+        public final Long count;
+        public final Long sum;
+        public final Long mean;
+        public final Long p50;
+        public final Long p90;
+        public final Long p99;
+        public final Long max;
+
+        MetricStatistics(Entry entry)
+        {
+            this.name = entry.name;
+            this.type = entry.type.name();
+            final Map<String, String> labelMap = new LinkedHashMap<>();
+            for (int i = 0; i < entry.labels.length; i += 2)
+            {
+                labelMap.put(entry.labels[i], entry.labels[i + 1]);
+            }
+            this.labels = Collections.unmodifiableMap(labelMap);
+            final Histogram histogram;
+            switch (entry.type)
+            {
+                case COUNTER:
+                    value = ((Counter) entry.metric).getValue();
+                    histogram = null;
+                    break;
+                case GAUGE:
+                    value = ((Gauge) entry.metric).getValue();
+                    histogram = null;
+                    break;
+                case TIMER:
+                    value = null;
+                    histogram = ((Timer) entry.metric).getMicros();
+                    break;
+                default:
+                    value = null;
+                    histogram = (Histogram) entry.metric;
+            }
+            if (histogram != null)
+            {
+                count = histogram.getCount();
+                sum = histogram.getSum();
+                mean = histogram.getMean();
+                p50 = histogram.getValueAtPercentile(50);
+                p90 = histogram.getValueAtPercentile(90);
+                p99 = histogram.getValueAtPercentile(99);
+                max = histogram.getMax();
+            }
+            else
+            {
+                count = null;
+                sum = null;
+                mean = null;
+                p50 = null;
+                p90 = null;
+                p99 = null;
+                max = null;
+            }
+        }
+    }
+}
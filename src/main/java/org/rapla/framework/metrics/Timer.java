@@ -0,0 +1,29 @@
+package org.rapla.framework.metrics;
+
+/**
+ * Records durations in microseconds into a {@link Histogram}.
+ * <pre>
+ * final long start = timer.start();
+ * try { ... } finally { timer.stop(start); }
+ * </pre>
+ */
+public class Timer
+{
+    private final Histogram micros = new Histogram();
+
+    /** @return the start time that must be passed to {@link #stop(long)} */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    public void stop(long start)
+    {
+        micros.record((System.nanoTime() - start) / 1000);
+    }
+
+    public Histogram getMicros()
+    {
+        return micros;
+    }
+}
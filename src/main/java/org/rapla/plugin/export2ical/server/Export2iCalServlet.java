@@ -16,27 +16,29 @@ import org.rapla.facade.CalendarModel;
 import org.rapla.facade.CalendarNotFoundExeption;
 import org.rapla.facade.CalendarSelectionModel;
 import org.rapla.facade.RaplaFacade;
+import org.rapla.framework.RaplaBusyException;
 import org.rapla.framework.RaplaException;
 import org.rapla.framework.RaplaInitializationException;
 import org.rapla.framework.RaplaLocale;
 import org.rapla.logger.Logger;
 import org.rapla.plugin.export2ical.Export2iCalPlugin;
 import org.rapla.scheduler.Promise;
-import org.rapla.server.PromiseWait;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
-import java.io.IOException;
-import java.io.PrintWriter;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
@@ -73,8 +75,6 @@ public class Export2iCalServlet
 	RaplaLocale raplaLocale ;
 	@Inject
 	RaplaResources i18n;
-	@Inject
-	PromiseWait promiseWait;
 
 	@Inject
     public Export2iCalServlet()
@@ -118,9 +118,8 @@ public class Export2iCalServlet
 
 	@GET
 	@Produces(MediaType.TEXT_HTML)
-	public void generatePage(@Context HttpServletRequest request, @Context HttpServletResponse response, @QueryParam("file") final String filename, @QueryParam("user") final String username) throws IOException, ServletException {
+	public void generatePage(@Context HttpServletRequest request, @QueryParam("file") final String filename, @QueryParam("user") final String username, @Suspended final AsyncResponse asyncResponse) {
 
-		//this.response = response;
         getLogger().debug("File: "+filename);
         getLogger().debug("User: "+username);
 
@@ -136,10 +135,8 @@ public class Export2iCalServlet
             }
             catch (EntityNotFoundException ex)
             {
-            	response.getWriter().println(message);
-				response.getWriter().close();
     			getLogger().getChildLogger("404").warn(message);
-                response.setStatus( 404);
+                asyncResponse.resume(notFound(message));
                 return;
             }
             final Preferences preferences = facade.getPreferences(user);
@@ -147,40 +144,79 @@ public class Export2iCalServlet
 			final CalendarModel calModel = getCalendarModel(preferences, user, filename);
 
             if (calModel == null) {
-                response.getWriter().println(message);
-				response.getWriter().close();
-    		    response.setStatus( 404);
     			getLogger().getChildLogger("404").warn(message);
+                asyncResponse.resume(notFound(message));
                 return;
             }
 
-			response.setHeader("Last-Modified", rfc1123DateFormat.format(getLastModified(calModel)));
 			final Object isSet = calModel.getOption(Export2iCalPlugin.ICAL_EXPORT);
-            
 			if((isSet == null || isSet.equals("false")))
 			{
-				response.getWriter().println(message);
-				response.getWriter().close();
     			getLogger().getChildLogger("404").warn(message);
-                response.setStatus( 404);
+                asyncResponse.resume(notFound(message));
 				return;
 			}
-			
+
+			// the servlet thread is released here, the response is written when the queries are finished
+			final Promise<Date> lastModifiedPromise = getLastModified(calModel);
+			final Promise<Response> responsePromise;
 			if (request.getMethod().equals("HEAD")) {
-				return;
+				responsePromise = lastModifiedPromise.thenApply((lastModified) -> Response.ok().header("Last-Modified", formatRfc1123(lastModified)).build());
 			}
-
-			Promise<Collection<Appointment>> appointments = calModel.queryAppointments(new TimeInterval(null, null));
-			write(response, promiseWait.waitForWithRaplaException(appointments, 10000), filename,user, null);
+			else
+			{
+				Promise<Collection<Appointment>> appointments = calModel.queryAppointments(new TimeInterval(null, null));
+				responsePromise = lastModifiedPromise.thenCombine(appointments, (lastModified, appointmentList) -> write(appointmentList, filename, user, null, lastModified));
+			}
+			responsePromise.thenAccept((response) -> asyncResponse.resume(response)).exceptionally((ex) -> asyncResponse.resume(error(username, filename, ex)));
 		} catch (Exception e) {
-			response.getWriter().println(("An error occured giving you the Calendarview for user " + username + " named " + filename));
-			response.getWriter().println();
-			e.printStackTrace(response.getWriter());
-			response.getWriter().close();
-			getLogger().error( e.getMessage(), e);
+			asyncResponse.resume(error(username, filename, e));
+		}
+	}
+
+	private Response notFound(String message)
+	{
+		return Response.status(Response.Status.NOT_FOUND).entity(message).type(MediaType.TEXT_PLAIN).build();
+	}
+
+	private Response error(String username, String filename, Throwable e)
+	{
+		final String message = "An error occured giving you the Calendarview for user " + username + " named " + filename;
+		// the details are only logged, calendar clients show the body to the user
+		if (isBusy(e))
+		{
+			getLogger().warn(message + ": " + e.getMessage());
+			return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(message + ". The server is busy, please try again later.")
+					.type(MediaType.TEXT_PLAIN).header("Retry-After", "60").build();
+		}
+		getLogger().error( message + ": " + e.getMessage(), e);
+		return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(message).type(MediaType.TEXT_PLAIN).build();
+	}
+
+	private boolean isBusy(Throwable e)
+	{
+		for (Throwable cause = e; cause != null; cause = cause.getCause())
+		{
+			if (cause instanceof RaplaBusyException)
+			{
+				return true;
+			}
+			if (cause.getCause() == cause)
+			{
+				break;
+			}
 		}
+		return false;
 	}
 
+	private String formatRfc1123(Date date)
+	{
+		// SimpleDateFormat is not thread safe and responses are now created in the scheduler threads
+		synchronized (rfc1123DateFormat)
+		{
+			return rfc1123DateFormat.format(date);
+		}
+	}
 
 	/**
 	 * Retrieves CalendarModel by username && filename, sets appropriate before
@@ -231,31 +267,33 @@ public class Export2iCalServlet
 		}
 	}
 
-	private void write(final HttpServletResponse response, final Collection<Appointment> appointments, String filename, User user,final Preferences preferences) throws RaplaException, IOException {
+	private Response write(final Collection<Appointment> appointments, String filename, User user,final Preferences preferences, Date lastModified) throws RaplaException {
 
 	    if (filename == null )
 	    {
 	        filename = i18n.getString("default");
 	    }
-		response.setContentType("text/calendar; charset=" + raplaLocale.getCharsetNonUtf());
-		response.setHeader("Content-Disposition", "attachment; filename=" + filename + ".ics");
-
 		if (appointments == null) {
 			throw new RaplaException("Error with returning '" + filename);
 		}
 		final Calendar iCal = converter.createiCalender(appointments,preferences, user);
-		final CalendarOutputter calOutputter = new CalendarOutputter();
-		final PrintWriter responseWriter = response.getWriter();
-		try {
-			calOutputter.output(iCal, responseWriter);
-		} catch (ValidationException e) {
-			getLogger().error("The calendar file is invalid!\n" + e);
-		} finally
-		{
-		    responseWriter.close();
-		}
+		final String charset = raplaLocale.getCharsetNonUtf();
+		final StreamingOutput output = (outputStream) -> {
+			final Writer responseWriter = new OutputStreamWriter(outputStream, charset);
+			final CalendarOutputter calOutputter = new CalendarOutputter();
+			try {
+				calOutputter.output(iCal, responseWriter);
+			} catch (ValidationException e) {
+				getLogger().error("The calendar file is invalid!\n" + e);
+			} finally
+			{
+			    responseWriter.flush();
+			}
+		};
+		return Response.ok(output).type("text/calendar; charset=" + charset).header("Content-Disposition", "attachment; filename=" + filename + ".ics")
+				.header("Last-Modified", formatRfc1123(lastModified)).build();
 	}
-	
+
 	/**
 	 * Calculates Global-Lastmod By modulo operations, this returns a fresh
 	 * last-mod every n days n can be set for all users in the last-modified
@@ -278,12 +316,16 @@ public class Export2iCalServlet
 	 * Get last modified if a list of allocatables
 	 * 
 	 */
-	private Date getLastModified(CalendarModel calModel) throws RaplaException {
+	private Promise<Date> getLastModified(CalendarModel calModel) throws RaplaException {
 
 		Date endDate = null;
         Date startDate = facade.today();
         final Promise<Collection<Reservation>> reservationsPromise = calModel.queryReservations(new TimeInterval(startDate, endDate));
-		final Collection<Reservation> reservations = promiseWait.waitForWithRaplaException(reservationsPromise, 10000);
+		return reservationsPromise.thenApply((reservations) -> getLastModified(reservations));
+	}
+
+	private Date getLastModified(Collection<Reservation> reservations)
+	{
 		// set to minvalue
 		Date maxDate = new Date();
 		maxDate.setTime(0);
@@ -15,7 +15,6 @@ import org.rapla.facade.internal.CalendarModelImpl;
 import org.rapla.framework.RaplaException;
 import org.rapla.rest.PATCH;
 import org.rapla.scheduler.Promise;
-import org.rapla.server.PromiseWait;
 import org.rapla.server.RemoteSession;
 import org.rapla.server.internal.SecurityManager;
 import org.rapla.storage.CachableStorageOperator;
@@ -33,7 +32,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,6 +43,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Path("events") public class RaplaEventsRestPage
 {
@@ -49,18 +52,19 @@ import java.util.Map;
     @Inject SecurityManager securityManager;
     private final HttpServletRequest request;
     @Inject CachableStorageOperator operator;
-    @Inject PromiseWait promiseWait;
 
     @Inject public RaplaEventsRestPage(@Context HttpServletRequest request)
     {
         this.request = request;
     }
 
+    private static final long QUERY_TIMEOUT_MILLIS = 20000;
+
     private Collection<String> CLASSIFICATION_TYPES = Arrays.asList(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESERVATION);
 
-    @GET @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML }) public List<ReservationImpl> list(@QueryParam("start") Date start,
+    @GET @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML }) public void list(@QueryParam("start") Date start,
             @QueryParam("end") Date end, @QueryParam("resources") List<String> resources, @QueryParam("eventTypes") Collection<String> eventTypes,
-            @QueryParam("attributeFilter") Map<String, String> simpleFilter) throws Exception
+            @QueryParam("attributeFilter") Map<String, String> simpleFilter, @Suspended AsyncResponse asyncResponse) throws Exception
     {
         final User user = session.checkAndGetUser(request);
         Collection<Allocatable> allocatables = new ArrayList<>();
@@ -75,18 +79,24 @@ import java.util.Map;
         final User owner = null;
         final Promise<Map<Allocatable, Collection<Appointment>>> promise = operator
                 .queryAppointments(owner, allocatables, start, end, filters, annotationQuery);
-        final Map<Allocatable, Collection<Appointment>> appMap = promiseWait.waitForWithRaplaException(promise, 20000);
-        final List<ReservationImpl> result = new ArrayList<>();
-        final Collection<Reservation> reservations = CalendarModelImpl.getAllReservations(appMap);
-        PermissionController permissionController = facade.getPermissionController();
-        for (Reservation r : reservations)
+        asyncResponse.setTimeout(QUERY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        // the servlet thread is released here and the response is resumed when the query has finished
+        promise.thenApply((appMap) ->
         {
-            if (permissionController.canRead(r, user))
+            final List<ReservationImpl> result = new ArrayList<>();
+            final Collection<Reservation> reservations = CalendarModelImpl.getAllReservations(appMap);
+            PermissionController permissionController = facade.getPermissionController();
+            for (Reservation r : reservations)
             {
-                result.add((ReservationImpl) r);
+                if (permissionController.canRead(r, user))
+                {
+                    result.add((ReservationImpl) r);
+                }
             }
-        }
-        return result;
+            return result;
+        }).thenAccept((result) -> asyncResponse.resume(new GenericEntity<List<ReservationImpl>>(result)
+        {
+        })).exceptionally((ex) -> asyncResponse.resume(ex));
     }
 
     @GET @Path("{id}") @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML }) public ReservationImpl get(@PathParam("id") String id)
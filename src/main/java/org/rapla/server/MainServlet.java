@@ -15,6 +15,8 @@ package org.rapla.server;
 import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
 import org.rapla.components.util.IOUtil;
 import org.rapla.framework.RaplaException;
+import org.rapla.framework.internal.DefaultScheduler;
+import org.rapla.framework.metrics.MetricsRegistry;
 import org.rapla.inject.Injector;
 import org.rapla.logger.Logger;
 import org.rapla.logger.RaplaBootstrapLogger;
@@ -29,6 +31,8 @@ import org.rapla.storage.impl.RaplaLock;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -141,6 +145,28 @@ public class MainServlet extends HttpServlet
                 backendContext.setPatchScript( patchScript );
             }
         }
+        {
+            Object poolSize = jndi.lookupEnvVariable("rapla_scheduler_poolsize", false);
+            if (poolSize != null && !poolSize.toString().trim().isEmpty())
+            {
+                backendContext.setSchedulerPoolSize(Integer.parseInt(poolSize.toString().trim()));
+            }
+            Object maxQueued = jndi.lookupEnvVariable("rapla_scheduler_maxqueued", false);
+            if (maxQueued != null && !maxQueued.toString().trim().isEmpty())
+            {
+                backendContext.setSchedulerMaxQueuedTasks(Integer.parseInt(maxQueued.toString().trim()));
+            }
+            Object groupCommit = jndi.lookupEnvVariable("rapla_group_commit_millis", false);
+            if (groupCommit != null && !groupCommit.toString().trim().isEmpty())
+            {
+                backendContext.setGroupCommitMillis(Integer.parseInt(groupCommit.toString().trim()));
+            }
+            Object occurrenceCache = jndi.lookupEnvVariable("rapla_occurrence_cache_mb", false);
+            if (occurrenceCache != null && !occurrenceCache.toString().trim().isEmpty())
+            {
+                backendContext.setOccurrenceCacheBytes(Long.parseLong(occurrenceCache.toString().trim()) * 1024 * 1024);
+            }
+        }
         env_raplamail = jndi.lookupResource("mail/Session", false);
         if (env_raplamail != null)
         {
@@ -344,6 +370,7 @@ public class MainServlet extends HttpServlet
     public void service(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
     {
         RaplaLock.ReadLock restartLock = null;
+        boolean async = false;
         try
         {
             try
@@ -435,10 +462,59 @@ public class MainServlet extends HttpServlet
                     throw  ex;
                 }
             });
-            dispatcher.service(request, response);
+            final HttpServletRequest dispatchedRequest = request;
+            final long dispatchStart = System.nanoTime();
+            // only the work of requests is rejected when the scheduler is busy
+            DefaultScheduler.beginRequest();
+            try
+            {
+                dispatcher.service(request, response);
+            }
+            finally
+            {
+                DefaultScheduler.endRequest();
+            }
+            async = request.isAsyncStarted();
+            if (!async)
+            {
+                recordRequest(dispatchedRequest, response, dispatchStart);
+            }
+            else
+            {
+                // the response is completed later from a scheduler thread, so we must not close the stream here
+                request.getAsyncContext().addListener(new AsyncListener()
+                {
+                    @Override
+                    public void onComplete(AsyncEvent event)
+                    {
+                        recordRequest(dispatchedRequest, response, dispatchStart);
+                        requestFinished();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event)
+                    {
+                        recordRequest(dispatchedRequest, response, dispatchStart);
+                        requestFinished();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event)
+                    {
+                        recordRequest(dispatchedRequest, response, dispatchStart);
+                        requestFinished();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event)
+                    {
+                    }
+                });
+            }
         }
         finally
         {
+            // the restart lock is bound to the servlet thread, so it is released after dispatching even for async requests
             try
             {
                 if ( restartLock != null)
@@ -450,28 +526,68 @@ public class MainServlet extends HttpServlet
             {
                 // Released by the restarter
             }
-            try
-            {
-                ServletOutputStream outputStream = response.getOutputStream();
-                outputStream.close();
-            }
-            catch (Exception ex)
+            if (!async)
             {
-
-            }
-            try
-            {
-                if (standaloneStarter != null)
+                try
                 {
-                    standaloneStarter.requestFinished();
+                    ServletOutputStream outputStream = response.getOutputStream();
+                    outputStream.close();
+                }
+                catch (Exception ex)
+                {
+
                 }
+                requestFinished();
             }
-            catch (Exception ex)
-            {
+        }
+
+    }
+
+    private void recordRequest(HttpServletRequest request, HttpServletResponse response, long start)
+    {
+        final ServerServiceContainer server = serverStarter.getServer();
+        if (server == null)
+        {
+            return;
+        }
+        final MetricsRegistry metrics = server.getMetrics();
+        final String page = getPageName(request.getPathInfo());
+        metrics.timer("rapla_http_request_seconds", "page", page).stop(start);
+        if (response.getStatus() >= 500)
+        {
+            metrics.counter("rapla_http_server_errors_total", "page", page).increment();
+        }
+    }
 
+    /** returns the first path segment after the rest prefix, e.g. storage for /rapla/storage/refresh */
+    static String getPageName(String pathInfo)
+    {
+        if (pathInfo == null)
+        {
+            return "";
+        }
+        String path = pathInfo.startsWith("/") ? pathInfo.substring(1) : pathInfo;
+        if (path.startsWith("rapla/"))
+        {
+            path = path.substring("rapla/".length());
+        }
+        final int end = path.indexOf('/');
+        return end >= 0 ? path.substring(0, end) : path;
+    }
+
+    private void requestFinished()
+    {
+        try
+        {
+            if (standaloneStarter != null)
+            {
+                standaloneStarter.requestFinished();
             }
         }
+        catch (Exception ex)
+        {
 
+        }
     }
 
     /**
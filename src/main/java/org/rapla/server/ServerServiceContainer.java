@@ -3,6 +3,7 @@ package org.rapla.server;
 import org.rapla.facade.RaplaFacade;
 import org.rapla.framework.Disposable;
 import org.rapla.framework.RaplaException;
+import org.rapla.framework.metrics.MetricsRegistry;
 import org.rapla.server.extensionpoints.ServletRequestPreprocessor;
 import org.rapla.storage.StorageOperator;
 
@@ -16,6 +17,8 @@ public interface ServerServiceContainer extends Disposable
 
     RaplaFacade getFacade();
 
+    MetricsRegistry getMetrics();
+
     String getFirstAdmin() throws RaplaException;
 
 }
@@ -25,11 +25,14 @@ import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.facade.internal.ConflictImpl;
 import org.rapla.framework.RaplaException;
 import org.rapla.framework.internal.AbstractRaplaLocale;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.framework.metrics.Timer;
 import org.rapla.inject.DefaultImplementation;
 import org.rapla.inject.InjectionContext;
 import org.rapla.logger.Logger;
 import org.rapla.plugin.mail.MailPlugin;
 import org.rapla.plugin.mail.server.MailInterface;
+import org.rapla.scheduler.CommandScheduler;
 import org.rapla.scheduler.Promise;
 import org.rapla.scheduler.ResolvedPromise;
 import org.rapla.server.AuthenticationStore;
@@ -54,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -75,6 +79,8 @@ import java.util.stream.Collectors;
     @Inject RaplaResources i18n;
     @Inject Provider<MailInterface> mailInterface;
     @Inject UpdateDataManager updateDataManager;
+    @Inject CommandScheduler scheduler;
+    @Inject MetricsRegistry metrics;
     private final HttpServletRequest request;
 
     @Inject public RemoteStorageImpl(@Context HttpServletRequest request)
@@ -114,6 +120,8 @@ import java.util.stream.Collectors;
     @Override
     public Promise<UpdateEvent> getResources()
     {
+        final Timer timer = timer("getResources");
+        final long start = timer.start();
         try
         {
             final UpdateEvent resources = getResourcesSync();
@@ -123,6 +131,10 @@ import java.util.stream.Collectors;
         {
             return new ResolvedPromise<>(ex);
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     @Override
@@ -189,6 +201,8 @@ import java.util.stream.Collectors;
     @Override
     public Promise<UpdateEvent> getEntityDependencies(Boolean errorIfNotFound,UpdateEvent.SerializableReferenceInfo... ids)  {
 
+        final Timer timer = timer("getEntityDependencies");
+        final long start = timer.start();
         try {
             return new ResolvedPromise<>(getEntityRecursive( errorIfNotFound,ids));
         }
@@ -196,10 +210,16 @@ import java.util.stream.Collectors;
         {
             return new ResolvedPromise<>(ex);
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     @Override public Promise<AppointmentMap> queryAppointments(QueryAppointments job) throws RaplaException
     {
+        final Timer timer = timer("queryAppointments");
+        final long timerStart = timer.start();
         User sessionUser = checkSessionUser();
         String[] allocatableIds = job.getResources();
         Date start = job.getStart();
@@ -221,10 +241,13 @@ import java.util.stream.Collectors;
         ClassificationFilter[] classificationFilters = null;
         final Promise<Map<Allocatable, Collection<Appointment>>> mapFutureResult = operator
                 .queryAppointments(user, allocatables, start, end, classificationFilters, annotationQuery);
-        Map<Allocatable, Collection<Appointment>> reservations = operator.waitForWithRaplaException(mapFutureResult, 50000);
-        AppointmentMap list = new AppointmentMap(reservations);
-        getLogger().debug("Get reservations " + start + " " + end + ": " + reservations.size() + "," + list.toString());
-        return new ResolvedPromise<>(list);
+        // we don't wait for the result here, so the servlet thread is released until the scheduler has finished the query
+        return timed(timer, timerStart, mapFutureResult.thenApply((reservations) ->
+        {
+            AppointmentMap list = new AppointmentMap(reservations);
+            getLogger().debug("Get reservations " + start + " " + end + ": " + reservations.size() + "," + list.toString());
+            return list;
+        }));
     }
 
     private ReservationImpl checkAndMakeReservationsAnonymous(User sessionUser, Entity entity)
@@ -298,12 +321,18 @@ import java.util.stream.Collectors;
 
     public Promise<UpdateEvent> dispatch(UpdateEvent event)
     {
+        final Timer timer = timer("dispatch");
+        final long start = timer.start();
         try {
             final UpdateEvent result = store(event);
             return new ResolvedPromise<>(result);
         } catch (RaplaException ex) {
             return new ResolvedPromise<>(ex);
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     public boolean canChangePassword() throws RaplaException
@@ -412,6 +441,8 @@ import java.util.stream.Collectors;
 
     public Promise<List<String>> createIdentifier(String type, int count)
     {
+        final Timer timer = timer("createIdentifier");
+        final long start = timer.start();
         try
         {
             return new ResolvedPromise<>(createIdentifierSync(type, count));
@@ -420,6 +451,10 @@ import java.util.stream.Collectors;
         {
             return new ResolvedPromise<>(e);
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     public UpdateEvent refreshSync(String lastSyncedTime) throws RaplaException
@@ -439,6 +474,8 @@ import java.util.stream.Collectors;
 
     public Promise<UpdateEvent> refresh(String lastSyncedTime)
     {
+        final Timer timer = timer("refresh");
+        final long start = timer.start();
         try
         {
             return new ResolvedPromise<>(refreshSync(lastSyncedTime));
@@ -447,6 +484,23 @@ import java.util.stream.Collectors;
         {
             return new ResolvedPromise<>(e);
         }
+        finally
+        {
+            timer.stop(start);
+        }
+    }
+
+    private Timer timer(String method)
+    {
+        return metrics.timer("rapla_remote_storage_seconds", "method", method);
+    }
+
+    /** records the time until the promise is resolved or rejected */
+    private <T> Promise<T> timed(Timer timer, long start, Promise<T> promise)
+    {
+        promise.thenAccept((result) -> timer.stop(start));
+        promise.exceptionally((ex) -> timer.stop(start));
+        return promise;
     }
 
     public Logger getLogger()
@@ -544,17 +598,21 @@ import java.util.stream.Collectors;
 
     public Promise<List<ConflictImpl>> getConflicts()
     {
+        final Timer timer = timer("getConflicts");
+        final long start = timer.start();
         User sessionUser;
         try {
             sessionUser = checkSessionUser();
         } catch (RaplaException e) {
             return new ResolvedPromise<>(e);
         }
-        return operator.getConflicts(sessionUser).thenApply((conflicts) -> conflicts.stream().map(conflict -> (ConflictImpl) conflict).collect(Collectors.toList()));
+        return timed(timer, start, operator.getConflicts(sessionUser).thenApply((conflicts) -> conflicts.stream().map(conflict -> (ConflictImpl) conflict).collect(Collectors.toList())));
     }
 
     @Override public Promise<Date> getNextAllocatableDate(NextAllocatableDateRequest job)
     {
+        final Timer timer = timer("getNextAllocatableDate");
+        final long start = timer.start();
         String[] allocatableIds = job.getAllocatableIds();
         AppointmentImpl appointment = job.getAppointment();
         String[] reservationIds = job.getReservationIds();
@@ -575,12 +633,14 @@ import java.util.stream.Collectors;
         Collection<Reservation> ignoreList = resolveReservations(reservationIds);
         final Promise<Date> nextAllocatableDate = operator
                 .getNextAllocatableDate(allocatables, appointment, ignoreList, worktimestartMinutes, worktimeendMinutes, excludedDays, rowsPerHour);
-        return nextAllocatableDate;
+        return timed(timer, start, nextAllocatableDate);
 
     }
 
     @Override public Promise<BindingMap> getFirstAllocatableBindings(AllocatableBindingsRequest job)
     {
+        final Timer timer = timer("getFirstAllocatableBindings");
+        final long start = timer.start();
         String[] allocatableIds = job.getAllocatableIds();
         List<AppointmentImpl> appointments = job.getAppointments();
         String[] reservationIds = job.getReservationIds();
@@ -596,32 +656,34 @@ import java.util.stream.Collectors;
         }
         Collection<Reservation> ignoreList = resolveReservations(reservationIds);
         List<Appointment> asList = cast(appointments);
-        Promise<BindingMap> promise = operator.getFirstAllocatableBindings(allocatables, asList, ignoreList).thenApply((bindings) ->
+        Promise<BindingMap> promise = operator.getFirstAllocatableBindings(allocatables, asList, ignoreList).thenApply((bindings) -> toBindingMap(bindings, appointments));
+        return timed(timer, start, promise);
+    }
+
+    private BindingMap toBindingMap(Map<Allocatable, Collection<Appointment>> bindings, List<AppointmentImpl> appointments)
+    {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Allocatable alloc : bindings.keySet())
         {
-            Map<String, List<String>> result = new LinkedHashMap<>();
-            for (Allocatable alloc : bindings.keySet())
+            Collection<Appointment> apps = bindings.get(alloc);
+            if (apps == null)
             {
-                Collection<Appointment> apps = bindings.get(alloc);
-                if (apps == null)
-                {
-                    apps = Collections.emptyList();
-                }
-                ArrayList<String> indexArray = new ArrayList<>(apps.size());
-                for (Appointment app : apps)
+                apps = Collections.emptyList();
+            }
+            ArrayList<String> indexArray = new ArrayList<>(apps.size());
+            for (Appointment app : apps)
+            {
+                for (Appointment app2 : appointments)
                 {
-                    for (Appointment app2 : appointments)
+                    if (app2.equals(app))
                     {
-                        if (app2.equals(app))
-                        {
-                            indexArray.add(app.getId());
-                        }
+                        indexArray.add(app.getId());
                     }
                 }
-                result.put(alloc.getId(), indexArray);
             }
-            return new BindingMap(result);
-        });
-        return promise;
+            result.put(alloc.getId(), indexArray);
+        }
+        return new BindingMap(result);
     }
 
     private List<Appointment> cast(List<AppointmentImpl> appointments)
@@ -637,6 +699,8 @@ import java.util.stream.Collectors;
     @Override
     public Promise<List<ReservationImpl>> getAllAllocatableBindings(AllocatableBindingsRequest job)
     {
+        final Timer timer = timer("getAllAllocatableBindings");
+        final long start = timer.start();
         String[] allocatableIds = job.getAllocatableIds();
         List<AppointmentImpl> appointments = job.getAppointments();
         String[] reservationIds = job.getReservationIds();
@@ -653,42 +717,260 @@ import java.util.stream.Collectors;
         Collection<Reservation> ignoreList = resolveReservations(reservationIds);
         List<Appointment> asList = cast(appointments);
 
-        Promise<List<ReservationImpl>> promise = operator.getAllAllocatableBindings(allocatables, asList, ignoreList).thenApply((bindings) ->
+        Promise<List<ReservationImpl>> promise = operator.getAllAllocatableBindings(allocatables, asList, ignoreList).thenApply(this::toReservationList);
+        return timed(timer, start, promise);
+    }
+
+    private List<ReservationImpl> toReservationList(Map<Allocatable, Map<Appointment, Collection<Appointment>>> bindings)
+    {
+        Set<ReservationImpl> result = new HashSet<>();
+        for (Allocatable alloc : bindings.keySet())
         {
-            Set<ReservationImpl> result = new HashSet<>();
-            for (Allocatable alloc : bindings.keySet())
+            Map<Appointment, Collection<Appointment>> appointmentBindings = bindings.get(alloc);
+            for (Appointment app : appointmentBindings.keySet())
             {
-                Map<Appointment, Collection<Appointment>> appointmentBindings = bindings.get(alloc);
-                for (Appointment app : appointmentBindings.keySet())
+                Collection<Appointment> bound = appointmentBindings.get(app);
+                if (bound != null)
                 {
-                    Collection<Appointment> bound = appointmentBindings.get(app);
-                    if (bound != null)
+                    for (Appointment appointment : bound)
                     {
-                        for (Appointment appointment : bound)
+                        ReservationImpl reservation = (ReservationImpl) appointment.getReservation();
+                        if (reservation != null)
                         {
-                            ReservationImpl reservation = (ReservationImpl) appointment.getReservation();
-                            if (reservation != null)
-                            {
-                                result.add(reservation);
-                            }
+                            result.add(reservation);
                         }
                     }
                 }
             }
-            return new ArrayList<>(result);
-        });
-        return promise;
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public Promise<BindingBatchResult> getBindingsBatch(BindingBatchRequest job)
+    {
+        final Timer timer = timer("getBindingsBatch");
+        final long start = timer.start();
+        final User sessionUser;
+        try
+        {
+            sessionUser = checkSessionUser();
+        }
+        catch (RaplaException ex)
+        {
+            return new ResolvedPromise<>(ex);
+        }
+        final BindingBatchResult result = new BindingBatchResult();
+        // allocatables that occur in more than one query are resolved and checked only once
+        final Map<String, Allocatable> resolved = new HashMap<>();
+        final List<List<Allocatable>> firstAllocatables = new ArrayList<>();
+        for (AllocatableBindingsRequest request : job.getFirstBindings())
+        {
+            firstAllocatables.add(tryResolveAllocatables(sessionUser, request.getAllocatableIds(), resolved, result.getFirstBindingErrors()));
+        }
+        final List<List<Allocatable>> allAllocatables = new ArrayList<>();
+        for (AllocatableBindingsRequest request : job.getAllBindings())
+        {
+            allAllocatables.add(tryResolveAllocatables(sessionUser, request.getAllocatableIds(), resolved, result.getAllBindingErrors()));
+        }
+        final List<List<Allocatable>> nextDateAllocatables = new ArrayList<>();
+        for (NextAllocatableDateRequest request : job.getNextDates())
+        {
+            nextDateAllocatables.add(tryResolveAllocatables(sessionUser, request.getAllocatableIds(), resolved, result.getNextDateErrors()));
+        }
+        return timed(timer, start, scheduler.supply(() ->
+        {
+            // all queries see the same state of the cache
+            operator.runWithReadLock((cache) ->
+            {
+                int i = 0;
+                for (AllocatableBindingsRequest request : job.getFirstBindings())
+                {
+                    final List<Allocatable> allocatables = firstAllocatables.get(i);
+                    BindingMap bindingMap = null;
+                    if (allocatables != null)
+                    {
+                        try
+                        {
+                            final List<AppointmentImpl> appointments = request.getAppointments();
+                            final Collection<Reservation> ignoreList = resolveReservations(request.getReservationIds());
+                            final Map<Allocatable, Collection<Appointment>> bindings = operator
+                                    .getFirstAllocatableBindingsSync(allocatables, cast(appointments), ignoreList);
+                            bindingMap = toBindingMap(bindings, appointments);
+                        }
+                        catch (RaplaException ex)
+                        {
+                            setError(result.getFirstBindingErrors(), i, ex);
+                        }
+                    }
+                    result.getFirstBindings().add(bindingMap);
+                    i++;
+                }
+                i = 0;
+                for (AllocatableBindingsRequest request : job.getAllBindings())
+                {
+                    final List<Allocatable> allocatables = allAllocatables.get(i);
+                    List<ReservationImpl> reservations = null;
+                    if (allocatables != null)
+                    {
+                        try
+                        {
+                            final Collection<Reservation> ignoreList = resolveReservations(request.getReservationIds());
+                            final Map<Allocatable, Map<Appointment, Collection<Appointment>>> bindings = operator
+                                    .getAllAllocatableBindingsSync(allocatables, cast(request.getAppointments()), ignoreList);
+                            reservations = toReservationList(bindings);
+                        }
+                        catch (RaplaException ex)
+                        {
+                            setError(result.getAllBindingErrors(), i, ex);
+                        }
+                    }
+                    result.getAllBindings().add(reservations);
+                    i++;
+                }
+                i = 0;
+                for (NextAllocatableDateRequest request : job.getNextDates())
+                {
+                    final List<Allocatable> allocatables = nextDateAllocatables.get(i);
+                    Date nextDate = null;
+                    if (allocatables != null)
+                    {
+                        try
+                        {
+                            final Collection<Reservation> ignoreList = resolveReservations(request.getReservationIds());
+                            nextDate = operator.getNextAllocatableDateSync(allocatables, request.getAppointment(), ignoreList,
+                                    request.getWorktimeStartMinutes(), request.getWorktimeEndMinutes(), request.getExcludedDays(), request.getRowsPerHour());
+                        }
+                        catch (RaplaException ex)
+                        {
+                            setError(result.getNextDateErrors(), i, ex);
+                        }
+                    }
+                    result.getNextDates().add(nextDate);
+                    i++;
+                }
+            });
+            return result;
+        }));
+    }
+
+    /** returns null and adds the error message if one of the allocatables can't be resolved or read, otherwise adds a null error */
+    private List<Allocatable> tryResolveAllocatables(User sessionUser, String[] allocatableIds, Map<String, Allocatable> resolved, List<String> errors)
+    {
+        try
+        {
+            final List<Allocatable> allocatables = resolveAllocatables(sessionUser, allocatableIds, resolved);
+            errors.add(null);
+            return allocatables;
+        }
+        catch (RaplaException ex)
+        {
+            getLogger().warn("Binding request skipped: " + ex.getMessage());
+            errors.add(getErrorMessage(ex));
+            return null;
+        }
+    }
+
+    private void setError(List<String> errors, int index, RaplaException ex)
+    {
+        getLogger().error("Binding request failed: " + ex.getMessage(), ex);
+        errors.set(index, getErrorMessage(ex));
+    }
+
+    private String getErrorMessage(RaplaException ex)
+    {
+        return ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+    }
+
+    @Override
+    public Promise<SearchResult> search(SearchRequest job)
+    {
+        final Timer timer = timer("search");
+        final long start = timer.start();
+        final User sessionUser;
+        final Collection<Class<? extends Entity>> types;
+        try
+        {
+            sessionUser = checkSessionUser();
+            types = resolveTypes(job.getTypes());
+        }
+        catch (RaplaException ex)
+        {
+            return new ResolvedPromise<>(ex);
+        }
+        return timed(timer, start, scheduler.supply(() ->
+        {
+            final List<String> ids = operator.searchFullText(job.getQuery(), types);
+            final PermissionController permissionController = operator.getPermissionController();
+            final int offset = Math.max(0, job.getOffset());
+            final int limit = job.getLimit() > 0 ? job.getLimit() : Integer.MAX_VALUE;
+            final List<String> page = new ArrayList<>();
+            // the matches that the user can't read are not counted, so the pages don't depend on hidden entities
+            int total = 0;
+            for (String id : ids)
+            {
+                final Entity entity = operator.tryResolve(id);
+                if (!canRead(permissionController, entity, sessionUser))
+                {
+                    continue;
+                }
+                if (total >= offset && page.size() < limit)
+                {
+                    page.add(id);
+                }
+                total++;
+            }
+            return new SearchResult(page, total);
+        }));
+    }
+
+    private Collection<Class<? extends Entity>> resolveTypes(String[] typeNames) throws RaplaException
+    {
+        if (typeNames == null || typeNames.length == 0)
+        {
+            return null;
+        }
+        final Collection<Class<? extends Entity>> types = new HashSet<>();
+        for (String typeName : typeNames)
+        {
+            types.add(RaplaType.find(typeName));
+        }
+        return types;
+    }
+
+    private boolean canRead(PermissionController permissionController, Entity entity, User sessionUser)
+    {
+        if (entity instanceof Allocatable)
+        {
+            return permissionController.canRead((Allocatable) entity, sessionUser);
+        }
+        else if (entity instanceof Reservation)
+        {
+            return permissionController.canRead((Reservation) entity, sessionUser);
+        }
+        return false;
     }
 
     private List<Allocatable> resolveAllocatables(String[] allocatableIds) throws RaplaException, RaplaSecurityException
     {
-        List<Allocatable> allocatables = new ArrayList<>();
         User sessionUser = checkSessionUser();
+        return resolveAllocatables(sessionUser, allocatableIds, new HashMap<>());
+    }
+
+    private List<Allocatable> resolveAllocatables(User sessionUser, String[] allocatableIds, Map<String, Allocatable> resolved)
+            throws RaplaException, RaplaSecurityException
+    {
+        List<Allocatable> allocatables = new ArrayList<>();
         for (String id : allocatableIds)
         {
-            Allocatable entity = operator.resolve(id, Allocatable.class);
+            Allocatable entity = resolved.get(id);
+            if (entity == null)
+            {
+                entity = operator.resolve(id, Allocatable.class);
+                security.checkRead(sessionUser, entity);
+                resolved.put(id, entity);
+            }
             allocatables.add(entity);
-            security.checkRead(sessionUser, entity);
         }
         return allocatables;
     }
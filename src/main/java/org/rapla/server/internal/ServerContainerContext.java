@@ -1,5 +1,8 @@
 package org.rapla.server.internal;
 
+import org.rapla.framework.internal.DefaultScheduler;
+import org.rapla.storage.impl.server.BoundedOccurrenceCache;
+
 import javax.sql.DataSource;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -12,6 +15,10 @@ public class ServerContainerContext
     private Object mailSession;
     Runnable shutdownCommand;
     String patchScript;
+    int schedulerPoolSize = DefaultScheduler.DEFAULT_POOL_SIZE;
+    int schedulerMaxQueuedTasks = -1;
+    int groupCommitMillis = 0;
+    long occurrenceCacheBytes = BoundedOccurrenceCache.DEFAULT_MAX_BYTES;
 
     private ShutdownService shutdownService = new ShutdownService()
     {
@@ -114,5 +121,47 @@ public class ServerContainerContext
         this.patchScript = patchScript;
     }
 
+    public int getSchedulerPoolSize()
+    {
+        return schedulerPoolSize;
+    }
+
+    public void setSchedulerPoolSize(int schedulerPoolSize)
+    {
+        this.schedulerPoolSize = schedulerPoolSize;
+    }
+
+    /** @return maximum number of tasks waiting for a scheduler thread, negative values mean unbounded */
+    public int getSchedulerMaxQueuedTasks()
+    {
+        return schedulerMaxQueuedTasks;
+    }
+
+    public void setSchedulerMaxQueuedTasks(int schedulerMaxQueuedTasks)
+    {
+        this.schedulerMaxQueuedTasks = schedulerMaxQueuedTasks;
+    }
+
+    /** @return the milliseconds the storage collects reservation changes to write them together, 0 disables the group commit */
+    public int getGroupCommitMillis()
+    {
+        return groupCommitMillis;
+    }
+
+    public void setGroupCommitMillis(int groupCommitMillis)
+    {
+        this.groupCommitMillis = groupCommitMillis;
+    }
+
+    /** @return the memory that the cached occurrences of repeating appointments may use, 0 disables the cache */
+    public long getOccurrenceCacheBytes()
+    {
+        return occurrenceCacheBytes;
+    }
+
+    public void setOccurrenceCacheBytes(long occurrenceCacheBytes)
+    {
+        this.occurrenceCacheBytes = occurrenceCacheBytes;
+    }
 
 }
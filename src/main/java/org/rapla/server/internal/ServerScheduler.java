@@ -0,0 +1,22 @@
+package org.rapla.server.internal;
+
+import org.rapla.framework.internal.DefaultScheduler;
+import org.rapla.inject.DefaultImplementation;
+import org.rapla.inject.InjectionContext;
+import org.rapla.logger.Logger;
+import org.rapla.scheduler.CommandScheduler;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/** server scheduler configured with the pool size and queue limit from the {@link ServerContainerContext}*/
+@DefaultImplementation(of=CommandScheduler.class,context = {InjectionContext.server})
+@Singleton
+public class ServerScheduler extends DefaultScheduler
+{
+    @Inject
+    public ServerScheduler(Logger logger, ServerContainerContext containerContext)
+    {
+        super(logger, containerContext.getSchedulerPoolSize(), containerContext.getSchedulerMaxQueuedTasks());
+    }
+}
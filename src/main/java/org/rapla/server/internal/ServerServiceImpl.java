@@ -30,6 +30,7 @@ import org.rapla.framework.RaplaLocale;
 import org.rapla.framework.internal.AbstractRaplaLocale;
 import org.rapla.framework.internal.DefaultScheduler;
 import org.rapla.framework.internal.RaplaLocaleImpl;
+import org.rapla.framework.metrics.MetricsRegistry;
 import org.rapla.inject.DefaultImplementation;
 import org.rapla.inject.InjectionContext;
 import org.rapla.logger.Logger;
@@ -60,6 +61,7 @@ public class ServerServiceImpl implements ServerServiceContainer
 
     private final RaplaLocale raplaLocale;
     private final CommandScheduler scheduler;
+    private final MetricsRegistry metrics;
 
     final Set<ServletRequestPreprocessor> requestPreProcessors;
     final Map<String, ServerExtension> stringServerExtensionMap;
@@ -70,8 +72,9 @@ public class ServerServiceImpl implements ServerServiceContainer
 
     @Inject public ServerServiceImpl(CachableStorageOperator operator, RaplaFacade facade, RaplaLocale raplaLocale, TimeZoneConverter importExportLocale,
             Logger logger, final Provider<Map<String, ServerExtension>> serverExtensions, final Provider<Set<ServletRequestPreprocessor>> requestPreProcessors,
-            CommandScheduler scheduler, ServerContainerContext serverContainerContext,RaplaResources i18n, RaplaSystemInfo systemInfo) throws RaplaInitializationException
+            CommandScheduler scheduler, ServerContainerContext serverContainerContext,RaplaResources i18n, RaplaSystemInfo systemInfo, MetricsRegistry metrics) throws RaplaInitializationException
     {
+        this.metrics = metrics;
         String version = systemInfo.getString("rapla.version");
         logger.info("Rapla.Version=" + version);
         version = systemInfo.getString("rapla.build");
@@ -98,6 +101,13 @@ public class ServerServiceImpl implements ServerServiceContainer
             //        }
             this.operator = operator;
             this.facade = facade;
+            if (scheduler instanceof DefaultScheduler)
+            {
+                final DefaultScheduler defaultScheduler = (DefaultScheduler) scheduler;
+                metrics.gauge("rapla_scheduler_active_tasks", defaultScheduler::getActiveTasks);
+                metrics.gauge("rapla_scheduler_submitted_tasks", defaultScheduler::getSubmittedTasks);
+                metrics.gauge("rapla_scheduler_rejected_tasks", defaultScheduler::getRejectedTasks);
+            }
             ((FacadeImpl) facade).setOperator(operator);
 
             // Start database or file connection and read data
@@ -187,6 +197,11 @@ public class ServerServiceImpl implements ServerServiceContainer
         return facade;
     }
 
+    public MetricsRegistry getMetrics()
+    {
+        return metrics;
+    }
+
     public String getFirstAdmin() throws RaplaException
     {
         User user = getFirstAdmin(operator);
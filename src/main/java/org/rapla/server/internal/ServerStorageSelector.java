@@ -5,6 +5,7 @@ import org.rapla.RaplaResources;
 import org.rapla.entities.domain.permission.PermissionExtension;
 import org.rapla.entities.extensionpoints.FunctionFactory;
 import org.rapla.framework.RaplaLocale;
+import org.rapla.framework.metrics.MetricsRegistry;
 import org.rapla.logger.Logger;
 import org.rapla.scheduler.CommandScheduler;
 import org.rapla.server.PromiseWait;
@@ -37,10 +38,12 @@ public class ServerStorageSelector implements Provider<CachableStorageOperator>
     final Set<PermissionExtension> permissionExtensions;
     ImportExportManager manager;
     final PromiseWait promiseWait;
+    final MetricsRegistry metrics;
 
     @Inject public ServerStorageSelector(ServerContainerContext containerContext, Logger logger, RaplaResources i18n, RaplaLocale raplaLocale, CommandScheduler scheduler, Map<String, FunctionFactory> functionFactoryMap,
-            Set<PermissionExtension> permissionExtensions, PromiseWait promiseWait)
+            Set<PermissionExtension> permissionExtensions, PromiseWait promiseWait, MetricsRegistry metrics)
     {
+        this.metrics = metrics;
 
         this.containerContext = containerContext;
         this.logger = logger;
@@ -56,7 +59,11 @@ public class ServerStorageSelector implements Provider<CachableStorageOperator>
     {
         final String raplafile = containerContext.getMainFilesource();
         final String fileDatasource = raplafile != null ? raplafile : "data/data.xml";
-        return new FileOperator(logger, promiseWait,i18n, raplaLocale, scheduler, functionFactoryMap, fileDatasource, permissionExtensions);
+        final FileOperator operator = new FileOperator(logger, promiseWait, i18n, raplaLocale, scheduler, functionFactoryMap, fileDatasource, permissionExtensions);
+        operator.setMetrics(metrics);
+        operator.setGroupCommitMillis(containerContext.getGroupCommitMillis());
+        operator.setOccurrenceCacheBytes(containerContext.getOccurrenceCacheBytes());
+        return operator;
     }
 
     synchronized private ImportExportManager getImportExport()
@@ -77,7 +84,11 @@ public class ServerStorageSelector implements Provider<CachableStorageOperator>
     {
         Provider<ImportExportManager> importExportMananger = getImportExportManager();
         final DataSource dbDatasource = containerContext.getMainDbDatasource();
-        return new DBOperator(logger, promiseWait,i18n, raplaLocale, scheduler, functionFactoryMap, importExportMananger, dbDatasource, permissionExtensions);
+        final DBOperator operator = new DBOperator(logger, promiseWait, i18n, raplaLocale, scheduler, functionFactoryMap, importExportMananger, dbDatasource, permissionExtensions);
+        operator.setMetrics(metrics);
+        operator.setGroupCommitMillis(containerContext.getGroupCommitMillis());
+        operator.setOccurrenceCacheBytes(containerContext.getOccurrenceCacheBytes());
+        return operator;
     }
 
 
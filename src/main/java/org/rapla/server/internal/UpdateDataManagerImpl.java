@@ -37,6 +37,8 @@ import org.rapla.entities.storage.ImportExportEntity;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.facade.Conflict;
 import org.rapla.framework.RaplaException;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.framework.metrics.Timer;
 import org.rapla.inject.DefaultImplementation;
 import org.rapla.inject.InjectionContext;
 import org.rapla.logger.Logger;
@@ -71,13 +73,20 @@ public class UpdateDataManagerImpl implements  UpdateDataManager
 
     private final PermissionController permissionController;
 
+    private final Timer updateEventTimer;
 
-    @Inject public UpdateDataManagerImpl(Logger logger, CachableStorageOperator operator, SecurityManager securityManager)
+    public UpdateDataManagerImpl(Logger logger, CachableStorageOperator operator, SecurityManager securityManager)
+    {
+        this(logger, operator, securityManager, new MetricsRegistry());
+    }
+
+    @Inject public UpdateDataManagerImpl(Logger logger, CachableStorageOperator operator, SecurityManager securityManager, MetricsRegistry metrics)
     {
         this.logger = logger;
         this.operator = operator;
         this.permissionController = operator.getPermissionController();
         this.security = securityManager;
+        this.updateEventTimer = metrics.timer("rapla_update_event_seconds");
     }
 
     protected Logger getLogger()
@@ -116,6 +125,19 @@ public class UpdateDataManagerImpl implements  UpdateDataManager
     }
 
     public UpdateEvent createUpdateEvent(User user, Date lastSynced) throws RaplaException
+    {
+        final long start = updateEventTimer.start();
+        try
+        {
+            return createUpdateEvent_(user, lastSynced);
+        }
+        finally
+        {
+            updateEventTimer.stop(start);
+        }
+    }
+
+    private UpdateEvent createUpdateEvent_(User user, Date lastSynced) throws RaplaException
     {
         Date currentTimestamp = operator.getCurrentTimestamp();
         Date historyValidStart = operator.getHistoryValidStart();
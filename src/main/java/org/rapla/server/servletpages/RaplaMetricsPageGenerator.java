@@ -0,0 +1,61 @@
+package org.rapla.server.servletpages;
+
+import org.rapla.framework.RaplaException;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.server.internal.RaplaStatusEntry;
+import org.rapla.server.internal.ServerContainerContext;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.List;
+
+/** Exports the server metrics in the prometheus text format and as json. Enabled together with the server status page. */
+@Singleton
+@Path("metrics")
+public class RaplaMetricsPageGenerator
+{
+    @Inject ServerContainerContext serverContainerContext;
+    @Inject MetricsRegistry metrics;
+
+    @Inject
+    public RaplaMetricsPageGenerator()
+    {
+    }
+
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public void generatePage(@Context HttpServletResponse response) throws IOException
+    {
+        java.io.PrintWriter out = response.getWriter();
+        if (!serverContainerContext.isServiceEnabled(RaplaStatusEntry.ID))
+        {
+            response.setContentType("text/plain; charset=UTF-8");
+            response.setStatus(404);
+            out.println("Server Status disabled");
+            out.close();
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        out.print(metrics.toPrometheusText());
+        out.close();
+    }
+
+    @GET
+    @Path("json")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<MetricsRegistry.MetricStatistics> getMetrics() throws RaplaException
+    {
+        if (!serverContainerContext.isServiceEnabled(RaplaStatusEntry.ID))
+        {
+            throw new RaplaException("Server Status disabled");
+        }
+        return metrics.getStatistics();
+    }
+}
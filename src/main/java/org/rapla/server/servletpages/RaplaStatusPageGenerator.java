@@ -4,8 +4,17 @@
 package org.rapla.server.servletpages;
 
 import org.rapla.RaplaSystemInfo;
+import org.rapla.components.util.Tools;
+import org.rapla.framework.RaplaException;
+import org.rapla.framework.internal.DefaultScheduler;
+import org.rapla.scheduler.CommandScheduler;
 import org.rapla.server.internal.RaplaStatusEntry;
 import org.rapla.server.internal.ServerContainerContext;
+import org.rapla.storage.CachableStorageOperator;
+import org.rapla.storage.impl.AbstractCachableOperator;
+import org.rapla.storage.impl.DefaultRaplaLock;
+import org.rapla.storage.impl.LockMetrics;
+import org.rapla.storage.impl.RaplaLock;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -17,12 +26,15 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
+import java.util.List;
 
 @Singleton
 @Path("server")
 public class RaplaStatusPageGenerator  {
     @Inject RaplaSystemInfo m_i18n;
     @Inject ServerContainerContext serverContainerContext;
+    @Inject CommandScheduler scheduler;
+    @Inject CachableStorageOperator operator;
     @Inject
     public RaplaStatusPageGenerator()
     {
@@ -52,9 +64,101 @@ public class RaplaStatusPageGenerator  {
         String javaversion = System.getProperty("java.version");
      	out.println( "<p>Server running </p>" +  m_i18n.infoText( javaversion));
         out.println( "<hr>" );
+        if ( scheduler instanceof DefaultScheduler)
+        {
+            DefaultScheduler defaultScheduler = (DefaultScheduler) scheduler;
+            out.println( "<h3>Scheduler</h3>" );
+            out.println( "<p>Threads: " + defaultScheduler.getPoolSize() + "<br>");
+            out.println( "Max queued tasks: " + (defaultScheduler.getMaxQueuedTasks() >= 0 ? "" + defaultScheduler.getMaxQueuedTasks() : "unbounded") + "<br>");
+            out.println( "Active tasks: " + defaultScheduler.getActiveTasks() + "<br>");
+            out.println( "Submitted tasks: " + defaultScheduler.getSubmittedTasks() + "<br>");
+            out.println( "Rejected tasks: " + defaultScheduler.getRejectedTasks() + "</p>");
+            out.println( "<hr>" );
+        }
+        final DefaultRaplaLock lockManager = getLockManager();
+        if ( lockManager != null)
+        {
+            printLocks(out, lockManager);
+            out.println( "<hr>" );
+        }
+        out.println( "<p><a href=\"metrics\">Metrics</a> (<a href=\"metrics/json\">json</a>)</p>" );
         out.println( "</body>" );
         out.println( "</html>" );
         out.close();
     }
 
-}
\ No newline at end of file
+    /** wait and hold times of the storage locks per call site and the current lock holders as json */
+    @GET
+    @Path("locks")
+    @Produces(MediaType.APPLICATION_JSON)
+    public LockStatus getLocks() throws RaplaException
+    {
+        if ( !serverContainerContext.isServiceEnabled( RaplaStatusEntry.ID))
+        {
+            throw new RaplaException("Server Status disabled");
+        }
+        final DefaultRaplaLock lockManager = getLockManager();
+        if ( lockManager == null)
+        {
+            throw new RaplaException("Lock metrics not available");
+        }
+        return new LockStatus(lockManager.getMetrics().getStatistics(), lockManager.getHolderStatistics());
+    }
+
+    private DefaultRaplaLock getLockManager()
+    {
+        if ( operator instanceof AbstractCachableOperator)
+        {
+            final RaplaLock lockManager = ((AbstractCachableOperator) operator).getLockManager();
+            if ( lockManager instanceof DefaultRaplaLock)
+            {
+                return (DefaultRaplaLock) lockManager;
+            }
+        }
+        return null;
+    }
+
+    private void printLocks(java.io.PrintWriter out, DefaultRaplaLock lockManager)
+    {
+        out.println( "<h3>Locks</h3>" );
+        out.println( "<table>" );
+        out.println( "<tr><th>Type</th><th>Site</th><th>Count</th><th>Wait mean/p99/max (us)</th><th>Hold mean/p99/max (us)</th><th>Hold total (ms)</th><th>Timeouts</th></tr>" );
+        for (LockMetrics.SiteStatistics site : lockManager.getMetrics().getStatistics())
+        {
+            out.println( "<tr><td>" + site.type + "</td><td>" + Tools.createXssSafeString(site.site) + "</td><td>" + site.count + "</td><td>"
+                    + site.waitMeanMicros + " / " + site.waitP99Micros + " / " + site.waitMaxMicros + "</td><td>"
+                    + site.holdMeanMicros + " / " + site.holdP99Micros + " / " + site.holdMaxMicros + "</td><td>"
+                    + site.holdTotalMillis + "</td><td>" + site.timeouts + "</td></tr>");
+        }
+        out.println( "</table>" );
+        final List<LockMetrics.HolderStatistics> holders = lockManager.getHolderStatistics();
+        out.println( "<p>Current holders: " + holders.size() + "</p>" );
+        if ( !holders.isEmpty())
+        {
+            out.println( "<table>" );
+            out.println( "<tr><th>Type</th><th>Lock</th><th>Thread</th><th>Held (ms)</th></tr>" );
+            for (LockMetrics.HolderStatistics holder : holders)
+            {
+                out.println( "<tr><td>" + holder.type + "</td><td>" + Tools.createXssSafeString(holder.lockName) + "</td><td>"
+                        + Tools.createXssSafeString(holder.thread) + "</td><td>" + holder.heldMillis + "</td></tr>");
+            }
+            out.println( "</table>" );
+        }
+    }
+
+    public static class LockStatus
+    {
+        public List<LockMetrics.SiteStatistics> sites;
+        public List<LockMetrics.HolderStatistics> holders;
+
+        public LockStatus()
+        {
+        }
+
+        LockStatus(List<LockMetrics.SiteStatistics> sites, List<LockMetrics.HolderStatistics> holders)
+        {
+            this.sites = sites;
+            this.holders = holders;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.rapla.entities.Entity;
 import org.rapla.entities.User;
 import org.rapla.entities.domain.Allocatable;
 import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.Reservation;
 import org.rapla.entities.storage.ImportExportEntity;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.framework.RaplaException;
@@ -26,6 +27,7 @@ import org.rapla.scheduler.Promise;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -73,6 +75,19 @@ public interface CachableStorageOperator extends StorageOperator {
     Collection<ReferenceInfo<User>> findUsersThatExport(Allocatable allocatable) throws RaplaException;
 
     <T> T  waitForWithRaplaException(Promise<T> promise, int millis) throws RaplaException;
+
+    /** synchronous version of {@link #getFirstAllocatableBindings(Collection, Collection, Collection)}. Can be combined with other queries in {@link #runWithReadLock(CachableStorageOperatorCommand)}*/
+    Map<Allocatable, Collection<Appointment>> getFirstAllocatableBindingsSync(Collection<Allocatable> allocatables, Collection<Appointment> appointments, Collection<Reservation> ignoreList) throws RaplaException;
+
+    /** synchronous version of {@link #getAllAllocatableBindings(Collection, Collection, Collection)}*/
+    Map<Allocatable, Map<Appointment,Collection<Appointment>>> getAllAllocatableBindingsSync(Collection<Allocatable> allocatables, Collection<Appointment> appointments, Collection<Reservation> ignoreList) throws RaplaException;
+
+    /** synchronous version of {@link #getNextAllocatableDate(Collection, Appointment, Collection, Integer, Integer, Integer[], Integer)}*/
+    Date getNextAllocatableDateSync(Collection<Allocatable> allocatables,Appointment appointment, Collection<Reservation> ignoreList, Integer worktimeStartMinutes,Integer worktimeEndMinutes, Integer[] excludedDays, Integer rowsPerHour) throws RaplaException;
+
+    /** the ids of the allocatables and reservations that match all words of the query, the best matches first. The permissions of the entities are not checked.
+     * @param types the entity classes to search or null for all */
+    List<String> searchFullText(String query, Collection<Class<? extends Entity>> types);
 }
 
 
@@ -0,0 +1,392 @@
+package org.rapla.storage;
+
+import org.rapla.entities.Entity;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The entities of the {@link LocalCache}: a single map from the ids to the entities and for each type the entities in the
+ * order they were put. The map is split into buckets by the hash of the id and the order into chunks of {@link #CHUNK_SIZE} entities.
+ * <p>
+ * {@link #copy(EntityTable, Set)} returns a read only table that shares all buckets and chunks with this table. Afterwards
+ * this table copies a bucket or chunk before it changes it for the first time, so a copy after a change only copies the
+ * arrays of the buckets and chunks and the changed ones instead of all entries.
+ * </p>
+ */
+final class EntityTable
+{
+    static final int CHUNK_SIZE = 256;
+    // average number of entries in a bucket before the number of buckets is doubled
+    static final int BUCKET_SIZE = 64;
+
+    /** an entity and its position in the order of its type */
+    private static final class Slot
+    {
+        final Entity entity;
+        final int position;
+
+        Slot(Entity entity, int position)
+        {
+            this.entity = entity;
+            this.position = position;
+        }
+    }
+
+    private static final class Bucket
+    {
+        final Map<String, Slot> slots;
+        // the generation of the table that may change the bucket
+        final int generation;
+
+        Bucket(Map<String, Slot> slots, int generation)
+        {
+            this.slots = slots;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Chunk
+    {
+        final Entity[] entities;
+        final int generation;
+
+        Chunk(Entity[] entities, int generation)
+        {
+            this.entities = entities;
+            this.generation = generation;
+        }
+    }
+
+    /** the entities of one type, removed entities leave a null until the chunks are compacted */
+    private static final class TypeOrder
+    {
+        Chunk[] chunks;
+        int end;
+        int size;
+
+        final Collection<Entity> values = new AbstractCollection<Entity>()
+        {
+            @Override
+            public Iterator<Entity> iterator()
+            {
+                return new OrderIterator(TypeOrder.this);
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+
+        TypeOrder(Chunk[] chunks, int end, int size)
+        {
+            this.chunks = chunks;
+            this.end = end;
+            this.size = size;
+        }
+    }
+
+    private final boolean readOnly;
+    private Bucket[] buckets;
+    private int size;
+    private final Map<Class<? extends Entity>, TypeOrder> orders;
+    // incremented on every copy, buckets and chunks of an older generation are shared with a copy
+    private int generation;
+
+    EntityTable()
+    {
+        this.readOnly = false;
+        this.buckets = new Bucket[16];
+        this.orders = new HashMap<>();
+    }
+
+    private EntityTable(EntityTable working, EntityTable previous, Set<Class<? extends Entity>> changedTypes)
+    {
+        this.readOnly = true;
+        this.buckets = Arrays.copyOf(working.buckets, working.buckets.length);
+        this.size = working.size;
+        this.orders = new HashMap<>();
+        for (Map.Entry<Class<? extends Entity>, TypeOrder> entry : working.orders.entrySet())
+        {
+            final Class<? extends Entity> type = entry.getKey();
+            TypeOrder order = previous != null && !changedTypes.contains(type) ? previous.orders.get(type) : null;
+            if (order == null)
+            {
+                final TypeOrder workingOrder = entry.getValue();
+                order = new TypeOrder(Arrays.copyOf(workingOrder.chunks, workingOrder.chunks.length), workingOrder.end, workingOrder.size);
+            }
+            orders.put(type, order);
+        }
+    }
+
+    /**
+     * returns a read only copy of the table. The orders of the types that didn't change since the previous copy are taken from
+     * the previous copy.
+     */
+    EntityTable copy(EntityTable previous, Set<Class<? extends Entity>> changedTypes)
+    {
+        checkWritable();
+        final EntityTable copy = new EntityTable(this, previous, changedTypes);
+        generation++;
+        return copy;
+    }
+
+    private void checkWritable()
+    {
+        if (readOnly)
+        {
+            throw new IllegalStateException("Copy of the entity table is read only");
+        }
+    }
+
+    Entity get(String id)
+    {
+        final Bucket bucket = buckets[bucketIndex(id, buckets.length)];
+        final Slot slot = bucket != null ? bucket.slots.get(id) : null;
+        return slot != null ? slot.entity : null;
+    }
+
+    /** returns null if the entity with the id is not of the type */
+    Entity get(String id, Class<? extends Entity> type)
+    {
+        final Entity entity = get(id);
+        return entity != null && entity.getTypeClass() == type ? entity : null;
+    }
+
+    boolean hasType(Class<? extends Entity> type)
+    {
+        return orders.containsKey(type);
+    }
+
+    Set<Class<? extends Entity>> getTypes()
+    {
+        return Collections.unmodifiableSet(orders.keySet());
+    }
+
+    /** replaces the entity with the same id and type or adds it at the end of its type */
+    void put(Entity entity)
+    {
+        checkWritable();
+        final String id = entity.getId();
+        final Class<? extends Entity> type = entity.getTypeClass();
+        TypeOrder order = orders.get(type);
+        if (order == null)
+        {
+            order = new TypeOrder(new Chunk[0], 0, 0);
+            orders.put(type, order);
+        }
+        final Slot old = getSlot(id);
+        final int position;
+        if (old != null && old.entity.getTypeClass() == type)
+        {
+            position = old.position;
+        }
+        else
+        {
+            if (old != null)
+            {
+                remove(id, old.entity.getTypeClass());
+            }
+            position = order.end;
+            if (position % CHUNK_SIZE == 0)
+            {
+                order.chunks = Arrays.copyOf(order.chunks, order.chunks.length + 1);
+                order.chunks[order.chunks.length - 1] = new Chunk(new Entity[CHUNK_SIZE], generation);
+            }
+            order.end++;
+            order.size++;
+        }
+        getWritableChunk(order, position).entities[position % CHUNK_SIZE] = entity;
+        putSlot(id, new Slot(entity, position));
+    }
+
+    /** returns false if there is no entity with the id and type */
+    boolean remove(String id, Class<? extends Entity> type)
+    {
+        checkWritable();
+        final Slot slot = getSlot(id);
+        if (slot == null || slot.entity.getTypeClass() != type)
+        {
+            return false;
+        }
+        getWritableBucket(bucketIndex(id, buckets.length)).slots.remove(id);
+        size--;
+        final TypeOrder order = orders.get(type);
+        getWritableChunk(order, slot.position).entities[slot.position % CHUNK_SIZE] = null;
+        order.size--;
+        if (order.end - order.size > CHUNK_SIZE && order.size < order.end / 2)
+        {
+            compact(order);
+        }
+        return true;
+    }
+
+    void clear()
+    {
+        checkWritable();
+        buckets = new Bucket[16];
+        size = 0;
+        orders.clear();
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * the entities of the type in the order they were put. The collection of the working table reflects later changes, a copy
+     * returns the same collection as the previous copy if the type didn't change.
+     */
+    Collection<Entity> values(Class<? extends Entity> type)
+    {
+        final TypeOrder order = orders.get(type);
+        return order != null ? order.values : Collections.emptyList();
+    }
+
+    private static final class OrderIterator implements Iterator<Entity>
+    {
+        private final Chunk[] chunks;
+        private final int end;
+        private int position = -1;
+        private int next;
+
+        OrderIterator(TypeOrder order)
+        {
+            this.chunks = order.chunks;
+            this.end = order.end;
+            this.next = advance(0);
+        }
+
+        private int advance(int from)
+        {
+            int result = from;
+            while (result < end && chunks[result / CHUNK_SIZE].entities[result % CHUNK_SIZE] == null)
+            {
+                result++;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < end;
+        }
+
+        @Override
+        public Entity next()
+        {
+            if (next >= end)
+            {
+                throw new NoSuchElementException();
+            }
+            position = next;
+            next = advance(next + 1);
+            return chunks[position / CHUNK_SIZE].entities[position % CHUNK_SIZE];
+        }
+    }
+
+    /** moves the remaining entities of the type to the front, so that removed entities don't keep their chunks */
+    private void compact(TypeOrder order)
+    {
+        final OrderIterator it = new OrderIterator(order);
+        final Chunk[] chunks = new Chunk[(order.size + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        int position = 0;
+        while (it.hasNext())
+        {
+            final Entity entity = it.next();
+            if (position % CHUNK_SIZE == 0)
+            {
+                chunks[position / CHUNK_SIZE] = new Chunk(new Entity[CHUNK_SIZE], generation);
+            }
+            chunks[position / CHUNK_SIZE].entities[position % CHUNK_SIZE] = entity;
+            putSlot(entity.getId(), new Slot(entity, position));
+            position++;
+        }
+        order.chunks = chunks;
+        order.end = position;
+    }
+
+    private Slot getSlot(String id)
+    {
+        final Bucket bucket = buckets[bucketIndex(id, buckets.length)];
+        return bucket != null ? bucket.slots.get(id) : null;
+    }
+
+    private void putSlot(String id, Slot slot)
+    {
+        if (getWritableBucket(bucketIndex(id, buckets.length)).slots.put(id, slot) == null)
+        {
+            size++;
+            if (size > buckets.length * BUCKET_SIZE)
+            {
+                rehash(buckets.length * 2);
+            }
+        }
+    }
+
+    private Bucket getWritableBucket(int index)
+    {
+        final Bucket bucket = buckets[index];
+        if (bucket != null && bucket.generation == generation)
+        {
+            return bucket;
+        }
+        final Bucket copy = new Bucket(bucket != null ? new HashMap<>(bucket.slots) : new HashMap<>(), generation);
+        buckets[index] = copy;
+        return copy;
+    }
+
+    private Chunk getWritableChunk(TypeOrder order, int position)
+    {
+        final int index = position / CHUNK_SIZE;
+        final Chunk chunk = order.chunks[index];
+        if (chunk.generation == generation)
+        {
+            return chunk;
+        }
+        final Chunk copy = new Chunk(Arrays.copyOf(chunk.entities, CHUNK_SIZE), generation);
+        order.chunks[index] = copy;
+        return copy;
+    }
+
+    private void rehash(int length)
+    {
+        final Bucket[] newBuckets = new Bucket[length];
+        for (Bucket bucket : buckets)
+        {
+            if (bucket == null)
+            {
+                continue;
+            }
+            for (Map.Entry<String, Slot> entry : bucket.slots.entrySet())
+            {
+                final int index = bucketIndex(entry.getKey(), length);
+                Bucket newBucket = newBuckets[index];
+                if (newBucket == null)
+                {
+                    newBucket = new Bucket(new HashMap<>(), generation);
+                    newBuckets[index] = newBucket;
+                }
+                newBucket.slots.put(entry.getKey(), entry.getValue());
+            }
+        }
+        buckets = newBuckets;
+    }
+
+    private static int bucketIndex(String id, int length)
+    {
+        final int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+}
@@ -22,15 +22,17 @@ import org.rapla.entities.configuration.internal.PreferencesImpl;
 import org.rapla.entities.domain.Allocatable;
 import org.rapla.entities.domain.Appointment;
 import org.rapla.entities.domain.Reservation;
-import org.rapla.entities.domain.internal.AllocatableImpl;
-import org.rapla.entities.domain.internal.ReservationImpl;
 import org.rapla.entities.dynamictype.Attribute;
 import org.rapla.entities.dynamictype.DynamicType;
 import org.rapla.entities.dynamictype.internal.ClassificationImpl;
 import org.rapla.entities.dynamictype.internal.DynamicTypeImpl;
 import org.rapla.entities.internal.CategoryImpl;
+import org.rapla.entities.internal.CategoryIndexImpl;
 import org.rapla.entities.internal.UserImpl;
+import org.rapla.entities.storage.CategoryIndex;
+import org.rapla.entities.storage.EntityReferencer;
 import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.IdInterner;
 import org.rapla.entities.storage.ParentEntity;
 import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.entities.storage.internal.SimpleEntity;
@@ -41,6 +43,7 @@ import org.rapla.framework.RaplaException;
 import javax.inject.Provider;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,37 +53,151 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Cache of all entities that are loaded by an operator.
+ * <p>
+ * The cache is modified by the thread that holds the write lock of the operator. Readers that should not block on that lock
+ * use {@link #getSnapshot()}, which returns an immutable copy of the cache that is replaced atomically on {@link #publish()}.
+ * The entities are stored in an {@link EntityTable}, so a new snapshot shares the unchanged parts of the table with the
+ * working cache and the previous snapshot instead of copying all entities.
+ * </p>
+ */
 public class LocalCache implements EntityResolver
 {
     Map<String, String> passwords = new HashMap<>();
-    Map<String, Entity> entities;
+    EntityTable entities = new EntityTable();
 
     //Map<String,ConflictImpl> disabledConflicts = new HashMap<String,ConflictImpl>();
     Map<String,ReferenceInfo<Appointment>> disabledConflictApp1 = new HashMap<>();
     Map<String,ReferenceInfo<Appointment>> disabledConflictApp2 = new HashMap<>();
     Map<String, Date> conflictLastChanged = new HashMap<>();
 
-    Map<String, DynamicTypeImpl> dynamicTypes;
-    Map<String, UserImpl> users;
-    Map<String, AllocatableImpl> resources;
-    Map<String, ReservationImpl> reservations;
     Map<ReferenceInfo<Allocatable>, GraphNode> graph = new LinkedHashMap<>();
 
     private String clientUserId;
     private final PermissionController permissionController;
+    // shares the id strings of the stored entities and their references, only set on the server
+    private IdInterner idInterner;
+
+    private final boolean readOnly;
+    private final long version;
+    private volatile LocalCache snapshot;
+    // built on the first use in a snapshot and shared with the next snapshots until the categories change
+    private volatile CategoryIndex categoryIndex;
+    // types that changed since the last publish. Passwords count as user and the graph as allocatable changes
+    private final Set<Class<? extends Entity>> changedTypes = new HashSet<>();
 
     public LocalCache(PermissionController permissionController)
     {
         this.permissionController = permissionController;
-        entities = new HashMap<>();
-        // top-level-entities
-        reservations = new LinkedHashMap<>();
-        users = new LinkedHashMap<>();
-        resources = new LinkedHashMap<>();
-        dynamicTypes = new LinkedHashMap<>();
+        this.readOnly = false;
+        this.version = 0;
+        this.snapshot = new LocalCache(this, null);
         //initSuperCategory();
     }
 
+    /** creates the next snapshot from the working cache */
+    private LocalCache(LocalCache working, LocalCache previous)
+    {
+        this.permissionController = working.permissionController;
+        this.clientUserId = working.clientUserId;
+        this.readOnly = true;
+        this.version = previous != null ? previous.version + 1 : 0;
+        final Set<Class<? extends Entity>> changed = working.changedTypes;
+        entities = working.entities.copy(previous != null ? previous.entities : null, changed);
+        if (previous == null || changed.contains(User.class))
+        {
+            passwords = Collections.unmodifiableMap(new HashMap<>(working.passwords));
+        }
+        else
+        {
+            passwords = previous.passwords;
+        }
+        if (previous == null || changed.contains(Conflict.class))
+        {
+            disabledConflictApp1 = Collections.unmodifiableMap(new HashMap<>(working.disabledConflictApp1));
+            disabledConflictApp2 = Collections.unmodifiableMap(new HashMap<>(working.disabledConflictApp2));
+            conflictLastChanged = Collections.unmodifiableMap(new HashMap<>(working.conflictLastChanged));
+        }
+        else
+        {
+            disabledConflictApp1 = previous.disabledConflictApp1;
+            disabledConflictApp2 = previous.disabledConflictApp2;
+            conflictLastChanged = previous.conflictLastChanged;
+        }
+        graph = previous == null || changed.contains(Allocatable.class) ? copyGraph(working.graph) : previous.graph;
+        categoryIndex = previous == null || changed.contains(Category.class) ? null : previous.categoryIndex;
+        this.snapshot = this;
+    }
+
+    /** returns the last published state of the cache. The returned cache is read only and is not changed by later writes. */
+    public LocalCache getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /** makes all changes since the last publish visible in {@link #getSnapshot()}. Must be called by the writer. */
+    public void publish()
+    {
+        checkWritable();
+        if (changedTypes.isEmpty())
+        {
+            return;
+        }
+        snapshot = new LocalCache(this, snapshot);
+        changedTypes.clear();
+        // the cached permissions of the new version are used as soon as the readers resolve with the new snapshot
+        permissionController.getIndex().publish(snapshot.version);
+    }
+
+    /** the number of snapshots published before this one */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /** snapshots never change, so their entities can be kept until the next snapshot is published */
+    @Override
+    public long getReferenceVersion()
+    {
+        return readOnly ? version : -1;
+    }
+
+    /** the index of the categories in a snapshot. Returns null for the working cache, because its categories can change. */
+    @Override
+    public CategoryIndex getCategoryIndex()
+    {
+        if (!readOnly)
+        {
+            return null;
+        }
+        CategoryIndex index = categoryIndex;
+        if (index == null)
+        {
+            final CategoryImpl superCategory = getSuperCategory();
+            if (superCategory == null)
+            {
+                return null;
+            }
+            index = CategoryIndexImpl.create(superCategory);
+            categoryIndex = index;
+        }
+        return index;
+    }
+
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    private void checkWritable()
+    {
+        if (readOnly)
+        {
+            throw new IllegalStateException("Snapshot of the cache is read only");
+        }
+    }
+
     public String getClientUserId()
     {
         return clientUserId;
@@ -89,9 +206,22 @@ public class LocalCache implements EntityResolver
     /** use this to prohibit reservations and preferences (except from system and current user) to be stored in the cache*/
     public void setClientUserId(String clientUserId)
     {
+        checkWritable();
         this.clientUserId = clientUserId;
     }
 
+    /** the ids of all entities that are put in the cache afterwards are interned */
+    public void setIdInterner(IdInterner idInterner)
+    {
+        checkWritable();
+        this.idInterner = idInterner;
+    }
+
+    public IdInterner getIdInterner()
+    {
+        return idInterner;
+    }
+
     /** @return true if the entity has been removed and false if the entity was not found*/
     public boolean remove(Entity entity)
     {
@@ -109,22 +239,22 @@ public class LocalCache implements EntityResolver
     /** WARNING child entities will not be removed if you use this method */
     public boolean removeWithId(ReferenceInfo info)
     {
+        checkWritable();
         String entityId = info.getId();
         Class<? extends Entity> typeClass = info.getType();
-        boolean bResult = true;
-        bResult = entities.remove(entityId) != null;
-        Map<String, ? extends Entity> entitySet = getMap(typeClass);
-        if (entitySet != null)
-        {
-            if (entityId == null)
-                return false;
-            entitySet.remove(entityId);
-        }
-        else if (typeClass == Conflict.class)
+        if (entityId == null)
+            return false;
+        changedTypes.add(typeClass);
+        boolean bResult = entities.remove(entityId, typeClass);
+        if (typeClass == Conflict.class)
         {
             disabledConflictApp1.remove(entityId);
             disabledConflictApp2.remove(entityId);
         }
+        if (isPermissionRelevant(typeClass))
+        {
+            permissionController.getIndex().remove(info);
+        }
         if (typeClass == Allocatable.class)
         {
             GraphNode oldNode = graph.get(info);
@@ -138,29 +268,14 @@ public class LocalCache implements EntityResolver
         return bResult;
     }
 
-    @SuppressWarnings("unchecked") private Map<String, Entity> getMap(Class<? extends Entity> type)
+    @SuppressWarnings("unchecked") private <T extends Entity> Collection<T> getCollection(Class<T> type)
     {
-        if (type == Reservation.class)
-        {
-            return (Map) reservations;
-        }
-        if (type == Allocatable.class)
-        {
-            return (Map) resources;
-        }
-        if (type == DynamicType.class)
-        {
-            return (Map) dynamicTypes;
-        }
-        if (type == User.class)
-        {
-            return (Map) users;
-        }
-        return null;
+        return (Collection<T>) entities.values(type);
     }
 
     public void put(Entity entity)
     {
+        checkWritable();
         Assert.notNull(entity);
 
         Class<? extends Entity> typeClass = entity.getTypeClass();
@@ -191,12 +306,16 @@ public class LocalCache implements EntityResolver
             }
         }
 
+        if (idInterner != null)
+        {
+            entityId = internIds(entity);
+        }
         if (entity.getTypeClass() == Allocatable.class)
         {
             updateDependencies(entity);
         }
         // first remove the old children from the map
-        Entity oldEntity = entities.get(entity);
+        Entity oldEntity = entities.get(entityId, typeClass);
         if (oldEntity != null && oldEntity instanceof ParentEntity)
         {
             Collection<Entity> subEntities = ((ParentEntity) oldEntity).getSubEntities();
@@ -206,13 +325,13 @@ public class LocalCache implements EntityResolver
             }
         }
 
-        entities.put(entityId, entity);
-        Map<String, Entity> entitySet = getMap(typeClass);
-        if (entitySet != null)
+        changedTypes.add(typeClass);
+        entities.put(entity);
+        if (isPermissionRelevant(typeClass))
         {
-            entitySet.put(entityId, entity);
+            permissionController.getIndex().put(entity);
         }
-        else if (entity instanceof Conflict)
+        if (entity instanceof Conflict)
         {
             Conflict conflict = (Conflict) entity;
             if (conflict.isAppointment1Enabled())
@@ -238,10 +357,6 @@ public class LocalCache implements EntityResolver
                 conflictLastChanged.remove(entityId);
             }
         }
-        else
-        {
-            //throw new RuntimeException("UNKNOWN TYPE. Can't store object in cache: " + entity.getRaplaType());
-        }
         // then put the new children
         if (entity instanceof ParentEntity)
         {
@@ -253,11 +368,35 @@ public class LocalCache implements EntityResolver
         }
     }
 
+    /** the ids of the sub entities are added first, because the parent can refer to them */
+    private String internIds(Entity entity)
+    {
+        final String id = idInterner.add(entity.getId());
+        if (entity instanceof ParentEntity)
+        {
+            for (Entity child : ((ParentEntity) entity).getSubEntities())
+            {
+                idInterner.add(child.getId());
+            }
+        }
+        if (entity instanceof EntityReferencer)
+        {
+            ((EntityReferencer) entity).internIds(idInterner);
+        }
+        return id;
+    }
+
+    /** changes on these types can change the result of the indexed permission checks */
+    private static boolean isPermissionRelevant(Class<? extends Entity> typeClass)
+    {
+        return typeClass == Allocatable.class || typeClass == DynamicType.class || typeClass == User.class || typeClass == Category.class;
+    }
+
     public Entity get(Comparable id)
     {
         if (id == null)
             throw new RuntimeException("id is null");
-        return entities.get(id);
+        return id instanceof String ? entities.get((String) id) : null;
     }
 
     //    @SuppressWarnings("unchecked")
@@ -281,16 +420,18 @@ public class LocalCache implements EntityResolver
 
     public void clearAll()
     {
+        checkWritable();
+        changedTypes.addAll(entities.getTypes());
+        changedTypes.add(User.class);
+        changedTypes.add(Allocatable.class);
+        changedTypes.add(Conflict.class);
         passwords.clear();
-        reservations.clear();
-        users.clear();
-        resources.clear();
-        dynamicTypes.clear();
         entities.clear();
         disabledConflictApp1.clear();
         disabledConflictApp2.clear();
         conflictLastChanged.clear();
         graph.clear();
+        permissionController.getIndex().clear();
     }
 
     public CategoryImpl getSuperCategory()
@@ -300,12 +441,13 @@ public class LocalCache implements EntityResolver
 
     public UserImpl getUser(String username)
     {
-        for (UserImpl user : users.values())
+        final Collection<UserImpl> users = getCollection((Class) User.class);
+        for (UserImpl user : users)
         {
             if (user.getUsername().equals(username))
                 return user;
         }
-        for (UserImpl user : users.values())
+        for (UserImpl user : users)
         {
             if (user.getUsername().equalsIgnoreCase(username))
                 return user;
@@ -322,7 +464,7 @@ public class LocalCache implements EntityResolver
 
     public DynamicType getDynamicType(String elementKey)
     {
-        for (DynamicType dt : dynamicTypes.values())
+        for (DynamicType dt : getDynamicTypes())
         {
             if (dt.getKey().equals(elementKey))
                 return dt;
@@ -412,7 +554,7 @@ public class LocalCache implements EntityResolver
     {
         if (id == null)
             throw new RuntimeException("id is null");
-        Entity entity = entities.get(id);
+        Entity entity = entityClass != null && entities.hasType(entityClass) ? entities.get(id, entityClass) : entities.get(id);
         @SuppressWarnings("unchecked") T casted = (T) entity;
         return casted;
     }
@@ -424,6 +566,8 @@ public class LocalCache implements EntityResolver
 
     public void putPassword(ReferenceInfo<User> userReferenceInfo, String password)
     {
+        checkWritable();
+        changedTypes.add(User.class);
         passwords.put(userReferenceInfo.getId(), password);
     }
 
@@ -440,9 +584,9 @@ public class LocalCache implements EntityResolver
         return () -> getSuperCategory();
     }
 
-    @SuppressWarnings("unchecked") public Collection<User> getUsers()
+    public Collection<User> getUsers()
     {
-        return (Collection) users.values();
+        return getCollection(User.class);
     }
 
     public Conflict fillConflictDisableInformation(User user, Conflict orig)
@@ -487,19 +631,19 @@ public class LocalCache implements EntityResolver
         return result;
     }
 
-    @SuppressWarnings("unchecked") public Collection<Allocatable> getAllocatables()
+    public Collection<Allocatable> getAllocatables()
     {
-        return (Collection) resources.values();
+        return getCollection(Allocatable.class);
     }
 
-    @SuppressWarnings("unchecked") public Collection<Reservation> getReservations()
+    public Collection<Reservation> getReservations()
     {
-        return (Collection) reservations.values();
+        return getCollection(Reservation.class);
     }
 
-    @SuppressWarnings("unchecked") public Collection<DynamicType> getDynamicTypes()
+    public Collection<DynamicType> getDynamicTypes()
     {
-        return (Collection) dynamicTypes.values();
+        return getCollection(DynamicType.class);
     }
 
     public Collection<Conflict> getDisabledConflicts()
@@ -599,6 +743,30 @@ public class LocalCache implements EntityResolver
         }
     }
 
+    private static Map<ReferenceInfo<Allocatable>, GraphNode> copyGraph(Map<ReferenceInfo<Allocatable>, GraphNode> graph)
+    {
+        final Map<ReferenceInfo<Allocatable>, GraphNode> copy = new LinkedHashMap<>();
+        for (ReferenceInfo<Allocatable> ref : graph.keySet())
+        {
+            copy.put(ref, new GraphNode(ref));
+        }
+        for (Map.Entry<ReferenceInfo<Allocatable>, GraphNode> entry : graph.entrySet())
+        {
+            final GraphNode node = copy.get(entry.getKey());
+            for (Map.Entry<GraphNode, GraphNode.ConnectionType> connection : entry.getValue().connections.entrySet())
+            {
+                final ReferenceInfo<Allocatable> target = connection.getKey().alloc;
+                GraphNode targetNode = copy.get(target);
+                if (targetNode == null)
+                {
+                    targetNode = new GraphNode(target);
+                }
+                node.connections.put(targetNode, connection.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
     private void updateDependencies(Entity entity)
     {
         if (entity instanceof Allocatable)
@@ -37,12 +37,43 @@ public class PermissionController
 {
     private final Set<PermissionExtension> permissionExtensions;
     StorageOperator operator;
+    private final PermissionIndex index;
 
     public PermissionController(Set<PermissionExtension> permissionExtensions, StorageOperator operator)
     {
         super();
         this.permissionExtensions = permissionExtensions;
         this.operator = operator;
+        this.index = new PermissionIndex(this::evaluate);
+    }
+
+    /** the index of the read and allocate permissions. Kept up to date by the {@link LocalCache} */
+    PermissionIndex getIndex()
+    {
+        return index;
+    }
+
+    /** the resolver of the published entities, whose version the cached permissions belong to */
+    private EntityResolver getReferenceResolver()
+    {
+        return operator != null ? operator.getReferenceResolver() : null;
+    }
+
+    private boolean evaluate(Entity entity, User user, PermissionIndex.Access access)
+    {
+        switch (access)
+        {
+            case READ:
+                return canReadPrivate(entity, user);
+            case READ_ONLY_INFORMATION:
+                return canReadOnlyInformationPrivate((Allocatable) entity, user);
+            case ALLOCATE:
+                return hasPermissionToAllocatePrivate(user, (Allocatable) entity);
+            case READ_TYPE:
+                return canReadPrivate(entity, user);
+            default:
+                throw new IllegalArgumentException("Unknown access " + access);
+        }
     }
 
     public static boolean isOwner(Ownable classifiable, User user)
@@ -280,7 +311,11 @@ public class PermissionController
 
     public boolean canRead(DynamicType type, User user)
     {
-        return canReadPrivate( type, user);
+        if (user == null || user.isAdmin())
+        {
+            return true;
+        }
+        return index.isGranted(type, user, PermissionIndex.Access.READ_TYPE, getReferenceResolver());
     }
 
     public boolean canCreateConflicts(Allocatable container, User user)
@@ -298,6 +333,15 @@ public class PermissionController
     }
 
     public boolean hasPermissionToAllocate(User user, Allocatable a)
+    {
+        if (user == null)
+        {
+            return hasPermissionToAllocatePrivate(null, a);
+        }
+        return index.isGranted(a, user, PermissionIndex.Access.ALLOCATE, getReferenceResolver());
+    }
+
+    private boolean hasPermissionToAllocatePrivate(User user, Allocatable a)
     {
         Collection<String> groups = UserImpl.getGroupsIncludingParents(user);
         final ReferenceInfo<User> ownerRef = a.getOwnerRef();
@@ -320,6 +364,15 @@ public class PermissionController
     }
 
     public boolean canReadOnlyInformation(Allocatable classifiable, User user)
+    {
+        if (user == null || user.isAdmin())
+        {
+            return true;
+        }
+        return index.isGranted(classifiable, user, PermissionIndex.Access.READ_ONLY_INFORMATION, getReferenceResolver());
+    }
+
+    private boolean canReadOnlyInformationPrivate(Allocatable classifiable, User user)
     {
         if (!canReadType(classifiable, user))
         {
@@ -669,7 +722,11 @@ public class PermissionController
 //        {
 //            return true;
 //        }
-        return canReadPrivate(allocatable, user);
+        if (user == null || user.isAdmin())
+        {
+            return true;
+        }
+        return index.isGranted(allocatable, user, PermissionIndex.Access.READ, getReferenceResolver());
     }
 
     public boolean canWrite(Classification object, Attribute attribute, User user)
@@ -0,0 +1,343 @@
+package org.rapla.storage;
+
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.ReferenceInfo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the results of the time independent permission checks on allocatables and dynamic types.
+ * For each user a principal stores the results as bits per entity id. The results belong to a version of the published
+ * snapshot: a check only uses and stores results if the caller resolves its entities with the version of the index, so a
+ * reader that still works on an older snapshot can't store a decision that is already outdated.
+ * <p>
+ * Permission checks don't take a lock on the index: each version is published as an immutable generation that is replaced by
+ * the writer, and the principals can be read without a lock. The LocalCache reports the changes with {@link #put(Entity)}
+ * and {@link #remove(ReferenceInfo)} and the new version with {@link #publish(long)}. Changes on dynamic types or categories
+ * (the group hierarchy) drop all principals, a changed user drops the principal of that user and a changed allocatable
+ * drops its results. If the cache doesn't publish snapshots the changes are applied immediately. Entities that are not read
+ * only (e.g. edited copies) can still change, so they are always evaluated directly.
+ * </p>
+ */
+class PermissionIndex
+{
+    /** the version of the results if the resolver of the caller doesn't track its changes */
+    static final long UNTRACKED = -1;
+    // the bit of the granted access is the evaluated bit of the access ordinal shifted by this
+    private static final int GRANTED_SHIFT = 8;
+
+    enum Access
+    {
+        READ,
+        READ_ONLY_INFORMATION,
+        ALLOCATE,
+        READ_TYPE
+    }
+
+    interface Evaluator
+    {
+        boolean evaluate(Entity entity, User user, Access access);
+    }
+
+    private final Evaluator evaluator;
+    private volatile Generation generation = new Generation(UNTRACKED, Collections.emptyMap());
+    // the changes since the last publish, only used by the writer
+    private final Set<String> changedIds = new HashSet<>();
+    private boolean changedAll;
+    private boolean tracked;
+
+    PermissionIndex(Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /** checks the access without comparing the entities with a resolver, the results are stored as untracked */
+    boolean isGranted(Entity entity, User user, Access access)
+    {
+        return isGranted(entity, user, access, null);
+    }
+
+    /**
+     * checks the access with the cached result of the reference version of the resolver. The result is only stored if the
+     * entity and the user are the instances of that version.
+     */
+    boolean isGranted(Entity entity, User user, Access access, EntityResolver reference)
+    {
+        final Class<? extends Entity> type = entity.getTypeClass();
+        if (!entity.isReadOnly() || !user.isReadOnly() || (type != Allocatable.class && type != DynamicType.class))
+        {
+            return evaluator.evaluate(entity, user, access);
+        }
+        final long version = reference != null ? reference.getReferenceVersion() : UNTRACKED;
+        final Generation current = generation;
+        if (current.version != version)
+        {
+            // the caller resolves with another version than the index, e.g. while a new snapshot is published
+            return evaluator.evaluate(entity, user, access);
+        }
+        final String id = entity.getId();
+        final int evaluatedBit = 1 << access.ordinal();
+        final int grantedBit = evaluatedBit << GRANTED_SHIFT;
+        Principal principal = current.principals.get(user.getId());
+        if (principal != null)
+        {
+            final int bits = principal.get(id);
+            if ((bits & evaluatedBit) != 0)
+            {
+                return (bits & grantedBit) != 0;
+            }
+        }
+        final boolean result = evaluator.evaluate(entity, user, access);
+        if (reference != null && (reference.tryResolve(id, type) != entity || reference.tryResolve(user.getId(), User.class) != user))
+        {
+            // an instance of an older version
+            return result;
+        }
+        if (principal == null)
+        {
+            principal = current.addPrincipal(user.getId());
+        }
+        principal.put(id, evaluatedBit | (result ? grantedBit : 0));
+        return result;
+    }
+
+    void put(Entity entity)
+    {
+        changed(entity.getReference());
+    }
+
+    void remove(ReferenceInfo<? extends Entity> ref)
+    {
+        changed(ref);
+    }
+
+    void clear()
+    {
+        changedAll = true;
+        applyIfUntracked();
+    }
+
+    /** makes the changes since the last publish visible to the callers that resolve with the passed version */
+    void publish(long version)
+    {
+        tracked = true;
+        apply(version);
+    }
+
+    /** number of users with evaluated permissions */
+    int getPrincipalCount()
+    {
+        return generation.principals.size();
+    }
+
+    private void changed(ReferenceInfo<? extends Entity> ref)
+    {
+        final Class<? extends Entity> type = ref.getType();
+        if (type == Category.class || type == DynamicType.class)
+        {
+            // the type permissions and the groups decide if the allocatables are readable
+            changedAll = true;
+        }
+        else
+        {
+            changedIds.add(ref.getId());
+        }
+        applyIfUntracked();
+    }
+
+    private void applyIfUntracked()
+    {
+        if (!tracked)
+        {
+            apply(UNTRACKED);
+        }
+    }
+
+    private void apply(long version)
+    {
+        final Map<String, Principal> principals = generation.principals;
+        final Map<String, Principal> next;
+        if (changedAll)
+        {
+            next = Collections.emptyMap();
+        }
+        else if (changedIds.isEmpty())
+        {
+            // nothing that decides the permissions changed, so the results are valid for both versions
+            next = principals;
+        }
+        else
+        {
+            // the principals are copied, so that a reader of the old version can't add results to the new one
+            final Map<String, Principal> copy = new HashMap<>(principals.size() * 2);
+            for (Map.Entry<String, Principal> entry : principals.entrySet())
+            {
+                if (!changedIds.contains(entry.getKey()))
+                {
+                    copy.put(entry.getKey(), entry.getValue().copyWithout(changedIds));
+                }
+            }
+            next = Collections.unmodifiableMap(copy);
+        }
+        changedIds.clear();
+        changedAll = false;
+        generation = new Generation(version, next);
+    }
+
+    /** the results of one version, the map of the principals is replaced when a user is added */
+    static final class Generation
+    {
+        final long version;
+        volatile Map<String, Principal> principals;
+
+        Generation(long version, Map<String, Principal> principals)
+        {
+            this.version = version;
+            this.principals = principals;
+        }
+
+        synchronized Principal addPrincipal(String userId)
+        {
+            final Principal existing = principals.get(userId);
+            if (existing != null)
+            {
+                return existing;
+            }
+            final Principal principal = new Principal();
+            final Map<String, Principal> copy = new HashMap<>(principals);
+            copy.put(userId, principal);
+            principals = Collections.unmodifiableMap(copy);
+            return principal;
+        }
+    }
+
+    /**
+     * the results of a user as hash table from the entity ids to the bits of the evaluated and the granted accesses. The nodes
+     * are immutable, so readers don't lock and either see the old or the new chain of a bucket. Writers lock the principal.
+     */
+    static final class Principal
+    {
+        private volatile Node[] buckets = new Node[16];
+        // guarded by this
+        private int size;
+
+        /** returns 0 if no access was evaluated for the entity */
+        int get(String id)
+        {
+            final Node[] table = buckets;
+            for (Node node = table[indexFor(id, table.length)]; node != null; node = node.next)
+            {
+                if (node.id.equals(id))
+                {
+                    return node.bits;
+                }
+            }
+            return 0;
+        }
+
+        synchronized void put(String id, int bits)
+        {
+            Node[] table = buckets;
+            if (size >= table.length * 3 / 4)
+            {
+                table = resize(table, table.length * 2);
+            }
+            final int index = indexFor(id, table.length);
+            final Node head = table[index];
+            int merged = bits;
+            boolean found = false;
+            for (Node node = head; node != null && !found; node = node.next)
+            {
+                if (node.id.equals(id))
+                {
+                    merged |= node.bits;
+                    found = true;
+                }
+            }
+            if (!found)
+            {
+                size++;
+            }
+            table[index] = new Node(id, merged, without(head, id));
+            buckets = table;
+        }
+
+        /** returns a principal with the results of all other entities */
+        synchronized Principal copyWithout(Set<String> ids)
+        {
+            final Principal copy = new Principal();
+            final Node[] table = buckets;
+            final Node[] copyTable = new Node[table.length];
+            for (int i = 0; i < table.length; i++)
+            {
+                for (Node node = table[i]; node != null; node = node.next)
+                {
+                    if (!ids.contains(node.id))
+                    {
+                        copyTable[i] = new Node(node.id, node.bits, copyTable[i]);
+                        copy.size++;
+                    }
+                }
+            }
+            copy.buckets = copyTable;
+            return copy;
+        }
+
+        private static Node[] resize(Node[] table, int length)
+        {
+            final Node[] resized = new Node[length];
+            for (Node head : table)
+            {
+                for (Node node = head; node != null; node = node.next)
+                {
+                    final int index = indexFor(node.id, length);
+                    resized[index] = new Node(node.id, node.bits, resized[index]);
+                }
+            }
+            return resized;
+        }
+
+        private static Node without(Node head, String id)
+        {
+            if (head == null)
+            {
+                return null;
+            }
+            if (head.id.equals(id))
+            {
+                return head.next;
+            }
+            final Node rest = without(head.next, id);
+            return rest == head.next ? head : new Node(head.id, head.bits, rest);
+        }
+
+        private static int indexFor(String id, int length)
+        {
+            final int hash = id.hashCode();
+            return (hash ^ (hash >>> 16)) & (length - 1);
+        }
+    }
+
+    static final class Node
+    {
+        final String id;
+        final int bits;
+        final Node next;
+
+        Node(String id, int bits, Node next)
+        {
+            this.id = id;
+            this.bits = bits;
+            this.next = next;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.rapla.framework.RaplaException;
 import org.rapla.framework.RaplaInitializationException;
 import org.rapla.framework.RaplaLocale;
 import org.rapla.framework.TypedComponentRole;
+import org.rapla.framework.metrics.Timer;
 import org.rapla.logger.Logger;
 import org.rapla.scheduler.CommandScheduler;
 import org.rapla.server.PromiseWait;
@@ -442,50 +443,89 @@ final public class FileOperator extends LocalAbstractCachableOperator
             /*  End of Exception Handling */
     }
 
-    public void dispatch(final UpdateEvent evt) throws RaplaException
+    @Override
+    protected void dispatchSingle(final UpdateEvent evt) throws RaplaException
     {
-        final RaplaLock.WriteLock writeLock = writeLockIfLoaded("dispatching " +  evt.getInfoString());
+        final CommitLock commitLock = lockForCommit(evt, "dispatching " + evt.getInfoString());
         try
         {
             preprocessEventStorage(evt);
-            Date since = getCurrentTimestamp();//evt.getLastValidated();
-            updateHistory(evt);
-            Date until = getCurrentTimestamp();
-            // this since is for the server and used to check if an entity is new created in this write transaction so set it to the current timestamp
-            // the since for the client will be used later when requesting the update event
-            // call of update must be first to update the cache.
-            // then saveData() saves all the data in the cache
-            final Collection<ReferenceInfo> removeIds = evt.getRemoveIds();
-            final List<PreferencePatch> preferencePatches = evt.getPreferencePatches();
-            final Collection<Entity> storeObjects = new ArrayList<>(evt.getStoreObjects());
-            for (Iterator<Entity> iterator = storeObjects.iterator(); iterator.hasNext();)
+            // the file is written as a whole, so only the checks run in parallel
+            if (commitLock.isShared())
             {
-                Entity entity = iterator.next();
-                if(entity instanceof ImportExportEntity)
-                {
-                    iterator.remove();
-                    ImportExportEntity cast = (ImportExportEntity) entity;
-                    insertIntoImportExportCache(cast);
-                }
+                // other writers can commit while the lock is upgraded, so the event is checked again
+                commitLock.upgrade();
+                preprocessEventStorage(evt);
             }
-            Set<ReferenceInfo<ImportExportEntity>> removedImports = new HashSet<>();
-            for (Iterator<ReferenceInfo> iterator = removeIds.iterator(); iterator.hasNext();)
+            store(Collections.singletonList(evt));
+        }
+        finally
+        {
+            unlock(commitLock);
+        }
+    }
+
+    /** applies the events to the cache and writes the file once */
+    @Override
+    protected void dispatchBatch(List<UpdateEvent> events, CommitLock commitLock) throws RaplaException
+    {
+        if (commitLock.isShared())
+        {
+            // other writers can commit while the lock is upgraded, so the events are checked again before the cache is changed
+            commitLock.upgrade();
+            for (UpdateEvent evt : events)
             {
-                ReferenceInfo referenceInfo = iterator.next();
-                if(referenceInfo.getType() == ImportExportEntity.class)
-                {
-                    iterator.remove();
-                    removedImports.add( referenceInfo);
-                }
+                preprocessEventStorage(evt);
             }
-            removeFromImportExportCache(removedImports);
-            refresh(since, until, storeObjects, preferencePatches, removeIds);
-            saveData(cache, null, includeIds);
         }
-        finally
+        commitLock.markChanged();
+        store(events);
+    }
+
+    private void store(List<UpdateEvent> events) throws RaplaException
+    {
+        Date since = getCurrentTimestamp();//evt.getLastValidated();
+        for (UpdateEvent evt : events)
         {
-            lockManager.unlock(writeLock);
+            updateHistory(evt);
+        }
+        Date until = getCurrentTimestamp();
+        // this since is for the server and used to check if an entity is new created in this write transaction so set it to the current timestamp
+        // the since for the client will be used later when requesting the update event
+        // call of update must be first to update the cache.
+        // then saveData() saves all the data in the cache
+        final Collection<ReferenceInfo> removeIds = new ArrayList<>();
+        final List<PreferencePatch> preferencePatches = new ArrayList<>();
+        final Collection<Entity> storeObjects = new ArrayList<>();
+        for (UpdateEvent evt : events)
+        {
+            removeIds.addAll(evt.getRemoveIds());
+            preferencePatches.addAll(evt.getPreferencePatches());
+            storeObjects.addAll(evt.getStoreObjects());
         }
+        for (Iterator<Entity> iterator = storeObjects.iterator(); iterator.hasNext();)
+        {
+            Entity entity = iterator.next();
+            if(entity instanceof ImportExportEntity)
+            {
+                iterator.remove();
+                ImportExportEntity cast = (ImportExportEntity) entity;
+                insertIntoImportExportCache(cast);
+            }
+        }
+        Set<ReferenceInfo<ImportExportEntity>> removedImports = new HashSet<>();
+        for (Iterator<ReferenceInfo> iterator = removeIds.iterator(); iterator.hasNext();)
+        {
+            ReferenceInfo referenceInfo = iterator.next();
+            if(referenceInfo.getType() == ImportExportEntity.class)
+            {
+                iterator.remove();
+                removedImports.add( referenceInfo);
+            }
+        }
+        removeFromImportExportCache(removedImports);
+        refresh(since, until, storeObjects, preferencePatches, removeIds);
+        saveData(cache, null, includeIds);
     }
 
 
@@ -613,7 +653,7 @@ final public class FileOperator extends LocalAbstractCachableOperator
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
         }
     }
 
@@ -624,6 +664,8 @@ final public class FileOperator extends LocalAbstractCachableOperator
 
     synchronized final private void saveData(LocalCache cache, String version, boolean includeIds) throws RaplaException
     {
+        final Timer timer = metrics.timer("rapla_file_save_seconds");
+        final long start = timer.start();
         final RaplaMainWriter raplaMainWriter = getMainWriter(cache, version, includeIds);
         try
         {
@@ -643,6 +685,10 @@ final public class FileOperator extends LocalAbstractCachableOperator
         {
             throw new RaplaException(e.getMessage());
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     /**
@@ -0,0 +1,271 @@
+package org.rapla.storage.dbrm;
+
+import org.rapla.components.util.TimeInterval;
+import org.rapla.logger.Logger;
+import org.rapla.scheduler.Promise;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Client side cache for appointment queries. Entries are keyed by the queried allocatables, the time window and the annotation query
+ * and hold the (possibly still pending) server response, so that concurrent requests for the same window share one server call.
+ * Entries are removed when an update event invalidates a time interval that overlaps their window or changes one of their allocatables.
+ */
+class AppointmentWindowCache
+{
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    /** number of lookups after which the hit rate is written to the log */
+    static final int LOG_INTERVAL = 100;
+
+    private final Logger logger;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Promise<AppointmentMap>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    AppointmentWindowCache(Logger logger)
+    {
+        this(logger, DEFAULT_MAX_ENTRIES);
+    }
+
+    AppointmentWindowCache(Logger logger, int maxEntries)
+    {
+        this.logger = logger;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * returns the cached response for the key. On a miss the loader is called and its pending response is put into the cache
+     * before the lock is released, so concurrent misses for the same window share one server call. Counts as a hit or miss in the statistics.
+     */
+    synchronized Promise<AppointmentMap> get(Key key, Function<Key, Promise<AppointmentMap>> loader)
+    {
+        Promise<AppointmentMap> result = entries.get(key);
+        if (result != null)
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+            result = loader.apply(key);
+            put(key, result);
+        }
+        final long lookups = hits + misses;
+        if (lookups % LOG_INTERVAL == 0)
+        {
+            logger.info("Appointment cache hit rate " + getHitRatePercent() + "% (" + hits + " hits, " + misses + " misses, " + entries.size() + " entries)");
+        }
+        return result;
+    }
+
+    /** loads the window if it is not cached or already loading. Doesn't count in the statistics. */
+    synchronized void prefetch(Key key, Function<Key, Promise<AppointmentMap>> loader)
+    {
+        if (!entries.containsKey(key))
+        {
+            put(key, loader.apply(key));
+        }
+    }
+
+    synchronized boolean contains(Key key)
+    {
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(Key key, Promise<AppointmentMap> promise)
+    {
+        entries.put(key, promise);
+        final Iterator<Key> it = entries.keySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext())
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /** removes the entry only if it still holds the passed promise, e.g. when a server call failed */
+    synchronized void remove(Key key, Promise<AppointmentMap> promise)
+    {
+        if (entries.get(key) == promise)
+        {
+            entries.remove(key);
+        }
+    }
+
+    /** removes all entries whose window overlaps the interval. A null interval invalidates nothing. */
+    synchronized void invalidate(TimeInterval interval)
+    {
+        if (interval == null)
+        {
+            return;
+        }
+        if (interval.getStart() == null && interval.getEnd() == null)
+        {
+            clear();
+            return;
+        }
+        final int sizeBefore = entries.size();
+        entries.keySet().removeIf(key -> key.getWindow().overlaps(interval));
+        if (logger.isDebugEnabled() && sizeBefore != entries.size())
+        {
+            logger.debug("Removed " + (sizeBefore - entries.size()) + " appointment windows overlapping " + interval);
+        }
+    }
+
+    /** removes all entries that query one of the allocatables, e.g. because they were changed, removed or are no longer readable */
+    synchronized void invalidateAllocatables(Collection<String> allocatableIds)
+    {
+        if (allocatableIds.isEmpty())
+        {
+            return;
+        }
+        final int sizeBefore = entries.size();
+        entries.keySet().removeIf(key -> key.containsAny(allocatableIds));
+        if (logger.isDebugEnabled() && sizeBefore != entries.size())
+        {
+            logger.debug("Removed " + (sizeBefore - entries.size()) + " appointment windows of changed resources");
+        }
+    }
+
+    synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    synchronized long getHits()
+    {
+        return hits;
+    }
+
+    synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    synchronized long getHitRatePercent()
+    {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (hits * 100) / lookups;
+    }
+
+    static final class Key
+    {
+        private final String[] allocatableIds;
+        private final Date start;
+        private final Date end;
+        private final Map<String, String> annotationQuery;
+        private final int hashCode;
+
+        Key(String[] allocatableIds, Date start, Date end, Map<String, String> annotationQuery)
+        {
+            this.allocatableIds = Arrays.copyOf(allocatableIds, allocatableIds.length);
+            Arrays.sort(this.allocatableIds);
+            this.start = start != null ? new Date(start.getTime()) : null;
+            this.end = end != null ? new Date(end.getTime()) : null;
+            this.annotationQuery = annotationQuery != null ? Collections.unmodifiableMap(new TreeMap<>(annotationQuery)) : Collections.emptyMap();
+            this.hashCode = Objects.hash(Arrays.hashCode(this.allocatableIds), start, end, this.annotationQuery);
+        }
+
+        String[] getAllocatableIds()
+        {
+            return Arrays.copyOf(allocatableIds, allocatableIds.length);
+        }
+
+        /** a key without allocatables queries all resources, so it contains every id */
+        boolean containsAny(Collection<String> ids)
+        {
+            if (allocatableIds.length == 0)
+            {
+                return true;
+            }
+            for (String id : allocatableIds)
+            {
+                if (ids.contains(id))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Date getStart()
+        {
+            return start;
+        }
+
+        Date getEnd()
+        {
+            return end;
+        }
+
+        /** the annotation query as passed to the server, null if empty */
+        Map<String, String> getAnnotationQuery()
+        {
+            return annotationQuery.isEmpty() ? null : annotationQuery;
+        }
+
+        TimeInterval getWindow()
+        {
+            return new TimeInterval(start, end);
+        }
+
+        /** a window of the same length directly before or after this one (direction -1 or 1). Returns null for open windows. */
+        Key getAdjacent(int direction)
+        {
+            if (start == null || end == null)
+            {
+                return null;
+            }
+            final long length = end.getTime() - start.getTime();
+            if (length <= 0)
+            {
+                return null;
+            }
+            final long offset = length * direction;
+            return new Key(allocatableIds, new Date(start.getTime() + offset), new Date(end.getTime() + offset), annotationQuery);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && Arrays.equals(allocatableIds, other.allocatableIds) && Objects.equals(start, other.start) && Objects
+                    .equals(end, other.end) && annotationQuery.equals(other.annotationQuery);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Key{" + allocatableIds.length + " allocatables, " + start + " - " + end + ", " + annotationQuery + '}';
+        }
+    }
+}
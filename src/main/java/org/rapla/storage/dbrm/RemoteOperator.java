@@ -20,6 +20,7 @@ import org.rapla.components.util.Assert;
 import org.rapla.components.util.DateTools;
 import org.rapla.components.util.SerializableDateTimeFormat;
 import org.rapla.components.util.TimeInterval;
+import org.rapla.entities.Category;
 import org.rapla.entities.Entity;
 import org.rapla.entities.EntityNotFoundException;
 import org.rapla.entities.RaplaType;
@@ -50,6 +51,7 @@ import org.rapla.inject.DefaultImplementation;
 import org.rapla.inject.InjectionContext;
 import org.rapla.logger.Logger;
 import org.rapla.scheduler.CommandScheduler;
+import org.rapla.scheduler.CompletablePromise;
 import org.rapla.scheduler.Promise;
 import org.rapla.scheduler.ResolvedPromise;
 import org.rapla.storage.PreferencePatch;
@@ -59,6 +61,8 @@ import org.rapla.storage.StorageUpdateListener;
 import org.rapla.storage.UpdateEvent;
 import org.rapla.storage.UpdateResult;
 import org.rapla.storage.dbrm.RemoteStorage.AllocatableBindingsRequest;
+import org.rapla.storage.dbrm.RemoteStorage.BindingBatchRequest;
+import org.rapla.storage.dbrm.RemoteStorage.BindingBatchResult;
 import org.rapla.storage.dbrm.RemoteStorage.BindingMap;
 import org.rapla.storage.dbrm.RemoteStorage.MergeRequest;
 import org.rapla.storage.dbrm.RemoteStorage.NextAllocatableDateRequest;
@@ -86,6 +90,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -107,6 +112,15 @@ public class RemoteOperator
     RemoteStorage remoteStorage;
     protected CommandScheduler commandQueue;
 
+    /** time in which binding requests are collected before they are sent in one batch to the server */
+    static final int BINDING_BATCH_WINDOW_MILLIS = 20;
+    private final Object bindingBatchLock = new Object();
+    private PendingBindingBatch pendingBindingBatch;
+
+    /** time after a query before the adjacent windows are prefetched, so that the visible window is loaded first */
+    static final int PREFETCH_DELAY_MILLIS = 500;
+    private final AppointmentWindowCache appointmentWindowCache;
+
     Date lastSyncedTimeLocal;
     Date lastSyncedTime;
     int timezoneOffset;
@@ -117,6 +131,7 @@ public class RemoteOperator
                           Map<String, FunctionFactory> functionFactoryMap, RemoteAuthentificationService remoteAuthentificationService, RemoteStorage remoteStorage,
                           RemoteConnectionInfo connectionInfo, Set<PermissionExtension> permissionExtensions, RaplaLock lockManager) {
         super(logger.getChildLogger("remote"), i18n, locale, functionFactoryMap, permissionExtensions, lockManager);
+        this.appointmentWindowCache = new AppointmentWindowCache(getLogger().getChildLogger("appointmentcache"));
         this.remoteAuthentificationService = remoteAuthentificationService;
         this.remoteStorage = remoteStorage;
         commandQueue = scheduler;
@@ -338,6 +353,7 @@ public class RemoteOperator
         try {
             bSessionActive = false;
             cache.clearAll();
+            appointmentWindowCache.clear();
         } catch (Exception e) {
             throw new RaplaException("Could not disconnect", e);
         }
@@ -457,6 +473,7 @@ public class RemoteOperator
             updateTimestamps(evt);
             Collection<Entity> storeObjects = evt.getStoreObjects();
             cache.clearAll();
+            appointmentWindowCache.clear();
             testResolveInitial(storeObjects);
             setResolver(storeObjects);
             for (Entity entity : storeObjects) {
@@ -734,27 +751,57 @@ public class RemoteOperator
 
     public Promise<Map<Allocatable, Collection<Appointment>>> queryAppointments(User user, Collection<Allocatable> allocatables, Date start, Date end,
                                                                                 final ClassificationFilter[] filters, Map<String, String> annotationQuery) {
-        final RemoteStorage serv = getRemoteStorage();
         Promise<Map<Allocatable, Collection<Appointment>>> result = refreshIfIdle().thenCompose((refreshed) -> {
-            String[] allocatableId = getIdList(allocatables);
-            return serv.queryAppointments(new QueryAppointments(allocatableId, start, end, annotationQuery)).thenApply(list -> {
-                Map<Allocatable, Collection<Appointment>> filtered;
-                {
-                    long time = System.currentTimeMillis();
-                    logger.debug("event server call took  " + (System.currentTimeMillis() - time) + " ms");
-                }
-                {
-                    long time = System.currentTimeMillis();
-                    filtered = processReservationResult(list, filters);
-                    logger.debug("event post processing took  " + (System.currentTimeMillis() - time) + " ms");
-                }
-
+            final AppointmentWindowCache.Key key = new AppointmentWindowCache.Key(getIdList(allocatables), start, end, annotationQuery);
+            final Promise<AppointmentMap> appointmentWindow = appointmentWindowCache.get(key, this::loadAppointmentWindow);
+            prefetchAdjacentWindows(key);
+            return appointmentWindow.thenApply(appointmentMap -> {
+                long time = System.currentTimeMillis();
+                Map<Allocatable, Collection<Appointment>> filtered = processReservationResult(appointmentMap, filters);
+                logger.debug("event post processing took  " + (System.currentTimeMillis() - time) + " ms");
                 return filtered;
             });
         });
         return result;
     }
 
+    /** queries the server for the appointments in the window. Called by the appointment cache, which keeps the pending result */
+    private Promise<AppointmentMap> loadAppointmentWindow(AppointmentWindowCache.Key key) {
+        final RemoteStorage serv = getRemoteStorage();
+        final long time = System.currentTimeMillis();
+        final QueryAppointments job = new QueryAppointments(key.getAllocatableIds(), key.getStart(), key.getEnd(), key.getAnnotationQuery());
+        final Promise<AppointmentMap> promise = serv.queryAppointments(job).thenApply(appointmentMap -> {
+            logger.debug("event server call took  " + (System.currentTimeMillis() - time) + " ms");
+            initAppointmentMap(appointmentMap);
+            return appointmentMap;
+        });
+        promise.exceptionally(ex -> appointmentWindowCache.remove(key, promise));
+        return promise;
+    }
+
+    /** loads the windows before and after the queried window in the background, so that paging through the calendar hits the cache */
+    private void prefetchAdjacentWindows(AppointmentWindowCache.Key key) {
+        final AppointmentWindowCache.Key previous = key.getAdjacent(-1);
+        final AppointmentWindowCache.Key next = key.getAdjacent(1);
+        if (previous == null || next == null) {
+            return;
+        }
+        if (appointmentWindowCache.contains(previous) && appointmentWindowCache.contains(next)) {
+            return;
+        }
+        commandQueue.delay(() -> {
+            if (!isConnected()) {
+                return;
+            }
+            for (AppointmentWindowCache.Key adjacent : new AppointmentWindowCache.Key[] { next, previous }) {
+                appointmentWindowCache.prefetch(adjacent, (toLoad) -> {
+                    getLogger().debug("Prefetching appointments for " + toLoad);
+                    return loadAppointmentWindow(toLoad);
+                });
+            }
+        }, PREFETCH_DELAY_MILLIS);
+    }
+
     protected Promise<Promise<Boolean>> refreshIfIdle() {
         return getScheduler().supply(() -> {
             // if a refresh is due, we assume the system went to sleep so we refresh before we continue
@@ -770,10 +817,18 @@ public class RemoteOperator
     private Map<Allocatable, Collection<Appointment>> processReservationResult(AppointmentMap appointmentMap, ClassificationFilter[] filters)
             throws RaplaException {
         RaplaLock.ReadLock lock = lockManager.readLock(getClass(), "processReservationResult");
+        try {
+            return appointmentMap.getResult(filters);
+        } finally {
+            lockManager.unlock(lock);
+        }
+    }
+
+    private void initAppointmentMap(AppointmentMap appointmentMap) throws RaplaException {
+        RaplaLock.ReadLock lock = lockManager.readLock(getClass(), "initAppointmentMap");
         try {
             final RemoteOperator resolver = this;
             appointmentMap.init(resolver);
-            return appointmentMap.getResult(filters);
         } finally {
             lockManager.unlock(lock);
         }
@@ -841,11 +896,38 @@ public class RemoteOperator
                 result = createUpdateResult(Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), since, until);
             }
         }
+        appointmentWindowCache.invalidate(evt.getInvalidateInterval());
+        invalidateAppointmentWindows(evt);
         if (result != null) {
             fireStorageUpdated(result, evt.getInvalidateInterval());
         }
     }
 
+    /** the invalidate interval doesn't cover changes of the resources themselves or of the permissions, e.g. if a resource is removed or no longer readable */
+    private void invalidateAppointmentWindows(UpdateEvent evt) {
+        final Set<String> allocatableIds = new HashSet<>();
+        for (Entity entity : evt.getStoreObjects()) {
+            final Class<? extends Entity> typeClass = entity.getTypeClass();
+            if (typeClass == Allocatable.class) {
+                allocatableIds.add(entity.getId());
+            } else if (typeClass == User.class || typeClass == Category.class || typeClass == DynamicType.class) {
+                // user groups, group categories or type permissions can change what the user can read
+                appointmentWindowCache.clear();
+                return;
+            }
+        }
+        for (ReferenceInfo removed : evt.getRemoveIds()) {
+            final Class<? extends Entity> typeClass = removed.getType();
+            if (typeClass == Allocatable.class) {
+                allocatableIds.add(removed.getId());
+            } else if (typeClass == User.class || typeClass == Category.class || typeClass == DynamicType.class) {
+                appointmentWindowCache.clear();
+                return;
+            }
+        }
+        appointmentWindowCache.invalidateAllocatables(allocatableIds);
+    }
+
     protected void refreshAll() throws RaplaException {
         UpdateResult result;
         Collection<Entity> oldEntities;
@@ -904,6 +986,7 @@ public class RemoteOperator
         Date until = getLastRefreshed();
         result = createUpdateResult(oldEntityMap, updated, removeInfo, since, until);
         TimeInterval invalidateInterval = new TimeInterval(null, null);
+        appointmentWindowCache.invalidate(invalidateInterval);
         fireStorageUpdated(result, invalidateInterval);
     }
 
@@ -942,7 +1025,6 @@ public class RemoteOperator
     @Override
     public Promise<Map<Allocatable, Collection<Appointment>>> getFirstAllocatableBindings(final Collection<Allocatable> allocatables,
                                                                                           Collection<Appointment> appointments, Collection<Reservation> ignoreList) {
-        final RemoteStorage serv = getRemoteStorage();
         final String[] allocatableIds = getIdList(allocatables);
         //AppointmentImpl[] appointmentArray = appointments.toArray( new AppointmentImpl[appointments.size()]);
         final String[] reservationIds = getIdList(ignoreList);
@@ -952,7 +1034,7 @@ public class RemoteOperator
             appointmentList.add((AppointmentImpl) app);
             appointmentMap.put(app.getId(), app);
         }
-        final Promise<BindingMap> bindingMapPromise = serv.getFirstAllocatableBindings(new AllocatableBindingsRequest(allocatableIds, appointmentList, reservationIds));
+        final Promise<BindingMap> bindingMapPromise = queueBindingRequest((batch) -> batch.addFirstBindings(new AllocatableBindingsRequest(allocatableIds, appointmentList, reservationIds)));
 
         Promise<Map<Allocatable, Collection<Appointment>>> resultPromise = bindingMapPromise.thenApply((bindingMap) -> {
             Map<String, List<String>> resultMap = bindingMap.get();
@@ -978,11 +1060,10 @@ public class RemoteOperator
     @Override
     public Promise<Map<Allocatable, Map<Appointment, Collection<Appointment>>>> getAllAllocatableBindings(final Collection<Allocatable> allocatables,
                                                                                                           final Collection<Appointment> appointments, final Collection<Reservation> ignoreList) {
-        final RemoteStorage serv = getRemoteStorage();
         final String[] allocatableIds = getIdList(allocatables);
         final List<AppointmentImpl> appointmentArray = Arrays.asList(appointments.toArray(new AppointmentImpl[]{}));
         final String[] reservationIds = getIdList(ignoreList);
-        final Promise<List<ReservationImpl>> listPromise = serv.getAllAllocatableBindings(new AllocatableBindingsRequest(allocatableIds, appointmentArray, reservationIds));
+        final Promise<List<ReservationImpl>> listPromise = queueBindingRequest((batch) -> batch.addAllBindings(new AllocatableBindingsRequest(allocatableIds, appointmentArray, reservationIds)));
         return listPromise.thenApply((serverResult) -> getMap(allocatables, appointments, ignoreList, serverResult));
     }
 
@@ -1023,15 +1104,129 @@ public class RemoteOperator
     @Override
     public Promise<Date> getNextAllocatableDate(Collection<Allocatable> allocatables, Appointment appointment, Collection<Reservation> ignoreList,
                                                 Integer worktimeStartMinutes, Integer worktimeEndMinutes, Integer[] excludedDays, Integer rowsPerHour) {
-        RemoteStorage serv = getRemoteStorage();
         String[] allocatableIds = getIdList(allocatables);
         String[] reservationIds = getIdList(ignoreList);
-        Promise<Date> nextAllocatableDate = serv.getNextAllocatableDate(
+        Promise<Date> nextAllocatableDate = queueBindingRequest((batch) -> batch.addNextDate(
                 new NextAllocatableDateRequest(allocatableIds, (AppointmentImpl) appointment, reservationIds, worktimeStartMinutes, worktimeEndMinutes,
-                        excludedDays, rowsPerHour));
+                        excludedDays, rowsPerHour)));
         return nextAllocatableDate;
     }
 
+    private <T> Promise<T> queueBindingRequest(Function<PendingBindingBatch, CompletablePromise<T>> addFunction)
+    {
+        synchronized (bindingBatchLock)
+        {
+            if (pendingBindingBatch == null)
+            {
+                pendingBindingBatch = new PendingBindingBatch();
+                commandQueue.delay(this::sendBindingBatch, BINDING_BATCH_WINDOW_MILLIS);
+            }
+            return addFunction.apply(pendingBindingBatch);
+        }
+    }
+
+    private void sendBindingBatch()
+    {
+        final PendingBindingBatch batch;
+        synchronized (bindingBatchLock)
+        {
+            batch = pendingBindingBatch;
+            pendingBindingBatch = null;
+        }
+        if (batch == null)
+        {
+            return;
+        }
+        getRemoteStorage().getBindingsBatch(batch.request).thenAccept(batch::complete).exceptionally(batch::completeExceptionally);
+    }
+
+    /** Binding requests that are issued within {@link #BINDING_BATCH_WINDOW_MILLIS} are collected and sent in one server call*/
+    class PendingBindingBatch
+    {
+        final BindingBatchRequest request = new BindingBatchRequest();
+        final List<CompletablePromise<BindingMap>> firstBindings = new ArrayList<>();
+        final List<CompletablePromise<List<ReservationImpl>>> allBindings = new ArrayList<>();
+        final List<CompletablePromise<Date>> nextDates = new ArrayList<>();
+
+        CompletablePromise<BindingMap> addFirstBindings(AllocatableBindingsRequest bindingsRequest)
+        {
+            request.getFirstBindings().add(bindingsRequest);
+            return add(firstBindings);
+        }
+
+        CompletablePromise<List<ReservationImpl>> addAllBindings(AllocatableBindingsRequest bindingsRequest)
+        {
+            request.getAllBindings().add(bindingsRequest);
+            return add(allBindings);
+        }
+
+        CompletablePromise<Date> addNextDate(NextAllocatableDateRequest dateRequest)
+        {
+            request.getNextDates().add(dateRequest);
+            return add(nextDates);
+        }
+
+        private <T> CompletablePromise<T> add(List<CompletablePromise<T>> list)
+        {
+            final CompletablePromise<T> promise = commandQueue.createCompletable();
+            list.add(promise);
+            return promise;
+        }
+
+        void complete(BindingBatchResult result)
+        {
+            if (result == null)
+            {
+                completeExceptionally(new RaplaException("No result for the binding requests"));
+                return;
+            }
+            complete(firstBindings, result.getFirstBindings(), result.getFirstBindingErrors());
+            complete(allBindings, result.getAllBindings(), result.getAllBindingErrors());
+            complete(nextDates, result.getNextDates(), result.getNextDateErrors());
+        }
+
+        /**
+         * only the requests with an error fail, the others of the batch are completed with their results. Requests without a
+         * result, e.g. because the server returned less results than requested, fail as well, so every promise is completed.
+         */
+        private <T> void complete(List<CompletablePromise<T>> promises, List<T> results, List<String> errors)
+        {
+            final int resultCount = results != null ? results.size() : 0;
+            for (int i = 0; i < promises.size(); i++)
+            {
+                final String error = errors != null && i < errors.size() ? errors.get(i) : null;
+                if (error != null)
+                {
+                    promises.get(i).completeExceptionally(new RaplaException(error));
+                }
+                else if (i >= resultCount)
+                {
+                    promises.get(i).completeExceptionally(new RaplaException("Missing result " + i + " of " + promises.size() + " binding requests"));
+                }
+                else
+                {
+                    promises.get(i).complete(results.get(i));
+                }
+            }
+        }
+
+        void completeExceptionally(Throwable ex)
+        {
+            for (CompletablePromise<?> promise : firstBindings)
+            {
+                promise.completeExceptionally(ex);
+            }
+            for (CompletablePromise<?> promise : allBindings)
+            {
+                promise.completeExceptionally(ex);
+            }
+            for (CompletablePromise<?> promise : nextDates)
+            {
+                promise.completeExceptionally(ex);
+            }
+        }
+    }
+
     static private SortedSet<Appointment> getAppointments(Allocatable alloc, SortedSet<Appointment> allAppointments) {
         SortedSet<Appointment> result = new TreeSet<>(new AppointmentStartComparator());
         for (Appointment appointment : allAppointments) {
@@ -30,6 +30,7 @@ import javax.ws.rs.core.MediaType;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -325,6 +326,170 @@ public interface RemoteStorage
         }
     }
 
+    /** evaluates several binding and availability queries under one read lock on the server.
+     * The results are returned in the order of the requests. A request that fails, e.g. because of an unknown or unreadable resource,
+     * gets an error entry and doesn't affect the other requests of the batch*/
+    @POST
+    @Path("allocatable/bindings/batch")
+    @Consumes({ MediaType.APPLICATION_JSON })
+    @Produces({ MediaType.APPLICATION_JSON })
+    Promise<BindingBatchResult> getBindingsBatch(BindingBatchRequest job);
+
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    class BindingBatchRequest
+    {
+        private List<AllocatableBindingsRequest> firstBindings = new ArrayList<>();
+        private List<AllocatableBindingsRequest> allBindings = new ArrayList<>();
+        private List<NextAllocatableDateRequest> nextDates = new ArrayList<>();
+
+        public BindingBatchRequest()
+        {
+        }
+
+        public List<AllocatableBindingsRequest> getFirstBindings()
+        {
+            return firstBindings;
+        }
+
+        public List<AllocatableBindingsRequest> getAllBindings()
+        {
+            return allBindings;
+        }
+
+        public List<NextAllocatableDateRequest> getNextDates()
+        {
+            return nextDates;
+        }
+    }
+
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    class BindingBatchResult
+    {
+        private List<BindingMap> firstBindings = new ArrayList<>();
+        private List<List<ReservationImpl>> allBindings = new ArrayList<>();
+        private List<Date> nextDates = new ArrayList<>();
+        // the error message of each request or null if the request succeeded. The result of a failed request is null
+        private List<String> firstBindingErrors = new ArrayList<>();
+        private List<String> allBindingErrors = new ArrayList<>();
+        private List<String> nextDateErrors = new ArrayList<>();
+
+        public BindingBatchResult()
+        {
+        }
+
+        public List<BindingMap> getFirstBindings()
+        {
+            return firstBindings;
+        }
+
+        public List<List<ReservationImpl>> getAllBindings()
+        {
+            return allBindings;
+        }
+
+        public List<Date> getNextDates()
+        {
+            return nextDates;
+        }
+
+        public List<String> getFirstBindingErrors()
+        {
+            return firstBindingErrors;
+        }
+
+        public List<String> getAllBindingErrors()
+        {
+            return allBindingErrors;
+        }
+
+        public List<String> getNextDateErrors()
+        {
+            return nextDateErrors;
+        }
+    }
+
+    /** searches the names and text attributes of the resources and events that the user can read.
+     * Returns a page of the ids, the best matches first. */
+    @POST
+    @Path("search")
+    @Consumes({ MediaType.APPLICATION_JSON })
+    @Produces({ MediaType.APPLICATION_JSON })
+    Promise<SearchResult> search(SearchRequest job);
+
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    class SearchRequest
+    {
+        private String query;
+        // the local names of the types, e.g. resource or reservation. All types are searched if empty
+        private String[] types;
+        private int offset;
+        private int limit;
+
+        public SearchRequest()
+        {
+        }
+
+        public SearchRequest(String query, String[] types, int offset, int limit)
+        {
+            this.query = query;
+            this.types = types;
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        public String getQuery()
+        {
+            return query;
+        }
+
+        public String[] getTypes()
+        {
+            return types;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public int getLimit()
+        {
+            return limit;
+        }
+    }
+
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    class SearchResult
+    {
+        private List<String> ids = new ArrayList<>();
+        // the number of matches of all pages
+        private int total;
+
+        public SearchResult()
+        {
+        }
+
+        public SearchResult(List<String> ids, int total)
+        {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<String> getIds()
+        {
+            return ids;
+        }
+
+        public int getTotal()
+        {
+            return total;
+        }
+    }
+
     @GET
     @Path("user")
     @Produces({ MediaType.APPLICATION_JSON })
@@ -31,6 +31,7 @@ import org.rapla.facade.Conflict;
 import org.rapla.framework.RaplaException;
 import org.rapla.framework.RaplaLocale;
 import org.rapla.framework.internal.ConfigTools;
+import org.rapla.framework.metrics.Timer;
 import org.rapla.logger.Logger;
 import org.rapla.scheduler.CommandScheduler;
 import org.rapla.server.PromiseWait;
@@ -86,6 +87,8 @@ import java.util.Set;
 
     private String connectionName;
     Provider<ImportExportManager> importExportManager;
+    // set if a commit could not update the cache, the next writer loads the changes before it uses the cache
+    private volatile boolean refreshPending;
 
     public DBOperator(Logger logger, PromiseWait promiseWait,RaplaResources i18n, RaplaLocale locale, final CommandScheduler scheduler, Map<String, FunctionFactory> functionFactoryMap,
             Provider<ImportExportManager> importExportManager, DataSource dataSource, Set<PermissionExtension> permissionExtensions)
@@ -139,7 +142,7 @@ import java.util.Set;
                         }
                         finally
                         {
-                            lockManager.unlock(writeLock);
+                            unlock(writeLock);
                         }
                     }
 
@@ -329,15 +332,22 @@ import java.util.Set;
         {
             return;
         }
+        final Timer timer = metrics.timer("rapla_db_refresh_seconds");
+        final long start = timer.start();
         try (Connection c = createConnection())
         {
             refreshWithoutLock(c);
         }
         catch (Throwable e)
         {
+            refreshPending = true;
             Date lastUpdated = getLastRefreshed();
             logger.error("Error updating model from DB. Last success was at " + lastUpdated, e);
         }
+        finally
+        {
+            timer.stop(start);
+        }
     }
 
     private void refreshWithoutLock(Connection c) throws SQLException, RaplaException
@@ -345,6 +355,8 @@ import java.util.Set;
         final EntityStore entityStore = new EntityStore(cache);
         final Category superCategory = cache.getSuperCategory();
         final RaplaSQL raplaSQLInput = new RaplaSQL(createInputContext(entityStore, DBOperator.this, superCategory));
+        // cleared before the changes are read, so a commit that fails to refresh after this point is not lost
+        refreshPending = false;
         Date lastUpdated = getLastRefreshed();
         Date connectionTime = raplaSQLInput.getLastUpdated(c);
 
@@ -374,6 +386,17 @@ import java.util.Set;
         return;
     }
 
+    @Override
+    public RaplaLock.WriteLock writeLockIfLoaded(String name) throws RaplaException
+    {
+        final RaplaLock.WriteLock writeLock = super.writeLockIfLoaded(name);
+        if (refreshPending)
+        {
+            refreshWithoutLock();
+        }
+        return writeLock;
+    }
+
     @Override
     synchronized public void disconnect() throws RaplaException
     {
@@ -436,7 +459,7 @@ import java.util.Set;
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
             close(c);
             c = null;
         }
@@ -681,13 +704,21 @@ import java.util.Set;
         return tableMap;
     }
 
-    public void dispatch(UpdateEvent evt) throws RaplaException
+    @Override
+    protected void dispatchSingle(UpdateEvent evt) throws RaplaException
     {
-        RaplaLock.WriteLock writeLock = writeLockIfLoaded("Dispatching " + evt.toString());
+        // reservation only changes are checked and written to the db in parallel, only the cache update is serialized
+        final CommitLock commitLock = lockForCommit(evt, "Dispatching " + evt.toString());
         try
         {
             //Date since = lastUpdated;
             preprocessEventStorage(evt);
+            if (commitLock.isShared() && getReservationOnlyLockIds(evt) == null)
+            {
+                // the closure added dependent entities, so check again with the global lock
+                commitLock.upgrade();
+                preprocessEventStorage(evt);
+            }
             Collection<Entity> storeObjects = evt.getStoreObjects();
             List<PreferencePatch> preferencePatches = evt.getPreferencePatches();
             Collection<ReferenceInfo> removeObjects = evt.getRemoveIds();
@@ -699,14 +730,7 @@ import java.util.Set;
             try
             {
                 dbStore(storeObjects, preferencePatches, removeObjects, connection, evt.getUserId());
-                try
-                {
-                    refreshWithoutLock(connection);
-                }
-                catch (SQLException e)
-                {
-                    getLogger().error("Could not load update from db. Will be loaded afterwards", e);
-                }
+                refreshAfterCommit(commitLock, connection);
             }
             finally
             {
@@ -715,12 +739,64 @@ import java.util.Set;
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(commitLock);
         }
         // TODO check if still needed
         //fireStorageUpdated(result);
     }
 
+    /** writes the events in one transaction followed by one refresh of the cache */
+    @Override
+    protected void dispatchBatch(List<UpdateEvent> events, CommitLock commitLock) throws RaplaException
+    {
+        final Collection<Entity> storeObjects = new ArrayList<>();
+        final Collection<ReferenceInfo> removeObjects = new ArrayList<>();
+        for (UpdateEvent evt : events)
+        {
+            final String userId = evt.getUserId();
+            final User lastChangedBy = (userId != null) ? resolve(userId, User.class) : null;
+            for (Entity e : evt.getStoreObjects())
+            {
+                if (lastChangedBy != null && e instanceof ModifiableTimestamp)
+                {
+                    ((ModifiableTimestamp) e).setLastChangedBy(lastChangedBy);
+                }
+                storeObjects.add(e);
+            }
+            removeObjects.addAll(evt.getRemoveIds());
+        }
+        Connection connection = createConnection();
+        try
+        {
+            dbStore(storeObjects, Collections.emptyList(), removeObjects, connection, null);
+            commitLock.markChanged();
+            refreshAfterCommit(commitLock, connection);
+        }
+        finally
+        {
+            close(connection);
+        }
+    }
+
+    /**
+     * The changes are committed when this is called, so a lock upgrade or refresh that fails must not be reported as a failed
+     * store. In that case the refresh is marked as pending and done by the next writer or the scheduled refresh. A background
+     * task is not used, because the scheduler can reject it when it is busy.
+     */
+    private void refreshAfterCommit(CommitLock commitLock, Connection connection)
+    {
+        try
+        {
+            commitLock.upgrade();
+            refreshWithoutLock(connection);
+        }
+        catch (SQLException | RaplaException e)
+        {
+            getLogger().error("Could not load update from db. Will be loaded afterwards", e);
+            refreshPending = true;
+        }
+    }
+
     private void dbStore(Collection<Entity> storeObjects, List<PreferencePatch> preferencePatches, Collection<ReferenceInfo> removeObjects,
             Connection connection, String userId) throws RaplaException
     {
@@ -748,6 +824,8 @@ import java.util.Set;
         final Collection<String> lockIds = needsGlobalLock ? Collections.singletonList(LockStorage.GLOBAL_LOCK) : getLockIds(ids);
         RaplaSQL raplaSQLOutput = new RaplaSQL(createOutputContext(cache));
         Map<Entity,Entity> storeMap = new LinkedHashMap<>();
+        final Timer timer = metrics.timer("rapla_db_store_seconds");
+        final long start = timer.start();
         try
         {
             connectionTimestamp = raplaSQLOutput.getDatabaseTimestamp(connection);
@@ -825,6 +903,7 @@ import java.util.Set;
             {
                 getLogger().error("Could not remove locks. They will be removed during next cleanup. ", ex);
             }
+            timer.stop(start);
         }
     }
 
@@ -450,7 +450,7 @@ public abstract class AbstractCachableOperator implements StorageOperator
         RaplaLock.ReadLock readLock = lockManager.readLock(getClass(),"getAllocatables");
         try
         {
-            Collection<Allocatable> collection = cache.getAllocatables();
+            Collection<Allocatable> collection = getAllocatableCandidates(filters);
             // We return a clone to avoid synchronization Problems
             allocatables.addAll(collection);
         }
@@ -493,6 +493,12 @@ public abstract class AbstractCachableOperator implements StorageOperator
         return allocatables;
     }
 
+    /** the allocatables that can match the filters. Called with the read lock, the filters are applied to the result afterwards. */
+    protected Collection<Allocatable> getAllocatableCandidates(ClassificationFilter[] filters)
+    {
+        return cache.getAllocatables();
+    }
+
     protected boolean isInFilter(Classifiable classifiable, ClassificationFilter[] filters)
     {
         if (filters == null)
@@ -625,6 +631,11 @@ public abstract class AbstractCachableOperator implements StorageOperator
         }
     }
 
+    public RaplaLock getLockManager()
+    {
+        return lockManager;
+    }
+
     public RaplaLock.WriteLock writeLockIfLoaded(String name) throws RaplaException
     {
         final RaplaLock.WriteLock lock = lockManager.writeLock(getClass(),name,60);
@@ -647,6 +658,27 @@ public abstract class AbstractCachableOperator implements StorageOperator
         return lock;
     }
 
+    /** publishes the changes of the writer and releases the write lock afterwards */
+    protected void unlock(RaplaLock.WriteLock writeLock)
+    {
+        try
+        {
+            publishSnapshot();
+        }
+        finally
+        {
+            lockManager.unlock(writeLock);
+        }
+    }
+
+    /**
+     * called before the write lock is released. Override this to make the changes of the writer visible to readers that
+     * don't acquire the read lock.
+     */
+    protected void publishSnapshot()
+    {
+    }
+
     @Override public Map<Entity, Entity> getPersistant(Collection<? extends Entity> list) throws RaplaException
     {
         Map<ReferenceInfo<Entity>, Entity> idMap = createReferenceInfoMap(list);
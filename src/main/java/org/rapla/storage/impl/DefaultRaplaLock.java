@@ -7,8 +7,14 @@ import org.rapla.inject.InjectionContext;
 import org.rapla.logger.Logger;
 
 import javax.inject.Inject;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -19,8 +25,11 @@ public class DefaultRaplaLock implements RaplaLock
     public static final int DEFAULT_READLOCK_TIMEOUT_SECONDS = 20;
     public static final int DEFAULT_WRITELOCK_TIMEOUT_SECONDS = 60;
     final protected ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    Stack<WriteLock> writeLocks = new Stack<>();
-    Stack<ReadLock> readLocks = new Stack<>();
+    // the current lock holders are only needed for diagnostics, so readers must not contend on them.
+    final ConcurrentMap<Long, Holder> writeLocks = new ConcurrentHashMap<>();
+    final ConcurrentMap<Long, Holder> readLocks = new ConcurrentHashMap<>();
+    private final AtomicLong lockSequence = new AtomicLong();
+    private final LockMetrics metrics = new LockMetrics();
     Logger logger;
 
     @Inject
@@ -40,9 +49,13 @@ public class DefaultRaplaLock implements RaplaLock
         // Enabling the stack trace is a huge performance cost
         StackTraceElement[] stackTrace = logger.isTraceEnabled() ? getStackTrace() : new StackTraceElement[] {};
         final long currentTime = System.currentTimeMillis();
-        final Lock lock = lock(this.readWriteLock.readLock(), seconds, true);
-        final ReadLock readLock = new ReadLock(lock,clazz, name, stackTrace, currentTime);
-        readLocks.add(readLock);
+        final LockMetrics.Site site = metrics.getSite(clazz, name, LockMetrics.LockType.READ);
+        final long waitStart = System.nanoTime();
+        final Lock lock = lock(this.readWriteLock.readLock(), seconds, true, site);
+        final long acquired = System.nanoTime();
+        site.recordWait(acquired - waitStart);
+        final ReadLock readLock = new ReadLock(lock,clazz, name, stackTrace, currentTime, lockSequence.incrementAndGet());
+        readLocks.put(readLock.getSequence(), new Holder(readLock, site, acquired));
         return readLock;
     }
 
@@ -54,7 +67,7 @@ public class DefaultRaplaLock implements RaplaLock
         }
     }
 
-    private Lock lock(Lock lock, int seconds, boolean isRead) throws RaplaException
+    private Lock lock(Lock lock, int seconds, boolean isRead, LockMetrics.Site site) throws RaplaException
     {
         try
         {
@@ -68,6 +81,7 @@ public class DefaultRaplaLock implements RaplaLock
             }
             else
             {
+                site.recordTimeout();
                 if (logger != null)
                 {
                     int logThreshholdTime = 0;
@@ -80,7 +94,7 @@ public class DefaultRaplaLock implements RaplaLock
                 }
                 else
                 {
-                    throw new RaplaSynchronizationException("Someone is currently reading or writing. Please try again! Can't acquire write lock." + readLocks);
+                    throw new RaplaSynchronizationException("Someone is currently reading or writing. Please try again! Can't acquire write lock." + getReadLockHolders());
                 }
             }
         }
@@ -90,13 +104,13 @@ public class DefaultRaplaLock implements RaplaLock
         }
     }
 
-    private void logLongLocks(Stack<? extends LockInfo> lockCollection, int logThreshholdTime)
+    private void logLongLocks(ConcurrentMap<Long, Holder> lockMap, int logThreshholdTime)
     {
         final long currentTime = System.currentTimeMillis();
-        final LockInfo[] locks = lockCollection.toArray(new LockInfo[] {});
-        for (int i = 0; i < locks.length; i++)
+        final List<AbstractLock> locks = getHolders(lockMap.values());
+        for (int i = 0; i < locks.size(); i++)
         {
-            final LockInfo lock = locks[i];
+            final LockInfo lock = locks.get(i);
             final long timeSinceLock = (currentTime - lock.getLockTime())/ 1000;
             if ( timeSinceLock > logThreshholdTime )
             {
@@ -113,9 +127,11 @@ public class DefaultRaplaLock implements RaplaLock
         final WriteLock lock;
         StackTraceElement[] stackTrace = logger.isDebugEnabled() ? getStackTrace() : new StackTraceElement[] {};
         final long currentTime = System.currentTimeMillis();
+        final LockMetrics.Site site = metrics.getSite(clazz, name, LockMetrics.LockType.WRITE);
+        final long waitStart = System.nanoTime();
         if (seconds > 0)
         {
-            lock = new WriteLock(lock(this.readWriteLock.writeLock(), seconds, false),clazz, name, stackTrace, currentTime);
+            lock = new WriteLock(lock(this.readWriteLock.writeLock(), seconds, false, site),clazz, name, stackTrace, currentTime, lockSequence.incrementAndGet());
         }
         else
         {
@@ -124,7 +140,7 @@ public class DefaultRaplaLock implements RaplaLock
             boolean tryLock = writeLock.tryLock();
             if (tryLock)
             {
-                lock = new WriteLock(writeLock,clazz, name, stackTrace, currentTime);
+                lock = new WriteLock(writeLock,clazz, name, stackTrace, currentTime, lockSequence.incrementAndGet());
             }
             else
             {
@@ -133,7 +149,9 @@ public class DefaultRaplaLock implements RaplaLock
         }
         if (lock != null)
         {
-            writeLocks.add(lock);
+            final long acquired = System.nanoTime();
+            site.recordWait(acquired - waitStart);
+            writeLocks.put(lock.getSequence(), new Holder(lock, site, acquired));
         }
         return lock;
     }
@@ -206,7 +224,7 @@ public class DefaultRaplaLock implements RaplaLock
             return;
         }
         ((Lock) lock.lock).unlock();
-        readLocks.remove(lock);
+        released(readLocks.remove(lock.getSequence()));
     }
 
     public void unlock(WriteLock lock)
@@ -216,7 +234,77 @@ public class DefaultRaplaLock implements RaplaLock
             return;
         }
         ((Lock) lock.lock).unlock();
-        writeLocks.remove(lock);
+        released(writeLocks.remove(lock.getSequence()));
+    }
+
+    private void released(Holder holder)
+    {
+        if (holder != null)
+        {
+            holder.site.recordHold(System.nanoTime() - holder.acquired);
+        }
+    }
+
+    /** the read locks that are currently held, oldest first */
+    public List<AbstractLock> getReadLockHolders()
+    {
+        return getHolders(readLocks.values());
+    }
+
+    /** the write locks that are currently held, oldest first */
+    public List<AbstractLock> getWriteLockHolders()
+    {
+        return getHolders(writeLocks.values());
+    }
+
+    private static List<AbstractLock> getHolders(Collection<Holder> holders)
+    {
+        final List<AbstractLock> result = new ArrayList<>();
+        for (Holder holder : holders)
+        {
+            result.add(holder.lock);
+        }
+        result.sort(Comparator.comparingLong(AbstractLock::getSequence));
+        return result;
+    }
+
+    public LockMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /** the locks that are currently held, write locks first and the longest held first */
+    public List<LockMetrics.HolderStatistics> getHolderStatistics()
+    {
+        final long now = System.nanoTime();
+        final List<Holder> holders = new ArrayList<>(writeLocks.values());
+        final List<Holder> readHolders = new ArrayList<>(readLocks.values());
+        holders.sort(Comparator.comparingLong((Holder holder) -> holder.acquired));
+        readHolders.sort(Comparator.comparingLong((Holder holder) -> holder.acquired));
+        holders.addAll(readHolders);
+        final List<LockMetrics.HolderStatistics> result = new ArrayList<>();
+        for (Holder holder : holders)
+        {
+            final long heldMillis = (now - holder.acquired) / 1000000;
+            result.add(new LockMetrics.HolderStatistics(holder.site, holder.lock.lockname, holder.thread, heldMillis));
+        }
+        return result;
+    }
+
+    static final class Holder
+    {
+        final AbstractLock lock;
+        final LockMetrics.Site site;
+        final long acquired;
+        final String thread;
+
+        Holder(AbstractLock lock, LockMetrics.Site site, long acquired)
+        {
+            this.lock = lock;
+            this.site = site;
+            this.acquired = acquired;
+            this.thread = Thread.currentThread().getName();
+        }
     }
 
 }
@@ -0,0 +1,230 @@
+package org.rapla.storage.impl;
+
+import org.rapla.framework.metrics.Histogram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wait and hold times of the locks of a {@link DefaultRaplaLock} per call site. The call site is the class that requests the
+ * lock together with the first word of the lock name, so that names with ids or user names in it end up in the same site.
+ */
+public class LockMetrics
+{
+    static final int MAX_SITES = 256;
+    static final String OTHER_SITE = "other";
+
+    public enum LockType
+    {
+        READ,
+        WRITE
+    }
+
+    private final ConcurrentMap<Class, ConcurrentMap<String, Site>>[] sitesPerType;
+    private final Site[] otherSites;
+    private final AtomicInteger siteCount = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    public LockMetrics()
+    {
+        final LockType[] types = LockType.values();
+        sitesPerType = new ConcurrentMap[types.length];
+        otherSites = new Site[types.length];
+        for (LockType type : types)
+        {
+            sitesPerType[type.ordinal()] = new ConcurrentHashMap<>();
+            otherSites[type.ordinal()] = new Site(type, OTHER_SITE);
+        }
+    }
+
+    public Site getSite(Class clazz, String lockName, LockType type)
+    {
+        final Class key = clazz != null ? clazz : LockMetrics.class;
+        final ConcurrentMap<Class, ConcurrentMap<String, Site>> sitesForType = sitesPerType[type.ordinal()];
+        ConcurrentMap<String, Site> sitesForClass = sitesForType.get(key);
+        if (sitesForClass == null)
+        {
+            sitesForClass = sitesForType.computeIfAbsent(key, (c) -> new ConcurrentHashMap<>());
+        }
+        final String operation = getOperation(lockName);
+        final Site site = sitesForClass.get(operation);
+        if (site != null)
+        {
+            return site;
+        }
+        if (siteCount.get() >= MAX_SITES)
+        {
+            return otherSites[type.ordinal()];
+        }
+        return sitesForClass.computeIfAbsent(operation, (operationName) -> {
+            siteCount.incrementAndGet();
+            return new Site(type, (clazz != null ? clazz.getSimpleName() : "") + " " + operationName);
+        });
+    }
+
+    /** returns the first word of the lock name */
+    static String getOperation(String lockName)
+    {
+        if (lockName == null)
+        {
+            return "";
+        }
+        final String trimmed = lockName.trim();
+        for (int i = 0; i < trimmed.length(); i++)
+        {
+            final char c = trimmed.charAt(i);
+            if (c == ' ' || c == ':')
+            {
+                return trimmed.substring(0, i);
+            }
+        }
+        return trimmed;
+    }
+
+    /** returns all sites that were used, the site with the longest total hold time first */
+    public List<Site> getSites()
+    {
+        final List<Site> result = new ArrayList<>();
+        for (int i = 0; i < sitesPerType.length; i++)
+        {
+            for (ConcurrentMap<String, Site> sitesForClass : sitesPerType[i].values())
+            {
+                result.addAll(sitesForClass.values());
+            }
+            if (otherSites[i].getHoldMicros().getCount() > 0 || otherSites[i].getTimeouts() > 0)
+            {
+                result.add(otherSites[i]);
+            }
+        }
+        result.sort(Comparator.comparingLong((Site site) -> site.getHoldMicros().getSum()).reversed());
+        return result;
+    }
+
+    public List<SiteStatistics> getStatistics()
+    {
+        final List<SiteStatistics> result = new ArrayList<>();
+        for (Site site : getSites())
+        {
+            result.add(new SiteStatistics(site));
+        }
+        return result;
+    }
+
+    public static final class Site
+    {
+        private final LockType type;
+        private final String name;
+        private final Histogram waitMicros = new Histogram();
+        private final Histogram holdMicros = new Histogram();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        Site(LockType type, String name)
+        {
+            this.type = type;
+            this.name = name;
+        }
+
+        public LockType getType()
+        {
+            return type;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Histogram getWaitMicros()
+        {
+            return waitMicros;
+        }
+
+        public Histogram getHoldMicros()
+        {
+            return holdMicros;
+        }
+
+        public long getTimeouts()
+        {
+            return timeouts.get();
+        }
+
+        void recordWait(long nanos)
+        {
+            waitMicros.record(nanos / 1000);
+        }
+
+        void recordHold(long nanos)
+        {
+            holdMicros.record(nanos / 1000);
+        }
+
+        void recordTimeout()
+        {
+            timeouts.incrementAndGet();
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + " " + name;
+        }
+    }
+
+    /** summary of a site that can be sent as json */
+    public static final class SiteStatistics
+    {
+        public final String type;
+        public final String site;
+        public final long count;
+        public final long timeouts;
+        public final long waitMeanMicros;
+        public final long waitP99Micros;
+        public final long waitMaxMicros;
+        public final long holdMeanMicros;
+        public final long holdP99Micros;
+        public final long holdMaxMicros;
+        public final long holdTotalMillis;
+
+        SiteStatistics(Site site)
+        {
+            this.type = site.getType().name();
+            this.site = site.getName();
+            final Histogram wait = site.getWaitMicros();
+            final Histogram hold = site.getHoldMicros();
+            this.count = wait.getCount();
+            this.timeouts = site.getTimeouts();
+            this.waitMeanMicros = wait.getMean();
+            this.waitP99Micros = wait.getValueAtPercentile(99);
+            this.waitMaxMicros = wait.getMax();
+            this.holdMeanMicros = hold.getMean();
+            this.holdP99Micros = hold.getValueAtPercentile(99);
+            this.holdMaxMicros = hold.getMax();
+            this.holdTotalMillis = hold.getSum() / 1000;
+        }
+    }
+
+    /** a lock that is currently held, can be sent as json */
+    public static final class HolderStatistics
+    {
+        public final String type;
+        public final String site;
+        public final String lockName;
+        public final String thread;
+        public final long heldMillis;
+
+        HolderStatistics(Site site, String lockName, String thread, long heldMillis)
+        {
+            this.type = site.getType().name();
+            this.site = site.getName();
+            this.lockName = lockName;
+            this.thread = thread;
+            this.heldMillis = heldMillis;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.rapla.storage.impl;
+
+import org.rapla.framework.RaplaException;
+import org.rapla.framework.RaplaSynchronizationException;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks that are selected by the hash of an id, so that changes of different resources can run in parallel
+ * without a lock per resource. The stripes of a change are always locked in ascending order, so two changes with overlapping
+ * ids can't deadlock.
+ */
+public class LockStripes
+{
+    private final ReentrantLock[] stripes;
+
+    /** @param count the number of stripes, rounded up to the next power of two */
+    public LockStripes(int count)
+    {
+        int size = 1;
+        while (size < count)
+        {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+        {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    int getStripe(String id)
+    {
+        int hash = id.hashCode();
+        // spread the bits, because ids often only differ in the last characters
+        hash ^= (hash >>> 16);
+        return hash & (stripes.length - 1);
+    }
+
+    /** locks the stripes of all ids. Throws a {@link RaplaSynchronizationException} if they can't be locked in the given time */
+    public Stripes lock(Collection<String> ids, int seconds) throws RaplaException
+    {
+        final TreeSet<Integer> indexes = new TreeSet<>();
+        for (String id : ids)
+        {
+            indexes.add(getStripe(id));
+        }
+        final int[] locked = new int[indexes.size()];
+        int count = 0;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try
+        {
+            for (Integer index : indexes)
+            {
+                final long remaining = deadline - System.nanoTime();
+                if (!stripes[index].tryLock(Math.max(0, remaining), TimeUnit.NANOSECONDS))
+                {
+                    throw new RaplaSynchronizationException("Someone is currently changing the same resources. Please try again!");
+                }
+                locked[count++] = index;
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            unlock(locked, count);
+            throw new RaplaSynchronizationException(ex);
+        }
+        catch (RaplaException ex)
+        {
+            unlock(locked, count);
+            throw ex;
+        }
+        return new Stripes(locked);
+    }
+
+    public void unlock(Stripes lockedStripes)
+    {
+        if (lockedStripes != null)
+        {
+            unlock(lockedStripes.indexes, lockedStripes.indexes.length);
+        }
+    }
+
+    private void unlock(int[] indexes, int count)
+    {
+        for (int i = count - 1; i >= 0; i--)
+        {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    /** the stripes that were locked by {@link #lock(Collection, int)} */
+    public static final class Stripes
+    {
+        private final int[] indexes;
+
+        Stripes(int[] indexes)
+        {
+            this.indexes = indexes;
+        }
+
+        public int size()
+        {
+            return indexes.length;
+        }
+    }
+}
@@ -30,14 +30,24 @@ public interface RaplaLock
     {
         public ReadLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime)
         {
-            super(lock, lockClazz, lockname, stackTrace, lockTime, "Readlock");
+            this(lock, lockClazz, lockname, stackTrace, lockTime, 0);
+        }
+
+        public ReadLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime, long sequence)
+        {
+            super(lock, lockClazz, lockname, stackTrace, lockTime, "Readlock", sequence);
         }
     }
     class WriteLock extends AbstractLock
     {
         public WriteLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime)
         {
-            super(lock, lockClazz, lockname, stackTrace, lockTime, "Writelock");
+            this(lock, lockClazz, lockname, stackTrace, lockTime, 0);
+        }
+
+        public WriteLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime, long sequence)
+        {
+            super(lock, lockClazz, lockname, stackTrace, lockTime, "Writelock", sequence);
         }
     }
 
@@ -49,9 +59,16 @@ public interface RaplaLock
         final Class lockClazz;
         final String lockname;
         final private String lockType;
+        final long sequence;
 
         public AbstractLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime, String lockType)
         {
+            this(lock, lockClazz, lockname, stackTrace, lockTime, lockType, 0);
+        }
+
+        public AbstractLock(Object lock, Class lockClazz, String lockname, StackTraceElement[] stackTrace, long lockTime, String lockType, long sequence)
+        {
+            this.sequence = sequence;
             this.stackTrace = stackTrace;
             this.lock = lock;
             this.lockTime = lockTime;
@@ -70,6 +87,12 @@ public interface RaplaLock
             return lockTime;
         }
 
+        /** number that identifies the lock in the bookkeeping of the lock manager */
+        public long getSequence()
+        {
+            return sequence;
+        }
+
         @Override
         public String toString()
         {
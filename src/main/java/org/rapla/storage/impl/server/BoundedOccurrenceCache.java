@@ -0,0 +1,156 @@
+package org.rapla.storage.impl.server;
+
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.domain.internal.AppointmentImpl;
+import org.rapla.entities.domain.internal.OccurrenceCache;
+import org.rapla.entities.domain.internal.Occurrences;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limits the memory used by the occurrences of the read only appointments on the server. If the limit is reached, the
+ * occurrences that were built first and were not used since the last eviction round are evicted (second chance).
+ * Appointments that are no longer referenced, e.g. old versions of changed events, are removed by the garbage collector.
+ * Each storage operator has its own cache.
+ */
+public final class BoundedOccurrenceCache implements OccurrenceCache
+{
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    /** the cached horizon is a bit longer, so that the occurrences are not rebuilt every day */
+    static final int HORIZON_MARGIN_WEEKS = 4;
+
+    private final ReferenceQueue<AppointmentImpl> collected = new ReferenceQueue<>();
+    // oldest entries first, guarded by this
+    private final Map<Occurrences, Entry> entries = new LinkedHashMap<>();
+    private volatile long maxBytes;
+    private long bytes;
+    private long evictions;
+
+    BoundedOccurrenceCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /** sets the memory limit for all cached occurrences, 0 disables the cache */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes()
+    {
+        expungeCollected();
+        return bytes;
+    }
+
+    public synchronized int getEntries()
+    {
+        expungeCollected();
+        return entries.size();
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public long getHorizonEnd()
+    {
+        final long weeks = CONFLICT_HORIZON_WEEKS + HORIZON_MARGIN_WEEKS;
+        return DateTools.cutDate(System.currentTimeMillis() + weeks * DateTools.MILLISECONDS_PER_WEEK);
+    }
+
+    @Override
+    public boolean accepts(long bytes)
+    {
+        return bytes <= maxBytes;
+    }
+
+    @Override
+    public synchronized boolean add(AppointmentImpl appointment, Occurrences occurrences)
+    {
+        expungeCollected();
+        final long size = occurrences.getBytes();
+        if (size > maxBytes)
+        {
+            return false;
+        }
+        entries.put(occurrences, new Entry(appointment, occurrences, collected));
+        bytes += size;
+        evict();
+        return true;
+    }
+
+    @Override
+    public synchronized void remove(Occurrences occurrences)
+    {
+        final Entry entry = entries.remove(occurrences);
+        if (entry != null)
+        {
+            bytes -= occurrences.getBytes();
+            entry.clear();
+        }
+    }
+
+    private void evict()
+    {
+        while (bytes > maxBytes && !entries.isEmpty())
+        {
+            final Iterator<Entry> it = entries.values().iterator();
+            final Entry entry = it.next();
+            it.remove();
+            final Occurrences occurrences = entry.occurrences;
+            final AppointmentImpl appointment = entry.get();
+            if (appointment != null && occurrences.resetUsed())
+            {
+                // second chance, the occurrences were used since they were added or last checked
+                entries.put(occurrences, entry);
+                continue;
+            }
+            bytes -= occurrences.getBytes();
+            evictions++;
+            if (appointment != null)
+            {
+                // the appointment is not locked here, because it may wait for this cache while building its occurrences
+                appointment.evictOccurrences(occurrences);
+            }
+            entry.clear();
+        }
+    }
+
+    private void expungeCollected()
+    {
+        Reference<? extends AppointmentImpl> reference;
+        while ((reference = collected.poll()) != null)
+        {
+            final Occurrences occurrences = ((Entry) reference).occurrences;
+            if (entries.remove(occurrences) != null)
+            {
+                bytes -= occurrences.getBytes();
+            }
+        }
+    }
+
+    static final class Entry extends WeakReference<AppointmentImpl>
+    {
+        final Occurrences occurrences;
+
+        Entry(AppointmentImpl appointment, Occurrences occurrences, ReferenceQueue<AppointmentImpl> queue)
+        {
+            super(appointment, queue);
+            this.occurrences = occurrences;
+        }
+    }
+}
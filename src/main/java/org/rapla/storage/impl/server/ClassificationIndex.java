@@ -0,0 +1,423 @@
+package org.rapla.storage.impl.server;
+
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.dynamictype.Attribute;
+import org.rapla.entities.dynamictype.AttributeType;
+import org.rapla.entities.dynamictype.Classifiable;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.ClassificationFilter;
+import org.rapla.entities.dynamictype.ClassificationFilterRule;
+import org.rapla.entities.dynamictype.DynamicType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted indexes over the classification values of the allocatables, one per dynamic type and attribute. The indexes
+ * answer exact values, category subtrees, ranges of numbers and dates, prefixes of strings and, with an index of the
+ * trigrams, substrings of strings. {@link #query(ClassificationFilter[])} plans a filter with the rules that can be
+ * answered by the indexes and returns the ids of the candidates. The candidates are a superset of the matching entities,
+ * so the filter still has to be applied to them.
+ */
+final class ClassificationIndex
+{
+    static final int TRIGRAM = 3;
+
+    static final class AttributeIndex
+    {
+        final AttributeType type;
+        // category and allocatable ids, strings, booleans and numbers (dates as millis)
+        final Map<Object, Set<String>> exact = new HashMap<>();
+        // numbers and dates
+        final NavigableMap<Long, Set<String>> range = new TreeMap<>();
+        // lower case strings
+        final NavigableMap<String, Set<String>> prefix = new TreeMap<>();
+        final Map<String, Set<String>> trigrams = new HashMap<>();
+
+        AttributeIndex(AttributeType type)
+        {
+            this.type = type;
+        }
+    }
+
+    static final class TypeIndex
+    {
+        final Set<String> ids = new LinkedHashSet<>();
+        // by attribute key
+        final Map<String, AttributeIndex> attributes = new HashMap<>();
+    }
+
+    // by type id
+    private final Map<String, TypeIndex> types = new HashMap<>();
+    // the sets that contain the id of an entity, so that it can be removed without the old version of the entity
+    private final Map<String, List<Set<String>>> postings = new HashMap<>();
+
+    synchronized void clear()
+    {
+        types.clear();
+        postings.clear();
+    }
+
+    synchronized void rebuild(Collection<? extends Classifiable> entities)
+    {
+        clear();
+        for (Classifiable entity : entities)
+        {
+            put(entity);
+        }
+    }
+
+    synchronized int size()
+    {
+        return postings.size();
+    }
+
+    /** adds the entity or replaces the values of a previous version */
+    synchronized void put(Classifiable entity)
+    {
+        final String id = ((Entity) entity).getId();
+        remove(id);
+        final Classification classification = entity.getClassification();
+        if (classification == null)
+        {
+            return;
+        }
+        final DynamicType type = classification.getType();
+        TypeIndex typeIndex = types.get(type.getId());
+        if (typeIndex == null)
+        {
+            typeIndex = new TypeIndex();
+            types.put(type.getId(), typeIndex);
+        }
+        final List<Set<String>> sets = new ArrayList<>();
+        add(typeIndex.ids, id, sets);
+        for (Attribute attribute : type.getAttributeIterable())
+        {
+            final Collection<Object> values = classification.getValues(attribute);
+            if (values.isEmpty())
+            {
+                continue;
+            }
+            AttributeIndex attributeIndex = typeIndex.attributes.get(attribute.getKey());
+            if (attributeIndex == null || attributeIndex.type != attribute.getType())
+            {
+                attributeIndex = new AttributeIndex(attribute.getType());
+                typeIndex.attributes.put(attribute.getKey(), attributeIndex);
+            }
+            for (Object value : values)
+            {
+                addValue(attributeIndex, value, id, sets);
+            }
+        }
+        postings.put(id, sets);
+    }
+
+    synchronized void remove(String id)
+    {
+        final List<Set<String>> sets = postings.remove(id);
+        if (sets != null)
+        {
+            for (Set<String> set : sets)
+            {
+                set.remove(id);
+            }
+        }
+    }
+
+    private static void addValue(AttributeIndex index, Object value, String id, List<Set<String>> sets)
+    {
+        if (value == null)
+        {
+            return;
+        }
+        final Object key = toKey(value);
+        add(index.exact, key, id, sets);
+        if (key instanceof Long)
+        {
+            add(index.range, (Long) key, id, sets);
+        }
+        else if (index.type == AttributeType.STRING)
+        {
+            final String string = ((String) value).toLowerCase();
+            add(index.prefix, string, id, sets);
+            for (String trigram : getTrigrams(string))
+            {
+                add(index.trigrams, trigram, id, sets);
+            }
+        }
+    }
+
+    private static Object toKey(Object value)
+    {
+        if (value instanceof Entity)
+        {
+            return ((Entity) value).getId();
+        }
+        if (value instanceof Date)
+        {
+            return ((Date) value).getTime();
+        }
+        return value;
+    }
+
+    private static <K> void add(Map<K, Set<String>> map, K key, String id, List<Set<String>> sets)
+    {
+        Set<String> set = map.get(key);
+        if (set == null)
+        {
+            set = new HashSet<>();
+            map.put(key, set);
+        }
+        add(set, id, sets);
+    }
+
+    private static void add(Set<String> set, String id, List<Set<String>> sets)
+    {
+        if (set.add(id))
+        {
+            sets.add(set);
+        }
+    }
+
+    static Set<String> getTrigrams(String string)
+    {
+        final Set<String> result = new HashSet<>();
+        for (int i = 0; i + TRIGRAM <= string.length(); i++)
+        {
+            result.add(string.substring(i, i + TRIGRAM));
+        }
+        return result;
+    }
+
+    /**
+     * returns the ids of the entities that can match one of the filters. Rules that can't be answered by the indexes are
+     * ignored, so a filter without such rules returns all entities of its type.
+     */
+    synchronized Set<String> query(ClassificationFilter[] filters)
+    {
+        final Set<String> result = new LinkedHashSet<>();
+        for (ClassificationFilter filter : filters)
+        {
+            final TypeIndex typeIndex = types.get(filter.getType().getId());
+            if (typeIndex == null)
+            {
+                continue;
+            }
+            final List<Set<String>> ruleSets = new ArrayList<>();
+            final Iterator<? extends ClassificationFilterRule> it = filter.ruleIterator();
+            while (it.hasNext())
+            {
+                final Set<String> ruleSet = query(typeIndex, it.next());
+                if (ruleSet != null)
+                {
+                    ruleSets.add(ruleSet);
+                }
+            }
+            result.addAll(intersect(typeIndex.ids, ruleSets));
+        }
+        return result;
+    }
+
+    private static Collection<String> intersect(Set<String> typeIds, List<Set<String>> ruleSets)
+    {
+        if (ruleSets.isEmpty())
+        {
+            return typeIds;
+        }
+        // start with the most selective rule
+        Set<String> smallest = ruleSets.get(0);
+        for (Set<String> set : ruleSets)
+        {
+            if (set.size() < smallest.size())
+            {
+                smallest = set;
+            }
+        }
+        final List<String> result = new ArrayList<>(smallest.size());
+        for (String id : smallest)
+        {
+            boolean inAll = typeIds.contains(id);
+            for (int i = 0; inAll && i < ruleSets.size(); i++)
+            {
+                inAll = ruleSets.get(i).contains(id);
+            }
+            if (inAll)
+            {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** returns null if the rule can't be answered by the index */
+    private static Set<String> query(TypeIndex typeIndex, ClassificationFilterRule rule)
+    {
+        final Attribute attribute = rule.getAttribute();
+        if (attribute == null)
+        {
+            return null;
+        }
+        final AttributeIndex index = typeIndex.attributes.get(attribute.getKey());
+        if (index != null && index.type != attribute.getType())
+        {
+            // the type of the attribute changed and the index is not rebuilt yet
+            return null;
+        }
+        final String[] operators = rule.getOperators();
+        final Object[] values = rule.getValues();
+        final Set<String> result = new HashSet<>();
+        for (int i = 0; i < operators.length; i++)
+        {
+            if (!canQuery(attribute.getType(), operators[i], values[i]))
+            {
+                return null;
+            }
+            // no entity has a value for the attribute
+            if (index == null)
+            {
+                continue;
+            }
+            query(index, operators[i], values[i], result);
+        }
+        return result;
+    }
+
+    /** conditions that also match entities without a value or that match almost everything are not answered by the index */
+    private static boolean canQuery(AttributeType type, String operator, Object ruleValue)
+    {
+        if (ruleValue == null)
+        {
+            return false;
+        }
+        if (type == AttributeType.CATEGORY)
+        {
+            return operator.equals("=") || operator.equals("is");
+        }
+        else if (type == AttributeType.ALLOCATABLE)
+        {
+            return operator.equals("=") || operator.equals("is");
+        }
+        else if (type == AttributeType.STRING)
+        {
+            if (operator.equals("=") || operator.equals("is"))
+            {
+                return true;
+            }
+            final String string = ((String) ruleValue).toLowerCase().trim();
+            if (operator.equals("starts"))
+            {
+                return string.length() > 0;
+            }
+            return operator.equals("contains") && string.length() >= TRIGRAM;
+        }
+        else if (type == AttributeType.BOOLEAN)
+        {
+            return Boolean.TRUE.equals(ruleValue);
+        }
+        else if (type == AttributeType.INT || type == AttributeType.DATE)
+        {
+            return operator.equals("=") || operator.equals("<") || operator.equals("<=") || operator.equals(">") || operator.equals(">=");
+        }
+        return false;
+    }
+
+    private static void query(AttributeIndex index, String operator, Object ruleValue, Set<String> result)
+    {
+        final AttributeType type = index.type;
+        if (type == AttributeType.CATEGORY && operator.equals("is"))
+        {
+            addSubtree(index, (Category) ruleValue, result, 0);
+        }
+        else if (type == AttributeType.STRING && operator.equals("starts"))
+        {
+            final String string = ((String) ruleValue).toLowerCase().trim();
+            for (Set<String> set : index.prefix.subMap(string, true, string + Character.MAX_VALUE, false).values())
+            {
+                result.addAll(set);
+            }
+        }
+        else if (type == AttributeType.STRING && operator.equals("contains"))
+        {
+            final String string = ((String) ruleValue).toLowerCase().trim();
+            Set<String> candidates = null;
+            for (String trigram : getTrigrams(string))
+            {
+                final Set<String> set = index.trigrams.get(trigram);
+                if (set == null)
+                {
+                    return;
+                }
+                if (candidates == null)
+                {
+                    candidates = new HashSet<>(set);
+                }
+                else
+                {
+                    candidates.retainAll(set);
+                }
+            }
+            result.addAll(candidates);
+        }
+        else if ((type == AttributeType.INT || type == AttributeType.DATE) && !operator.equals("="))
+        {
+            final Long key = (Long) toKey(ruleValue);
+            final NavigableMap<Long, Set<String>> range;
+            if (operator.equals("<"))
+            {
+                range = index.range.headMap(key, false);
+            }
+            else if (operator.equals("<="))
+            {
+                range = index.range.headMap(key, true);
+            }
+            else if (operator.equals(">"))
+            {
+                range = index.range.tailMap(key, false);
+            }
+            else
+            {
+                range = index.range.tailMap(key, true);
+            }
+            for (Set<String> set : range.values())
+            {
+                result.addAll(set);
+            }
+        }
+        else
+        {
+            final Set<String> set = index.exact.get(toKey(ruleValue));
+            if (set != null)
+            {
+                result.addAll(set);
+            }
+        }
+    }
+
+    private static void addSubtree(AttributeIndex index, Category category, Set<String> result, int depth)
+    {
+        if (depth > 20)
+        {
+            throw new IllegalStateException("Categorycyle detected in " + category.toString());
+        }
+        final Set<String> set = index.exact.get(category.getId());
+        if (set != null)
+        {
+            result.addAll(set);
+        }
+        for (Category child : category.getCategoryList())
+        {
+            addSubtree(index, child, result, depth + 1);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.rapla.entities.domain.AppointmentBlock;
 import org.rapla.entities.domain.Reservation;
 import org.rapla.entities.domain.ResourceAnnotations;
 import org.rapla.entities.domain.internal.AppointmentImpl;
+import org.rapla.entities.domain.internal.OccurrenceCache;
 import org.rapla.entities.dynamictype.DynamicType;
 import org.rapla.entities.storage.EntityResolver;
 import org.rapla.entities.storage.ReferenceInfo;
@@ -415,21 +416,22 @@ class ConflictFinder {
 	
     private void createBlocks(Date today, Collection<Appointment> appointmentSet,  Collection<AppointmentBlock> allAppointmentBlocks) {
         // overlaps will be checked  260 weeks (5 years) from now on
-		long maxCheck = System.currentTimeMillis() + DateTools.MILLISECONDS_PER_WEEK * 260;
+		long maxCheck = System.currentTimeMillis() + DateTools.MILLISECONDS_PER_WEEK * OccurrenceCache.CONFLICT_HORIZON_WEEKS;
 		//Appointment last = appointmentSet.last();
 		
+		final long todayTime = today.getTime();
 		// Get all time blocks of all appointments
 		for (Appointment appointment:appointmentSet)
 		{
 			// Get the end date of the appointment (if repeating, end date of last occurence)
-			Date maxEnd = appointment.getMaxEnd();
+			long maxEnd = ((AppointmentImpl)appointment).getMaxEndTime();
 		       // Check if the appointment is repeating forever
-            if ( maxEnd == null || maxEnd.getTime() > maxCheck)
+            if ( maxEnd > maxCheck)
             {
                 // If the repeating has no end, set the end to the start of the last appointment in the set + 100 weeks (~2 years)
-                maxEnd = new Date(maxCheck); 
+                maxEnd = maxCheck;
             }
-            if ( maxEnd.before( today))
+            if ( maxEnd < todayTime)
             {
                 continue;
             }
@@ -451,12 +453,8 @@ class ConflictFinder {
 			 * repeating, this will just createInfoDialog one block, which is equal to the appointment
 			 * itself.
 			 */
-			Date start = appointment.getStart();
-			if ( start.before( today))
-			{
-			    start = today;
-			}
-            ((AppointmentImpl)appointment).createBlocks(start, DateTools.fillDate(maxEnd), allAppointmentBlocks);
+			long start = Math.max(((AppointmentImpl)appointment).getStartTime(), todayTime);
+            ((AppointmentImpl)appointment).createBlocks(start, DateTools.fillDate(maxEnd), allAppointmentBlocks, true);
 		}
     }
 
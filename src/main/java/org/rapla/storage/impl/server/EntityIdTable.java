@@ -0,0 +1,50 @@
+package org.rapla.storage.impl.server;
+
+import org.rapla.entities.storage.IdInterner;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Maps the entity ids of the server cache to one shared string instance, so that the references of millions of entities
+ * don't keep copies of the same id. The table only holds the ids weakly: an id stays in the table as long as an entity of
+ * the cache or of an older snapshot refers to it, and is removed by the garbage collector afterwards, so removed and
+ * short lived entities like conflicts don't grow the table.
+ */
+public final class EntityIdTable implements IdInterner
+{
+    // the value refers to the key, guarded by this
+    private final Map<String, WeakReference<String>> ids = new WeakHashMap<>();
+
+    @Override
+    public synchronized String add(String id)
+    {
+        final String existing = get(id);
+        if (existing != null)
+        {
+            return existing;
+        }
+        ids.put(id, new WeakReference<>(id));
+        return id;
+    }
+
+    @Override
+    public synchronized String intern(String id)
+    {
+        final String existing = get(id);
+        return existing != null ? existing : id;
+    }
+
+    private String get(String id)
+    {
+        final WeakReference<String> reference = ids.get(id);
+        return reference != null ? reference.get() : null;
+    }
+
+    /** the number of ids that are still referenced */
+    public synchronized int size()
+    {
+        return ids.size();
+    }
+}
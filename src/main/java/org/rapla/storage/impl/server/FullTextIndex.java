@@ -0,0 +1,351 @@
+package org.rapla.storage.impl.server;
+
+import org.rapla.entities.Entity;
+import org.rapla.entities.Named;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.Attribute;
+import org.rapla.entities.dynamictype.AttributeType;
+import org.rapla.entities.dynamictype.Classifiable;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.entities.dynamictype.internal.DynamicTypeImpl;
+import org.rapla.entities.dynamictype.internal.NameMemo;
+import org.rapla.entities.dynamictype.internal.ParsedText;
+import org.rapla.entities.storage.ReferenceInfo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Full text index over the formatted names and the string attributes of the classifiable entities. Texts are split into
+ * tokens at every character that is no letter or digit and folded to lower case without accents, so that names with
+ * accents are also found if the query is typed without them. The names are indexed in every locale of the server. Every token of a query is a prefix and all tokens
+ * must match. Exact tokens rank before prefixes and tokens of the name before tokens of the other attributes.
+ * <p>
+ * Every document remembers the ids of its type and of the entities that were used to format its name, e.g. referenced
+ * resources and categories, so that only the documents that depend on changed entities are indexed again, see
+ * {@link #getDependents(Collection)}. Names with functions that read entities without recording them are indexed again
+ * on every change, as the {@link NameMemo} does.
+ * </p>
+ */
+final class FullTextIndex
+{
+    static final int NAME_WEIGHT = 2;
+    static final int ATTRIBUTE_WEIGHT = 1;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    static final class Document
+    {
+        final Class<? extends Entity> type;
+        final Set<String> tokens;
+        final Set<String> dependencies;
+
+        Document(Class<? extends Entity> type, Set<String> tokens, Set<String> dependencies)
+        {
+            this.type = type;
+            this.tokens = tokens;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Collection<Locale> locales;
+    // token -> id -> weight of the token in the entity
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    private final Map<String, Document> documents = new HashMap<>();
+    // entity id -> ids of the documents that used the entity
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    // ids of the documents with names that read entities without recording them
+    private final Set<String> untracked = new HashSet<>();
+
+    FullTextIndex(Collection<Locale> locales)
+    {
+        this.locales = locales;
+    }
+
+    synchronized void clear()
+    {
+        postings.clear();
+        documents.clear();
+        dependents.clear();
+        untracked.clear();
+    }
+
+    synchronized void rebuild(Collection<? extends Classifiable> entities)
+    {
+        clear();
+        for (Classifiable entity : entities)
+        {
+            put(entity);
+        }
+    }
+
+    synchronized int size()
+    {
+        return documents.size();
+    }
+
+    /** adds the entity or replaces the tokens of a previous version */
+    synchronized void put(Classifiable classifiable)
+    {
+        final Entity entity = (Entity) classifiable;
+        final String id = entity.getId();
+        remove(id);
+        final Map<String, Integer> weights = new HashMap<>();
+        final Set<String> dependencies = new HashSet<>();
+        final Classification classification = classifiable.getClassification();
+        if (classifiable instanceof Named)
+        {
+            final NameMemo.Dependencies used = new NameMemo.Dependencies();
+            for (Locale locale : locales)
+            {
+                addTokens(weights, formatName(classifiable, locale, used), NAME_WEIGHT);
+            }
+            if (used.isUntracked())
+            {
+                untracked.add(id);
+            }
+            for (Entity usedEntity : used.getEntities())
+            {
+                dependencies.add(usedEntity.getId());
+                // the name format of the type of a used entity is part of the name as well
+                if (usedEntity instanceof Classifiable && ((Classifiable) usedEntity).getClassification() != null)
+                {
+                    dependencies.add(((Classifiable) usedEntity).getClassification().getType().getId());
+                }
+            }
+        }
+        if (classification != null)
+        {
+            dependencies.add(classification.getType().getId());
+            for (Attribute attribute : classification.getType().getAttributeIterable())
+            {
+                if (attribute.getType() != AttributeType.STRING)
+                {
+                    continue;
+                }
+                for (Object value : classification.getValues(attribute))
+                {
+                    addTokens(weights, (String) value, ATTRIBUTE_WEIGHT);
+                }
+            }
+        }
+        for (Map.Entry<String, Integer> entry : weights.entrySet())
+        {
+            Map<String, Integer> ids = postings.get(entry.getKey());
+            if (ids == null)
+            {
+                ids = new HashMap<>();
+                postings.put(entry.getKey(), ids);
+            }
+            ids.put(id, entry.getValue());
+        }
+        for (String dependency : dependencies)
+        {
+            Set<String> ids = dependents.get(dependency);
+            if (ids == null)
+            {
+                ids = new HashSet<>();
+                dependents.put(dependency, ids);
+            }
+            ids.add(id);
+        }
+        documents.put(id, new Document(entity.getTypeClass(), weights.keySet(), dependencies));
+    }
+
+    /** the formatted name in the locale, the entities that are read while formatting are recorded in the dependencies */
+    private static String formatName(Classifiable classifiable, Locale locale, NameMemo.Dependencies dependencies)
+    {
+        final Classification classification = classifiable.getClassification();
+        final DynamicTypeImpl type = classification != null ? (DynamicTypeImpl) classification.getType() : null;
+        final ParsedText parsedText = type != null ? type.getParsedAnnotation(DynamicTypeAnnotations.KEY_NAME_FORMAT) : null;
+        if (parsedText == null)
+        {
+            return ((Named) classifiable).getName(locale);
+        }
+        // reservations are formatted with themselves as context, resources with their classification
+        final Object contextObject = classifiable instanceof Reservation ? classifiable : classification;
+        return NameMemo.format(parsedText, type.createEvalContext(locale, DynamicTypeAnnotations.KEY_NAME_FORMAT, contextObject), dependencies);
+    }
+
+    synchronized void remove(String id)
+    {
+        final Document document = documents.remove(id);
+        if (document == null)
+        {
+            return;
+        }
+        untracked.remove(id);
+        for (String dependency : document.dependencies)
+        {
+            final Set<String> ids = dependents.get(dependency);
+            if (ids != null)
+            {
+                ids.remove(id);
+                if (ids.isEmpty())
+                {
+                    dependents.remove(dependency);
+                }
+            }
+        }
+        for (String token : document.tokens)
+        {
+            final Map<String, Integer> ids = postings.get(token);
+            if (ids != null)
+            {
+                ids.remove(id);
+                if (ids.isEmpty())
+                {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the documents whose names or attributes can change if one of the entities changes. The documents with
+     * untracked names are returned for every change.
+     */
+    synchronized Collection<ReferenceInfo<Entity>> getDependents(Collection<String> changedIds)
+    {
+        final Set<String> ids = new HashSet<>();
+        for (String changedId : changedIds)
+        {
+            final Set<String> documentIds = dependents.get(changedId);
+            if (documentIds != null)
+            {
+                ids.addAll(documentIds);
+            }
+        }
+        if (!changedIds.isEmpty())
+        {
+            ids.addAll(untracked);
+        }
+        final List<ReferenceInfo<Entity>> result = new ArrayList<>(ids.size());
+        for (String id : ids)
+        {
+            result.add(new ReferenceInfo<>(id, documents.get(id).type));
+        }
+        return result;
+    }
+
+    /** the same token is counted once per text, the name of several locales only with the highest weight */
+    private static void addTokens(Map<String, Integer> weights, String text, int weight)
+    {
+        for (String token : tokenize(text))
+        {
+            final Integer old = weights.get(token);
+            if (old == null || old < weight)
+            {
+                weights.put(token, weight);
+            }
+        }
+    }
+
+    static List<String> tokenize(String text)
+    {
+        if (text == null)
+        {
+            return Collections.emptyList();
+        }
+        final String folded = fold(text);
+        final List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++)
+        {
+            final boolean tokenChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (tokenChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!tokenChar && start >= 0)
+            {
+                result.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** lower case without accents, independent of the default locale of the server */
+    static String fold(String text)
+    {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final String withoutDiacritics = DIACRITICS.matcher(decomposed).replaceAll("");
+        return withoutDiacritics.toLowerCase(Locale.ROOT).replace("\u00df", "ss").replace('\u0131', 'i');
+    }
+
+    /**
+     * returns the ids of the entities of the types that match all tokens of the query, the best matches first.
+     * Returns an empty list if the query contains no token.
+     */
+    synchronized List<String> search(String query, Collection<Class<? extends Entity>> types)
+    {
+        final List<String> tokens = tokenize(query);
+        if (tokens.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        Map<String, Integer> scores = null;
+        for (String token : tokens)
+        {
+            final Map<String, Integer> tokenScores = new HashMap<>();
+            for (Map.Entry<String, Map<String, Integer>> entry : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet())
+            {
+                // exact tokens count twice as much as prefixes
+                final int factor = entry.getKey().equals(token) ? 2 : 1;
+                for (Map.Entry<String, Integer> posting : entry.getValue().entrySet())
+                {
+                    final String id = posting.getKey();
+                    if (scores != null && !scores.containsKey(id))
+                    {
+                        continue;
+                    }
+                    final int score = posting.getValue() * factor;
+                    final Integer old = tokenScores.get(id);
+                    if (old == null || old < score)
+                    {
+                        tokenScores.put(id, score);
+                    }
+                }
+            }
+            if (scores != null)
+            {
+                for (Map.Entry<String, Integer> entry : tokenScores.entrySet())
+                {
+                    entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                }
+            }
+            scores = tokenScores;
+            if (scores.isEmpty())
+            {
+                return Collections.emptyList();
+            }
+        }
+        final List<String> result = new ArrayList<>(scores.size());
+        for (String id : scores.keySet())
+        {
+            if (types == null || types.contains(documents.get(id).type))
+            {
+                result.add(id);
+            }
+        }
+        final Map<String, Integer> finalScores = scores;
+        result.sort((id1, id2) ->
+        {
+            final int compare = Integer.compare(finalScores.get(id2), finalScores.get(id1));
+            return compare != 0 ? compare : id1.compareTo(id2);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,169 @@
+package org.rapla.storage.impl.server;
+
+import org.rapla.framework.RaplaException;
+import org.rapla.storage.UpdateEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collects the update events that arrive within a few milliseconds, so that they can be written in one transaction and
+ * followed by one index and conflict update. The first caller of a batch waits for the window and then dispatches the whole
+ * batch, the other callers wait for the result of their own event. While a batch is written the next batch is collected.
+ */
+class GroupCommit
+{
+    static final int MAX_BATCH_SIZE = 100;
+
+    interface BatchDispatcher
+    {
+        /** dispatches the batch. Every event of the batch must be completed or failed */
+        void dispatch(List<Pending> batch);
+    }
+
+    /** an event of a batch together with the result for its caller */
+    static final class Pending
+    {
+        final UpdateEvent event;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Pending(UpdateEvent event)
+        {
+            this.event = event;
+        }
+
+        void complete()
+        {
+            result.complete(null);
+        }
+
+        void fail(Throwable ex)
+        {
+            result.completeExceptionally(ex);
+        }
+
+        boolean isDone()
+        {
+            return result.isDone();
+        }
+    }
+
+    private final int windowMillis;
+    private final BatchDispatcher dispatcher;
+    private final Object monitor = new Object();
+    private List<Pending> queue = new ArrayList<>();
+    private boolean collecting;
+
+    GroupCommit(int windowMillis, BatchDispatcher dispatcher)
+    {
+        this.windowMillis = windowMillis;
+        this.dispatcher = dispatcher;
+    }
+
+    int getWindowMillis()
+    {
+        return windowMillis;
+    }
+
+    /** dispatches the event with the next batch and returns after the batch is written */
+    void dispatch(UpdateEvent evt) throws RaplaException
+    {
+        final Pending pending = new Pending(evt);
+        final boolean leader;
+        synchronized (monitor)
+        {
+            queue.add(pending);
+            leader = !collecting;
+            collecting = true;
+            if (queue.size() >= MAX_BATCH_SIZE)
+            {
+                monitor.notifyAll();
+            }
+        }
+        if (leader)
+        {
+            dispatchBatch(collect());
+        }
+        waitFor(pending);
+    }
+
+    private List<Pending> collect()
+    {
+        synchronized (monitor)
+        {
+            final long deadline = System.currentTimeMillis() + windowMillis;
+            long remaining = windowMillis;
+            while (remaining > 0 && queue.size() < MAX_BATCH_SIZE)
+            {
+                try
+                {
+                    monitor.wait(remaining);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            final List<Pending> batch = queue;
+            queue = new ArrayList<>();
+            collecting = false;
+            return batch;
+        }
+    }
+
+    private void dispatchBatch(List<Pending> batch)
+    {
+        try
+        {
+            dispatcher.dispatch(batch);
+        }
+        catch (Throwable ex)
+        {
+            for (Pending pending : batch)
+            {
+                pending.fail(ex);
+            }
+        }
+        for (Pending pending : batch)
+        {
+            if (!pending.isDone())
+            {
+                pending.fail(new IllegalStateException("Event was not dispatched " + pending.event.getInfoString()));
+            }
+        }
+    }
+
+    private static void waitFor(Pending pending) throws RaplaException
+    {
+        try
+        {
+            pending.result.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RaplaException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RaplaException)
+            {
+                throw (RaplaException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new RaplaException(cause);
+        }
+    }
+}
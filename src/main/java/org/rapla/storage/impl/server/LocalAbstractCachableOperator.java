@@ -55,6 +55,7 @@ import org.rapla.entities.domain.Reservation;
 import org.rapla.entities.domain.ResourceAnnotations;
 import org.rapla.entities.domain.internal.AllocatableImpl;
 import org.rapla.entities.domain.internal.AppointmentImpl;
+import org.rapla.entities.domain.internal.OccurrenceCache;
 import org.rapla.entities.domain.internal.PermissionImpl;
 import org.rapla.entities.domain.internal.ReservationImpl;
 import org.rapla.entities.domain.permission.PermissionExtension;
@@ -73,6 +74,7 @@ import org.rapla.entities.extensionpoints.FunctionFactory;
 import org.rapla.entities.internal.CategoryImpl;
 import org.rapla.entities.internal.UserImpl;
 import org.rapla.entities.storage.CannotExistWithoutTypeException;
+import org.rapla.entities.storage.CategoryIndex;
 import org.rapla.entities.storage.DynamicTypeDependant;
 import org.rapla.entities.storage.EntityReferencer;
 import org.rapla.entities.storage.EntityResolver;
@@ -87,6 +89,8 @@ import org.rapla.facade.RaplaComponent;
 import org.rapla.framework.Disposable;
 import org.rapla.framework.RaplaException;
 import org.rapla.framework.RaplaLocale;
+import org.rapla.framework.metrics.MetricsRegistry;
+import org.rapla.framework.metrics.Timer;
 import org.rapla.logger.Logger;
 import org.rapla.rest.JsonParserWrapper;
 import org.rapla.scheduler.CommandScheduler;
@@ -111,6 +115,7 @@ import org.rapla.storage.UpdateResult.Remove;
 import org.rapla.storage.impl.AbstractCachableOperator;
 import org.rapla.storage.impl.DefaultRaplaLock;
 import org.rapla.storage.impl.EntityStore;
+import org.rapla.storage.impl.LockStripes;
 import org.rapla.storage.impl.RaplaLock;
 
 import java.security.MessageDigest;
@@ -144,6 +149,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
     InitStatus connectStatus = InitStatus.Disconnected;
     // some indexMaps
     AppointmentMapClass appointmentBindings;
+    private volatile ReadView readView;
     private BidiMap<String, ReferenceInfo> externalIds;
 
     protected enum InitStatus
@@ -176,7 +182,15 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
     private CalendarModelCache calendarModelCache;
     private Date connectStart;
     private final DefaultRaplaLock disconnectLock;
+    private final LockStripes allocatableStripes = new LockStripes(64);
+    private final EntityIdTable idTable = new EntityIdTable();
+    private final ClassificationIndex allocatableIndex = new ClassificationIndex();
+    private final FullTextIndex fullTextIndex;
+    // the appointments in the cache are read only, so their occurrences can be kept until they change
+    private final BoundedOccurrenceCache occurrenceCache = new BoundedOccurrenceCache(BoundedOccurrenceCache.DEFAULT_MAX_BYTES);
+    private volatile GroupCommit groupCommit;
     private final PromiseWait promiseWait;
+    protected MetricsRegistry metrics = new MetricsRegistry();
 
     public LocalAbstractCachableOperator(Logger logger, PromiseWait promiseWait, RaplaResources i18n, RaplaLocale raplaLocale, CommandScheduler scheduler,
             Map<String, FunctionFactory> functionFactoryMap, Set<PermissionExtension> permissionExtensions)
@@ -187,10 +201,73 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         disconnectLock = new DefaultRaplaLock(logger);
         //context.lookupDeprecated( CommandScheduler.class);
         this.history = new EntityHistory();
-        appointmentBindings = new AppointmentMapClass(logger);
+        appointmentBindings = new AppointmentMapClass(logger, occurrenceCache);
+        cache.setIdInterner(idTable);
+        fullTextIndex = new FullTextIndex(getIndexLocales(raplaLocale));
+        readView = new ReadView(cache.getSnapshot(), appointmentBindings.publish());
         calendarModelCache = new CalendarModelCache(this, i18n, logger, scheduler);
     }
 
+    /** the server passes its registry, otherwise the metrics are collected in a registry of the operator */
+    public void setMetrics(MetricsRegistry metrics)
+    {
+        this.metrics = metrics;
+        if (lockManager instanceof DefaultRaplaLock)
+        {
+            final DefaultRaplaLock defaultLock = (DefaultRaplaLock) lockManager;
+            metrics.gauge("rapla_storage_read_locks", () -> defaultLock.getReadLockHolders().size());
+            metrics.gauge("rapla_storage_write_locks", () -> defaultLock.getWriteLockHolders().size());
+        }
+        metrics.gauge("rapla_occurrence_cache_bytes", occurrenceCache::getBytes);
+        metrics.gauge("rapla_occurrence_cache_entries", occurrenceCache::getEntries);
+        metrics.gauge("rapla_occurrence_cache_evictions", occurrenceCache::getEvictions);
+        metrics.gauge("rapla_entity_ids", idTable::size);
+        metrics.gauge("rapla_fulltext_documents", fullTextIndex::size);
+    }
+
+    /** the names are indexed in the locale of the server and in every available language */
+    private static Collection<Locale> getIndexLocales(RaplaLocale raplaLocale)
+    {
+        final Set<Locale> locales = new LinkedHashSet<>();
+        locales.add(raplaLocale.getLocale());
+        for (String language : raplaLocale.getAvailableLanguages())
+        {
+            locales.add(new Locale(language));
+        }
+        return locales;
+    }
+
+    @Override
+    public List<String> searchFullText(String query, Collection<Class<? extends Entity>> types)
+    {
+        return fullTextIndex.search(query, types);
+    }
+
+    @Override
+    protected Collection<Allocatable> getAllocatableCandidates(ClassificationFilter[] filters)
+    {
+        if (filters == null)
+        {
+            return super.getAllocatableCandidates(filters);
+        }
+        final Set<String> ids = allocatableIndex.query(filters);
+        final Collection<Allocatable> result = new ArrayList<>(ids.size());
+        for (String id : ids)
+        {
+            final Allocatable allocatable = cache.tryResolve(id, Allocatable.class);
+            if (allocatable != null)
+            {
+                result.add(allocatable);
+            }
+        }
+        return result;
+    }
+
+    public MetricsRegistry getMetrics()
+    {
+        return metrics;
+    }
+
     @Override
     final public boolean isConnected()
     {
@@ -522,6 +599,8 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
 
         final Promise<Map<Allocatable, Collection<Appointment>>> promise = scheduler.supply(() ->
         {
+            // the published view is immutable, so no read lock is needed
+            final ReadView view = readView;
             boolean excludeExceptions = false;
             boolean isResourceTemplate = containsResourceTemplate(allocatables);
             final Collection<Allocatable> allocs;
@@ -533,23 +612,17 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             }
             else
             {
-                allocs = (allocatables == null || allocatables.size() == 0) ? getAllocatables(null) : allocatables;
+                checkLoaded();
+                // same as getAllocatables(null), internal types are only returned if explicitly requested
+                allocs = (allocatables == null || allocatables.size() == 0) ? view.cache.getAllocatables().stream()
+                        .filter((alloc) -> !Classifiable.ClassifiableUtil.isInternalType(alloc)).collect(Collectors.toList()) : allocatables;
                 nonTemplates = Collections.emptySet();
             }
             Map<Allocatable, Collection<Appointment>> result = new LinkedHashMap<>();
             for (Allocatable allocatable: allocs)
             {
-                RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "queryAppointments");
-                SortedSet<Appointment> appointmentSet;
-                try
-                {
-                    SortedSet<Appointment> appointments = getAppointments(allocatable);
-                    appointmentSet = AppointmentImpl.getAppointments(appointments, user, start, end, excludeExceptions);
-                }
-                finally
-                {
-                    lockManager.unlock(readLock);
-                }
+                SortedSet<Appointment> appointments = view.getAppointments(allocatable);
+                SortedSet<Appointment> appointmentSet = AppointmentImpl.getAppointments(appointments, user, start, end, excludeExceptions);
                 for (Appointment appointment : appointmentSet)
                 {
                     Reservation reservation = appointment.getReservation();
@@ -761,7 +834,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
         }
         User editObject = editObject(user, null);
         List<Entity> editList = new ArrayList<>(1);
@@ -1065,6 +1138,8 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         // The appointment map
 
         final Collection<Allocatable> alloctables = cache.getAllocatables();
+        allocatableIndex.rebuild(alloctables);
+        fullTextIndex.rebuild(alloctables);
         for (Allocatable alloc : alloctables)
         {
             final String externalId = alloc.getAnnotation(RaplaObjectAnnotations.KEY_EXTERNALID);
@@ -1091,6 +1166,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         final Collection<Reservation> events = cache.getReservations();
         for (Reservation event : events)
         {
+            fullTextIndex.put(event);
             final String externalId = event.getAnnotation(RaplaObjectAnnotations.KEY_EXTERNALID);
             if (externalId != null)
             {
@@ -1154,6 +1230,8 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             addToDeleteUpdate(referenceInfo, timestamp, isDelete, preference);
         }
         calendarModelCache.initCalendarMap();
+        // the initial load is not always done with the write lock
+        publishSnapshot();
         final long delay = 0;//DateTools.MILLISECONDS_PER_HOUR;
         scheduleConnectedTasks(cleanUpConflicts, delay, DateTools.MILLISECONDS_PER_HOUR);
         final int refreshPeriod = 1000 * 20;
@@ -1170,7 +1248,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
                         }
                         finally
                         {
-                            lockManager.unlock(writeLock);
+                            unlock(writeLock);
                         }
                     }
                 }
@@ -1192,7 +1270,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
         finally
         {
-            lockManager.unlock(lock);
+            unlock(lock);
         }
     }
 
@@ -1236,7 +1314,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
         }
 
         try
@@ -1292,10 +1370,35 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
     {
         calendarModelCache.synchronizeCalendars(result);
         final Collection<UpdateOperation> conflictChanges = new ArrayList<>();
+        boolean typesChanged = false;
+        // the ids of the changed entities that can be part of the formatted names
+        final Set<String> changedIds = new HashSet<>();
         for (UpdateOperation op : result.getOperations())
         {
             ReferenceInfo id = op.getReference();
             final Class<? extends Entity> raplaType = op.getType();
+            if (raplaType == Allocatable.class)
+            {
+                updateAllocatableIndex(op);
+                updateFullTextIndex(op, Allocatable.class);
+            }
+            else if (raplaType == Reservation.class)
+            {
+                updateFullTextIndex(op, Reservation.class);
+            }
+            else if (raplaType == DynamicType.class)
+            {
+                typesChanged = true;
+            }
+            if (raplaType == Allocatable.class || raplaType == Reservation.class || raplaType == DynamicType.class || raplaType == User.class)
+            {
+                changedIds.add(id.getId());
+            }
+            else if (raplaType == Category.class)
+            {
+                // the sub categories can be stored as part of their parent
+                addCategoryIds(changedIds, id.getId());
+            }
             if (raplaType == Conflict.class || raplaType == Allocatable.class || raplaType == Reservation.class || raplaType == DynamicType.class
                     || raplaType == User.class || raplaType == Category.class)
             {
@@ -1324,6 +1427,20 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             }
         }
 
+        if (typesChanged)
+        {
+            // the attributes of the types or the classifications of their allocatables changed
+            allocatableIndex.rebuild(cache.getAllocatables());
+        }
+        // the names of the entities that use the changed types, categories, resources or users
+        for (ReferenceInfo<Entity> dependent : fullTextIndex.getDependents(changedIds))
+        {
+            if (!changedIds.contains(dependent.getId()))
+            {
+                updateFullTextIndex(dependent);
+            }
+        }
+
         // 1. update appoimtment binding map
         UpdateBindingsResult bindingResult = updateAppointmentBindings(result);
 
@@ -1358,7 +1475,10 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         */
         Date today = today();
         // processes the conflicts and adds the changes to the result
+        final Timer conflictTimer = metrics.timer("rapla_conflicts_update_seconds");
+        final long conflictStart = conflictTimer.start();
         final Collection<ConflictFinder.ConflictChangeOperation> calculatedConflictChanges = conflictFinder.updateConflicts(bindingResult, result, today);
+        conflictTimer.stop(conflictStart);
         for (ConflictFinder.ConflictChangeOperation updateOperation : calculatedConflictChanges)
         {
             final UpdateOperation operation = updateOperation.getOperation();
@@ -1405,6 +1525,60 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
 
     }
 
+    private void updateAllocatableIndex(UpdateOperation op)
+    {
+        final String id = op.getReference().getId();
+        final Allocatable allocatable = op instanceof Remove ? null : cache.tryResolve(id, Allocatable.class);
+        if (allocatable != null)
+        {
+            allocatableIndex.put(allocatable);
+        }
+        else
+        {
+            allocatableIndex.remove(id);
+        }
+    }
+
+    private void updateFullTextIndex(UpdateOperation op, Class<? extends Entity> type)
+    {
+        final String id = op.getReference().getId();
+        final Entity entity = op instanceof Remove ? null : cache.tryResolve(id, type);
+        if (entity != null)
+        {
+            fullTextIndex.put((Classifiable) entity);
+        }
+        else
+        {
+            fullTextIndex.remove(id);
+        }
+    }
+
+    private void addCategoryIds(Set<String> ids, String categoryId)
+    {
+        ids.add(categoryId);
+        final Category category = cache.tryResolve(categoryId, Category.class);
+        if (category != null)
+        {
+            for (Category child : category.getCategoryList())
+            {
+                addCategoryIds(ids, child.getId());
+            }
+        }
+    }
+
+    private void updateFullTextIndex(ReferenceInfo<Entity> reference)
+    {
+        final Entity entity = cache.tryResolve(reference);
+        if (entity != null)
+        {
+            fullTextIndex.put((Classifiable) entity);
+        }
+        else
+        {
+            fullTextIndex.remove(reference.getId());
+        }
+    }
+
     private void updateExternalId(UpdateOperation op, ReferenceInfo id)
     {
         final BidiMap<ReferenceInfo, String> referenceInfoStringBidiMap = externalIds.inverseBidiMap();
@@ -1985,12 +2159,18 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
 
     /** returs all appointments for the allocatable and all groupMembers and belongsTo*/
     protected SortedSet<Appointment> getAppointments(Allocatable allocatable)
+    {
+        return getAppointments(cache, appointmentBindings.appointmentMap, allocatable);
+    }
+
+    static SortedSet<Appointment> getAppointments(LocalCache cache, Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> appointmentMap,
+            Allocatable allocatable)
     {
         final ReferenceInfo<Allocatable> reference = allocatable != null ? allocatable.getReference() : null;
         Set<ReferenceInfo<Allocatable>> allocatableIds = cache.getDependentRef(reference);
         if (allocatableIds.size() == 0)
         {
-            SortedSet<Appointment> s = appointmentBindings.getAppointments(null);
+            SortedSet<Appointment> s = appointmentMap.get(null);
             if (s != null)
             {
                 return s;
@@ -2002,7 +2182,11 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             SortedSet<Appointment> transitive = new TreeSet<>(new AppointmentStartComparator());
             for (ReferenceInfo<Allocatable> allocatableId : allocatableIds)
             {
-                SortedSet<Appointment> s = appointmentBindings.getAppointments(allocatableId);
+                SortedSet<Appointment> s = appointmentMap.get(allocatableId);
+                if (s == null)
+                {
+                    continue;
+                }
                 for (Appointment appointment : s)
                 {
                     transitive.add(appointment);
@@ -2012,20 +2196,117 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
     }
 
+    /**
+     * published state of the cache and the appointment bindings. Readers that use the view don't need the read lock,
+     * because the view is never modified. The writer replaces the view in {@link #publishSnapshot()}.
+     */
+    static final class ReadView
+    {
+        final LocalCache cache;
+        final Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> appointmentMap;
+
+        ReadView(LocalCache cache, Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> appointmentMap)
+        {
+            this.cache = cache;
+            this.appointmentMap = appointmentMap;
+        }
+
+        SortedSet<Appointment> getAppointments(Allocatable allocatable)
+        {
+            return LocalAbstractCachableOperator.getAppointments(cache, appointmentMap, allocatable);
+        }
+    }
+
+    /**
+     * the operator resolves against the working cache, which can already contain changes that are not yet published. Kept
+     * resolutions are resolved with the published snapshot instead, whose version changes with every publish.
+     */
+    @Override
+    public EntityResolver getReferenceResolver()
+    {
+        return readView.cache;
+    }
+
+    @Override
+    public CategoryIndex getCategoryIndex()
+    {
+        return readView.cache.getCategoryIndex();
+    }
+
+    @Override
+    protected void publishSnapshot()
+    {
+        cache.publish();
+        final Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> publishedBindings = appointmentBindings.publish();
+        final ReadView current = readView;
+        if (current.cache != cache.getSnapshot() || current.appointmentMap != publishedBindings)
+        {
+            readView = new ReadView(cache.getSnapshot(), publishedBindings);
+        }
+    }
+
+    /**
+     * Index of the appointments per allocatable. The writer changes the index in place, but copies each set on the first change
+     * after a publish, so the sets of the published index stay unchanged.
+     */
     static final class AppointmentMapClass
     {
         final private Logger logger;
-        private Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> appointmentMap;
+        final private OccurrenceCache occurrenceCache;
+        private Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> appointmentMap = new HashMap<>();
+        private Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> published = Collections.emptyMap();
+        // the sets that are not shared with the published index
+        private final Set<ReferenceInfo<Allocatable>> copied = new HashSet<>();
+        private boolean changed;
         Set<String> problematicIdSet = Collections.synchronizedSet(new HashSet<>());
 
-        private AppointmentMapClass(Logger newLogger)
+        private AppointmentMapClass(Logger newLogger, OccurrenceCache occurrenceCache)
         {
             logger = newLogger;
+            this.occurrenceCache = occurrenceCache;
+        }
+
+        private Map<ReferenceInfo<Allocatable>, SortedSet<Appointment>> publish()
+        {
+            if (changed)
+            {
+                published = Collections.unmodifiableMap(new HashMap<>(appointmentMap));
+                copied.clear();
+                changed = false;
+            }
+            return published;
+        }
+
+        private SortedSet<Appointment> getWritable(ReferenceInfo<Allocatable> allocationId, boolean create)
+        {
+            SortedSet<Appointment> set = appointmentMap.get(allocationId);
+            if (set == null)
+            {
+                if (!create)
+                {
+                    return null;
+                }
+                set = new TreeSet<>(new AppointmentStartComparator());
+            }
+            else if (!copied.contains(allocationId))
+            {
+                set = new TreeSet<>(set);
+            }
+            else
+            {
+                return set;
+            }
+            appointmentMap.put(allocationId, set);
+            copied.add(allocationId);
+            changed = true;
+            return set;
         }
 
         private void initAppointmentBindings(Collection<Reservation> reservations)
         {
             appointmentMap = new HashMap<>();
+            copied.clear();
+            changed = true;
             for (Reservation r : reservations)
             {
                 for (Appointment app : ((ReservationImpl) r).getAppointmentList())
@@ -2052,7 +2333,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
 
         private void removeAppointmentBinding(Appointment app, ReferenceInfo<Allocatable> allocationId)
         {
-            Collection<Appointment> appointmentSet = appointmentMap.get(allocationId);
+            Collection<Appointment> appointmentSet = getWritable(allocationId, false);
             if (appointmentSet == null)
             {
                 return;
@@ -2086,18 +2367,19 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
                 {
                     logger.error("Removing non empty appointment map for resource " + alloc + " Appointments:" + sortedSet);
                 }
-                appointmentMap.remove(alloc);
+                if (appointmentMap.remove(alloc) != null)
+                {
+                    copied.remove(alloc);
+                    changed = true;
+                }
             }
         }
 
         private void addAppointmentBinding(Appointment appRef, ReferenceInfo<Allocatable> allocationId)
         {
-            SortedSet<Appointment> set = appointmentMap.get(allocationId);
-            if (set == null)
-            {
-                set = new TreeSet<>(new AppointmentStartComparator());
-                appointmentMap.put(allocationId, set);
-            }
+            // every appointment in the cache is bound, at least to the null allocatable
+            ((AppointmentImpl) appRef).setOccurrenceCache(occurrenceCache);
+            SortedSet<Appointment> set = getWritable(allocationId, true);
             set.add(appRef);
         }
 
@@ -2112,12 +2394,13 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             {
                 for (Allocatable allocatable : allocatables)
                 {
-                    SortedSet<Appointment> appointmentSet = this.appointmentMap.get(allocatable.getReference());
+                    final ReferenceInfo<Allocatable> allocatableRef = allocatable.getReference();
+                    SortedSet<Appointment> appointmentSet = this.appointmentMap.get(allocatableRef);
                     if (appointmentSet == null)
                     {
                         continue;
                     }
-                    for (Appointment app : appointmentSet)
+                    for (Appointment app : new ArrayList<>(appointmentSet))
                     {
                         Reservation reservation = app.getReservation();
                         final String annotation = reservation.getAnnotation(RaplaObjectAnnotations.KEY_TEMPLATE);
@@ -2125,14 +2408,14 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
                         if (reservation == null)
                         {
                             logger.error("Appointment without a reservation stored in cache " + app);
-                            appointmentSet.remove(app);
+                            getWritable(allocatableRef, false).remove(app);
                             continue;
                         }
                         else if (!reservation.hasAllocatedOn(allocatable, app) && (template == null || !template.equals(allocatable)))
                         {
                             logger.error(
                                     "Allocation is not stored correctly for " + reservation + " " + app + " " + allocatable + " removing binding for " + app);
-                            appointmentSet.remove(app);
+                            getWritable(allocatableRef, false).remove(app);
                             continue;
                         }
                         else
@@ -2163,7 +2446,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
                                 else
                                 {
                                     logger.error("Reservation not stored in cache " + original + " removing binding for " + app);
-                                    appointmentSet.remove(app);
+                                    getWritable(allocatableRef, false).remove(app);
                                     continue;
                                 }
                             }
@@ -2216,7 +2499,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
         }
     }
 
@@ -2260,7 +2543,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             }
             finally
             {
-                lockManager.unlock(writeLock);
+                unlock(writeLock);
             }
         }
     }
@@ -2302,6 +2585,352 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         return conflicts;
     }
 
+    /**
+     * Returns the ids of the allocatables and reservations of an event that only stores or removes reservations and conflicts,
+     * or null if the event changes the structure (types, categories, users, resources, permissions or preferences) and needs
+     * the global write lock.
+     */
+    protected Set<String> getReservationOnlyLockIds(UpdateEvent evt) throws RaplaException
+    {
+        if (!evt.getPreferencePatches().isEmpty())
+        {
+            return null;
+        }
+        final Set<String> ids = new HashSet<>();
+        for (Entity entity : evt.getStoreObjects())
+        {
+            if (!addReservationOnlyLockIds(entity.getReference(), ids))
+            {
+                return null;
+            }
+            addAllocatableIds(entity, ids);
+        }
+        for (ReferenceInfo id : evt.getRemoveIds())
+        {
+            if (!addReservationOnlyLockIds(id, ids))
+            {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    private boolean addReservationOnlyLockIds(ReferenceInfo id, Set<String> ids)
+    {
+        final Class<? extends Entity> type = id.getType();
+        if (type != Reservation.class && type != Conflict.class)
+        {
+            return false;
+        }
+        ids.add(id.getId());
+        // the allocatables of the stored version are affected too, e.g. if a resource is removed from the reservation.
+        // The published snapshot is used, because the caller doesn't hold a lock yet
+        final Entity existing = readView.cache.tryResolve(id);
+        if (existing != null)
+        {
+            addAllocatableIds(existing, ids);
+        }
+        return true;
+    }
+
+    private static void addAllocatableIds(Entity entity, Set<String> ids)
+    {
+        if (entity instanceof Conflict)
+        {
+            final ReferenceInfo<Allocatable> allocatableId = ((Conflict) entity).getAllocatableId();
+            if (allocatableId != null)
+            {
+                ids.add(allocatableId.getId());
+            }
+        }
+        else if (entity instanceof EntityReferencer)
+        {
+            for (ReferenceInfo referenceInfo : ((EntityReferencer) entity).getReferenceInfo())
+            {
+                if (referenceInfo.getType() == Allocatable.class)
+                {
+                    ids.add(referenceInfo.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Locks for storing the event. Events that only change reservations lock the stripes of the affected allocatables and the
+     * read lock, so that changes of different allocatables can be validated and written in parallel. Before the cache and
+     * the indexes are updated the lock must be upgraded with {@link CommitLock#upgrade()}. All other events get the global
+     * write lock.
+     */
+    protected CommitLock lockForCommit(UpdateEvent evt, String name) throws RaplaException
+    {
+        return lockForCommit(Collections.singletonList(evt), getReservationOnlyLockIds(evt), name);
+    }
+
+    /** locks the stripes of the passed ids for the events, or the global write lock if ids is null */
+    private CommitLock lockForCommit(Collection<UpdateEvent> events, Set<String> ids, String name) throws RaplaException
+    {
+        final CommitLock commitLock = new CommitLock(name);
+        if (ids == null)
+        {
+            commitLock.writeLock = writeLockIfLoaded(name);
+            return commitLock;
+        }
+        // stripes first, then the read lock. A commit that holds the read lock never waits for a stripe
+        commitLock.stripes = allocatableStripes.lock(ids, DefaultRaplaLock.DEFAULT_WRITELOCK_TIMEOUT_SECONDS);
+        try
+        {
+            commitLock.readLock = lockManager.readLock(getClass(), name);
+            checkLoaded();
+            // the stored version may have changed before the stripes were locked
+            for (UpdateEvent evt : events)
+            {
+                final Set<String> currentIds = getReservationOnlyLockIds(evt);
+                if (currentIds == null || !ids.containsAll(currentIds))
+                {
+                    commitLock.upgrade();
+                    break;
+                }
+            }
+        }
+        catch (RaplaException ex)
+        {
+            unlock(commitLock);
+            throw ex;
+        }
+        return commitLock;
+    }
+
+    protected void unlock(CommitLock commitLock)
+    {
+        try
+        {
+            if (commitLock.writeLock != null)
+            {
+                unlock(commitLock.writeLock);
+            }
+            else if (commitLock.readLock != null)
+            {
+                lockManager.unlock(commitLock.readLock);
+            }
+        }
+        finally
+        {
+            allocatableStripes.unlock(commitLock.stripes);
+        }
+    }
+
+    /**
+     * Enables the group commit if millis is greater than 0. Reservation only events that arrive within the given milliseconds
+     * are then validated in order, written together and followed by one index and conflict update.
+     */
+    public void setGroupCommitMillis(int millis)
+    {
+        groupCommit = millis > 0 ? new GroupCommit(millis, this::dispatchGroup) : null;
+    }
+
+    /** sets the memory limit for the cached occurrences of the appointments of this operator, 0 disables the cache */
+    public void setOccurrenceCacheBytes(long maxBytes)
+    {
+        occurrenceCache.setMaxBytes(maxBytes);
+    }
+
+    @Override
+    public void dispatch(UpdateEvent evt) throws RaplaException
+    {
+        final GroupCommit current = groupCommit;
+        if (current != null && getReservationOnlyLockIds(evt) != null)
+        {
+            current.dispatch(evt);
+        }
+        else
+        {
+            dispatchSingle(evt);
+        }
+    }
+
+    /** stores the changes of the event */
+    protected abstract void dispatchSingle(UpdateEvent evt) throws RaplaException;
+
+    /**
+     * stores the changes of events that were already checked with {@link #preprocessEventStorage(UpdateEvent)} together.
+     * If the method fails before {@link CommitLock#markChanged()} is called, each event is dispatched again with
+     * {@link #dispatchSingle(UpdateEvent)}. Implementations must call it before the cache is changed or the stored data is
+     * committed, later failures fail all events of the batch. The commit lock must be upgraded before the cache is changed.
+     * Events that are written after the upgrade must be checked again, because other writers can commit in between.
+     */
+    protected abstract void dispatchBatch(List<UpdateEvent> events, CommitLock commitLock) throws RaplaException;
+
+    private void dispatchGroup(List<GroupCommit.Pending> batch)
+    {
+        // events that touch the same reservations or allocatables as an earlier event must be checked against its result,
+        // so they are dispatched alone after the batch
+        final List<GroupCommit.Pending> candidates = new ArrayList<>();
+        final List<GroupCommit.Pending> deferred = new ArrayList<>();
+        final Set<String> ids = new HashSet<>();
+        for (GroupCommit.Pending pending : batch)
+        {
+            final Set<String> eventIds;
+            try
+            {
+                eventIds = getReservationOnlyLockIds(pending.event);
+            }
+            catch (Exception ex)
+            {
+                pending.fail(ex);
+                continue;
+            }
+            if (eventIds == null || !Collections.disjoint(ids, eventIds))
+            {
+                deferred.add(pending);
+                continue;
+            }
+            ids.addAll(eventIds);
+            candidates.add(pending);
+        }
+        if (!candidates.isEmpty())
+        {
+            dispatchCandidates(candidates, ids, deferred);
+        }
+        for (GroupCommit.Pending pending : deferred)
+        {
+            try
+            {
+                dispatchSingle(pending.event);
+                pending.complete();
+            }
+            catch (Throwable ex)
+            {
+                pending.fail(ex);
+            }
+        }
+    }
+
+    private void dispatchCandidates(List<GroupCommit.Pending> candidates, Set<String> ids, List<GroupCommit.Pending> deferred)
+    {
+        final List<UpdateEvent> candidateEvents = new ArrayList<>();
+        for (GroupCommit.Pending pending : candidates)
+        {
+            candidateEvents.add(pending.event);
+        }
+        final CommitLock commitLock;
+        try
+        {
+            commitLock = lockForCommit(candidateEvents, ids, "group commit of " + candidates.size() + " events");
+        }
+        catch (Throwable ex)
+        {
+            for (GroupCommit.Pending pending : candidates)
+            {
+                pending.fail(ex);
+            }
+            return;
+        }
+        final List<GroupCommit.Pending> accepted = new ArrayList<>();
+        final List<UpdateEvent> events = new ArrayList<>();
+        try
+        {
+            // the checks run in the order the events arrived, an invalid event only fails for its caller
+            for (GroupCommit.Pending pending : candidates)
+            {
+                try
+                {
+                    preprocessEventStorage(pending.event);
+                }
+                catch (Throwable ex)
+                {
+                    pending.fail(ex);
+                    continue;
+                }
+                if (getReservationOnlyLockIds(pending.event) == null)
+                {
+                    // the closure added dependent entities
+                    deferred.add(pending);
+                    continue;
+                }
+                accepted.add(pending);
+                events.add(pending.event);
+            }
+            if (!events.isEmpty())
+            {
+                dispatchBatch(events, commitLock);
+                for (GroupCommit.Pending pending : accepted)
+                {
+                    pending.complete();
+                }
+            }
+        }
+        catch (Throwable ex)
+        {
+            if (commitLock.isChanged())
+            {
+                // the changes could already be applied partly, so dispatching the events again would apply them twice
+                getLogger().error("Group commit of " + events.size() + " events failed", ex);
+                for (GroupCommit.Pending pending : accepted)
+                {
+                    pending.fail(ex);
+                }
+            }
+            else
+            {
+                getLogger().warn("Group commit of " + events.size() + " events failed, dispatching them one by one: " + ex.getMessage());
+                deferred.addAll(0, accepted);
+            }
+        }
+        finally
+        {
+            unlock(commitLock);
+        }
+    }
+
+    /** the locks of a commit, see {@link #lockForCommit(UpdateEvent, String)} */
+    protected final class CommitLock
+    {
+        private final String name;
+        private LockStripes.Stripes stripes;
+        private RaplaLock.ReadLock readLock;
+        private RaplaLock.WriteLock writeLock;
+        private boolean changed;
+
+        private CommitLock(String name)
+        {
+            this.name = name;
+        }
+
+        /** marks that the cache or the stored data is about to be changed, so a failed batch can't be dispatched again */
+        public void markChanged()
+        {
+            changed = true;
+        }
+
+        public boolean isChanged()
+        {
+            return changed;
+        }
+
+        /** true if only the stripes and the read lock are held */
+        public boolean isShared()
+        {
+            return writeLock == null;
+        }
+
+        /**
+         * exchanges the read lock with the global write lock. The stripes stay locked, so no other commit of the same allocatables
+         * that uses the stripes can run in between. Writers that only take the global write lock, e.g. a change of an allocatable
+         * or a refresh, can commit before the write lock is acquired, so the events must be checked again with
+         * {@link #preprocessEventStorage(UpdateEvent)} before the cache is changed.
+         */
+        public void upgrade() throws RaplaException
+        {
+            if (writeLock != null)
+            {
+                return;
+            }
+            lockManager.unlock(readLock);
+            readLock = null;
+            writeLock = writeLockIfLoaded(name);
+        }
+    }
+
     protected void preprocessEventStorage(final UpdateEvent evt) throws RaplaException
     {
         EntityStore store = new EntityStore(this);
@@ -3471,23 +4100,16 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             Collection<Appointment> appointments, Collection<Reservation> ignoreList)
     {
         final Promise<Map<Allocatable, Collection<Appointment>>> prom = scheduler
-                .supply(() -> getFirstAllocatableBindingsMap(allocatables, appointments, ignoreList));
+                .supply(() -> getFirstAllocatableBindingsSync(allocatables, appointments, ignoreList));
         return prom;
     }
 
-    private Map<Allocatable, Collection<Appointment>> getFirstAllocatableBindingsMap(Collection<Allocatable> allocatables, Collection<Appointment> appointments,
+    @Override
+    public Map<Allocatable, Collection<Appointment>> getFirstAllocatableBindingsSync(Collection<Allocatable> allocatables, Collection<Appointment> appointments,
             Collection<Reservation> ignoreList) throws RaplaException
     {
-        final RaplaLock.ReadLock readLock = lockManager.readLock(getClass(),"getFirstAllocableBindings");
-        Map<Allocatable, Map<Appointment, Collection<Appointment>>> allocatableBindings;
-        try
-        {
-            allocatableBindings = getAllocatableBindings(allocatables, appointments, ignoreList, true);
-        }
-        finally
-        {
-            lockManager.unlock(readLock);
-        }
+        Map<Allocatable, Map<Appointment, Collection<Appointment>>> allocatableBindings = getAllocatableBindings(readView, allocatables, appointments,
+                ignoreList, true);
         Map<Allocatable, Collection<Appointment>> map = new HashMap<>();
         for (Map.Entry<Allocatable, Map<Appointment, Collection<Appointment>>> entry : allocatableBindings.entrySet())
         {
@@ -3502,24 +4124,24 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
     public Promise<Map<Allocatable, Map<Appointment, Collection<Appointment>>>> getAllAllocatableBindings(Collection<Allocatable> allocatables,
             Collection<Appointment> appointments, Collection<Reservation> ignoreList)
     {
-        return scheduler.supply(() ->
-        {
-            RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "getAllocatableBindings" );
-            try
-            {
-                Map<Allocatable, Map<Appointment, Collection<Appointment>>> allocatableBindings = getAllocatableBindings(allocatables, appointments, ignoreList,
-                        false);
-                return allocatableBindings;
-            }
-            finally
-            {
-                lockManager.unlock(readLock);
-            }
-        });
+        return scheduler.supply(() -> getAllAllocatableBindingsSync(allocatables, appointments, ignoreList));
+    }
+
+    @Override
+    public Map<Allocatable, Map<Appointment, Collection<Appointment>>> getAllAllocatableBindingsSync(Collection<Allocatable> allocatables,
+            Collection<Appointment> appointments, Collection<Reservation> ignoreList) throws RaplaException
+    {
+        return getAllocatableBindings(readView, allocatables, appointments, ignoreList, false);
     }
 
     public Map<Allocatable, Map<Appointment, Collection<Appointment>>> getAllocatableBindings(Collection<Allocatable> allocatables,
             Collection<Appointment> appointments, Collection<Reservation> ignoreList, boolean onlyFirstConflictingAppointment)
+    {
+        return getAllocatableBindings(readView, allocatables, appointments, ignoreList, onlyFirstConflictingAppointment);
+    }
+
+    private Map<Allocatable, Map<Appointment, Collection<Appointment>>> getAllocatableBindings(ReadView view, Collection<Allocatable> allocatables,
+            Collection<Appointment> appointments, Collection<Reservation> ignoreList, boolean onlyFirstConflictingAppointment)
     {
         Map<Allocatable, Map<Appointment, Collection<Appointment>>> map = new HashMap<>();
         for (Allocatable allocatable : allocatables)
@@ -3532,7 +4154,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
                     continue;
                 }
                 // TODO check also parents and children from allocatables
-                SortedSet<Appointment> appointmentSet = getAppointments(allocatable);
+                SortedSet<Appointment> appointmentSet = view.getAppointments(allocatable);
                 if (appointmentSet == null)
                 {
                     continue;
@@ -3563,45 +4185,43 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
             final Collection<Reservation> ignoreList, final Integer worktimeStartMinutes, final Integer worktimeEndMinutes, final Integer[] excludedDays,
             final Integer rowsPerHour)
     {
-        Promise<Date> promise = scheduler.supply(() ->
-        {
-            RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "getNextAllocatableDate");
-            try
+        Promise<Date> promise = scheduler.supply(() -> getNextAllocatableDateSync(allocatables, appointment, ignoreList, worktimeStartMinutes, worktimeEndMinutes,
+                excludedDays, rowsPerHour));
+        return promise;
+    }
+
+    @Override
+    public Date getNextAllocatableDateSync(final Collection<Allocatable> allocatables, final Appointment appointment,
+            final Collection<Reservation> ignoreList, final Integer worktimeStartMinutes, final Integer worktimeEndMinutes, final Integer[] excludedDays,
+            final Integer rowsPerHour) throws RaplaException
+    {
+        Appointment newState = appointment;
+        Date firstStart = appointment.getStart();
+        boolean startDateExcluded = isExcluded(excludedDays, firstStart);
+        boolean wholeDay = appointment.isWholeDaysSet();
+        boolean inWorktime = inWorktime(appointment, worktimeStartMinutes, worktimeEndMinutes);
+        final int rowsPerHourInt = (rowsPerHour == null || rowsPerHour <= 1) ? 1 : rowsPerHour;
+        for (int i = 0; i < 366 * 24 * rowsPerHourInt; i++)
+        {
+            newState = ((AppointmentImpl) newState).clone();
+            Date start = newState.getStart();
+            long millisToAdd = wholeDay ? DateTools.MILLISECONDS_PER_DAY : (DateTools.MILLISECONDS_PER_HOUR / rowsPerHourInt);
+            Date newStart = new Date(start.getTime() + millisToAdd);
+            if (!startDateExcluded && isExcluded(excludedDays, newStart))
             {
-                Appointment newState = appointment;
-                Date firstStart = appointment.getStart();
-                boolean startDateExcluded = isExcluded(excludedDays, firstStart);
-                boolean wholeDay = appointment.isWholeDaysSet();
-                boolean inWorktime = inWorktime(appointment, worktimeStartMinutes, worktimeEndMinutes);
-                final int rowsPerHourInt = (rowsPerHour == null || rowsPerHour <= 1) ? 1 : rowsPerHour;
-                for (int i = 0; i < 366 * 24 * rowsPerHourInt; i++)
-                {
-                    newState = ((AppointmentImpl) newState).clone();
-                    Date start = newState.getStart();
-                    long millisToAdd = wholeDay ? DateTools.MILLISECONDS_PER_DAY : (DateTools.MILLISECONDS_PER_HOUR / rowsPerHourInt);
-                    Date newStart = new Date(start.getTime() + millisToAdd);
-                    if (!startDateExcluded && isExcluded(excludedDays, newStart))
-                    {
-                        continue;
-                    }
-                    newState.moveTo(newStart);
-                    if (!wholeDay && inWorktime && !inWorktime(newState, worktimeStartMinutes, worktimeEndMinutes))
-                    {
-                        continue;
-                    }
-                    if (!isAllocated(allocatables, newState, ignoreList))
-                    {
-                        return newStart;
-                    }
-                }
-                return null;
+                continue;
             }
-            finally
+            newState.moveTo(newStart);
+            if (!wholeDay && inWorktime && !inWorktime(newState, worktimeStartMinutes, worktimeEndMinutes))
             {
-                lockManager.unlock(readLock);
+                continue;
             }
-        });
-        return promise;
+            if (!isAllocated(allocatables, newState, ignoreList))
+            {
+                return newStart;
+            }
+        }
+        return null;
     }
 
     private boolean inWorktime(Appointment appointment, Integer worktimeStartMinutes, Integer worktimeEndMinutes)
@@ -3631,9 +4251,9 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         return false;
     }
 
-    private boolean isAllocated(Collection<Allocatable> allocatables, Appointment appointment, Collection<Reservation> ignoreList) throws Exception
+    private boolean isAllocated(Collection<Allocatable> allocatables, Appointment appointment, Collection<Reservation> ignoreList) throws RaplaException
     {
-        Map<Allocatable, Collection<Appointment>> firstAllocatableBindings = getFirstAllocatableBindingsMap(allocatables, Collections.singleton(appointment),
+        Map<Allocatable, Collection<Appointment>> firstAllocatableBindings = getFirstAllocatableBindingsSync(allocatables, Collections.singleton(appointment),
                 ignoreList);
         for (Map.Entry<Allocatable, Collection<Appointment>> entry : firstAllocatableBindings.entrySet())
         {
@@ -3648,15 +4268,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
     public Collection<Entity> getVisibleEntities(final User user) throws RaplaException
     {
         checkLoaded();
-        RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "getVisibleEntities for " + user );
-        try
-        {
-            return cache.getVisibleEntities(user);
-        }
-        finally
-        {
-            lockManager.unlock(readLock);
-        }
+        return readView.cache.getVisibleEntities(user);
     }
 
     @SuppressWarnings("deprecation")
@@ -4068,7 +4680,7 @@ public abstract class LocalAbstractCachableOperator extends AbstractCachableOper
         }
         finally
         {
-            lockManager.unlock(writeLock);
+            unlock(writeLock);
         }
     }
 
@@ -98,6 +98,31 @@ public class PermissionTest extends AbstractTestWithServer {
         clientReadPermissions();
     }
 
+    @Test
+    public void testReadPermissionChange() throws Exception {
+        Allocatable allocatable = adminFacade.newResourceDeprecated();
+        allocatable.getClassification().setValue("name","test-allocatable");
+        allocatable.removePermission( allocatable.getPermissionList().iterator().next() );
+        Permission permission = allocatable.newPermission();
+        permission.setGroup ( adminFacade.getUserGroupsCategory().getCategory("test-group") );
+        permission.setAccessLevel( Permission.READ );
+        allocatable.addPermission( permission );
+        adminFacade.store( allocatable );
+
+        final PermissionController permissionController = DefaultPermissionControllerSupport.getController(adminFacade.getOperator());
+        final User user = adminFacade.tryResolve(testFacadeClient.getUser().getReference());
+        Allocatable stored = adminFacade.tryResolve(allocatable.getReference());
+        Assert.assertTrue(permissionController.canRead(stored, user));
+        Assert.assertTrue(permissionController.canReadOnlyInformation(stored, user));
+        // the cached permission result must not survive the change
+        Allocatable edited = adminFacade.edit( stored );
+        edited.removePermission( edited.getPermissionList().iterator().next() );
+        adminFacade.store( edited );
+        stored = adminFacade.tryResolve(allocatable.getReference());
+        Assert.assertFalse(permissionController.canRead(stored, user));
+        Assert.assertFalse(permissionController.canReadOnlyInformation(stored, user));
+    }
+
     @Test
     public void testAllocatePermissions() throws Exception {
         // first createInfoDialog a new resource and set the permissions
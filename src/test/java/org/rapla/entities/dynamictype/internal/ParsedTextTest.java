@@ -143,6 +143,24 @@ public class ParsedTextTest
         Assert.assertEquals(annotationContent, type.getAnnotation(annoName));
     }
 
+    @Test
+    public void testConstantsAndNewlines() throws IllegalAnnotationException
+    {
+        final String annoName = "myanno";
+        final String annotationContent = "{concat(\"[\",1,\"]\")} {name(a1,\"de\")}\\n{\"x\\n\"}";
+        type.setAnnotation(annoName, annotationContent);
+        type.setReadOnly();
+        Classification classification = type.newClassification();
+        classification.setValueForAttribute(attribute, c2);
+        final EvalContext evalContext = new EvalContext(Locale.GERMANY, annoName, permissionController, user, Collections.singletonList(classification));
+        final ParsedText parsedAnnotation = type.getParsedAnnotation(annoName);
+        Assert.assertEquals("[1] Welt\nx\n", parsedAnnotation.formatName(evalContext));
+        // the folded constants are not visible in the representation
+        Assert.assertEquals(annotationContent, type.getAnnotation(annoName));
+        Assert.assertEquals("a\nb\\\nc", ParsedText.replaceNewlines("a\\nb\\\\nc"));
+        Assert.assertEquals("abc", ParsedText.replaceNewlines("abc"));
+    }
+
     @Test
     public void testList() throws IllegalAnnotationException
     {
@@ -24,6 +24,7 @@ import org.rapla.entities.domain.AppointmentStartComparator;
 import org.rapla.entities.domain.Repeating;
 import org.rapla.entities.domain.RepeatingType;
 import org.rapla.entities.domain.internal.AppointmentImpl;
+import org.rapla.entities.domain.internal.ReservationImpl;
 import org.rapla.rest.client.internal.isodate.ISODateTimeFormat;
 
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TimeZone;
 import java.util.TreeSet;
 
@@ -547,6 +549,69 @@ public class AppointmentTest {
         assertEquals( 1, blocks.size());        
     }
 
+
+    @Test
+    public void testTimeAccessors()
+    {
+        AppointmentImpl a1 = (AppointmentImpl) createAppointment("2012-03-02","10:00","12:00");
+        assertEquals( a1.getStart().getTime(), a1.getStartTime());
+        assertEquals( a1.getEnd().getTime(), a1.getEndTime());
+        assertEquals( a1.getEnd().getTime(), a1.getMaxEndTime());
+
+        a1.setRepeatingEnabled(true);
+        Repeating repeating = a1.getRepeating();
+        repeating.setType( RepeatingType.WEEKLY);
+        repeating.setNumber( 4 );
+        assertEquals( repeating.getEnd().getTime(), a1.getMaxEndTime());
+        assertEquals( a1.getMaxEnd().getTime(), a1.getMaxEndTime());
+
+        repeating.setNumber( -1 );
+        assertEquals( Long.MAX_VALUE, a1.getMaxEndTime());
+        assertEquals( null, a1.getMaxEnd());
+    }
+
+    @Test
+    public void testExceptionLookup()
+    {
+        Appointment a1 = createAppointment("2012-03-02","10:00","12:00");
+        a1.setRepeatingEnabled(true);
+        Repeating repeating = a1.getRepeating();
+        repeating.setType( RepeatingType.WEEKLY);
+        repeating.setNumber( 6 );
+        repeating.addException(createDate("2012-03-16"));
+        repeating.addException(createDate("2012-03-30"));
+        List<AppointmentBlock> blocks = new ArrayList<AppointmentBlock>();
+        a1.createBlocks( createDate("2012-03-01"), createDate("2012-05-01"), blocks);
+        assertEquals( 4, blocks.size());
+
+        // the lookup must be updated when the exceptions change
+        repeating.removeException(createDate("2012-03-30"));
+        blocks.clear();
+        a1.createBlocks( createDate("2012-03-01"), createDate("2012-05-01"), blocks);
+        assertEquals( 5, blocks.size());
+        assertTrue( ((AppointmentImpl) a1).overlaps( createDate("2012-03-30"), createDate("2012-03-31")));
+        assertTrue( !((AppointmentImpl) a1).overlaps( createDate("2012-03-16"), createDate("2012-03-17")));
+    }
+
+    @Test
+    public void testGetAppointmentsStopsAtEnd()
+    {
+        AppointmentImpl a1 = (AppointmentImpl) createAppointment("2012-03-02","10:00","12:00");
+        AppointmentImpl a2 = (AppointmentImpl) createAppointment("2012-03-05","10:00","12:00");
+        a1.setId("a1");
+        a2.setId("a2");
+        ReservationImpl reservation = new ReservationImpl( new Date(), new Date());
+        reservation.setId("r1");
+        reservation.addAppointment( a1 );
+        reservation.addAppointment( a2 );
+        SortedSet<Appointment> sorted = new TreeSet<Appointment>(new AppointmentStartComparator());
+        sorted.add( a1 );
+        sorted.add( a2 );
+        // a2 starts at the end of the period, so it doesn't overlap
+        SortedSet<Appointment> result = AppointmentImpl.getAppointments( sorted, null, createDate("2012-03-01"), createDate("2012-03-05T10:00"), true);
+        assertEquals( Collections.singleton( a1 ), result);
+    }
+
 }
 
 
@@ -23,6 +23,7 @@ import org.rapla.entities.DependencyException;
 import org.rapla.entities.Entity;
 import org.rapla.entities.User;
 import org.rapla.entities.internal.CategoryImpl;
+import org.rapla.entities.internal.CategoryIndexImpl;
 import org.rapla.facade.RaplaFacade;
 import org.rapla.facade.client.ClientFacade;
 import org.rapla.test.util.RaplaTestCase;
@@ -149,6 +150,27 @@ import java.util.Map;
         Assert.assertTrue(areas.isAncestorOf(sub));
         Assert.assertTrue(!sub.isAncestorOf(areas));
     }
+
+    @Test public void testCategoryIndex() throws Exception
+    {
+        Category floor2 = raplaFacade.newCategory();
+        floor2.setKey("2");
+        buildingA.addCategory(floor2);
+        CategoryIndexImpl index = CategoryIndexImpl.create(areas);
+        Assert.assertTrue(index.contains(floor1));
+        Assert.assertTrue(index.isAncestorOf(areas, floor1));
+        Assert.assertTrue(index.isAncestorOf(area51, floor2));
+        Assert.assertFalse(index.isAncestorOf(floor1, floor2));
+        Assert.assertFalse(index.isAncestorOf(floor1, floor1));
+        Assert.assertFalse(index.isAncestorOf(floor1, areas));
+        Assert.assertEquals(areas.getDepth(), index.getDepth(areas));
+        Assert.assertEquals(1, index.getDepth(floor2));
+        Assert.assertEquals(3, index.getRootPathLength(floor1));
+        Assert.assertSame(floor2, index.getCategory(buildingA, "2"));
+        Assert.assertNull(index.getCategory(floor1, "2"));
+        // other instances with the same id are not part of the index
+        Assert.assertFalse(index.contains(((CategoryImpl) floor1).clone()));
+    }
 }
 
 
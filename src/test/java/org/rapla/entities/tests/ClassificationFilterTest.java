@@ -112,4 +112,80 @@ public class ClassificationFilterTest  {
         Assert.assertTrue(allocatables.length > 0);
     }
 
+    @Test
+    public void testFilterFollowsRuleChanges() throws Exception {
+        DynamicType dynamicType = raplaFacade.getDynamicType("room");
+        Attribute seats = dynamicType.getAttribute("seats");
+        Allocatable[] rooms = raplaFacade.getAllocatablesWithFilter( dynamicType.newClassificationFilter().toArray());
+        Assert.assertTrue(rooms.length > 0);
+        ClassificationFilter classificationFilter = dynamicType.newClassificationFilter();
+        classificationFilter.setRule(0, seats, new Object[][] { { "<=", 10L } });
+        for (Allocatable room : rooms)
+        {
+            Long value = (Long) room.getClassification().getValueForAttribute(seats);
+            Assert.assertEquals(value != null && value <= 10, classificationFilter.matches(room.getClassification()));
+        }
+        // the filter is compiled again after the rule changed
+        classificationFilter.setRule(0, seats, new Object[][] { { ">", 10L }, { "=", null } });
+        for (Allocatable room : rooms)
+        {
+            Long value = (Long) room.getClassification().getValueForAttribute(seats);
+            Assert.assertEquals(value == null || value > 10, classificationFilter.matches(room.getClassification()));
+        }
+        classificationFilter.removeAllRules();
+        for (Allocatable room : rooms)
+        {
+            Assert.assertTrue(classificationFilter.matches(room.getClassification()));
+        }
+    }
+
+    @Test
+    public void testIndexedFilterFollowsChanges() throws Exception {
+        DynamicType dynamicType = raplaFacade.getDynamicType("room");
+        Attribute name = dynamicType.getAttribute("name");
+        Attribute seats = dynamicType.getAttribute("seats");
+        Allocatable[] rooms = raplaFacade.getAllocatablesWithFilter( dynamicType.newClassificationFilter().toArray());
+        Assert.assertTrue(rooms.length > 0);
+        String roomName = (String) rooms[0].getClassification().getValueForAttribute(name);
+        assertFiltered(rooms, dynamicType, name, new Object[][] { { "contains", roomName.substring(1).toUpperCase() } });
+        assertFiltered(rooms, dynamicType, name, new Object[][] { { "starts", roomName.substring(0, 1) } });
+        assertFiltered(rooms, dynamicType, name, new Object[][] { { "is", roomName } });
+        assertFiltered(rooms, dynamicType, seats, new Object[][] { { "<=", 10L }, { ">", 100L } });
+
+        // the index is updated when a room is renamed
+        Allocatable room = raplaFacade.edit(rooms[0]);
+        room.getClassification().setValue(name, "Indexed Room");
+        raplaFacade.store(room);
+        ClassificationFilter classificationFilter = dynamicType.newClassificationFilter();
+        classificationFilter.setRule(0, name, new Object[][] { { "contains", "xed roo" } });
+        Allocatable[] found = raplaFacade.getAllocatablesWithFilter(classificationFilter.toArray());
+        Assert.assertEquals(1, found.length);
+        Assert.assertEquals(room.getId(), found[0].getId());
+        classificationFilter.setRule(0, name, new Object[][] { { "is", roomName } });
+        for (Allocatable allocatable : raplaFacade.getAllocatablesWithFilter(classificationFilter.toArray()))
+        {
+            Assert.assertNotEquals(room.getId(), allocatable.getId());
+        }
+    }
+
+    private void assertFiltered(Allocatable[] rooms, DynamicType dynamicType, Attribute attribute, Object[][] conditions) throws Exception
+    {
+        ClassificationFilter classificationFilter = dynamicType.newClassificationFilter();
+        classificationFilter.setRule(0, attribute, conditions);
+        Allocatable[] filtered = raplaFacade.getAllocatablesWithFilter(classificationFilter.toArray());
+        int count = 0;
+        for (Allocatable room : rooms)
+        {
+            if (classificationFilter.matches(room.getClassification()))
+            {
+                count++;
+            }
+        }
+        Assert.assertEquals(count, filtered.length);
+        for (Allocatable room : filtered)
+        {
+            Assert.assertTrue(classificationFilter.matches(room.getClassification()));
+        }
+    }
+
 }
@@ -38,6 +38,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.List;
 
 @RunWith(JUnit4.class)
@@ -125,9 +126,104 @@ public class ClassificationTest  {
     	}
     }
 
-}
-
-
+    @Test
+    public void testReadOnlyValuesAreParsedOnce() throws RaplaException {
+        Category c1 = facade.newCategory();
+        c1.setKey("c1");
+        Category rootC = facade.edit( facade.getSuperCategory() );
+        rootC.addCategory( c1 );
+
+        DynamicType type =  facade.newDynamicType(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE);
+        type.setKey("typed-type");
+        Attribute number = facade.newAttribute(AttributeType.INT);
+        number.setKey("number");
+        type.addAttribute( number );
+        Attribute category = facade.newAttribute(AttributeType.CATEGORY);
+        category.setKey("category");
+        type.addAttribute( category );
+        type.getName().setName("en", "typed-type");
+        facade.storeObjects( new Entity[] { rootC, type } );
+        type = facade.getPersistant( type );
+
+        Classification classification = type.newClassification();
+        classification.setValue("name", "typed-resource");
+        classification.setValue("number", 42L);
+        classification.setValue("category", facade.getPersistant( c1 ));
+        Allocatable resource = facade.newAllocatable(classification, user);
+        facade.storeObjects( new Entity[] {  resource } );
+
+        Classification persistant = facade.getPersistant(resource).getClassification();
+        Attribute numberAttribute = persistant.getAttribute("number");
+        Collection<Object> values = persistant.getValues( numberAttribute );
+        Assert.assertEquals(Arrays.asList(42L), values);
+        Assert.assertSame(values, persistant.getValues( numberAttribute ));
+        Assert.assertEquals(42L, persistant.getValue("number"));
+
+        // references are resolved again when the referenced entity changes
+        Category oldCategory = (Category) persistant.getValue("category");
+        Category editCategory = facade.edit( oldCategory );
+        editCategory.getName().setName("en", "changed");
+        facade.store( editCategory );
+        Category newCategory = (Category) persistant.getValue("category");
+        Assert.assertNotSame(oldCategory, newCategory);
+        Assert.assertSame(facade.getPersistant( editCategory ), newCategory);
+        Assert.assertEquals("changed", newCategory.getName().getName("en"));
+    }
 
+    @Test
+    public void testReadOnlyNamesAreRemembered() throws RaplaException {
+        Category c1 = facade.newCategory();
+        c1.setKey("c1");
+        c1.getName().setName("en", "first");
+        c1.getName().setName("de", "erste");
+        Category rootC = facade.edit( facade.getSuperCategory() );
+        rootC.addCategory( c1 );
+
+        DynamicType type =  facade.newDynamicType(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE);
+        type.setKey("named-type");
+        Attribute category = facade.newAttribute(AttributeType.CATEGORY);
+        category.setKey("category");
+        type.addAttribute( category );
+        type.getName().setName("en", "named-type");
+        type.setAnnotation(DynamicTypeAnnotations.KEY_NAME_FORMAT, "{name} {category}");
+        facade.storeObjects( new Entity[] { rootC, type } );
+        type = facade.getPersistant( type );
+
+        Classification classification = type.newClassification();
+        classification.setValue("name", "room");
+        classification.setValue("category", facade.getPersistant( c1 ));
+        Allocatable resource = facade.newAllocatable(classification, user);
+        facade.storeObjects( new Entity[] {  resource } );
+
+        Allocatable persistant = facade.getPersistant(resource);
+        Assert.assertEquals("room first", persistant.getName( Locale.ENGLISH ));
+        Assert.assertEquals("room erste", persistant.getName( Locale.GERMAN ));
+        Assert.assertEquals("room first", persistant.getName( Locale.ENGLISH ));
+
+        // the name is formatted again when a referenced entity changes
+        Category editCategory = facade.edit( facade.getPersistant( c1 ) );
+        editCategory.getName().setName("en", "changed");
+        facade.store( editCategory );
+        Assert.assertEquals("room changed", persistant.getName( Locale.ENGLISH ));
+        Assert.assertEquals("room erste", persistant.getName( Locale.GERMAN ));
+    }
 
+    @Test
+    public void testReadOnlyNameWithoutFormat() throws RaplaException {
+        DynamicType type =  facade.newDynamicType(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE);
+        type.setKey("unnamed-type");
+        type.setAnnotation(DynamicTypeAnnotations.KEY_NAME_FORMAT, null);
+        facade.storeObjects( new Entity[] { type } );
+        type = facade.getPersistant( type );
+
+        Classification classification = type.newClassification();
+        classification.setValue("name", "room");
+        Allocatable resource = facade.newAllocatable(classification, user);
+        facade.storeObjects( new Entity[] {  resource } );
+        Allocatable persistant = facade.getPersistant(resource);
+        // read only classifications fall back to the type like writable ones
+        Assert.assertEquals(type.toString(), persistant.getClassification().getName( Locale.ENGLISH ));
+        Assert.assertEquals(facade.edit( persistant ).getClassification().getName( Locale.ENGLISH ), persistant.getClassification().getName( Locale.ENGLISH ));
+    }
 
+}
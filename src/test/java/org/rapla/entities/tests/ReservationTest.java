@@ -17,18 +17,24 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.rapla.components.util.DateTools;
 import org.rapla.components.util.IOUtil;
 import org.rapla.entities.Entity;
 import org.rapla.entities.User;
 import org.rapla.entities.domain.Allocatable;
 import org.rapla.entities.domain.Appointment;
 import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.domain.internal.ReservationImpl;
 import org.rapla.facade.RaplaFacade;
 import org.rapla.facade.client.ClientFacade;
+import org.rapla.entities.storage.ReferenceInfo;
 import org.rapla.framework.RaplaException;
 import org.rapla.test.util.RaplaTestCase;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 
 
@@ -87,6 +93,54 @@ public class ReservationTest {
         Assert.assertTrue(reserv1.equals(reserv1));
     }
 
+    @Test
+    public void testResolvedReferencesFollowChanges() throws RaplaException {
+        facade.storeObjects(new Entity[] { allocatable1, allocatable2, reserv1 });
+        Reservation persistantReservation = facade.getPersistant( reserv1);
+        Allocatable resolved = persistantReservation.getAllocatables()[0];
+        Assert.assertSame(facade.getPersistant( allocatable1), resolved);
+        Assert.assertSame(resolved, persistantReservation.getAllocatables()[0]);
+
+        Allocatable editAllocatable = facade.edit( resolved);
+        editAllocatable.getClassification().setValue("name", "Changed Resource 1");
+        facade.store( editAllocatable);
+        Allocatable changed = persistantReservation.getAllocatables()[0];
+        Assert.assertNotSame(resolved, changed);
+        Assert.assertSame(facade.getPersistant( allocatable1), changed);
+        Assert.assertEquals("Changed Resource 1", changed.getClassification().getValue("name"));
+    }
+
+    @Test
+    public void testRestrictionsOfReadOnlyReservation() throws RaplaException {
+        Appointment first = reserv1.getAppointments()[0];
+        Date start = new Date(first.getStart().getTime() + DateTools.MILLISECONDS_PER_DAY);
+        Date end = new Date(first.getEnd().getTime() + DateTools.MILLISECONDS_PER_DAY);
+        Appointment second = facade.newAppointmentDeprecated(start, end);
+        reserv1.addAppointment(second);
+        reserv1.setRestriction(allocatable2, new Appointment[] { second });
+        facade.storeObjects(new Entity[] { allocatable1, allocatable2, reserv1 });
+
+        Reservation persistant = facade.getPersistant( reserv1);
+        Appointment persistantFirst = persistant.findAppointment( first);
+        Appointment persistantSecond = persistant.findAppointment( second);
+        Assert.assertTrue(persistant.hasAllocatedOn(allocatable1, persistantFirst));
+        Assert.assertTrue(persistant.hasAllocatedOn(allocatable1, persistantSecond));
+        Assert.assertFalse(persistant.hasAllocatedOn(allocatable2, persistantFirst));
+        Assert.assertTrue(persistant.hasAllocatedOn(allocatable2, persistantSecond));
+        Assert.assertEquals(1, persistant.getAllocatablesFor(persistantFirst).count());
+        Assert.assertEquals(2, persistant.getAllocatablesFor(persistantSecond).count());
+        Collection<ReferenceInfo<Allocatable>> ids = ((ReservationImpl) persistant).getAllocatableIdsFor(persistantFirst);
+        Assert.assertEquals(Collections.singletonList(allocatable1.getReference()), new ArrayList<>(ids));
+        Assert.assertSame(ids, ((ReservationImpl) persistant).getAllocatableIdsFor(persistantFirst));
+
+        // the restrictions are derived from the allocations of the read only reservation
+        Assert.assertEquals(0, persistant.getRestriction(allocatable1).length);
+        Assert.assertArrayEquals(new Appointment[] { persistantSecond }, persistant.getRestriction(allocatable2));
+        Reservation edited = facade.edit(persistant);
+        Assert.assertFalse(edited.hasAllocatedOn(allocatable2, edited.findAppointment(first)));
+        Assert.assertTrue(edited.hasAllocatedOn(allocatable2, edited.findAppointment(second)));
+    }
+
     @Test
     public void testEdit() throws RaplaException {
         // store the reservation to createInfoDialog the id's
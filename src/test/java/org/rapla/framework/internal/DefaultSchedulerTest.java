@@ -0,0 +1,53 @@
+package org.rapla.framework.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class DefaultSchedulerTest
+{
+    @Test
+    public void onlyRequestTasksAreRejected() throws Exception
+    {
+        final DefaultScheduler scheduler = new DefaultScheduler(RaplaTestCase.initLoger(), 1, 0);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            scheduler.run(() -> {
+                running.countDown();
+                release.await();
+            });
+            Assert.assertTrue(running.await(3, TimeUnit.SECONDS));
+
+            DefaultScheduler.beginRequest();
+            try
+            {
+                scheduler.supply(() -> null);
+            }
+            finally
+            {
+                DefaultScheduler.endRequest();
+            }
+            Assert.assertEquals(1, scheduler.getRejectedTasks());
+
+            // internal tasks wait for the worker instead
+            final CountDownLatch internal = new CountDownLatch(1);
+            scheduler.run(internal::countDown);
+            Assert.assertEquals(1, scheduler.getRejectedTasks());
+            release.countDown();
+            Assert.assertTrue(internal.await(3, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            release.countDown();
+            scheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.rapla.framework.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HistogramTest
+{
+    @Test
+    public void bucketBoundsContainValue()
+    {
+        long[] values = { 0, 1, 15, 16, 17, 100, 1000, 123456, Long.MAX_VALUE / 3, Long.MAX_VALUE };
+        for (long value : values)
+        {
+            int index = Histogram.getBucketIndex(value);
+            Assert.assertTrue(index < Histogram.BUCKET_COUNT);
+            Assert.assertTrue(value + " below bucket", Histogram.getBucketLowerBound(index) <= value);
+            Assert.assertTrue(value + " above bucket", value < Histogram.getBucketUpperBound(index) || value == Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void percentiles()
+    {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500, histogram.getMean());
+        Assert.assertEquals(1000, histogram.getMax());
+        long median = histogram.getValueAtPercentile(50);
+        Assert.assertTrue("" + median, median >= 500 && median <= 500 * 1.125);
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+}
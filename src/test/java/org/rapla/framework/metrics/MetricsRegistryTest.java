@@ -0,0 +1,62 @@
+package org.rapla.framework.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class MetricsRegistryTest
+{
+    @Test
+    public void metricsAreCreatedOnce()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        Assert.assertSame(registry.timer("rapla_test_seconds", "method", "refresh"), registry.timer("rapla_test_seconds", "method", "refresh"));
+        Assert.assertNotSame(registry.timer("rapla_test_seconds", "method", "refresh"), registry.timer("rapla_test_seconds", "method", "store"));
+        registry.counter("rapla_test_count").add(3);
+        Assert.assertEquals(3, registry.counter("rapla_test_count").getValue());
+        try
+        {
+            registry.counter("rapla_test_seconds", "method", "refresh");
+            Assert.fail("Metric registered with two types");
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void prometheusText()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("rapla_test_count", "page", "a\"b").increment();
+        registry.gauge("rapla_test_gauge", () -> 42);
+        registry.timer("rapla_test_seconds", "method", "refresh").getMicros().record(1500000);
+        String text = registry.toPrometheusText();
+        Assert.assertTrue(text, text.contains("# TYPE rapla_test_count counter\nrapla_test_count{page=\"a\\\"b\"} 1\n"));
+        Assert.assertTrue(text, text.contains("rapla_test_gauge 42\n"));
+        Assert.assertTrue(text, text.contains("# TYPE rapla_test_seconds summary\n"));
+        Assert.assertTrue(text, text.contains("rapla_test_seconds_count{method=\"refresh\"} 1\n"));
+        Assert.assertTrue(text, text.contains("rapla_test_seconds_sum{method=\"refresh\"} 1.500000\n"));
+
+        List<MetricsRegistry.MetricStatistics> statistics = registry.getStatistics();
+        Assert.assertEquals(3, statistics.size());
+        Assert.assertEquals("refresh", statistics.get(2).labels.get("method"));
+        Assert.assertEquals(Long.valueOf(1500000), statistics.get(2).max);
+    }
+
+    @Test
+    public void numberOfMetricsIsLimited()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        for (int i = 0; i < MetricsRegistry.MAX_METRICS + 10; i++)
+        {
+            registry.counter("rapla_test_count", "id", "" + i).increment();
+        }
+        Assert.assertEquals(10, registry.getDroppedMetrics());
+        Assert.assertEquals(MetricsRegistry.MAX_METRICS, registry.getStatistics().size());
+    }
+}
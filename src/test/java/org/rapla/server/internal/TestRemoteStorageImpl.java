@@ -15,6 +15,7 @@ import org.rapla.entities.Category;
 import org.rapla.entities.Entity;
 import org.rapla.entities.User;
 import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
 import org.rapla.entities.domain.Reservation;
 import org.rapla.entities.dynamictype.Classification;
 import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
@@ -25,13 +26,16 @@ import org.rapla.facade.RaplaFacade;
 import org.rapla.facade.client.ClientFacade;
 import org.rapla.facade.internal.FacadeImpl;
 import org.rapla.framework.RaplaException;
+import org.rapla.scheduler.Promise;
 import org.rapla.test.util.RaplaTestCase;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -253,4 +257,32 @@ public class TestRemoteStorageImpl extends AbstractTestWithServer
         Assert.assertEquals(1, conflicts.size());
     }
 
+    @Test
+    public void testBindingBatchWithUnknownResource() throws Exception
+    {
+        final RaplaFacade facade = clientFacade.getRaplaFacade();
+        User user = clientFacade.getUser();
+        Date startDate = DateTools.toDateTime(new Date(System.currentTimeMillis()), new Date(DateTools.toTime(10, 00, 00)));
+        Date endDate = DateTools.toDateTime(new Date(System.currentTimeMillis()), new Date(DateTools.toTime(12, 00, 00)));
+        final Appointment appointment = facade.newAppointmentWithUser(startDate, endDate, user);
+        final Allocatable roomA66Allocatable = facade.getOperator().tryResolve("c24ce517-4697-4e52-9917-ec000c84563c", Allocatable.class);
+        // not stored, so the server doesn't know the resource
+        final Allocatable unknownAllocatable = newResource(clientFacade);
+        // both requests are sent in the same batch
+        final Promise<Map<Allocatable, Collection<Appointment>>> known = facade.getOperator()
+                .getFirstAllocatableBindings(Collections.singleton(roomA66Allocatable), Collections.singleton(appointment), Collections.emptyList());
+        final Promise<Map<Allocatable, Collection<Appointment>>> unknown = facade.getOperator()
+                .getFirstAllocatableBindings(Collections.singleton(unknownAllocatable), Collections.singleton(appointment), Collections.emptyList());
+        Assert.assertTrue(RaplaTestCase.waitForWithRaplaException(known, 10000).containsKey(roomA66Allocatable));
+        try
+        {
+            RaplaTestCase.waitForWithRaplaException(unknown, 10000);
+            Assert.fail("RaplaException expected for the unknown resource");
+        }
+        catch (RaplaException ex)
+        {
+            // only the request with the unknown resource fails
+        }
+    }
+
 }
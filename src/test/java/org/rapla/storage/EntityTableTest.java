@@ -0,0 +1,114 @@
+package org.rapla.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.internal.AllocatableImpl;
+import org.rapla.entities.internal.UserImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class EntityTableTest
+{
+    private static AllocatableImpl allocatable(String id)
+    {
+        AllocatableImpl allocatable = new AllocatableImpl(new Date(), new Date());
+        allocatable.setId(id);
+        return allocatable;
+    }
+
+    private static List<String> ids(Iterable<Entity> entities)
+    {
+        List<String> result = new ArrayList<>();
+        for (Entity entity : entities)
+        {
+            result.add(entity.getId());
+        }
+        return result;
+    }
+
+    @Test
+    public void entitiesKeepTheirOrderAndType()
+    {
+        EntityTable table = new EntityTable();
+        UserImpl user = new UserImpl(new Date(), new Date());
+        user.setId("u1");
+        table.put(allocatable("a2"));
+        table.put(user);
+        table.put(allocatable("a1"));
+        table.put(allocatable("a2"));
+        Assert.assertEquals(3, table.size());
+        Assert.assertEquals(2, table.values(Allocatable.class).size());
+        Assert.assertEquals(Arrays.asList("a2", "a1"), ids(table.values(Allocatable.class)));
+        Assert.assertSame(user, table.get("u1"));
+        Assert.assertSame(user, table.get("u1", User.class));
+        Assert.assertNull(table.get("u1", Allocatable.class));
+        Assert.assertFalse(table.remove("u1", Allocatable.class));
+        Assert.assertTrue(table.remove("a2", Allocatable.class));
+        Assert.assertEquals(Collections.singletonList("a1"), ids(table.values(Allocatable.class)));
+        Assert.assertNull(table.get("a2"));
+    }
+
+    @Test
+    public void copiesAreNotChangedByTheWorkingTable()
+    {
+        EntityTable table = new EntityTable();
+        final int count = 5000;
+        for (int i = 0; i < count; i++)
+        {
+            table.put(allocatable("a" + i));
+        }
+        final AllocatableImpl added = allocatable("u");
+        EntityTable first = table.copy(null, Collections.singleton(Allocatable.class));
+
+        final AllocatableImpl replaced = allocatable("a5");
+        table.put(replaced);
+        for (int i = 0; i < count; i++)
+        {
+            if (i % 4 != 1)
+            {
+                table.remove("a" + i, Allocatable.class);
+            }
+        }
+        table.put(added);
+        EntityTable second = table.copy(first, Collections.singleton(Allocatable.class));
+
+        Assert.assertEquals(count, first.size());
+        Assert.assertEquals(count, first.values(Allocatable.class).size());
+        Assert.assertEquals(count, ids(first.values(Allocatable.class)).size());
+        Assert.assertNotNull(first.get("a0"));
+        Assert.assertNotSame(replaced, first.get("a5"));
+        Assert.assertNull(first.get("u"));
+
+        Assert.assertEquals(count / 4 + 1, second.size());
+        Assert.assertNull(second.get("a0"));
+        Assert.assertSame(replaced, second.get("a5"));
+        final List<String> ids = ids(second.values(Allocatable.class));
+        Assert.assertEquals(count / 4 + 1, ids.size());
+        Assert.assertEquals(Arrays.asList("a1", "a5", "a9"), ids.subList(0, 3));
+        Assert.assertEquals("u", ids.get(ids.size() - 1));
+        // the removed entities were compacted, the remaining keep their order
+        Assert.assertEquals(ids(table.values(Allocatable.class)), ids);
+
+        // types that didn't change are taken from the previous copy
+        EntityTable third = table.copy(second, Collections.emptySet());
+        Assert.assertSame(second.values(Allocatable.class), third.values(Allocatable.class));
+        try
+        {
+            third.put(added);
+            Assert.fail("Copy should be read only");
+        }
+        catch (IllegalStateException ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.rapla.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.EntityNotFoundException;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.internal.AllocatableImpl;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.internal.CategoryImpl;
+import org.rapla.entities.internal.UserImpl;
+import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.ReferenceInfo;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class PermissionIndexTest
+{
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final PermissionIndex index = new PermissionIndex((entity, user, access) -> {
+        evaluations.incrementAndGet();
+        return access != PermissionIndex.Access.ALLOCATE;
+    });
+
+    private static AllocatableImpl allocatable(String id, boolean readOnly)
+    {
+        AllocatableImpl allocatable = new AllocatableImpl(new Date(), new Date());
+        allocatable.setId(id);
+        if (readOnly)
+        {
+            allocatable.setReadOnly();
+        }
+        return allocatable;
+    }
+
+    private static UserImpl user(String id)
+    {
+        UserImpl user = new UserImpl(new Date(), new Date());
+        user.setId(id);
+        user.setReadOnly();
+        return user;
+    }
+
+    @Test
+    public void resultsAreCachedPerInstance()
+    {
+        final UserImpl user = user("u1");
+        final AllocatableImpl stored = allocatable("a1", true);
+        index.put(stored);
+        Assert.assertTrue(index.isGranted(stored, user, PermissionIndex.Access.READ));
+        Assert.assertTrue(index.isGranted(stored, user, PermissionIndex.Access.READ));
+        Assert.assertFalse(index.isGranted(stored, user, PermissionIndex.Access.ALLOCATE));
+        Assert.assertFalse(index.isGranted(stored, user, PermissionIndex.Access.ALLOCATE));
+        Assert.assertEquals(2, evaluations.get());
+
+        // edited copies can still change
+        final Allocatable edited = allocatable("a1", false);
+        index.isGranted(edited, user, PermissionIndex.Access.READ);
+        index.isGranted(edited, user, PermissionIndex.Access.READ);
+        Assert.assertEquals(4, evaluations.get());
+
+        // a new version of the allocatable is evaluated again
+        final AllocatableImpl newVersion = allocatable("a1", true);
+        index.put(newVersion);
+        index.isGranted(newVersion, user, PermissionIndex.Access.READ);
+        index.isGranted(newVersion, user, PermissionIndex.Access.READ);
+        Assert.assertEquals(5, evaluations.get());
+    }
+
+    @Test
+    public void groupChangesDropAllResults()
+    {
+        final UserImpl user = user("u1");
+        final UserImpl other = user("u2");
+        final AllocatableImpl stored = allocatable("a1", true);
+        index.isGranted(stored, user, PermissionIndex.Access.READ);
+        index.isGranted(stored, other, PermissionIndex.Access.READ);
+        Assert.assertEquals(2, index.getPrincipalCount());
+
+        index.put(user("u1"));
+        Assert.assertEquals(1, index.getPrincipalCount());
+
+        final CategoryImpl group = new CategoryImpl(new Date(), new Date());
+        group.setId(Category.SUPER_CATEGORY_REF.getId());
+        index.put(group);
+        Assert.assertEquals(0, index.getPrincipalCount());
+        index.isGranted(stored, other, PermissionIndex.Access.READ);
+        Assert.assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    public void resultsBelongToThePublishedVersion()
+    {
+        final UserImpl user = user("u1");
+        final AllocatableImpl stored = allocatable("a1", true);
+        index.put(stored);
+        index.publish(1);
+        final Snapshot first = new Snapshot(1, user, stored);
+        Assert.assertTrue(index.isGranted(stored, user, PermissionIndex.Access.READ, first));
+        Assert.assertTrue(index.isGranted(stored, user, PermissionIndex.Access.READ, first));
+        Assert.assertEquals(1, evaluations.get());
+
+        // a change is not visible before the publish, a reader of the old snapshot still stores its results for the old version
+        final AllocatableImpl newVersion = allocatable("a1", true);
+        index.put(newVersion);
+        index.isGranted(stored, user, PermissionIndex.Access.ALLOCATE, first);
+        index.isGranted(stored, user, PermissionIndex.Access.ALLOCATE, first);
+        Assert.assertEquals(2, evaluations.get());
+
+        index.publish(2);
+        final Snapshot second = new Snapshot(2, user, newVersion);
+        index.isGranted(newVersion, user, PermissionIndex.Access.ALLOCATE, second);
+        index.isGranted(newVersion, user, PermissionIndex.Access.ALLOCATE, second);
+        Assert.assertEquals(3, evaluations.get());
+
+        // readers of the old snapshot and old instances are evaluated, but their results are not stored
+        index.isGranted(stored, user, PermissionIndex.Access.READ, first);
+        index.isGranted(stored, user, PermissionIndex.Access.READ, second);
+        index.isGranted(newVersion, user, PermissionIndex.Access.READ, second);
+        index.isGranted(newVersion, user, PermissionIndex.Access.READ, second);
+        Assert.assertEquals(6, evaluations.get());
+    }
+
+    /** a published version that resolves the passed entities */
+    private static class Snapshot implements EntityResolver
+    {
+        private final long version;
+        private final Map<String, Entity> entities = new HashMap<>();
+
+        Snapshot(long version, Entity... entities)
+        {
+            this.version = version;
+            for (Entity entity : entities)
+            {
+                this.entities.put(entity.getId(), entity);
+            }
+        }
+
+        @Override
+        public long getReferenceVersion()
+        {
+            return version;
+        }
+
+        @Override
+        public <T extends Entity> T tryResolve(String id, Class<T> entityClass)
+        {
+            final Entity entity = entities.get(id);
+            return entity != null && entity.getTypeClass() == entityClass ? entityClass.cast(entity) : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Entity> T tryResolve(ReferenceInfo<T> referenceInfo)
+        {
+            return (T) entities.get(referenceInfo.getId());
+        }
+
+        @Override
+        public <T extends Entity> T resolve(String id, Class<T> entityClass) throws EntityNotFoundException
+        {
+            final T entity = tryResolve(id, entityClass);
+            if (entity == null)
+            {
+                throw new EntityNotFoundException(id);
+            }
+            return entity;
+        }
+
+        @Override
+        public <T extends Entity> T resolve(ReferenceInfo<T> referenceInfo) throws EntityNotFoundException
+        {
+            final T entity = tryResolve(referenceInfo);
+            if (entity == null)
+            {
+                throw new EntityNotFoundException(referenceInfo.getId());
+            }
+            return entity;
+        }
+
+        @Override
+        public DynamicType getDynamicType(String key)
+        {
+            return null;
+        }
+    }
+}
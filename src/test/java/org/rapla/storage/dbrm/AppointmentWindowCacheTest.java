@@ -0,0 +1,106 @@
+package org.rapla.storage.dbrm;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.components.util.TimeInterval;
+import org.rapla.logger.ConsoleLogger;
+import org.rapla.scheduler.Promise;
+import org.rapla.scheduler.ResolvedPromise;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@RunWith(JUnit4.class)
+public class AppointmentWindowCacheTest
+{
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private AppointmentWindowCache.Key key(long startDay, long endDay, String... ids)
+    {
+        return new AppointmentWindowCache.Key(ids, new Date(startDay * DAY), new Date(endDay * DAY), null);
+    }
+
+    @Test
+    public void keyIgnoresAllocatableOrder()
+    {
+        Assert.assertEquals(key(0, 7, "a", "b"), key(0, 7, "b", "a"));
+        Assert.assertNotEquals(key(0, 7, "a", "b"), key(0, 7, "a"));
+        Assert.assertEquals(key(0, 7, "a"), new AppointmentWindowCache.Key(new String[] { "a" }, new Date(0), new Date(7 * DAY), Collections.emptyMap()));
+        Assert.assertEquals(key(-7, 0, "a"), key(0, 7, "a").getAdjacent(-1));
+        Assert.assertEquals(key(7, 14, "a"), key(0, 7, "a").getAdjacent(1));
+    }
+
+    @Test
+    public void invalidateOverlappingWindows()
+    {
+        AppointmentWindowCache cache = new AppointmentWindowCache(new ConsoleLogger());
+        cache.put(key(0, 7, "a"), new ResolvedPromise<>(new AppointmentMap()));
+        cache.put(key(7, 14, "a"), new ResolvedPromise<>(new AppointmentMap()));
+        final Promise<AppointmentMap> loaded = new ResolvedPromise<>(new AppointmentMap());
+        Assert.assertNotSame(loaded, cache.get(key(0, 7, "a"), (key) -> loaded));
+        Assert.assertSame(loaded, cache.get(key(0, 7, "b"), (key) -> loaded));
+        Assert.assertEquals(50, cache.getHitRatePercent());
+        cache.remove(key(0, 7, "b"), loaded);
+
+        cache.invalidate(null);
+        Assert.assertEquals(2, cache.size());
+        cache.invalidate(new TimeInterval(new Date(8 * DAY), new Date(9 * DAY)));
+        Assert.assertTrue(cache.contains(key(0, 7, "a")));
+        Assert.assertFalse(cache.contains(key(7, 14, "a")));
+        cache.invalidate(new TimeInterval(null, null));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed()
+    {
+        AppointmentWindowCache cache = new AppointmentWindowCache(new ConsoleLogger(), 2);
+        cache.put(key(0, 7, "a"), new ResolvedPromise<>(new AppointmentMap()));
+        cache.put(key(7, 14, "a"), new ResolvedPromise<>(new AppointmentMap()));
+        cache.get(key(0, 7, "a"), (key) -> null);
+        cache.put(key(14, 21, "a"), new ResolvedPromise<>(new AppointmentMap()));
+        Assert.assertTrue(cache.contains(key(0, 7, "a")));
+        Assert.assertFalse(cache.contains(key(7, 14, "a")));
+        Assert.assertTrue(cache.contains(key(14, 21, "a")));
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad()
+    {
+        AppointmentWindowCache cache = new AppointmentWindowCache(new ConsoleLogger());
+        final AtomicInteger loads = new AtomicInteger();
+        final Function<AppointmentWindowCache.Key, Promise<AppointmentMap>> loader = (key) -> {
+            loads.incrementAndGet();
+            return new ResolvedPromise<>(new AppointmentMap());
+        };
+        final Promise<AppointmentMap> first = cache.get(key(0, 7, "a"), loader);
+        Assert.assertSame(first, cache.get(key(0, 7, "a"), loader));
+        cache.prefetch(key(0, 7, "a"), loader);
+        Assert.assertEquals(1, loads.get());
+        cache.prefetch(key(7, 14, "a"), loader);
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateWindowsOfChangedAllocatables()
+    {
+        AppointmentWindowCache cache = new AppointmentWindowCache(new ConsoleLogger());
+        cache.put(key(0, 7, "a", "b"), new ResolvedPromise<>(new AppointmentMap()));
+        cache.put(key(0, 7, "c"), new ResolvedPromise<>(new AppointmentMap()));
+        cache.invalidateAllocatables(Collections.emptySet());
+        Assert.assertEquals(2, cache.size());
+        cache.invalidateAllocatables(Collections.singleton("b"));
+        Assert.assertFalse(cache.contains(key(0, 7, "a", "b")));
+        Assert.assertTrue(cache.contains(key(0, 7, "c")));
+
+        // a window without allocatables contains all resources
+        cache.put(key(0, 7), new ResolvedPromise<>(new AppointmentMap()));
+        cache.invalidateAllocatables(Collections.singleton("c"));
+        Assert.assertFalse(cache.contains(key(0, 7)));
+        Assert.assertFalse(cache.contains(key(0, 7, "c")));
+    }
+}
@@ -0,0 +1,165 @@
+package org.rapla.storage.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.framework.RaplaException;
+import org.rapla.logger.ConsoleLogger;
+import org.rapla.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@RunWith(JUnit4.class)
+public class DefaultRaplaLockTest
+{
+    private static final int READERS = 16;
+
+    private final Logger logger = new ConsoleLogger();
+
+    @Test
+    public void trackLockHolders() throws Exception
+    {
+        DefaultRaplaLock lockManager = new DefaultRaplaLock(logger);
+        RaplaLock.ReadLock first = lockManager.readLock(getClass(), "first");
+        RaplaLock.ReadLock second = lockManager.readLock(getClass(), "second");
+        Assert.assertEquals(2, lockManager.getReadLockHolders().size());
+        Assert.assertSame(first, lockManager.getReadLockHolders().get(0));
+        Assert.assertNull(lockManager.writeLockIfAvaliable(getClass(), "write"));
+        lockManager.unlock(second);
+        lockManager.unlock(first);
+        Assert.assertTrue(lockManager.getReadLockHolders().isEmpty());
+
+        RaplaLock.WriteLock writeLock = lockManager.writeLock(getClass(), "write");
+        Assert.assertEquals(1, lockManager.getWriteLockHolders().size());
+        Assert.assertEquals(1, lockManager.getHolderStatistics().size());
+        lockManager.unlock(writeLock);
+        Assert.assertTrue(lockManager.getWriteLockHolders().isEmpty());
+    }
+
+    @Test
+    public void recordMetricsPerSite() throws Exception
+    {
+        DefaultRaplaLock lockManager = new DefaultRaplaLock(logger);
+        lockManager.unlock(lockManager.readLock(getClass(), "read user1"));
+        lockManager.unlock(lockManager.readLock(getClass(), "read user2"));
+        lockManager.unlock(lockManager.writeLock(getClass(), "write"));
+        LockMetrics.Site readSite = lockManager.getMetrics().getSite(getClass(), "read", LockMetrics.LockType.READ);
+        Assert.assertEquals(2, readSite.getWaitMicros().getCount());
+        Assert.assertEquals(2, readSite.getHoldMicros().getCount());
+        Assert.assertEquals(2, lockManager.getMetrics().getSites().size());
+
+        RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "read");
+        try
+        {
+            lockManager.writeLock(getClass(), "write", 1);
+            Assert.fail("Write lock should time out");
+        }
+        catch (RaplaException ex)
+        {
+        }
+        finally
+        {
+            lockManager.unlock(readLock);
+        }
+        Assert.assertEquals(1, lockManager.getMetrics().getSite(getClass(), "write", LockMetrics.LockType.WRITE).getTimeouts());
+    }
+
+    @Test
+    public void readersHoldTheLockTogether() throws Exception
+    {
+        DefaultRaplaLock lockManager = new DefaultRaplaLock(logger);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try
+        {
+            CountDownLatch acquired = new CountDownLatch(READERS);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<Void>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++)
+            {
+                readers.add(executor.submit(() -> {
+                    RaplaLock.ReadLock readLock = lockManager.readLock(getClass(), "read");
+                    try
+                    {
+                        acquired.countDown();
+                        release.await();
+                    }
+                    finally
+                    {
+                        lockManager.unlock(readLock);
+                    }
+                    return null;
+                }));
+            }
+            // every reader gets the lock while the others still hold it
+            Assert.assertTrue(acquired.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(READERS, lockManager.getReadLockHolders().size());
+            Assert.assertNull(lockManager.writeLockIfAvaliable(getClass(), "write"));
+            release.countDown();
+            for (Future<Void> reader : readers)
+            {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+            Assert.assertTrue(lockManager.getReadLockHolders().isEmpty());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writerExcludesReadersAndWriters() throws Exception
+    {
+        DefaultRaplaLock lockManager = new DefaultRaplaLock(logger);
+        RaplaLock.WriteLock writeLock = lockManager.writeLock(getClass(), "write");
+        // the lock is reentrant, so the other locks are requested from another thread
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Boolean> reader = executor.submit(() -> {
+                try
+                {
+                    lockManager.unlock(lockManager.readLock(getClass(), "read", 1));
+                    return true;
+                }
+                catch (RaplaException ex)
+                {
+                    return false;
+                }
+            });
+            Assert.assertFalse(reader.get(10, TimeUnit.SECONDS));
+            Future<RaplaLock.WriteLock> writer = executor.submit(() -> lockManager.writeLockIfAvaliable(getClass(), "write"));
+            Assert.assertNull(writer.get(10, TimeUnit.SECONDS));
+
+            // a waiting reader gets the lock when the writer unlocks
+            Future<Boolean> waitingReader = executor.submit(() -> {
+                lockManager.unlock(lockManager.readLock(getClass(), "read"));
+                return true;
+            });
+            try
+            {
+                waitingReader.get(200, TimeUnit.MILLISECONDS);
+                Assert.fail("Reader should wait for the writer");
+            }
+            catch (TimeoutException ex)
+            {
+            }
+            lockManager.unlock(writeLock);
+            Assert.assertTrue(waitingReader.get(10, TimeUnit.SECONDS));
+            Assert.assertTrue(lockManager.getReadLockHolders().isEmpty());
+            Assert.assertTrue(lockManager.getWriteLockHolders().isEmpty());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
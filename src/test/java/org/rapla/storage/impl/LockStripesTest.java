@@ -0,0 +1,84 @@
+package org.rapla.storage.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.framework.RaplaSynchronizationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@RunWith(JUnit4.class)
+public class LockStripesTest
+{
+    @Test
+    public void differentIdsLockInParallel() throws Exception
+    {
+        LockStripes lockStripes = new LockStripes(64);
+        String room1 = "room1";
+        String room2 = findIdOnOtherStripe(lockStripes, room1);
+        LockStripes.Stripes first = lockStripes.lock(Collections.singleton(room1), 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Boolean> second = executor.submit(() -> {
+                LockStripes.Stripes stripes = lockStripes.lock(Collections.singleton(room2), 1);
+                lockStripes.unlock(stripes);
+                return true;
+            });
+            Assert.assertTrue(second.get());
+        }
+        finally
+        {
+            lockStripes.unlock(first);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sameIdTimesOut() throws Exception
+    {
+        LockStripes lockStripes = new LockStripes(64);
+        LockStripes.Stripes first = lockStripes.lock(Arrays.asList("room1", "room2"), 1);
+        Assert.assertTrue(first.size() > 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Boolean> second = executor.submit(() -> {
+                try
+                {
+                    lockStripes.unlock(lockStripes.lock(Collections.singleton("room2"), 0));
+                    return false;
+                }
+                catch (RaplaSynchronizationException ex)
+                {
+                    return true;
+                }
+            });
+            Assert.assertTrue(second.get());
+        }
+        finally
+        {
+            lockStripes.unlock(first);
+            executor.shutdown();
+        }
+        // all stripes are released again
+        lockStripes.unlock(lockStripes.lock(Arrays.asList("room2", "room1"), 0));
+    }
+
+    private static String findIdOnOtherStripe(LockStripes lockStripes, String id)
+    {
+        for (int i = 2; ; i++)
+        {
+            String other = "room" + i;
+            if (lockStripes.getStripe(other) != lockStripes.getStripe(id))
+            {
+                return other;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.rapla.storage.impl.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.domain.AppointmentBlock;
+import org.rapla.entities.domain.Repeating;
+import org.rapla.entities.domain.RepeatingType;
+import org.rapla.entities.domain.internal.AppointmentImpl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class BoundedOccurrenceCacheTest
+{
+    BoundedOccurrenceCache cache = new BoundedOccurrenceCache(BoundedOccurrenceCache.DEFAULT_MAX_BYTES);
+    long today = DateTools.cutDate(System.currentTimeMillis());
+
+    private AppointmentImpl createWeekly(long start, int number)
+    {
+        final long appointmentStart = start + 10 * DateTools.MILLISECONDS_PER_HOUR;
+        AppointmentImpl appointment = new AppointmentImpl(new Date(appointmentStart), new Date(appointmentStart + 2 * DateTools.MILLISECONDS_PER_HOUR));
+        appointment.setRepeatingEnabled(true);
+        Repeating repeating = appointment.getRepeating();
+        repeating.setType(RepeatingType.WEEKLY);
+        repeating.setNumber(number);
+        repeating.addException(new Date(start + 2 * DateTools.MILLISECONDS_PER_WEEK));
+        appointment.setOccurrenceCache(cache);
+        return appointment;
+    }
+
+    private List<AppointmentBlock> createBlocks(AppointmentImpl appointment, long start, long end)
+    {
+        List<AppointmentBlock> blocks = new ArrayList<>();
+        appointment.createBlocks(new Date(start), new Date(end), blocks);
+        return blocks;
+    }
+
+    @Test
+    public void cachedBlocksMatchCalculatedBlocks()
+    {
+        AppointmentImpl writable = createWeekly(today - 10 * DateTools.MILLISECONDS_PER_WEEK, -1);
+        AppointmentImpl readOnly = writable.clone();
+        readOnly.setOccurrenceCache(cache);
+        readOnly.setReadOnly();
+        long[][] periods = {
+                { today - 20 * DateTools.MILLISECONDS_PER_WEEK, today },
+                { today - 8 * DateTools.MILLISECONDS_PER_WEEK - 1, today - 8 * DateTools.MILLISECONDS_PER_WEEK + 1 },
+                { today, today + 52 * DateTools.MILLISECONDS_PER_WEEK },
+                { today + DateTools.MILLISECONDS_PER_DAY, today + DateTools.MILLISECONDS_PER_DAY + 11 * DateTools.MILLISECONDS_PER_HOUR }
+        };
+        for (long[] period : periods)
+        {
+            List<AppointmentBlock> expected = createBlocks(writable, period[0], period[1]);
+            List<AppointmentBlock> actual = createBlocks(readOnly, period[0], period[1]);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                Assert.assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                Assert.assertEquals(expected.get(i).getEnd(), actual.get(i).getEnd());
+            }
+            Assert.assertEquals(writable.overlaps(new Date(period[0]), new Date(period[1])), readOnly.overlaps(new Date(period[0]), new Date(period[1])));
+        }
+        Assert.assertEquals(1, cache.getEntries());
+        // periods after the horizon are calculated
+        long afterHorizon = cache.getHorizonEnd() + DateTools.MILLISECONDS_PER_WEEK;
+        Assert.assertEquals(createBlocks(writable, afterHorizon, afterHorizon + DateTools.MILLISECONDS_PER_WEEK).size(),
+                createBlocks(readOnly, afterHorizon, afterHorizon + DateTools.MILLISECONDS_PER_WEEK).size());
+    }
+
+    @Test
+    public void writableAppointmentsAreNotCached()
+    {
+        AppointmentImpl writable = createWeekly(today, 10);
+        createBlocks(writable, today, today + 20 * DateTools.MILLISECONDS_PER_WEEK);
+        Assert.assertEquals(0, cache.getEntries());
+    }
+
+    @Test
+    public void cacheIsLimitedToMaxBytes()
+    {
+        List<AppointmentImpl> appointments = new ArrayList<>();
+        // one appointment on each day of the week
+        for (int i = 0; i < 7; i++)
+        {
+            AppointmentImpl appointment = createWeekly(today + i * DateTools.MILLISECONDS_PER_DAY, 20);
+            appointment.setReadOnly();
+            appointments.add(appointment);
+            createBlocks(appointment, today, today + DateTools.MILLISECONDS_PER_WEEK);
+        }
+        Assert.assertEquals(7, cache.getEntries());
+        final long bytes = cache.getBytes();
+        cache.setMaxBytes(bytes / 2);
+        Assert.assertTrue(cache.getBytes() <= bytes / 2);
+        Assert.assertTrue(cache.getEvictions() > 0);
+        // evicted occurrences are built again on the next call
+        for (AppointmentImpl appointment : appointments)
+        {
+            Assert.assertEquals(1, createBlocks(appointment, today, today + DateTools.MILLISECONDS_PER_WEEK).size());
+        }
+        Assert.assertTrue(cache.getBytes() <= bytes / 2);
+    }
+
+    @Test
+    public void disabledCacheCalculatesTheBlocks()
+    {
+        cache.setMaxBytes(0);
+        AppointmentImpl appointment = createWeekly(today, 20);
+        appointment.setReadOnly();
+        for (int i = 0; i < 2; i++)
+        {
+            Assert.assertEquals(1, createBlocks(appointment, today, today + DateTools.MILLISECONDS_PER_WEEK).size());
+            Assert.assertEquals(0, cache.getEntries());
+        }
+        // appointments are cached again after the limit was raised
+        cache.setMaxBytes(BoundedOccurrenceCache.DEFAULT_MAX_BYTES);
+        AppointmentImpl other = createWeekly(today, 20);
+        other.setReadOnly();
+        Assert.assertEquals(1, createBlocks(other, today, today + DateTools.MILLISECONDS_PER_WEEK).size());
+        Assert.assertEquals(1, cache.getEntries());
+    }
+}
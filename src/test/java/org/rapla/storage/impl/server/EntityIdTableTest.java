@@ -0,0 +1,55 @@
+package org.rapla.storage.impl.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.entities.domain.internal.PermissionImpl;
+
+@RunWith(JUnit4.class)
+public class EntityIdTableTest
+{
+    @Test
+    public void idsAreShared()
+    {
+        EntityIdTable table = new EntityIdTable();
+        String id = table.add(new String("0a1b2c3d-user"));
+        Assert.assertSame(id, table.add(new String("0a1b2c3d-user")));
+        Assert.assertSame(id, table.intern(new String("0a1b2c3d-user")));
+        table.add("0a1b2c3d-group");
+        Assert.assertEquals(2, table.size());
+
+        // unknown ids are not added by intern
+        String unknown = new String("unknown");
+        Assert.assertSame(unknown, table.intern(unknown));
+        Assert.assertEquals(2, table.size());
+    }
+
+    @Test
+    public void referencesAreInterned()
+    {
+        EntityIdTable table = new EntityIdTable();
+        String groupId = table.add("0a1b2c3d-group");
+        PermissionImpl permission = new PermissionImpl();
+        permission.putId("group", new String("0a1b2c3d-group"));
+        permission.putId("user", new String("0a1b2c3d-user"));
+        permission.internIds(table);
+        Assert.assertSame(groupId, permission.getId("group"));
+        Assert.assertEquals("0a1b2c3d-user", permission.getId("user"));
+    }
+
+    @Test
+    public void unreferencedIdsAreRemoved() throws InterruptedException
+    {
+        EntityIdTable table = new EntityIdTable();
+        String kept = table.add(new String("0a1b2c3d-user"));
+        table.add(new String("0a1b2c3d-conflict"));
+        for (int i = 0; i < 50 && table.size() > 1; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, table.size());
+        Assert.assertSame(kept, table.intern(new String("0a1b2c3d-user")));
+    }
+}
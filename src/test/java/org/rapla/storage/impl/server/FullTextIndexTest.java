@@ -0,0 +1,118 @@
+package org.rapla.storage.impl.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.Attribute;
+import org.rapla.entities.dynamictype.AttributeType;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.storage.CachableStorageOperator;
+import org.rapla.test.util.RaplaTestCase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class FullTextIndexTest
+{
+    @Test
+    public void textsAreTokenizedAndFolded()
+    {
+        Assert.assertEquals(Arrays.asList("room", "a66", "1"), FullTextIndex.tokenize("Room A66.1"));
+        Assert.assertEquals(Arrays.asList("cafe", "strasse"), FullTextIndex.tokenize(" Caf\u00e9 - Stra\u00dfe "));
+        Assert.assertEquals(Collections.emptyList(), FullTextIndex.tokenize(null));
+    }
+
+    @Test
+    public void indexFollowsChanges() throws Exception
+    {
+        RaplaFacade facade = RaplaTestCase.createFacadeWithFile(RaplaTestCase.initLoger(), "/testdefault.xml");
+        CachableStorageOperator operator = (CachableStorageOperator) facade.getOperator();
+        Collection<Class<? extends Entity>> reservations = Collections.singleton(Reservation.class);
+        Collection<Class<? extends Entity>> allocatables = Collections.singleton(Allocatable.class);
+
+        // every word of the query is a prefix
+        List<String> rooms = operator.searchFullText("roo A6", null);
+        Assert.assertTrue(rooms.contains("c24ce517-4697-4e52-9917-ec000c84563c"));
+        for (String id : rooms)
+        {
+            Assert.assertTrue(facade.getOperator().tryResolve(id) instanceof Allocatable);
+        }
+        Assert.assertEquals(rooms, operator.searchFullText("ROOM a6", allocatables));
+        Assert.assertTrue(operator.searchFullText("room a66", reservations).isEmpty());
+        Assert.assertTrue(operator.searchFullText("room xyz", null).isEmpty());
+        Assert.assertTrue(operator.searchFullText(" - ", null).isEmpty());
+
+        User user = facade.getOperator().getUser("homer");
+        DynamicType eventType = facade.getDynamicTypes(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESERVATION)[0];
+        Reservation reservation = facade.newReservation(eventType.newClassification(), user);
+        reservation.getClassification().setValue("name", "Zebra Caf\u00e9");
+        facade.store(reservation);
+        Assert.assertEquals(Collections.singletonList(reservation.getId()), operator.searchFullText("zebra cafe", reservations));
+
+        // the tokens of the old name are removed
+        Reservation editable = facade.edit(reservation);
+        editable.getClassification().setValue("name", "Zebra Crossing");
+        facade.store(editable);
+        Assert.assertTrue(operator.searchFullText("zebra cafe", null).isEmpty());
+        Assert.assertEquals(Collections.singletonList(reservation.getId()), operator.searchFullText("zebra", null));
+
+        // exact words rank before prefixes
+        Reservation other = facade.newReservation(eventType.newClassification(), user);
+        other.getClassification().setValue("name", "Zebras");
+        facade.store(other);
+        Assert.assertEquals(Arrays.asList(reservation.getId(), other.getId()), operator.searchFullText("zebra", null));
+        Assert.assertEquals(Collections.singletonList(other.getId()), operator.searchFullText("zebras", null));
+
+        facade.remove(facade.getPersistant(reservation));
+        Assert.assertEquals(Collections.singletonList(other.getId()), operator.searchFullText("zebra", null));
+    }
+
+    @Test
+    public void namesFollowTheEntitiesTheyUse() throws Exception
+    {
+        RaplaFacade facade = RaplaTestCase.createFacadeWithFile(RaplaTestCase.initLoger(), "/testdefault.xml");
+        CachableStorageOperator operator = (CachableStorageOperator) facade.getOperator();
+        Collection<Class<? extends Entity>> allocatables = Collections.singleton(Allocatable.class);
+        User user = facade.getOperator().getUser("homer");
+        Allocatable room = (Allocatable) facade.getOperator().tryResolve("c24ce517-4697-4e52-9917-ec000c84563c");
+
+        DynamicType partType = facade.newDynamicType(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE);
+        partType.setKey("part");
+        Attribute roomAttribute = facade.newAttribute(AttributeType.ALLOCATABLE);
+        roomAttribute.setKey("room");
+        partType.addAttribute(roomAttribute);
+        partType.setAnnotation(DynamicTypeAnnotations.KEY_NAME_FORMAT, "{name} {room}");
+        facade.store(partType);
+        Classification classification = partType.newClassification();
+        classification.setValue("name", "Shelf");
+        classification.setValue("room", room);
+        Allocatable part = facade.newAllocatable(classification, user);
+        facade.store(part);
+
+        // the name of the part contains the name of the room
+        Allocatable editableRoom = facade.edit(room);
+        editableRoom.getClassification().setValue("name", "Aquarium");
+        facade.store(editableRoom);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(room.getId(), part.getId())), new HashSet<>(operator.searchFullText("aquarium", allocatables)));
+        Assert.assertEquals(Collections.singletonList(part.getId()), operator.searchFullText("shelf aquarium", allocatables));
+
+        // a new name format of the type is used for its resources
+        DynamicType editableType = facade.edit(facade.getDynamicType("part"));
+        editableType.setAnnotation(DynamicTypeAnnotations.KEY_NAME_FORMAT, "{name} Giraffe");
+        facade.store(editableType);
+        Assert.assertEquals(Collections.singletonList(part.getId()), operator.searchFullText("shelf giraffe", allocatables));
+        Assert.assertTrue(operator.searchFullText("shelf aquarium", allocatables).isEmpty());
+    }
+}
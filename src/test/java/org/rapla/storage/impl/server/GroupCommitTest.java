@@ -0,0 +1,100 @@
+package org.rapla.storage.impl.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.framework.RaplaException;
+import org.rapla.storage.UpdateEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class GroupCommitTest
+{
+    @Test
+    public void concurrentEventsAreDispatchedTogether() throws Exception
+    {
+        final int events = 8;
+        final List<Integer> batchSizes = new ArrayList<>();
+        final UpdateEvent failing = new UpdateEvent();
+        GroupCommit groupCommit = new GroupCommit(200, (batch) -> {
+            synchronized (batchSizes)
+            {
+                batchSizes.add(batch.size());
+            }
+            for (GroupCommit.Pending pending : batch)
+            {
+                if (pending.event == failing)
+                {
+                    pending.fail(new RaplaException("invalid"));
+                }
+                else
+                {
+                    pending.complete();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(events);
+        try
+        {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < events; i++)
+            {
+                final UpdateEvent evt = i == events - 1 ? failing : new UpdateEvent();
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try
+                    {
+                        groupCommit.dispatch(evt);
+                        return true;
+                    }
+                    catch (RaplaException ex)
+                    {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < events; i++)
+            {
+                Assert.assertEquals(i != events - 1, results.get(i).get(10, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        int total = 0;
+        for (Integer size : batchSizes)
+        {
+            total += size;
+        }
+        Assert.assertEquals(events, total);
+        // all events arrive within the window, so they can't need one batch each
+        Assert.assertTrue(batchSizes.size() < events);
+    }
+
+    @Test
+    public void eventsNotHandledByTheDispatcherFail() throws Exception
+    {
+        GroupCommit groupCommit = new GroupCommit(1, (batch) -> {
+        });
+        try
+        {
+            groupCommit.dispatch(new UpdateEvent());
+            Assert.fail("IllegalStateException expected");
+        }
+        catch (IllegalStateException ex)
+        {
+            // expected
+        }
+    }
+}
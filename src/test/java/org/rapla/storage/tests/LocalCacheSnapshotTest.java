@@ -0,0 +1,138 @@
+package org.rapla.storage.tests;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.domain.internal.AllocatableImpl;
+import org.rapla.entities.domain.internal.ReservationImpl;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.entities.storage.EntityResolver;
+import org.rapla.entities.storage.ReferenceInfo;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.logger.Logger;
+import org.rapla.storage.CachableStorageOperator;
+import org.rapla.storage.LocalCache;
+import org.rapla.test.util.RaplaTestCase;
+
+@RunWith(JUnit4.class)
+public class LocalCacheSnapshotTest
+{
+    RaplaFacade facade;
+    CachableStorageOperator operator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Logger logger = RaplaTestCase.initLoger();
+        facade = RaplaTestCase.createFacadeWithFile(logger, "/testdefault.xml");
+        operator = (CachableStorageOperator) facade.getOperator();
+    }
+
+    private LocalCache getSnapshot() throws Exception
+    {
+        final LocalCache[] snapshot = new LocalCache[1];
+        operator.runWithReadLock((cache) -> snapshot[0] = cache.getSnapshot());
+        return snapshot[0];
+    }
+
+    @Test
+    public void snapshotIsNotChangedByWriter() throws Exception
+    {
+        final LocalCache before = getSnapshot();
+        Assert.assertTrue(before.isReadOnly());
+        final int allocatableCount = before.getAllocatables().size();
+        final User user = facade.getUser("homer");
+        Classification classification = facade.getDynamicTypes(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE)[0].newClassification();
+        final Allocatable newResource = facade.newAllocatable(classification, user);
+        newResource.getClassification().setValue("name", "snapshot");
+        facade.storeAndRemove(new Entity[] { newResource }, Entity.ENTITY_ARRAY, user);
+
+        final LocalCache after = getSnapshot();
+        Assert.assertTrue(after.getVersion() > before.getVersion());
+        Assert.assertEquals(allocatableCount, before.getAllocatables().size());
+        Assert.assertNull(before.tryResolve(newResource.getReference()));
+        Assert.assertEquals(allocatableCount + 1, after.getAllocatables().size());
+        Assert.assertNotNull(after.tryResolve(newResource.getReference()));
+        // tables of types that didn't change are shared between the versions
+        Assert.assertSame(before.getDynamicTypes(), after.getDynamicTypes());
+        Assert.assertEquals(before.getSuperCategory(), after.getSuperCategory());
+        try
+        {
+            after.put(newResource);
+            Assert.fail("Snapshot should be read only");
+        }
+        catch (IllegalStateException ex)
+        {
+        }
+    }
+
+    @Test
+    public void keptReferencesBelongToTheReferenceVersion() throws Exception
+    {
+        final LocalCache snapshot = getSnapshot();
+        ReservationImpl reservation = null;
+        for (Reservation candidate : snapshot.getReservations())
+        {
+            if (candidate.getAllocatables().length > 0)
+            {
+                reservation = ((ReservationImpl) candidate).clone();
+                break;
+            }
+        }
+        Assert.assertNotNull(reservation);
+        final Allocatable published = reservation.getAllocatables()[0];
+        final AllocatableImpl newer = ((AllocatableImpl) published).clone();
+        newer.setReadOnly();
+        // resolves a newer version of the allocatable than the version it reports, like the operator during a write
+        reservation.setResolver(new EntityResolver()
+        {
+            @Override
+            public <T extends Entity> T tryResolve(String id, Class<T> entityClass)
+            {
+                return id.equals(newer.getId()) ? entityClass.cast(newer) : snapshot.tryResolve(id, entityClass);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends Entity> T tryResolve(ReferenceInfo<T> referenceInfo)
+            {
+                return tryResolve(referenceInfo.getId(), (Class<T>) referenceInfo.getType());
+            }
+
+            @Override
+            public <T extends Entity> T resolve(String id, Class<T> entityClass)
+            {
+                return tryResolve(id, entityClass);
+            }
+
+            @Override
+            public <T extends Entity> T resolve(ReferenceInfo<T> referenceInfo)
+            {
+                return tryResolve(referenceInfo);
+            }
+
+            @Override
+            public DynamicType getDynamicType(String key)
+            {
+                return snapshot.getDynamicType(key);
+            }
+
+            @Override
+            public EntityResolver getReferenceResolver()
+            {
+                return snapshot;
+            }
+        });
+        reservation.setReadOnly();
+        Assert.assertSame(published, reservation.getAllocatables()[0]);
+        Assert.assertSame(published, reservation.getAllocatables()[0]);
+    }
+}
@@ -0,0 +1,273 @@
+package org.rapla.test.util;
+
+import org.rapla.components.util.DateTools;
+import org.rapla.entities.Category;
+import org.rapla.entities.Entity;
+import org.rapla.entities.User;
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.Permission;
+import org.rapla.entities.domain.Repeating;
+import org.rapla.entities.domain.RepeatingType;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.Classification;
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.entities.dynamictype.DynamicTypeAnnotations;
+import org.rapla.facade.RaplaFacade;
+import org.rapla.framework.RaplaException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates synthetic resources, user groups, users and events for load tests and benchmarks. The same seed always creates the
+ * same data, so results of different runs can be compared.
+ * <pre>
+ * DataGenerator.Result data = new DataGenerator().setResources(500).setReservations(10000).generate(facade, owner);
+ * </pre>
+ */
+public class DataGenerator
+{
+    private static final int STORE_BATCH_SIZE = 500;
+
+    private int resources = 100;
+    private int groups = 10;
+    private int users = 20;
+    private int reservations = 1000;
+    private int appointmentsPerReservation = 2;
+    private int allocationsPerReservation = 3;
+    private double repeatingRatio = 0.5;
+    private int repetitions = 15;
+    private int exceptionsPerRepeating = 2;
+    private int weeks = 26;
+    private Date start = DateTools.cutDate(new Date());
+    private long seed = 4711;
+
+    public static class Result
+    {
+        public final List<Category> groups = new ArrayList<>();
+        public final List<User> users = new ArrayList<>();
+        public final List<Allocatable> resources = new ArrayList<>();
+        public final List<Reservation> reservations = new ArrayList<>();
+    }
+
+    /** number of resources, each resource can be allocated by one of the groups */
+    public DataGenerator setResources(int resources)
+    {
+        this.resources = resources;
+        return this;
+    }
+
+    /** number of user groups that are created below the user groups category */
+    public DataGenerator setGroups(int groups)
+    {
+        this.groups = groups;
+        return this;
+    }
+
+    /** number of users, each user is member of one group */
+    public DataGenerator setUsers(int users)
+    {
+        this.users = users;
+        return this;
+    }
+
+    public DataGenerator setReservations(int reservations)
+    {
+        this.reservations = reservations;
+        return this;
+    }
+
+    public DataGenerator setAppointmentsPerReservation(int appointmentsPerReservation)
+    {
+        this.appointmentsPerReservation = appointmentsPerReservation;
+        return this;
+    }
+
+    /** maximum number of resources allocated by an event, at least one resource is allocated */
+    public DataGenerator setAllocationsPerReservation(int allocationsPerReservation)
+    {
+        this.allocationsPerReservation = allocationsPerReservation;
+        return this;
+    }
+
+    /** share of the appointments between 0 and 1 that repeat weekly */
+    public DataGenerator setRepeatingRatio(double repeatingRatio)
+    {
+        this.repeatingRatio = repeatingRatio;
+        return this;
+    }
+
+    public DataGenerator setRepetitions(int repetitions)
+    {
+        this.repetitions = repetitions;
+        return this;
+    }
+
+    public DataGenerator setExceptionsPerRepeating(int exceptionsPerRepeating)
+    {
+        this.exceptionsPerRepeating = exceptionsPerRepeating;
+        return this;
+    }
+
+    /** the appointments start within the given number of weeks after the start date */
+    public DataGenerator setWeeks(int weeks)
+    {
+        this.weeks = weeks;
+        return this;
+    }
+
+    public DataGenerator setStart(Date start)
+    {
+        this.start = DateTools.cutDate(start);
+        return this;
+    }
+
+    public DataGenerator setSeed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    public Result generate(RaplaFacade facade, User owner) throws RaplaException
+    {
+        final Random random = new Random(seed);
+        final Result result = new Result();
+        createGroups(facade, result);
+        createUsers(facade, result);
+        createResources(facade, owner, random, result);
+        createReservations(facade, owner, random, result);
+        return result;
+    }
+
+    private void createGroups(RaplaFacade facade, Result result) throws RaplaException
+    {
+        if (groups <= 0)
+        {
+            return;
+        }
+        final Category userGroups = facade.edit(facade.getUserGroupsCategory());
+        final List<Entity> toStore = new ArrayList<>();
+        toStore.add(userGroups);
+        for (int i = 0; i < groups; i++)
+        {
+            final Category group = facade.newCategory();
+            group.setKey("generated-group-" + i);
+            group.getName().setName("en", "Generated group " + i);
+            userGroups.addCategory(group);
+            toStore.add(group);
+            result.groups.add(group);
+        }
+        store(facade, toStore);
+    }
+
+    private void createUsers(RaplaFacade facade, Result result) throws RaplaException
+    {
+        final List<Entity> toStore = new ArrayList<>();
+        for (int i = 0; i < users; i++)
+        {
+            final User user = facade.newUser();
+            user.setUsername("generated" + i);
+            user.setName("Generated User " + i);
+            if (!result.groups.isEmpty())
+            {
+                user.addGroup(result.groups.get(i % result.groups.size()));
+            }
+            toStore.add(user);
+            result.users.add(user);
+        }
+        store(facade, toStore);
+    }
+
+    private void createResources(RaplaFacade facade, User owner, Random random, Result result) throws RaplaException
+    {
+        final DynamicType[] types = facade.getDynamicTypes(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESOURCE);
+        final List<Entity> toStore = new ArrayList<>();
+        for (int i = 0; i < resources; i++)
+        {
+            final Classification classification = types[i % types.length].newClassification();
+            final Allocatable resource = facade.newAllocatable(classification, owner);
+            resource.getClassification().setValue("name", "Generated Resource " + i);
+            if (!result.groups.isEmpty())
+            {
+                // only one group may allocate the resource, the others may only read it
+                final Permission allocate = resource.newPermission();
+                allocate.setGroup(result.groups.get(random.nextInt(result.groups.size())));
+                allocate.setAccessLevel(Permission.AccessLevel.ALLOCATE_CONFLICTS);
+                resource.addPermission(allocate);
+            }
+            toStore.add(resource);
+            result.resources.add(resource);
+        }
+        store(facade, toStore);
+    }
+
+    private void createReservations(RaplaFacade facade, User owner, Random random, Result result) throws RaplaException
+    {
+        final DynamicType[] types = facade.getDynamicTypes(DynamicTypeAnnotations.VALUE_CLASSIFICATION_TYPE_RESERVATION);
+        final List<Entity> toStore = new ArrayList<>();
+        for (int i = 0; i < reservations; i++)
+        {
+            final Classification classification = types[i % types.length].newClassification();
+            final Reservation reservation = facade.newReservation(classification, owner);
+            reservation.getClassification().setValue("name", "Generated Event " + i);
+            for (int j = 0; j < appointmentsPerReservation; j++)
+            {
+                reservation.addAppointment(createAppointment(facade, owner, random));
+            }
+            if (!result.resources.isEmpty())
+            {
+                final int allocations = 1 + random.nextInt(Math.max(1, allocationsPerReservation));
+                for (int j = 0; j < allocations; j++)
+                {
+                    final Allocatable resource = result.resources.get(random.nextInt(result.resources.size()));
+                    if (!reservation.hasAllocated(resource))
+                    {
+                        reservation.addAllocatable(resource);
+                    }
+                }
+            }
+            toStore.add(reservation);
+            result.reservations.add(reservation);
+            if (toStore.size() >= STORE_BATCH_SIZE)
+            {
+                store(facade, toStore);
+                toStore.clear();
+            }
+        }
+        store(facade, toStore);
+    }
+
+    private Appointment createAppointment(RaplaFacade facade, User owner, Random random) throws RaplaException
+    {
+        // appointments start between 7:00 and 17:45 and last 45 minutes to 3 hours
+        final int day = random.nextInt(Math.max(1, weeks * 7));
+        final long startTime = start.getTime() + day * DateTools.MILLISECONDS_PER_DAY + (28 + random.nextInt(44)) * 15 * DateTools.MILLISECONDS_PER_MINUTE;
+        final long duration = (3 + random.nextInt(10)) * 15 * DateTools.MILLISECONDS_PER_MINUTE;
+        final Appointment appointment = facade.newAppointmentWithUser(new Date(startTime), new Date(startTime + duration), owner);
+        if (random.nextDouble() < repeatingRatio)
+        {
+            appointment.setRepeatingEnabled(true);
+            final Repeating repeating = appointment.getRepeating();
+            repeating.setType(RepeatingType.WEEKLY);
+            repeating.setNumber(repetitions);
+            for (int k = 0; k < exceptionsPerRepeating && repetitions > 1; k++)
+            {
+                final int week = 1 + random.nextInt(repetitions - 1);
+                repeating.addException(DateTools.cutDate(new Date(startTime + week * DateTools.MILLISECONDS_PER_WEEK)));
+            }
+        }
+        return appointment;
+    }
+
+    private static void store(RaplaFacade facade, Collection<Entity> entities) throws RaplaException
+    {
+        if (!entities.isEmpty())
+        {
+            facade.storeObjects(entities.toArray(Entity.ENTITY_ARRAY));
+        }
+    }
+}
@@ -205,6 +205,7 @@ public abstract class RaplaTestCase
             }
         };
         final FilterHolder holder = new FilterHolder(filter);
+        holder.setAsyncSupported(true);
         context.addFilter(holder, "/*", EnumSet.allOf(DispatcherType.class));
         context.setInitParameter("resteasy.servlet.mapping.prefix", "/rapla");
         context.setInitParameter("resteasy.use.builtin.providers", "false");
@@ -214,6 +215,7 @@ public abstract class RaplaTestCase
 
         final ServletHolder servletHolder = new ServletHolder(HttpServletDispatcher.class);
         servletHolder.setServlet(new HttpServletDispatcher());
+        servletHolder.setAsyncSupported(true);
         context.addServlet(servletHolder, "/rapla/*");
         jettyServer.start();
         Handler[] childHandlers = context.getChildHandlersByClass(ServletHandler.class);